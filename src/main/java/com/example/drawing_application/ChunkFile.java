@@ -0,0 +1,662 @@
+package com.example.drawing_application;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk format of an unbounded document (see ChunkedWorld), read chunk by chunk so that only the part of the world
+ * around the view-port has to be in memory.
+ * <p>
+ * The file starts with a fixed size header, followed by the encoded shapes of every chunk, the tiles of an overview
+ * pyramid and the index of both:
+ * <ul>
+ *     <li>header: magic, version, reach of the shapes past their chunk, number of chunks, number of tiles, number of
+ *     pyramid levels and the offset of the index</li>
+ *     <li>chunk: the chunk's shapes in z-order, each its id, z-order and ShapeCodec encoding with coordinates relative
+ *     to the chunk</li>
+ *     <li>tile: TILE_SIZE x TILE_SIZE pre-multiplied ARGB pixels; a tile of level 0 shows one chunk, a tile of level n
+ *     shows 2^n x 2^n chunks downsampled from the level below. Tiles are counted from the first column and row holding
+ *     shapes.</li>
+ *     <li>index: column, row, offset, length and checksum of every chunk, then level, column, row and offset of every
+ *     tile</li>
+ * </ul>
+ * Chunks are read with positional reads, so any thread may read them at the same time.
+ */
+public class ChunkFile implements Closeable {
+    /*
+        Identification of the format and size of the overview tiles in pixels.
+     */
+    public static final int MAGIC = 0x4452574B, VERSION = 1;
+    public static final int TILE_SIZE = 64;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 4 + 8;
+    private static final int CHUNK_ENTRY_BYTES = 4 + 4 + 8 + 4 + 8;
+    private static final int TILE_ENTRY_BYTES = 4 + 4 + 4 + 8;
+    private static final int TILE_BYTES = TILE_SIZE * TILE_SIZE * 4;
+    // size of a stored shape in front of its encoding: id and z-order
+    private static final int RECORD_HEADER_BYTES = 8 + 4;
+
+    /**
+     * Index entry of a chunk.
+     *
+     * @param x        : column of the chunk in the world
+     * @param y        : row of the chunk in the world
+     * @param offset   : position of the chunk's shapes in the file
+     * @param length   : size of the chunk's shapes in bytes
+     * @param checksum : checksum of the chunk's shapes, see checksum()
+     */
+    public record Entry(int x, int y, long offset, int length, long checksum) {
+    }
+
+    /**
+     * Shape drawn into a tile of level 0, with the position of its chunk relative to the tile, or while it is decoded,
+     * relative to the first column and row holding shapes.
+     *
+     * @param shape  : shape, in coordinates relative to its chunk
+     * @param chunkX : column of the shape's chunk relative to the tile
+     * @param chunkY : row of the shape's chunk relative to the tile
+     */
+    private record Placed(XShape shape, int chunkX, int chunkY) {
+    }
+
+    /*
+        Instance variables to store the open file, the reach of its shapes past their chunk, its chunks, the offsets
+        of the tiles of every level of the pyramid by tile and the range of chunks holding shapes.
+     */
+    private final FileChannel channel;
+    private final double reach;
+    private final List<Entry> chunks;
+    private final List<HashMap<Long, Long>> tiles;
+    private int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE, right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+
+    /**
+     * Constructor for this class that reads the header and index of an open file.
+     *
+     * @param channel : file to be read
+     * @throws IOException : if the file could not be read or is not a chunked document
+     */
+    private ChunkFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = read(channel, 0, HEADER_BYTES);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a chunked drawing");
+        }
+        reach = header.getDouble();
+        int chunkCount = header.getInt(), tileCount = header.getInt(), levels = header.getInt();
+        long indexOffset = header.getLong();
+        ByteBuffer index = read(channel, indexOffset, chunkCount * CHUNK_ENTRY_BYTES + tileCount * TILE_ENTRY_BYTES);
+        chunks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            Entry entry = new Entry(index.getInt(), index.getInt(), index.getLong(), index.getInt(), index.getLong());
+            chunks.add(entry);
+            left = Math.min(left, entry.x());
+            top = Math.min(top, entry.y());
+            right = Math.max(right, entry.x());
+            bottom = Math.max(bottom, entry.y());
+        }
+        tiles = new ArrayList<>(levels);
+        for (int level = 0; level < levels; level++) {
+            tiles.add(new HashMap<>());
+        }
+        for (int i = 0; i < tileCount; i++) {
+            int level = index.getInt(), x = index.getInt(), y = index.getInt();
+            tiles.get(level).put(key(x, y), index.getLong());
+        }
+    }
+
+    /**
+     * Method to open a chunked document for reading. Only the header and index are read.
+     *
+     * @param path : file to be opened
+     * @return : the open file
+     * @throws IOException : if the file could not be read or is not a chunked document
+     */
+    public static ChunkFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ChunkFile(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Getter method for the chunks of the file.
+     *
+     * @return : index entries of the chunks
+     */
+    public List<Entry> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Getter method for how far the bounds of a shape reach past the edge of its chunk, in chunks.
+     *
+     * @return : largest reach of any shape
+     */
+    public double getReach() {
+        return reach;
+    }
+
+    /**
+     * Getter method for the file to read chunks from.
+     *
+     * @return : open file
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Getter method for the first column holding shapes, only meaningful if the file has any chunks.
+     *
+     * @return : column of the left-most chunk
+     */
+    public int getLeft() {
+        return left;
+    }
+
+    /**
+     * Getter method for the first row holding shapes.
+     *
+     * @return : row of the top-most chunk
+     */
+    public int getTop() {
+        return top;
+    }
+
+    /**
+     * Getter method for the last column holding shapes.
+     *
+     * @return : column of the right-most chunk
+     */
+    public int getRight() {
+        return right;
+    }
+
+    /**
+     * Getter method for the last row holding shapes.
+     *
+     * @return : row of the bottom-most chunk
+     */
+    public int getBottom() {
+        return bottom;
+    }
+
+    /**
+     * Getter method for the number of levels of the overview pyramid. The top level has a single tile.
+     *
+     * @return : number of levels, 0 for an empty document
+     */
+    public int getLevels() {
+        return tiles.size();
+    }
+
+    /**
+     * Method to read a tile of the overview pyramid.
+     *
+     * @param level : level of the tile, 0 showing one chunk per tile
+     * @param x     : column of the tile, i.e. of its top-left chunk counted from getLeft() divided by 2^level
+     * @param y     : row of the tile, counted from getTop()
+     * @return : pre-multiplied ARGB pixels of the tile, or null if nothing was drawn there
+     * @throws IOException : if the file could not be read
+     */
+    public int[] readTile(int level, int x, int y) throws IOException {
+        Long offset = level < tiles.size() ? tiles.get(level).get(key(x, y)) : null;
+        if (offset == null) {
+            return null;
+        }
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        read(channel, offset, TILE_BYTES).asIntBuffer().get(pixels);
+        return pixels;
+    }
+
+    /**
+     * Method to close the file.
+     *
+     * @throws IOException : if the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Method to read a block of a file with a positional read.
+     *
+     * @param channel : file to be read
+     * @param offset  : position of the block
+     * @param length  : size of the block
+     * @return : buffer holding the block, in read mode
+     * @throws IOException : if the file ends before the block does
+     */
+    public static ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Method to start writing a chunked document. The file is written next to the target and moved into its place by
+     * Writer.commit(), so the previous version stays intact until then and can still be read through files opened on
+     * it.
+     *
+     * @param path  : file to be written
+     * @param reach : how far the bounds of a shape reach past the edge of its chunk
+     * @return : writer to add the chunks to
+     * @throws IOException : if the file could not be created
+     */
+    public static Writer create(Path path, double reach) throws IOException {
+        return new Writer(path, reach);
+    }
+
+    /**
+     * Method to find the size of shapes written by writeRecord().
+     *
+     * @param shapes : shapes to be written
+     * @return : number of bytes
+     */
+    public static int recordBytes(List<XShape> shapes) {
+        int bytes = 0;
+        for (XShape shape : shapes) {
+            bytes += RECORD_HEADER_BYTES + ShapeCodec.shapeBytes(shape);
+        }
+        return bytes;
+    }
+
+    /**
+     * Method to write a shape of a chunk: its id, z-order and encoding.
+     *
+     * @param buffer : buffer to write to
+     * @param shape  : shape to be written, in coordinates relative to its chunk
+     */
+    public static void writeRecord(ByteBuffer buffer, XShape shape) {
+        buffer.putLong(shape.getId());
+        buffer.putInt(shape.getZOrder());
+        ShapeCodec.writeShape(buffer, shape);
+    }
+
+    /**
+     * Method to read a shape written by writeRecord(). The shape gets back its id and z-order.
+     *
+     * @param buffer : buffer to read from
+     * @return : the shape, in coordinates relative to its chunk
+     * @throws IllegalArgumentException : if a stroke has no points or a group no children, see ShapeCodec.readShape()
+     */
+    public static XShape readRecord(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        int zOrder = buffer.getInt();
+        XShape shape = ShapeCodec.readShape(buffer);
+        shape.setId(id);
+        shape.setZOrder(zOrder);
+        return shape;
+    }
+
+    /**
+     * Method to find the checksum of encoded shapes, combining CRC-32 and Adler-32 so that a chunk can be told unchanged
+     * from its checksum alone.
+     *
+     * @param buffer : encoded shapes, between position and limit
+     * @return : checksum
+     */
+    public static long checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        Adler32 adler = new Adler32();
+        crc.update(buffer.duplicate());
+        adler.update(buffer.duplicate());
+        return crc.getValue() << 32 | adler.getValue();
+    }
+
+    /**
+     * Method to pack the column and row of a chunk in the world into a key.
+     *
+     * @param x : column of the chunk
+     * @param y : row of the chunk
+     * @return : key of the chunk
+     */
+    public static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Method to unpack the column of a chunk from its key.
+     *
+     * @param key : key of the chunk
+     * @return : column of the chunk
+     */
+    public static int keyX(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Method to unpack the row of a chunk from its key.
+     *
+     * @param key : key of the chunk
+     * @return : row of the chunk
+     */
+    public static int keyY(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Helper method to write a whole buffer at a position of a file.
+     *
+     * @param channel  : file to be written
+     * @param buffer   : data to be written, in read mode
+     * @param position : position to write at
+     * @return : number of bytes written
+     * @throws IOException : if the file could not be written
+     */
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + length - buffer.remaining());
+        }
+        return length;
+    }
+
+    /**
+     * Helper method to move a written file into the place of the previous version. A file that is open cannot be
+     * replaced on every platform, so the previous version is renamed out of the way first; files opened on it keep
+     * reading it under its new name, and it is deleted once they let go of it.
+     *
+     * @param temp : file that was written
+     * @param path : file to be replaced
+     * @throws IOException : if the file could not be moved
+     */
+    private static void replace(Path temp, Path path) throws IOException {
+        Path previous = null;
+        if (Files.exists(path)) {
+            previous = Files.createTempFile(temp.getParent(), "drawing", ".old");
+            Files.move(path, previous, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (previous != null) {
+                Files.move(previous, path);
+            }
+            throw e;
+        }
+        if (previous != null) {
+            try {
+                Files.delete(previous);
+            } catch (IOException e) {
+                previous.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Writer of a chunked document that takes the chunks one at a time. Chunks are written as they come, and the
+     * overview pyramid is drawn by commit() from the chunks in the new file, one row of level 0 tiles at a time, each
+     * finished tile of a level being folded into the level above. Only the index and a row of tiles per level are kept
+     * in memory.
+     */
+    public static final class Writer implements Closeable {
+        /*
+            Instance variables to store the file being written, the file it replaces, the reach of its shapes, where
+            the next chunk goes and the index of the chunks written.
+         */
+        private final Path path, temp;
+        private final FileChannel channel;
+        private final double reach;
+        private long position = HEADER_BYTES;
+        private final List<Entry> entries = new ArrayList<>();
+        private boolean committed;
+
+        /*
+            Instance variables to store the tiles of the pyramid: the index of those written, the tiles of every level
+            above 0 whose row is not complete yet by column, and the extent of level 0 in tiles.
+         */
+        private ByteBuffer tileIndex;
+        private int tileCount;
+        private List<HashMap<Integer, int[]>> pending;
+        private int rows;
+
+        /**
+         * Constructor for this class that creates the file next to the target.
+         *
+         * @param path  : file to be written
+         * @param reach : how far the bounds of a shape reach past the edge of its chunk
+         * @throws IOException : if the file could not be created
+         */
+        private Writer(Path path, double reach) throws IOException {
+            this.path = path;
+            this.reach = reach;
+            temp = Files.createTempFile(path.toAbsolutePath().getParent(), "drawing", ".tmp");
+            channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * Method to write the shapes of a chunk, in z-order.
+         *
+         * @param x      : column of the chunk in the world
+         * @param y      : row of the chunk in the world
+         * @param shapes : shapes of the chunk, in coordinates relative to it
+         * @throws IOException : if the file could not be written
+         */
+        public void writeChunk(int x, int y, List<XShape> shapes) throws IOException {
+            List<XShape> sorted = new ArrayList<>(shapes);
+            sorted.sort(Comparator.comparingInt(XShape::getZOrder));
+            ByteBuffer buffer = ByteBuffer.allocate(recordBytes(sorted));
+            for (XShape shape : sorted) {
+                writeRecord(buffer, shape);
+            }
+            buffer.flip();
+            entries.add(new Entry(x, y, position, buffer.remaining(), checksum(buffer)));
+            position += writeFully(channel, buffer, position);
+        }
+
+        /**
+         * Method to copy the encoded shapes of a chunk byte for byte from another file, e.g. a chunk that is unchanged
+         * since it was read.
+         *
+         * @param x        : column of the chunk in the world
+         * @param y        : row of the chunk in the world
+         * @param source   : file holding the shapes
+         * @param offset   : position of the shapes in that file
+         * @param length   : size of the shapes in bytes
+         * @param checksum : checksum of the shapes, see checksum()
+         * @throws IOException : if a file could not be read or written
+         */
+        public void copyChunk(int x, int y, FileChannel source, long offset, int length, long checksum) throws IOException {
+            entries.add(new Entry(x, y, position, length, checksum));
+            long copied = 0;
+            while (copied < length) {
+                channel.position(position + copied);
+                long count = source.transferTo(offset + copied, length - copied, channel);
+                if (count <= 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+                copied += count;
+            }
+            position += length;
+        }
+
+        /**
+         * Method to finish the file: draws the overview pyramid, writes the index and header and moves the file into
+         * the place of the target.
+         *
+         * @throws IOException : if a file could not be read, written or moved
+         */
+        public void commit() throws IOException {
+            int levels = 0;
+            tileIndex = ByteBuffer.allocate(64 * TILE_ENTRY_BYTES);
+            if (!entries.isEmpty()) {
+                // shapes only reach right and down from their chunk, up to this many chunks
+                int span = (int) Math.floor(reach) + 1;
+                entries.sort(Comparator.comparingInt(Entry::y).thenComparingInt(Entry::x));
+                int left = Integer.MAX_VALUE, right = Integer.MIN_VALUE;
+                for (Entry entry : entries) {
+                    left = Math.min(left, entry.x());
+                    right = Math.max(right, entry.x());
+                }
+                int top = entries.get(0).y();
+                rows = entries.get(entries.size() - 1).y() - top + span + 1;
+                int extent = Math.max(right - left + span + 1, rows);
+                levels = 1;
+                while (extent - 1 >> levels - 1 > 0) {
+                    levels++;
+                }
+                pending = new ArrayList<>(levels);
+                for (int level = 0; level < levels; level++) {
+                    pending.add(new HashMap<>());
+                }
+                drawPyramid(left, top, span);
+            }
+
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate(entries.size() * CHUNK_ENTRY_BYTES);
+            for (Entry entry : entries) {
+                index.putInt(entry.x()).putInt(entry.y()).putLong(entry.offset()).putInt(entry.length()).putLong(entry.checksum());
+            }
+            position += writeFully(channel, index.flip(), position);
+            writeFully(channel, tileIndex.flip(), position);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putDouble(reach);
+            header.putInt(entries.size()).putInt(tileCount).putInt(levels).putLong(indexOffset);
+            writeFully(channel, header.flip(), 0);
+            channel.close();
+            replace(temp, path);
+            committed = true;
+        }
+
+        /**
+         * Method to give up on a file that was not committed, deleting it.
+         *
+         * @throws IOException : if the file could not be deleted
+         */
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        /**
+         * Helper method to draw the level 0 tiles row by row: every shape is drawn, in z-order, into the tiles of all
+         * the chunks its bounds touch. The shapes of the rows of chunks that can reach the current row are decoded from
+         * the new file, each row once.
+         *
+         * @param left : first column holding shapes
+         * @param top  : first row holding shapes
+         * @param span : number of rows below its chunk a shape can reach into
+         * @throws IOException : if the file could not be read or written
+         */
+        private void drawPyramid(int left, int top, int span) throws IOException {
+            // decoded shapes of the rows of chunks in reach, with the chunk they are relative to
+            ArrayDeque<List<Placed>> window = new ArrayDeque<>();
+            int next = 0;
+            for (int row = 0; row < rows; row++) {
+                List<Placed> decoded = new ArrayList<>();
+                while (next < entries.size() && entries.get(next).y() == top + row) {
+                    Entry entry = entries.get(next++);
+                    ByteBuffer buffer = read(channel, entry.offset(), entry.length());
+                    while (buffer.hasRemaining()) {
+                        decoded.add(new Placed(readRecord(buffer), entry.x() - left, entry.y() - top));
+                    }
+                }
+                window.addLast(decoded);
+                if (window.size() > span + 1) {
+                    window.removeFirst();
+                }
+
+                // shapes touching every tile of the row, by column
+                TreeMap<Integer, List<Placed>> tiles = new TreeMap<>();
+                for (List<Placed> chunkRow : window) {
+                    for (Placed placed : chunkRow) {
+                        XShape shape = placed.shape();
+                        int y0 = placed.chunkY() + (int) Math.floor(shape.getBoundsTop());
+                        int y1 = placed.chunkY() + (int) Math.floor(shape.getBoundsBottom());
+                        if (row < y0 || row > y1) {
+                            continue;
+                        }
+                        int x0 = placed.chunkX() + (int) Math.floor(shape.getBoundsLeft());
+                        int x1 = placed.chunkX() + (int) Math.floor(shape.getBoundsRight());
+                        for (int x = x0; x <= x1; x++) {
+                            tiles.computeIfAbsent(x, k -> new ArrayList<>()).add(new Placed(shape, placed.chunkX() - x, placed.chunkY() - row));
+                        }
+                    }
+                }
+                for (Map.Entry<Integer, List<Placed>> tile : tiles.entrySet()) {
+                    List<Placed> shapes = tile.getValue();
+                    shapes.sort(Comparator.comparingInt(entry -> entry.shape().getZOrder()));
+                    int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+                    Rasterizer rasterizer = new Rasterizer(pixels, 0, 0, TILE_SIZE, TILE_SIZE);
+                    for (Placed entry : shapes) {
+                        rasterizer.drawShape(entry.shape(), entry.chunkX(), entry.chunkY(), TILE_SIZE);
+                    }
+                    writeTile(0, tile.getKey(), row, pixels);
+                }
+                finishRow(0, row);
+            }
+        }
+
+        /**
+         * Helper method to write a tile of the pyramid and fold it into its tile on the level above.
+         *
+         * @param level  : level of the tile
+         * @param x      : column of the tile
+         * @param y      : row of the tile
+         * @param pixels : pixels of the tile
+         * @throws IOException : if the file could not be written
+         */
+        private void writeTile(int level, int x, int y, int[] pixels) throws IOException {
+            if (!tileIndex.hasRemaining()) {
+                tileIndex = ByteBuffer.allocate(tileIndex.capacity() * 2).put(tileIndex.flip());
+            }
+            tileIndex.putInt(level).putInt(x).putInt(y).putLong(position);
+            tileCount++;
+            ByteBuffer buffer = ByteBuffer.allocate(TILE_BYTES);
+            buffer.asIntBuffer().put(pixels);
+            position += writeFully(channel, buffer, position);
+            if (level + 1 < pending.size()) {
+                int[] parent = pending.get(level + 1).computeIfAbsent(x / 2, k -> new int[TILE_SIZE * TILE_SIZE]);
+                int half = TILE_SIZE / 2;
+                Rasterizer.downsample(pixels, parent, TILE_SIZE, x % 2 * half, y % 2 * half);
+            }
+        }
+
+        /**
+         * Helper method to write the row of tiles above a row once that row was the last one to fold into them.
+         *
+         * @param level : level of the finished row
+         * @param row   : the finished row
+         * @throws IOException : if the file could not be written
+         */
+        private void finishRow(int level, int row) throws IOException {
+            if (level + 1 >= pending.size() || row % 2 == 0 && row != rows - 1 >> level) {
+                return;
+            }
+            HashMap<Integer, int[]> above = pending.get(level + 1);
+            List<Integer> columns = new ArrayList<>(above.keySet());
+            columns.sort(null);
+            for (int x : columns) {
+                writeTile(level + 1, x, row / 2, above.get(x));
+            }
+            above.clear();
+            finishRow(level + 1, row / 2);
+        }
+    }
+}
@@ -0,0 +1,675 @@
+package com.example.drawing_application;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Unbounded canvas: the world is a grid of chunks, each the size of the normal document (1 x 1 in normalized
+ * coordinates), of which only those around the view-port are loaded into the model. The model's coordinates are
+ * relative to the chunk the view-port is in (the origin), so they stay small and keep their precision however far the
+ * user pans; once the centre of the view-port leaves the origin chunk, the loaded shapes and the view-port are shifted
+ * by whole chunks and the next chunk becomes the origin.
+ * <p>
+ * A shape belongs to the chunk holding the top-left corner of its bounds. Shapes of chunks that are not loaded are kept
+ * encoded (ChunkFile.writeRecord()) with coordinates relative to their chunk, together with their ids and z-orders, so
+ * that they come back as they left. The model, and with it drawing and hit-testing, only ever holds the shapes of the
+ * chunks in view.
+ * <p>
+ * A world opened from a ChunkFile streams its chunks from disk: chunks coming into range are read and decoded on the
+ * reader executor and added to the model on the applier executor (the JavaFX Application Thread in the application).
+ * Unloaded chunks that are unchanged since they were read are dropped, as the file still holds them; changed chunks are
+ * kept in memory, and once they take more than the heap budget, those furthest from the view-port are spilled to a swap
+ * file.
+ * <p>
+ * Disabled by default, run with -Ddrawing.unbounded=true to give new documents an unbounded canvas.
+ */
+public class ChunkedWorld implements InteractionModelSubscriber {
+    // whether new documents have an unbounded canvas
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("drawing.unbounded", "false"));
+    // memory for changed chunks that are not loaded, in bytes (drawing.chunkBudget is in megabytes)
+    public static final long BUDGET = Long.getLong("drawing.chunkBudget", 64) << 20;
+    // distance around the view-port, in chunks, within which chunks are loaded ahead of a pan
+    static final double PREFETCH = 0.25;
+
+    /**
+     * Encoded shapes in one of the files.
+     *
+     * @param channel  : document or swap file
+     * @param offset   : position of the shapes in the file
+     * @param length   : size of the shapes in bytes
+     * @param checksum : checksum of the shapes, see ChunkFile.checksum()
+     */
+    private record Location(FileChannel channel, long offset, int length, long checksum) {
+    }
+
+    /**
+     * Shapes of a chunk that are not in the model.
+     */
+    private static final class Chunk {
+        // column and row of the chunk in the world
+        final int x, y;
+        // shapes held in memory, in write mode
+        ByteBuffer memory;
+        // shapes on disk not read yet, and shapes being read
+        final ArrayList<Location> disk = new ArrayList<>();
+        List<Location> reading;
+        // shapes on disk that the loaded shapes of the chunk were last read from
+        Location clean;
+
+        /**
+         * Default constructor for this class.
+         *
+         * @param x : column of the chunk in the world
+         * @param y : row of the chunk in the world
+         */
+        Chunk(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * Method to check if the chunk has nothing left to hold on to.
+         *
+         * @return : true if it holds no shapes and no reads are in flight
+         */
+        boolean isEmpty() {
+            return memory == null && disk.isEmpty() && reading == null && clean == null;
+        }
+    }
+
+    /*
+        Instance variables to store the model and iModel of the document and the chunk the model's coordinates are
+        relative to.
+     */
+    private final DrawingModel model;
+    private final InteractionModel iModel;
+    private int originX, originY;
+
+    /*
+        Instance variables to store the loaded chunks, as a range relative to the origin (inclusive), the chunks holding
+        shapes that are not in the model, by ChunkFile.key(), and how far the bounds of a shape reach past the edge of
+        its chunk.
+     */
+    private int loadedLeft, loadedTop, loadedRight, loadedBottom;
+    private final HashMap<Long, Chunk> chunks;
+    private double reach;
+    // set while the world shifts the view-port itself
+    private boolean updating;
+
+    /*
+        Instance variables to store the file the world was opened from, the executors to read chunks on and to add
+        them to the model on, the heap budget, the memory held by the chunks and the swap file with its size.
+     */
+    private final ChunkFile file;
+    private final Executor reader, applier;
+    private final long budget;
+    private long memoryBytes;
+    private FileChannel swap;
+    private long swapSize;
+
+    /**
+     * Default constructor for this class, for a new world. The shapes already in the model are placed around the origin
+     * chunk, and everything happens on the calling thread.
+     *
+     * @param model  : model holding the loaded shapes
+     * @param iModel : iModel whose view-port the loaded chunks follow, made unbounded
+     */
+    public ChunkedWorld(DrawingModel model, InteractionModel iModel) {
+        this(model, iModel, null, Runnable::run, Runnable::run, BUDGET);
+    }
+
+    /**
+     * Constructor for this class that streams the world from a file. The model should be empty.
+     *
+     * @param model   : model holding the loaded shapes
+     * @param iModel  : iModel whose view-port the loaded chunks follow, made unbounded
+     * @param file    : file to read the chunks from, or null for a new world
+     * @param reader  : executor to read and decode chunks on
+     * @param applier : executor to add decoded chunks to the model on, the thread the model is used on
+     * @param budget  : memory for changed chunks that are not loaded before they are spilled to disk, in bytes
+     */
+    public ChunkedWorld(DrawingModel model, InteractionModel iModel, ChunkFile file, Executor reader, Executor applier, long budget) {
+        this.model = model;
+        this.iModel = iModel;
+        this.file = file;
+        this.reader = reader;
+        this.applier = applier;
+        this.budget = budget;
+        this.chunks = new HashMap<>();
+        iModel.setUnbounded(true);
+        // nothing is loaded, so that the first update loads the chunks in view
+        loadedLeft = loadedTop = 1;
+        loadedRight = loadedBottom = 0;
+        if (file != null) {
+            reach = file.getReach();
+            for (ChunkFile.Entry entry : file.getChunks()) {
+                chunk(entry.x(), entry.y()).disk.add(new Location(file.getChannel(), entry.offset(), entry.length(), entry.checksum()));
+            }
+        }
+        update();
+    }
+
+    /**
+     * Getter method for the x coordinate of the chunk the model's coordinates are relative to.
+     *
+     * @return : column of the origin chunk in the world
+     */
+    public int getOriginX() {
+        return originX;
+    }
+
+    /**
+     * Getter method for the y coordinate of the chunk the model's coordinates are relative to.
+     *
+     * @return : row of the origin chunk in the world
+     */
+    public int getOriginY() {
+        return originY;
+    }
+
+    /**
+     * Getter method for the file the world was opened from.
+     *
+     * @return : the file, or null for a new world
+     */
+    public ChunkFile getFile() {
+        return file;
+    }
+
+    /**
+     * Method to find the number of chunks holding shapes that are not loaded.
+     *
+     * @return : number of chunks in memory or on disk
+     */
+    public int getStoredChunks() {
+        int stored = 0;
+        for (Chunk chunk : chunks.values()) {
+            if (chunk.memory != null || !chunk.disk.isEmpty()) {
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Method to find the memory held by the shapes of the chunks that are not loaded.
+     *
+     * @return : size of the encoded shapes in bytes
+     */
+    public long storedBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Method to check if chunks are still being read.
+     *
+     * @return : true if a read has not been added to the model yet
+     */
+    public boolean isReading() {
+        for (Chunk chunk : chunks.values()) {
+            if (chunk.reading != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method for receiving notifications of iModel changes other than the view-port. Nothing to be done.
+     */
+    @Override
+    public void iModelChanged() {
+    }
+
+    /**
+     * Method for receiving view-port changes from iModel. Moves the origin along with the view-port and loads and
+     * unloads chunks around it.
+     *
+     * @param event : the view-port before and after the change
+     */
+    @Override
+    public void iModelChanged(ViewportEvent event) {
+        if (!updating && event.isChanged()) {
+            update();
+        }
+    }
+
+    /**
+     * Method to move the origin to the chunk the view-port is in and load the chunks around it. Called on every change
+     * of the view-port, does nothing unless the view-port crossed into another chunk or near enough to one.
+     */
+    public void update() {
+        updating = true;
+        try {
+            double viewWidth = iModel.getViewFinderWidth(), viewHeight = iModel.getViewFinderHeight();
+            int shiftX = (int) Math.floor(iModel.getViewLeft() + viewWidth / 2);
+            int shiftY = (int) Math.floor(iModel.getViewTop() + viewHeight / 2);
+            if (shiftX != 0 || shiftY != 0) {
+                shiftOrigin(shiftX, shiftY);
+            }
+            // chunks whose shapes may reach into the view-port grown by the prefetch distance
+            double viewLeft = iModel.getViewLeft(), viewTop = iModel.getViewTop();
+            int left = (int) Math.floor(viewLeft - PREFETCH - reach);
+            int top = (int) Math.floor(viewTop - PREFETCH - reach);
+            int right = (int) Math.floor(viewLeft + viewWidth + PREFETCH);
+            int bottom = (int) Math.floor(viewTop + viewHeight + PREFETCH);
+            if (left != loadedLeft || top != loadedTop || right != loadedRight || bottom != loadedBottom) {
+                load(left, top, right, bottom);
+            }
+        } finally {
+            updating = false;
+        }
+    }
+
+    /**
+     * Method to write the whole world, loaded or not, to a chunked document with an overview pyramid. Chunks are
+     * written one at a time; those that are only on disk, in one piece, are copied byte for byte. The world keeps
+     * reading from the file it was opened from.
+     *
+     * @param path : file to be written
+     * @throws IOException : if a chunk could not be read or the file could not be written
+     */
+    public void save(Path path) throws IOException {
+        // the loaded shapes, which the model holds anyway, by chunk
+        HashMap<Long, List<XShape>> loaded = new HashMap<>();
+        double reach = this.reach;
+        for (XShape shape : model.getShapes()) {
+            reach = Math.max(reach, place(shape, originX, originY, loaded));
+        }
+        try (ChunkFile.Writer writer = ChunkFile.create(path, reach)) {
+            List<Location> pieces = new ArrayList<>();
+            for (Chunk chunk : chunks.values()) {
+                List<XShape> shapes = loaded.remove(ChunkFile.key(chunk.x, chunk.y));
+                pieces.clear();
+                pieces.addAll(chunk.disk);
+                if (chunk.reading != null) {
+                    pieces.addAll(chunk.reading);
+                }
+                if (shapes == null && chunk.memory == null && pieces.size() == 1) {
+                    Location piece = pieces.get(0);
+                    writer.copyChunk(chunk.x, chunk.y, piece.channel(), piece.offset(), piece.length(), piece.checksum());
+                    continue;
+                }
+                if (shapes == null) {
+                    shapes = new ArrayList<>();
+                }
+                if (chunk.memory != null) {
+                    decode(chunk.memory.duplicate().flip(), shapes);
+                }
+                read(pieces, shapes);
+                if (!shapes.isEmpty()) {
+                    writer.writeChunk(chunk.x, chunk.y, shapes);
+                }
+            }
+            for (Map.Entry<Long, List<XShape>> chunk : loaded.entrySet()) {
+                writer.writeChunk(ChunkFile.keyX(chunk.getKey()), ChunkFile.keyY(chunk.getKey()), chunk.getValue());
+            }
+            writer.commit();
+        }
+    }
+
+    /**
+     * Method to write the shapes of a bounded document to a chunked document, so that it opens as an unbounded one.
+     *
+     * @param shapes : shapes of the document
+     * @param path   : file to be written
+     * @throws IOException : if the file could not be written
+     */
+    public static void save(List<XShape> shapes, Path path) throws IOException {
+        HashMap<Long, List<XShape>> chunks = new HashMap<>();
+        double reach = 0;
+        for (XShape shape : shapes) {
+            reach = Math.max(reach, place(shape, 0, 0, chunks));
+        }
+        try (ChunkFile.Writer writer = ChunkFile.create(path, reach)) {
+            for (Map.Entry<Long, List<XShape>> chunk : chunks.entrySet()) {
+                writer.writeChunk(ChunkFile.keyX(chunk.getKey()), ChunkFile.keyY(chunk.getKey()), chunk.getValue());
+            }
+            writer.commit();
+        }
+    }
+
+    /**
+     * Helper method to add a copy of a shape to the chunk holding it, in the chunk's coordinates. The shape itself is
+     * left alone.
+     *
+     * @param shape   : shape of the model
+     * @param originX : column of the origin chunk
+     * @param originY : row of the origin chunk
+     * @param chunks  : shapes of each chunk, by ChunkFile.key()
+     * @return : how far the bounds of the copy reach past the edge of its chunk
+     */
+    private static double place(XShape shape, int originX, int originY, Map<Long, List<XShape>> chunks) {
+        ByteBuffer buffer = ByteBuffer.allocate(ChunkFile.recordBytes(List.of(shape)));
+        ChunkFile.writeRecord(buffer, shape);
+        XShape copy = ChunkFile.readRecord(buffer.flip());
+        int chunkX = chunkOf(shape.getBoundsLeft()), chunkY = chunkOf(shape.getBoundsTop());
+        // XShape.move() moves by the negated distance
+        copy.move(chunkX, chunkY);
+        chunks.computeIfAbsent(ChunkFile.key(originX + chunkX, originY + chunkY), k -> new ArrayList<>()).add(copy);
+        return Math.max(copy.getBoundsRight(), copy.getBoundsBottom()) - 1;
+    }
+
+    /**
+     * Helper method to make another chunk the origin: the loaded shapes and the view-port are moved by whole chunks
+     * the other way, so they stay where they are in the world.
+     *
+     * @param shiftX : number of chunks to move the origin right by
+     * @param shiftY : number of chunks to move the origin down by
+     */
+    private void shiftOrigin(int shiftX, int shiftY) {
+        originX += shiftX;
+        originY += shiftY;
+        loadedLeft -= shiftX;
+        loadedRight -= shiftX;
+        loadedTop -= shiftY;
+        loadedBottom -= shiftY;
+        model.moveShapes(model.getShapes(), -shiftX, -shiftY);
+        XShape selected = iModel.getSelectedShape();
+        if (selected != null && model.getShape(selected.getId()) != selected) {
+            // a shape not yet in the model, e.g. the placeholder of the next shape to be created
+            selected.move(shiftX, shiftY);
+        }
+        iModel.setViewLeft(iModel.getViewLeft() - shiftX);
+        iModel.setViewTop(iModel.getViewTop() - shiftY);
+    }
+
+    /**
+     * Helper method to load the chunks of a new range and unload the shapes of all the others. The selected shape
+     * stays loaded wherever it is, as the iModel holds on to it. Chunks in memory are added straight away, chunks on
+     * disk once they have been read.
+     *
+     * @param left   : first column to be loaded, relative to the origin
+     * @param top    : first row to be loaded, relative to the origin
+     * @param right  : last column to be loaded, relative to the origin
+     * @param bottom : last row to be loaded, relative to the origin
+     */
+    private void load(int left, int top, int right, int bottom) {
+        List<XShape> unloaded = new ArrayList<>();
+        XShape selected = iModel.getSelectedShape();
+        for (XShape shape : model.getShapes()) {
+            int chunkX = chunkOf(shape.getBoundsLeft()), chunkY = chunkOf(shape.getBoundsTop());
+            if ((chunkX < left || chunkX > right || chunkY < top || chunkY > bottom) && shape != selected) {
+                unloaded.add(shape);
+            }
+        }
+        List<Chunk> entering = new ArrayList<>();
+        for (int chunkY = top; chunkY <= bottom; chunkY++) {
+            for (int chunkX = left; chunkX <= right; chunkX++) {
+                Chunk chunk = isLoaded(chunkX, chunkY) ? null : chunks.get(ChunkFile.key(originX + chunkX, originY + chunkY));
+                if (chunk != null) {
+                    entering.add(chunk);
+                }
+            }
+        }
+        int oldLeft = loadedLeft, oldTop = loadedTop, oldRight = loadedRight, oldBottom = loadedBottom;
+        loadedLeft = left;
+        loadedTop = top;
+        loadedRight = right;
+        loadedBottom = bottom;
+        // the new range is set first, as a read may be applied straight away
+        List<XShape> restored = new ArrayList<>();
+        for (Chunk chunk : entering) {
+            if (chunk.memory != null) {
+                List<XShape> shapes = new ArrayList<>();
+                decode(chunk.memory.flip(), shapes);
+                moveIntoModel(shapes, chunk);
+                restored.addAll(shapes);
+                freeMemory(chunk);
+            }
+            if (!chunk.disk.isEmpty() && chunk.reading == null) {
+                request(chunk);
+            }
+        }
+        model.reloadShapes(unloaded, restored);
+        // the shapes are out of the model, so moving them into their chunk's coordinates goes unnoticed
+        for (XShape shape : unloaded) {
+            store(shape);
+        }
+        // chunks that went out of range: drop those whose shapes are still on disk as they were
+        for (int chunkY = oldTop; chunkY <= oldBottom; chunkY++) {
+            for (int chunkX = oldLeft; chunkX <= oldRight; chunkX++) {
+                Chunk chunk = isLoaded(chunkX, chunkY) ? null : chunks.get(ChunkFile.key(originX + chunkX, originY + chunkY));
+                if (chunk != null) {
+                    release(chunk);
+                }
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Helper method to check if a chunk is in the loaded range.
+     *
+     * @param chunkX : column of the chunk, relative to the origin
+     * @param chunkY : row of the chunk, relative to the origin
+     * @return : true if its shapes belong in the model
+     */
+    private boolean isLoaded(int chunkX, int chunkY) {
+        return chunkX >= loadedLeft && chunkX <= loadedRight && chunkY >= loadedTop && chunkY <= loadedBottom;
+    }
+
+    /**
+     * Helper method to forget the disk copy of a chunk that went out of range, first dropping the chunk's shapes from
+     * memory if they are the same as that copy.
+     *
+     * @param chunk : chunk that is no longer loaded
+     */
+    private void release(Chunk chunk) {
+        Location clean = chunk.clean;
+        chunk.clean = null;
+        if (clean != null && chunk.memory != null && chunk.memory.position() == clean.length()
+                && ChunkFile.checksum(chunk.memory.duplicate().flip()) == clean.checksum()) {
+            freeMemory(chunk);
+            chunk.disk.add(clean);
+        }
+        if (chunk.isEmpty()) {
+            chunks.remove(ChunkFile.key(chunk.x, chunk.y));
+        }
+    }
+
+    /**
+     * Helper method to read the shapes of a chunk from disk on the reader and add them to the model on the applier.
+     *
+     * @param chunk : chunk with shapes on disk and no read in flight
+     */
+    private void request(Chunk chunk) {
+        List<Location> locations = new ArrayList<>(chunk.disk);
+        chunk.disk.clear();
+        chunk.reading = locations;
+        CompletableFuture.supplyAsync(() -> {
+            List<XShape> shapes = new ArrayList<>();
+            try {
+                read(locations, shapes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read chunk " + chunk.x + ", " + chunk.y, e);
+            }
+            return shapes;
+        }, reader).whenComplete((shapes, error) -> applier.execute(() -> apply(chunk, locations, shapes, error)));
+    }
+
+    /**
+     * Helper method to add the shapes of a chunk read from disk to the model, if the chunk is still loaded.
+     *
+     * @param chunk     : chunk that was read
+     * @param locations : shapes that were read
+     * @param shapes    : decoded shapes, in coordinates relative to the chunk
+     * @param error     : error if the chunk could not be read, else null
+     */
+    private void apply(Chunk chunk, List<Location> locations, List<XShape> shapes, Throwable error) {
+        chunk.reading = null;
+        if (error != null || !isLoaded(chunk.x - originX, chunk.y - originY)) {
+            // keep them on disk for the next time the chunk comes into range
+            chunk.disk.addAll(locations);
+            if (error != null) {
+                throw new IllegalStateException("Could not load chunk " + chunk.x + ", " + chunk.y, error);
+            }
+            return;
+        }
+        moveIntoModel(shapes, chunk);
+        // a chunk read in one piece can be dropped again if it is unloaded unchanged
+        chunk.clean = locations.size() == 1 ? locations.get(0) : null;
+        model.reloadShapes(List.of(), shapes);
+    }
+
+    /**
+     * Helper method to encode a shape that was taken out of the model into the chunk it belongs to.
+     *
+     * @param shape : shape to be stored
+     */
+    private void store(XShape shape) {
+        int chunkX = chunkOf(shape.getBoundsLeft()), chunkY = chunkOf(shape.getBoundsTop());
+        // XShape.move() moves by the negated distance
+        shape.move(chunkX, chunkY);
+        reach = Math.max(reach, Math.max(shape.getBoundsRight(), shape.getBoundsBottom()) - 1);
+        Chunk chunk = chunk(originX + chunkX, originY + chunkY);
+        int size = ChunkFile.recordBytes(List.of(shape));
+        if (chunk.memory == null || chunk.memory.remaining() < size) {
+            int used = chunk.memory == null ? 0 : chunk.memory.position();
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(used + size, chunk.memory == null ? 256 : chunk.memory.capacity() * 2));
+            if (chunk.memory != null) {
+                bigger.put(chunk.memory.flip());
+                memoryBytes -= chunk.memory.capacity();
+            }
+            chunk.memory = bigger;
+            memoryBytes += bigger.capacity();
+        }
+        ChunkFile.writeRecord(chunk.memory, shape);
+    }
+
+    /**
+     * Helper method to spill the chunks furthest from the view-port to the swap file while the chunks in memory take
+     * more than the budget.
+     */
+    private void evict() {
+        if (memoryBytes <= budget) {
+            return;
+        }
+        List<Chunk> inMemory = new ArrayList<>();
+        for (Chunk chunk : chunks.values()) {
+            if (chunk.memory != null) {
+                inMemory.add(chunk);
+            }
+        }
+        inMemory.sort((a, b) -> Long.compare(distance(b), distance(a)));
+        try {
+            for (int i = 0; i < inMemory.size() && memoryBytes > budget; i++) {
+                spill(inMemory.get(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill chunks to disk", e);
+        }
+    }
+
+    /**
+     * Helper method to move the shapes of a chunk from memory to the end of the swap file.
+     *
+     * @param chunk : chunk with shapes in memory
+     * @throws IOException : if the swap file could not be written
+     */
+    private void spill(Chunk chunk) throws IOException {
+        if (swap == null) {
+            Path path = Files.createTempFile("drawing", ".swap");
+            swap = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            path.toFile().deleteOnExit();
+        }
+        ByteBuffer buffer = chunk.memory.flip();
+        Location location = new Location(swap, swapSize, buffer.remaining(), ChunkFile.checksum(buffer));
+        while (buffer.hasRemaining()) {
+            swap.write(buffer, swapSize + location.length() - buffer.remaining());
+        }
+        swapSize += location.length();
+        chunk.disk.add(location);
+        freeMemory(chunk);
+    }
+
+    /**
+     * Helper method to find how far a chunk is from the origin.
+     *
+     * @param chunk : chunk to be measured
+     * @return : number of chunks along the longer axis
+     */
+    private long distance(Chunk chunk) {
+        return Math.max(Math.abs((long) chunk.x - originX), Math.abs((long) chunk.y - originY));
+    }
+
+    /**
+     * Helper method to find or add the chunk at a position in the world.
+     *
+     * @param x : column of the chunk
+     * @param y : row of the chunk
+     * @return : the chunk
+     */
+    private Chunk chunk(int x, int y) {
+        return chunks.computeIfAbsent(ChunkFile.key(x, y), k -> new Chunk(x, y));
+    }
+
+    /**
+     * Helper method to let go of the shapes a chunk holds in memory.
+     *
+     * @param chunk : chunk with shapes in memory
+     */
+    private void freeMemory(Chunk chunk) {
+        memoryBytes -= chunk.memory.capacity();
+        chunk.memory = null;
+    }
+
+    /**
+     * Helper method to move shapes decoded from a chunk from the chunk's coordinates into the model's.
+     *
+     * @param shapes : shapes of the chunk
+     * @param chunk  : chunk the shapes were decoded from
+     */
+    private void moveIntoModel(List<XShape> shapes, Chunk chunk) {
+        int chunkX = chunk.x - originX, chunkY = chunk.y - originY;
+        for (XShape shape : shapes) {
+            shape.move(-chunkX, -chunkY);
+        }
+    }
+
+    /**
+     * Helper method to read and decode shapes on disk.
+     *
+     * @param locations : shapes to be read
+     * @param shapes    : list to add the shapes to, in coordinates relative to their chunk
+     * @throws IOException : if a file could not be read
+     */
+    private static void read(List<Location> locations, List<XShape> shapes) throws IOException {
+        for (Location location : locations) {
+            decode(ChunkFile.read(location.channel(), location.offset(), location.length()), shapes);
+        }
+    }
+
+    /**
+     * Helper method to decode the shapes of a chunk.
+     *
+     * @param buffer : encoded shapes, in read mode
+     * @param shapes : list to add the shapes to, in coordinates relative to their chunk
+     */
+    private static void decode(ByteBuffer buffer, List<XShape> shapes) {
+        while (buffer.hasRemaining()) {
+            shapes.add(ChunkFile.readRecord(buffer));
+        }
+    }
+
+    /**
+     * Helper method to find the chunk holding a coordinate of the model.
+     *
+     * @param coordinate : normalized coordinate, relative to the origin
+     * @return : column or row of the chunk, relative to the origin
+     */
+    private static int chunkOf(double coordinate) {
+        return (int) Math.floor(coordinate);
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.drawing_application;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Local collaboration server. Accepts any number of clients on one NIO selector thread, keeps the latest state of every
+ * shape and relays the changes of one client to all others. Concurrent changes to the same shape are resolved by
+ * last-writer-wins on the per-shape version, so a change that lost is neither stored nor relayed.
+ * <p>
+ * A client that connects is sent its client number followed by the current state of every shape. The server binds to
+ * the loopback address only, and can run inside the same process as its clients.
+ * <p>
+ * Frames for a client are queued until its socket takes them. A client that falls so far behind that its queue holds
+ * more than the limit of the server is disconnected, rather than letting the queue grow without bound; it gets the
+ * current state again when it reconnects.
+ */
+public class CollaborationServer implements AutoCloseable {
+    // size of a client's read buffer, which must hold at least one frame
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    // default limit of the bytes queued for a client, enough for the state of about a million shapes
+    public static final int MAX_QUEUED_BYTES = 64 * 1024 * 1024;
+
+    /*
+        Instance variables to store the selector, the listening channel and the thread running the selector loop.
+     */
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread thread;
+    private final int maxQueuedBytes;
+    private volatile boolean running;
+
+    /*
+        Instance variables to store the connected clients and the latest accepted state of every shape by id. Only used
+        on the selector thread.
+     */
+    private final ArrayList<Client> clients;
+    private final HashMap<Long, ShapeState> shapes;
+    private int nextClientId;
+
+    /**
+     * Default constructor for this class. Binds to the given port on the loopback address and starts serving.
+     *
+     * @param port : port to listen on, or 0 for any free port
+     * @throws IOException : if the port could not be bound
+     */
+    public CollaborationServer(int port) throws IOException {
+        this(port, MAX_QUEUED_BYTES);
+    }
+
+    /**
+     * Constructor for a server with its own limit of the bytes queued for a client.
+     *
+     * @param port           : port to listen on, or 0 for any free port
+     * @param maxQueuedBytes : bytes a client may fall behind by before it is disconnected
+     * @throws IOException : if the port could not be bound
+     */
+    public CollaborationServer(int port, int maxQueuedBytes) throws IOException {
+        this.maxQueuedBytes = maxQueuedBytes;
+        clients = new ArrayList<>();
+        shapes = new HashMap<>();
+        nextClientId = 1;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        thread = new Thread(this::serve, "collaboration-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Getter method for the port the server listens on.
+     *
+     * @return : port
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Method to stop the server and disconnect all clients.
+     *
+     * @throws IOException : if the selector or a channel could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Client client : clients) {
+            client.channel.close();
+        }
+        serverChannel.close();
+        selector.close();
+    }
+
+    /**
+     * Helper method for the selector loop: accepts clients, reads their changes and queues the winning ones for the
+     * other clients, and writes the queues out as the sockets become writable.
+     */
+    private void serve() {
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Client client = (Client) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                read(client);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                client.flush();
+                            }
+                        } catch (IOException e) {
+                            // the client went away - drop it and carry on with the others
+                            disconnect(client);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    throw new IllegalStateException("Collaboration server failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method to accept a client and send it its number and the current state of every shape.
+     *
+     * @throws IOException : if the client could not be accepted
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        Client client = new Client(channel, nextClientId++);
+        client.key = channel.register(selector, SelectionKey.OP_READ, client);
+        clients.add(client);
+
+        ByteBuffer hello = ByteBuffer.allocate(ShapeCodec.HELLO_FRAME_BYTES);
+        ShapeCodec.writeHello(hello, client.id);
+        client.send(hello.flip());
+        for (ShapeState state : shapes.values()) {
+            if (state.frame != null) {
+                client.send(ByteBuffer.wrap(state.frame));
+            }
+        }
+        dropOverflowed();
+    }
+
+    /**
+     * Helper method to read the available frames of a client and relay the ones that win.
+     *
+     * @param client : client to read from
+     * @throws IOException : if the client disconnected
+     */
+    private void read(Client client) throws IOException {
+        if (client.channel.read(client.in) < 0) {
+            throw new IOException("Client " + client.id + " disconnected");
+        }
+        client.in.flip();
+        while (ShapeCodec.hasFrame(client.in)) {
+            int length = client.in.getInt();
+            byte[] frame = new byte[4 + length];
+            client.in.position(client.in.position() - 4);
+            client.in.get(frame);
+            if (store(frame)) {
+                for (Client other : clients) {
+                    if (other != client) {
+                        other.send(ByteBuffer.wrap(frame));
+                    }
+                }
+            }
+        }
+        client.in.compact();
+        client.in = ShapeCodec.makeRoom(client.in);
+        dropOverflowed();
+    }
+
+    /**
+     * Helper method to disconnect the clients whose queue went over the limit.
+     */
+    private void dropOverflowed() {
+        for (int i = clients.size() - 1; i >= 0; i--) {
+            if (clients.get(i).queued > maxQueuedBytes) {
+                disconnect(clients.get(i));
+            }
+        }
+    }
+
+    /**
+     * Helper method to store a change under last-writer-wins.
+     *
+     * @param frame : frame of the change, including its length prefix
+     * @return : true if the change won and is to be relayed
+     */
+    private boolean store(byte[] frame) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame, 4, frame.length - 4);
+        byte type = buffer.get();
+        if (type != ShapeCodec.UPSERT && type != ShapeCodec.DELETE) {
+            return false;
+        }
+        long id = buffer.getLong();
+        long version = buffer.getLong();
+        int origin = buffer.getInt();
+        ShapeState state = shapes.get(id);
+        if (state != null && !ShapeCodec.wins(version, origin, state.version, state.origin)) {
+            return false;
+        }
+        if (state == null) {
+            state = new ShapeState();
+            shapes.put(id, state);
+        }
+        state.version = version;
+        state.origin = origin;
+        // deleted shapes keep their version so that older changes cannot bring them back
+        state.frame = type == ShapeCodec.UPSERT ? frame : null;
+        return true;
+    }
+
+    /**
+     * Helper method to drop a client.
+     *
+     * @param client : client to be dropped
+     */
+    private void disconnect(Client client) {
+        clients.remove(client);
+        client.key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException ignored) {
+            // already gone
+        }
+    }
+
+    /**
+     * Latest accepted version of a shape, with the frame to send to new clients (null once deleted).
+     */
+    private static class ShapeState {
+        long version;
+        int origin;
+        byte[] frame;
+    }
+
+    /**
+     * A connected client with its read buffer and the frames waiting to be written to it, and their size.
+     */
+    private static class Client {
+        final SocketChannel channel;
+        final int id;
+        ByteBuffer in;
+        final ArrayList<ByteBuffer> out;
+        long queued;
+        SelectionKey key;
+
+        Client(SocketChannel channel, int id) {
+            this.channel = channel;
+            this.id = id;
+            this.in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+            this.out = new ArrayList<>();
+        }
+
+        /**
+         * Method to queue a frame, to be written once the socket is writable.
+         *
+         * @param frame : frame in read mode
+         */
+        void send(ByteBuffer frame) {
+            out.add(frame);
+            queued += frame.remaining();
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * Method to write as much of the queue as the socket takes, and wait for it to become writable if some is left.
+         *
+         * @throws IOException : if the client disconnected
+         */
+        void flush() throws IOException {
+            if (!out.isEmpty()) {
+                queued -= channel.write(out.toArray(new ByteBuffer[0]));
+                out.removeIf(frame -> !frame.hasRemaining());
+            }
+            key.interestOps(out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+}
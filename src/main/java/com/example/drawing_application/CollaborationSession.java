@@ -0,0 +1,461 @@
+package com.example.drawing_application;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.paint.Color;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Client side of a collaboration: publishes the changes of a DrawingModel to a CollaborationServer as binary deltas and
+ * applies the changes of the other clients to it.
+ * <p>
+ * Shapes are identified on the wire by their ids, and get a version that is incremented by every change, so that
+ * concurrent changes are resolved by last-writer-wins, ties going to the higher client number. Local changes are
+ * found by comparing the shapes with their last published state whenever the model or iModel notifies. Remote changes
+ * are decoded on a reader thread and applied on the JavaFX Application Thread in one batch per pulse, with a single
+ * model notification.
+ */
+public class CollaborationSession implements ModelSubscriber, InteractionModelSubscriber, AutoCloseable {
+    // size of the read buffer, which must hold at least one frame
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    /*
+        Instance variables to store the models being shared, the connection and the number the server gave this client.
+     */
+    private final DrawingModel model;
+    private final InteractionModel iModel;
+    private final SocketChannel channel;
+    private final int clientId;
+    private final Thread reader;
+
+    /*
+        Instance variables to store the replicated state of every shape by id (including deleted shapes), the changes
+        received but not applied yet and the frames waiting to be sent.
+     */
+    private final HashMap<Long, Replica> replicasById;
+    private final ConcurrentLinkedQueue<Change> incoming;
+    private ByteBuffer out;
+    private int scan;
+    private boolean applying;
+    private AnimationTimer pulseTimer;
+
+    /**
+     * Default constructor for this class. Connects to the server, publishes the shapes already in the model and starts
+     * receiving the changes of the other clients.
+     *
+     * @param model  : model to be shared
+     * @param iModel : iModel of the model, for the changes made to the selected shape
+     * @param host   : host of the server
+     * @param port   : port of the server
+     * @throws IOException : if the server could not be reached
+     */
+    public CollaborationSession(DrawingModel model, InteractionModel iModel, String host, int port) throws IOException {
+        this.model = model;
+        this.iModel = iModel;
+        this.replicasById = new HashMap<>();
+        this.incoming = new ConcurrentLinkedQueue<>();
+        this.out = ByteBuffer.allocate(64 * ShapeCodec.UPSERT_FRAME_BYTES);
+
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        ByteBuffer hello = ByteBuffer.allocate(ShapeCodec.HELLO_FRAME_BYTES);
+        while (hello.hasRemaining()) {
+            if (channel.read(hello) < 0) {
+                throw new IOException("Server closed the connection");
+            }
+        }
+        hello.flip();
+        hello.getInt();
+        if (hello.get() != ShapeCodec.HELLO) {
+            throw new IOException("Unexpected message from server");
+        }
+        clientId = hello.getInt();
+
+        model.addSubscriber(this);
+        iModel.addISubscriber(this);
+        publishChanges();
+
+        reader = new Thread(this::receive, "collaboration-client-" + clientId);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Getter method for the number the server gave this client.
+     *
+     * @return : client number
+     */
+    public int getClientId() {
+        return clientId;
+    }
+
+    /**
+     * Method to apply the remote changes on every pulse of the JavaFX Application Thread.
+     */
+    public void applyEveryPulse() {
+        if (pulseTimer == null) {
+            pulseTimer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    pulse();
+                }
+            };
+            pulseTimer.start();
+        }
+    }
+
+    /**
+     * Method to apply all remote changes received so far with a single model notification. Changes that lose against
+     * the local state of their shape are dropped.
+     *
+     * @return : number of changes applied
+     */
+    public int pulse() {
+        if (incoming.isEmpty()) {
+            return 0;
+        }
+        ArrayList<Replica> adding = new ArrayList<>();
+        ArrayList<XShape> removed = new ArrayList<>();
+        int applied = 0;
+        Change change;
+        while ((change = incoming.poll()) != null) {
+            Replica replica = replicasById.get(change.id);
+            if (replica != null && !ShapeCodec.wins(change.version, change.origin, replica.version, replica.origin)) {
+                continue;
+            }
+            if (replica == null) {
+                replica = new Replica(change.id);
+                replicasById.put(change.id, replica);
+            }
+            if (change.shape == null) {
+                // a shape added in this batch never reaches the model
+                if (replica.shape != null && !replica.adding) {
+                    removed.add(replica.shape);
+                }
+                replica.shape = null;
+            } else if (replica.shape == null) {
+                // the shape keeps the id it has on the other clients
+                change.shape.setId(change.id);
+                replica.shape = change.shape;
+                if (!replica.adding) {
+                    replica.adding = true;
+                    adding.add(replica);
+                }
+            } else {
+                XShape shape = change.shape;
+                replica.shape.resize(shape.getLeft(), shape.getTop(), shape.getWidth(), shape.getHeight());
+                replica.shape.setColor(shape.getColor());
+            }
+            replica.version = change.version;
+            replica.origin = change.origin;
+            replica.record();
+            applied++;
+        }
+
+        ArrayList<XShape> added = new ArrayList<>(adding.size());
+        for (Replica replica : adding) {
+            replica.adding = false;
+            if (replica.shape != null) {
+                added.add(replica.shape);
+            }
+        }
+        if (applied > 0) {
+            applying = true;
+            try {
+                model.updateShapes(removed, added);
+                if (removed.contains(iModel.getSelectedShape())) {
+                    iModel.setSelectedShape(new XSquare());
+                }
+            } finally {
+                applying = false;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Method for receiving publish notifications from model. Publishes the shapes that were added, changed or removed.
+     */
+    @Override
+    public void modelChanged() {
+        if (!applying) {
+            publishChanges();
+        }
+    }
+
+    /**
+     * Method for receiving typed changes from model. Only the affected shapes are published, without comparing the
+     * whole model.
+     *
+     * @param event : the change
+     */
+    @Override
+    public void modelChanged(ModelEvent event) {
+        if (applying) {
+            return;
+        }
+        for (XShape shape : event.getShapes()) {
+            Replica replica = replicaOf(shape);
+            if (event.getType() == ModelEvent.Type.REMOVED) {
+                if (replica != null) {
+                    publishDelete(replica);
+                }
+            } else if (replica == null) {
+                if (event.getType() == ModelEvent.Type.ADDED) {
+                    publishNew(shape);
+                }
+            } else if (replica.changed()) {
+                publish(replica);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Method for receiving publish notifications from iModel. A change of the selected shape made without going
+     * through the model only notifies the iModel, so the selected shape is checked for changes.
+     */
+    @Override
+    public void iModelChanged() {
+        if (applying) {
+            return;
+        }
+        Replica replica = replicaOf(iModel.getSelectedShape());
+        if (replica != null && replica.changed()) {
+            publish(replica);
+            flush();
+        }
+    }
+
+    /**
+     * Method to disconnect from the server.
+     *
+     * @throws IOException : if the connection could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (pulseTimer != null) {
+            pulseTimer.stop();
+        }
+        channel.close();
+    }
+
+    /**
+     * Helper method to compare every shape of the model with its last published state and send the differences.
+     */
+    private void publishChanges() {
+        scan++;
+        List<XShape> shapes = model.getShapes();
+        for (int i = 0; i < shapes.size(); i++) {
+            XShape shape = shapes.get(i);
+            Replica replica = replicaOf(shape);
+            if (replica == null) {
+                replica = publishNew(shape);
+            } else if (replica.changed()) {
+                publish(replica);
+            }
+            replica.scan = scan;
+        }
+        // shapes that were not seen any more have been deleted
+        for (Replica replica : replicasById.values()) {
+            if (replica.shape != null && replica.scan != scan) {
+                publishDelete(replica);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Helper method to start replicating a new shape and queue it for sending.
+     *
+     * @param shape : the new shape
+     * @return : its replicated state
+     */
+    private Replica publishNew(XShape shape) {
+        Replica replica = new Replica(shape.getId());
+        replica.shape = shape;
+        replicasById.put(replica.id, replica);
+        publish(replica);
+        return replica;
+    }
+
+    /**
+     * Helper method to record the deletion of a shape under a new version and queue it for sending. The replica stays
+     * as a tombstone so that older changes cannot bring the shape back.
+     *
+     * @param replica : replicated state of the deleted shape
+     */
+    private void publishDelete(Replica replica) {
+        replica.shape = null;
+        replica.version++;
+        replica.origin = clientId;
+        ensureOut(ShapeCodec.DELETE_FRAME_BYTES);
+        ShapeCodec.writeDelete(out, replica.id, replica.version, clientId);
+    }
+
+    /**
+     * Helper method to find the replicated state of a shape of the model.
+     *
+     * @param shape : shape to be found
+     * @return : its replicated state, or null if the shape has not been published yet
+     */
+    private Replica replicaOf(XShape shape) {
+        Replica replica = shape == null ? null : replicasById.get(shape.getId());
+        return replica != null && replica.shape == shape ? replica : null;
+    }
+
+    /**
+     * Helper method to record a local change of a shape under a new version and queue it for sending.
+     *
+     * @param replica : replicated state of the changed shape
+     */
+    private void publish(Replica replica) {
+        replica.version++;
+        replica.origin = clientId;
+        replica.record();
+        ensureOut(ShapeCodec.upsertFrameBytes(replica.shape));
+        ShapeCodec.writeUpsert(out, replica.id, replica.version, clientId, replica.shape);
+    }
+
+    /**
+     * Helper method to make room for a frame in the send buffer.
+     *
+     * @param bytes : size of the frame
+     */
+    private void ensureOut(int bytes) {
+        if (out.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+            out.flip();
+            bigger.put(out);
+            out = bigger;
+        }
+    }
+
+    /**
+     * Helper method to send the queued frames.
+     */
+    private void flush() {
+        if (out.position() == 0) {
+            return;
+        }
+        out.flip();
+        try {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Lost connection to the collaboration server", e);
+        } finally {
+            out.clear();
+        }
+    }
+
+    /**
+     * Helper method for the reader thread: decodes the frames from the server and queues them for the next pulse.
+     */
+    private void receive() {
+        ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        try {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                while (ShapeCodec.hasFrame(in)) {
+                    int length = in.getInt();
+                    int end = in.position() + length;
+                    byte type = in.get();
+                    if (type == ShapeCodec.UPSERT || type == ShapeCodec.DELETE) {
+                        long id = in.getLong();
+                        long version = in.getLong();
+                        int origin = in.getInt();
+                        XShape shape = null;
+                        if (type == ShapeCodec.UPSERT) {
+                            shape = readShape(in, end);
+                        }
+                        if (type == ShapeCodec.DELETE || shape != null) {
+                            incoming.add(new Change(id, version, origin, shape));
+                        }
+                    }
+                    in.position(end);
+                }
+                in.compact();
+                in = ShapeCodec.makeRoom(in);
+            }
+        } catch (IOException e) {
+            // connection closed
+        }
+    }
+
+    /**
+     * Helper method to read the shape of an upsert frame without reading past the frame.
+     *
+     * @param in  : buffer positioned at the shape
+     * @param end : position of the end of the frame
+     * @return : the shape, or null if the frame does not hold a valid one, in which case it is dropped
+     */
+    private static XShape readShape(ByteBuffer in, int end) {
+        int limit = in.limit();
+        in.limit(end);
+        try {
+            return ShapeCodec.readShape(in);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            return null;
+        } finally {
+            in.limit(limit);
+        }
+    }
+
+    /**
+     * A change received from the server. The shape is null for a deletion.
+     */
+    private record Change(long id, long version, int origin, XShape shape) {
+    }
+
+    /**
+     * Replicated state of a shape: its id, the version and author of its latest change and its geometry and colour as
+     * of that change. The shape is null once deleted.
+     */
+    private static class Replica {
+        final long id;
+        long version;
+        int origin;
+        XShape shape;
+        double left, top, width, height;
+        Color color;
+        int scan;
+        // set while the shape is added by the current pulse
+        boolean adding;
+
+        Replica(long id) {
+            this.id = id;
+        }
+
+        /**
+         * Method to record the current geometry and colour of the shape.
+         */
+        void record() {
+            if (shape != null) {
+                left = shape.getLeft();
+                top = shape.getTop();
+                width = shape.getWidth();
+                height = shape.getHeight();
+                color = shape.getColor();
+            }
+        }
+
+        /**
+         * Method to check if the shape changed since it was recorded.
+         *
+         * @return : true if the geometry or colour differ
+         */
+        boolean changed() {
+            return shape.getLeft() != left || shape.getTop() != top || shape.getWidth() != width
+                    || shape.getHeight() != height || shape.getColor() != color;
+        }
+    }
+}
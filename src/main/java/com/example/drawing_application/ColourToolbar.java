@@ -18,6 +18,8 @@ public class ColourToolbar extends VBox {
     ToggleButton buttonAqua, buttonViolet, buttonGreen, buttonGold, buttonOrange, buttonCoral, buttonFuchsia, buttonPeru;
     ToggleButton[] buttons;
     ToggleButton selectedButton;
+    // drop shadow of the selected button, re-coloured instead of re-created on every selection
+    DropShadow selectedShadow;
 
     /**
      * Default constructor for ColourToolbar class which sets up all the buttons.
@@ -66,7 +68,8 @@ public class ColourToolbar extends VBox {
 
         // Initial selection of the default button
         buttonAqua.setSelected(true);
-        buttonAqua.setEffect(new DropShadow(25, Color.AQUA));
+        selectedShadow = new DropShadow(25, Color.AQUA);
+        buttonAqua.setEffect(selectedShadow);
         selectedButton = buttonAqua;
     }
 
@@ -140,7 +143,8 @@ public class ColourToolbar extends VBox {
         // Add shadow to the selected button | Reset the others
         for (ToggleButton b : buttons) {
             if (b == selectedButton) {
-                b.setEffect(new DropShadow(25, (Color) iModel.getCurrentColour()));
+                selectedShadow.setColor((Color) iModel.getCurrentColour());
+                b.setEffect(selectedShadow);
             } else {
                 b.setSelected(false);
                 b.setEffect(null);
@@ -0,0 +1,248 @@
+package com.example.drawing_application;
+
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.control.TextInputDialog;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tabs of the open documents. Each tab has its own model pair, views and controllers, while the toolbars and render
+ * resources are shared: the toolbars always act on the document of the selected tab, and only that document's views
+ * draw. Shortcut+N opens a new document, Shortcut+O opens a chunked document from a file, Shortcut+S saves the
+ * selected document to one and Shortcut+Shift+D duplicates the selected shape into a grid.
+ */
+public class DocumentTabs extends TabPane {
+    // size of a grid to duplicate into, e.g. 10x10
+    private static final Pattern GRID = Pattern.compile("\\s*(\\d{1,4})\\s*[xX*]\\s*(\\d{1,4})\\s*");
+
+    /*
+        Instance variables to store the shared render resources, the documents of the tabs and the document that is
+        currently selected.
+     */
+    private final RenderResources resources;
+    private final HashMap<Tab, DrawingDocument> documents;
+    private DrawingDocument active;
+    private int documentCount;
+    // snapping that new documents start with
+    private double snapGrid;
+    private boolean snapToShapes;
+
+    /*
+        Instance variables to store the shared toolbars, if they have been added yet.
+     */
+    private ShapeToolbar shapeToolbar;
+    private ColourToolbar colourToolbar;
+
+    /**
+     * Default constructor for this class. Starts without any documents.
+     *
+     * @param resources : render resources shared by all documents
+     */
+    public DocumentTabs(RenderResources resources) {
+        super();
+        this.resources = resources;
+        this.documents = new HashMap<>();
+        getSelectionModel().selectedItemProperty().addListener((observable, oldTab, newTab) -> activate(documents.get(newTab)));
+    }
+
+    /**
+     * Method to open a new, empty document in a new tab and select it.
+     *
+     * @return : the new document
+     */
+    public DrawingDocument newDocument() {
+        documentCount++;
+        return addDocument(new DrawingDocument(resources), "Drawing " + documentCount);
+    }
+
+    /**
+     * Method to open a chunked document from a file in a new tab and select it.
+     *
+     * @param path : file to be opened
+     * @return : the opened document
+     * @throws IOException : if the file could not be opened
+     */
+    public DrawingDocument openDocument(Path path) throws IOException {
+        return addDocument(new DrawingDocument(resources, path), path.getFileName().toString());
+    }
+
+    /**
+     * Method to set the snapping that documents opened from now on start with, e.g. from the startup flags.
+     *
+     * @param snapGrid     : spacing of the grid shapes snap to, in normalized coordinates, 0 for none
+     * @param snapToShapes : true to snap shapes to the edges and centres of other shapes
+     */
+    public void setSnapping(double snapGrid, boolean snapToShapes) {
+        this.snapGrid = snapGrid;
+        this.snapToShapes = snapToShapes;
+    }
+
+    /**
+     * Helper method to add a document in a new tab and select it.
+     *
+     * @param document : document to be added
+     * @param title    : title of its tab
+     * @return : the document
+     */
+    private DrawingDocument addDocument(DrawingDocument document, String title) {
+        document.getIModel().setSnapGrid(snapGrid);
+        document.getIModel().setSnapToShapes(snapToShapes);
+        Tab tab = new Tab(title, document.getContent());
+        // the last document stays open
+        tab.setOnCloseRequest(e -> {
+            if (getTabs().size() == 1) {
+                e.consume();
+            }
+        });
+        tab.setOnClosed(e -> documents.remove(tab).close());
+        documents.put(tab, document);
+        getTabs().add(tab);
+        getSelectionModel().select(tab);
+        return document;
+    }
+
+    /**
+     * Method to add the shared toolbars and connect them to the selected document.
+     *
+     * @param shapeToolbar  : shape toolbar
+     * @param colourToolbar : colour toolbar
+     */
+    public void setToolbars(ShapeToolbar shapeToolbar, ColourToolbar colourToolbar) {
+        this.shapeToolbar = shapeToolbar;
+        this.colourToolbar = colourToolbar;
+        if (active != null) {
+            connectToolbars(active);
+        }
+    }
+
+    /**
+     * Getter method for the document of the selected tab.
+     *
+     * @return : selected document
+     */
+    public DrawingDocument getActiveDocument() {
+        return active;
+    }
+
+    /**
+     * Method to handle key presses of the scene: opens a new document, opens or saves a file or passes the key on to
+     * the selected document.
+     *
+     * @param keyEvent : key event to be handled
+     */
+    public void handleKeyPressed(KeyEvent keyEvent) {
+        if (keyEvent.isShortcutDown() && keyEvent.getCode() == KeyCode.N) {
+            newDocument();
+        } else if (keyEvent.isShortcutDown() && keyEvent.getCode() == KeyCode.O) {
+            File file = chooser().showOpenDialog(getScene().getWindow());
+            if (file != null) {
+                try {
+                    openDocument(file.toPath());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not open " + file, e);
+                }
+            }
+        } else if (keyEvent.isShortcutDown() && keyEvent.getCode() == KeyCode.S && active != null) {
+            saveActiveDocument();
+        } else if (keyEvent.isShortcutDown() && keyEvent.isShiftDown() && keyEvent.getCode() == KeyCode.D && active != null) {
+            duplicateIntoGrid();
+        } else if (active != null) {
+            active.getController().handleKeyPressed(keyEvent);
+        }
+    }
+
+    /**
+     * Helper method to save the selected document to its file, asking for one if it has none yet.
+     */
+    private void saveActiveDocument() {
+        Path path = active.getPath();
+        if (path == null) {
+            File file = chooser().showSaveDialog(getScene().getWindow());
+            if (file == null) {
+                return;
+            }
+            path = file.toPath();
+            getSelectionModel().getSelectedItem().setText(file.getName());
+        }
+        try {
+            active.save(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not save " + path, e);
+        }
+    }
+
+    /**
+     * Helper method to ask for the size of a grid and duplicate the selected shape of the selected document into it.
+     */
+    private void duplicateIntoGrid() {
+        TextInputDialog dialog = new TextInputDialog("4x4");
+        dialog.setHeaderText("Duplicate the selected shape into a grid of columns x rows");
+        dialog.showAndWait().ifPresent(text -> {
+            Matcher matcher = GRID.matcher(text);
+            if (matcher.matches()) {
+                active.getController().duplicateSelection(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            }
+        });
+    }
+
+    /**
+     * Helper method to create a file chooser for chunked documents.
+     *
+     * @return : file chooser
+     */
+    private static FileChooser chooser() {
+        FileChooser chooser = new FileChooser();
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Chunked drawings", "*.drw"));
+        return chooser;
+    }
+
+    /**
+     * Helper method to switch to a document: hides the previous one, carries the selected shape type and colour over,
+     * shows the new one and moves the toolbars to it.
+     *
+     * @param document : document to be activated, or null if no tab is selected
+     */
+    private void activate(DrawingDocument document) {
+        if (document == null || document == active) {
+            return;
+        }
+        if (active != null) {
+            active.setShown(false);
+            // the tools selected in the toolbars apply to every document
+            document.getController().setNewShape(active.getIModel().getCurrentShapeType());
+            document.getController().setCurrentColour((Color) active.getIModel().getCurrentColour());
+            if (shapeToolbar != null) {
+                active.getIModel().removeISubscriber(shapeToolbar);
+            }
+        }
+        active = document;
+        document.setShown(true);
+        if (shapeToolbar != null) {
+            connectToolbars(document);
+        }
+    }
+
+    /**
+     * Helper method to connect the toolbars to a document.
+     *
+     * @param document : document the toolbars act on
+     */
+    private void connectToolbars(DrawingDocument document) {
+        shapeToolbar.setIModel(document.getIModel());
+        shapeToolbar.setController(document.getController());
+        colourToolbar.setIModel(document.getIModel());
+        colourToolbar.setController(document.getController());
+        document.getIModel().addISubscriber(shapeToolbar);
+    }
+}
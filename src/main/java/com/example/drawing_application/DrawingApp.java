@@ -1,88 +1,227 @@
 package com.example.drawing_application;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
 /**
  * Application class for a basic drawing application. Allows the user to select a shape, a colour and draw that shape
  * on to the center canvas. It also displays a mini-view of the entire canvas and supports panning via right click or
  * through moving the view-finder in the mini-view.
  */
 public class DrawingApp extends Application {
+    /*
+        Startup options, read from system properties: show the drawing surface before building the toolbars, print the
+        time to the first frame, exit once started (used for class-data sharing training runs) and the snapping grid
+        spacing (0 for none) and snapping to other shapes that documents start with.
+     */
+    private static final boolean FAST_START = Boolean.getBoolean("drawing.fastStart");
+    private static final boolean REPORT_STARTUP = Boolean.getBoolean("drawing.reportStartup");
+    private static final boolean EXIT_AFTER_STARTUP = Boolean.getBoolean("drawing.exitAfterStartup");
+    private static final double SNAP_GRID = Double.parseDouble(System.getProperty("drawing.snapGrid", "0"));
+    private static final boolean SNAP_TO_SHAPES = Boolean.getBoolean("drawing.snapToShapes");
+    // time main() was entered, for reporting the startup time
+    private static long mainNanos;
+
     /**
      * Main method that runs when this application is started by Java.
      *
      * @param args : N/A.
      */
     public static void main(String[] args) {
+        mainNanos = System.nanoTime();
         launch();
     }
 
     /**
-     * Method to set up and start the various parts of the drawing application.
+     * Method to set up and start the various parts of the drawing application. Documents open in tabs and share the
+     * toolbars and render resources. With drawing.fastStart set, the stage is shown with only the drawing surface and
+     * the toolbars are built once its first frame has been rendered.
      *
      * @param stage : Top-level JavaFX container.
      */
     @Override
     public void start(Stage stage) {
-        // Setup Model
-        DrawingModel model = new DrawingModel();
-        InteractionModel iModel = new InteractionModel();
+        // Setup the render resources shared by all documents, optionally rasterizing off the JavaFX Application Thread
+        TileRenderer tileRenderer = Boolean.getBoolean("drawing.tiledRendering") ? new TileRenderer() : null;
+        RenderResources resources = new RenderResources(tileRenderer);
 
-        // Setup View
+        // Setup the tabs with a first document, each document has its own model, iModel, views and controllers
         MainUI mainUI = new MainUI();
-        ShapeToolbar shapeToolbar = new ShapeToolbar();
-        ColourToolbar colourToolbar = new ColourToolbar();
-        DrawingView drawingView = new DrawingView(2000, 2000, 500, 500);
-        MiniDrawingView miniDrawingView = new MiniDrawingView(2000, 2000, 100, 100);
-
-        // Setup Controllers
-        DrawingController controller = new DrawingController();
-        DrawingController miniController = new MiniDrawingController();
+        DocumentTabs documents = new DocumentTabs(resources);
+        documents.setSnapping(SNAP_GRID, SNAP_TO_SHAPES);
+        openFirstDocument(documents);
+        mainUI.setDocuments(documents);
+        // Optionally share the first document with other instances and record its input
+        startCollaboration(documents.getActiveDocument());
+        startRecording(documents.getActiveDocument(), stage);
 
-        // Setup MVC architecture
-        // Connect the DrawingView
-        drawingView.setModel(model);
-        drawingView.setIModel(iModel);
-        drawingView.setController(controller);
+        // Set up the primary stage
+        Scene scene = new Scene(mainUI, 700, 500);
+        scene.setOnKeyPressed(documents::handleKeyPressed);
+        stage.setTitle("Drawing App");
+        stage.setScene(scene);
 
-        // Connect the Mini Drawing View
-        miniDrawingView.setModel(model);
-        miniDrawingView.setIModel(iModel);
-        miniDrawingView.setController(miniController);
+        if (FAST_START) {
+            // show the drawing surface first and fill in the toolbars after its first frame
+            stage.show();
+            afterNextPulse(scene, () -> {
+                reportStartup("first frame");
+                addToolbars(mainUI, documents);
+                afterNextPulse(scene, () -> {
+                    reportStartup("toolbars");
+                    startupFinished();
+                });
+            });
+        } else {
+            addToolbars(mainUI, documents);
+            stage.show();
+            afterNextPulse(scene, () -> {
+                reportStartup("first frame");
+                startupFinished();
+            });
+        }
+    }
 
-        // Connect the Shape Toolbar
-        shapeToolbar.setIModel(iModel);
-        shapeToolbar.setController(controller);
+    /**
+     * Helper method to open the first document: the chunked file named by drawing.open, if set, or an empty document.
+     *
+     * @param documents : tabs of the documents
+     */
+    private static void openFirstDocument(DocumentTabs documents) {
+        String path = System.getProperty("drawing.open");
+        if (path == null) {
+            documents.newDocument();
+            return;
+        }
+        try {
+            documents.openDocument(Path.of(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open " + path, e);
+        }
+    }
 
-        // Connect the Colour Toolbar
-        colourToolbar.setIModel(iModel);
-        colourToolbar.setController(controller);
+    /**
+     * Helper method to build the shape and colour toolbars, connect them to the selected document and add them to the
+     * MainUI.
+     *
+     * @param mainUI    : MainUI to add the toolbars to
+     * @param documents : tabs of the open documents the toolbars act on
+     */
+    private static void addToolbars(MainUI mainUI, DocumentTabs documents) {
+        ShapeToolbar shapeToolbar = new ShapeToolbar();
+        ColourToolbar colourToolbar = new ColourToolbar();
+        documents.setToolbars(shapeToolbar, colourToolbar);
+        mainUI.setToolbars(shapeToolbar, colourToolbar);
+    }
 
-        // Connect the Controllers
-        controller.setModel(model);
-        controller.setIModel(iModel);
-        miniController.setModel(model);
-        miniController.setIModel(iModel);
+    /**
+     * Helper method to share a document through a collaboration server: the one given by drawing.collaborate as
+     * host:port, or one started in this process on the port given by drawing.hostCollaboration.
+     *
+     * @param document : document to be shared
+     */
+    private static void startCollaboration(DrawingDocument document) {
+        String address = System.getProperty("drawing.collaborate");
+        String hostPort = System.getProperty("drawing.hostCollaboration");
+        if (address == null && hostPort == null) {
+            return;
+        }
+        try {
+            String host = "localhost";
+            int port;
+            if (hostPort != null) {
+                port = new CollaborationServer(Integer.parseInt(hostPort)).getPort();
+            } else {
+                host = address.substring(0, address.lastIndexOf(':'));
+                port = Integer.parseInt(address.substring(address.lastIndexOf(':') + 1));
+            }
+            new CollaborationSession(document.getModel(), document.getIModel(), host, port).applyEveryPulse();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start collaborating", e);
+        }
+    }
 
-        // Add all views to the MainUI
-        mainUI.setUI(shapeToolbar, drawingView, miniDrawingView, colourToolbar);
+    /**
+     * Helper method to record the input of a document into the trace named by drawing.record, if set, until the stage
+     * is closed. The trace can be played back by InputReplay.
+     *
+     * @param document : document to be recorded
+     * @param stage    : stage whose closing ends the recording
+     */
+    private static void startRecording(DrawingDocument document, Stage stage) {
+        String trace = System.getProperty("drawing.record");
+        if (trace == null) {
+            return;
+        }
+        try {
+            document.startRecording(Path.of(trace));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not record to " + trace, e);
+        }
+        stage.setOnHidden(event -> {
+            try {
+                document.stopRecording();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not finish " + trace, e);
+            }
+        });
+    }
 
-        // Connect subscribers to Model
-        model.addSubscriber(drawingView);
-        model.addSubscriber(miniDrawingView);
+    /**
+     * Helper method to run an action once the next pulse of the scene has laid it out and handed it to be rendered.
+     * The action runs after the pulse, so it may change the scene graph.
+     *
+     * @param scene  : scene to wait for
+     * @param action : action to run
+     */
+    private static void afterNextPulse(Scene scene, Runnable action) {
+        // the listener cannot remove itself while the scene runs its listeners, so it is removed after the pulse and
+        // ignores any further pulses until then
+        Runnable[] listener = new Runnable[1];
+        boolean[] fired = new boolean[1];
+        listener[0] = () -> {
+            if (!fired[0]) {
+                fired[0] = true;
+                Platform.runLater(() -> {
+                    scene.removePostLayoutPulseListener(listener[0]);
+                    action.run();
+                });
+            }
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
 
-        // Connect subscribers to iModel
-        iModel.addISubscriber(drawingView);
-        iModel.addISubscriber(shapeToolbar);
-        iModel.addISubscriber(miniDrawingView);
+    /**
+     * Helper method to print the time since main() and since the JVM was started, if drawing.reportStartup is set.
+     * The line is parsed by StartupBenchmark.
+     *
+     * @param milestone : name of the startup milestone reached
+     */
+    private static void reportStartup(String milestone) {
+        if (!REPORT_STARTUP || mainNanos == 0) {
+            return;
+        }
+        double sinceMain = (System.nanoTime() - mainNanos) / 1e6;
+        double sinceJvm = ProcessHandle.current().info().startInstant()
+                .map(t -> Duration.between(t, Instant.now()).toNanos() / 1e6)
+                .orElse(Double.NaN);
+        System.out.printf("startup %s: %.1f ms after main, %.1f ms after JVM start%n", milestone, sinceMain, sinceJvm);
+    }
 
-        // Set up and start the primary stage
-        Scene scene = new Scene(mainUI, 700, 500);
-        scene.setOnKeyPressed(controller::handleKeyPressed);
-        stage.setTitle("Drawing App");
-        stage.setScene(scene);
-        stage.show();
+    /**
+     * Helper method to exit once the application is fully started, if drawing.exitAfterStartup is set.
+     */
+    private static void startupFinished() {
+        if (EXIT_AFTER_STARTUP) {
+            Platform.exit();
+        }
     }
-}
\ No newline at end of file
+}
@@ -5,6 +5,9 @@ import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.paint.Color;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Main controller for the MVC architecture. Over-loads mouse press, move and released to different actions.
  * Supports creation, selection, move, resizing and deletion of shapes as well as, panning of the view port.
@@ -15,11 +18,39 @@ public class DrawingController {
         support moving and resizing.
      */
     protected State currentState;
+    // distance a pasted copy lands from the shape it was copied from, and gap between the cells of a duplicated grid
+    private static final double PASTE_OFFSET = 0.02, ARRAY_GAP = 0.01;
+    // largest distance to an anchor of another shape that is snapped to, and spacing of the grid turned on by a key
+    private static final double SNAP_DISTANCE = 0.01, SNAP_GRID = 0.025;
+    // largest distance to an edge of another shape that a dragged shape aligns with, and the distance within which
+    // edges count as aligned for a guide
+    private static final double GUIDE_DISTANCE = 0.005, ALIGNED = 1e-9;
+    private static final double[] NO_GUIDES = new double[0];
     DrawingModel model;
     InteractionModel iModel;
     double prevX, prevY;
     boolean existingShape;
 
+    /*
+        Instance variables to store the index of anchors to snap to, the distance from the pointer to the top-left
+        corner of a shape being moved, the result of the last snap and the anchors of a shape being moved.
+     */
+    private SnapIndex snapIndex;
+    private double grabX, grabY;
+    private double snapX, snapY;
+    private final double[] movedX = new double[SnapIndex.ANCHORS], movedY = new double[SnapIndex.ANCHORS];
+    // guides found by align(), and arrays of each possible number of guides (three along each axis) handed to the
+    // iModel, reused on every tick of a drag
+    private final double[] foundGuides = new double[4 * 6];
+    private final double[][] guideArrays = new double[7][];
+
+    /*
+        Instance variables to store the recorder of the input handled by this controller, if any, and which of the
+        document's controllers this is in the trace.
+     */
+    private InputRecorder recorder;
+    private byte traceTarget;
+
     /*
         States for the state-machine. Helps over-load mouse interactions.
      */
@@ -33,6 +64,9 @@ public class DrawingController {
     public DrawingController() {
         currentState = State.READY;
         existingShape = false;
+        for (int count = 0; count < guideArrays.length; count++) {
+            guideArrays[count] = new double[4 * count];
+        }
     }
 
     /**
@@ -41,9 +75,32 @@ public class DrawingController {
      * @param newShape : Number representing the shape selected by the user.
      */
     public void setNewShape(int newShape) {
+        if (recorder != null) {
+            recorder.shape(traceTarget, newShape);
+        }
         iModel.setCurrentShapeType(newShape);
     }
 
+    /**
+     * Method to set up the index of anchors that shapes snap to. Without one, shapes only snap to the grid.
+     *
+     * @param snapIndex : index over the shapes of the model
+     */
+    public void setSnapIndex(SnapIndex snapIndex) {
+        this.snapIndex = snapIndex;
+    }
+
+    /**
+     * Method to record the input handled by this controller, or to stop recording it.
+     *
+     * @param recorder : recorder to write to, or null
+     * @param target   : which of the document's controllers this is, InputRecorder.TARGET_MAIN or TARGET_MINI
+     */
+    public void setRecorder(InputRecorder recorder, byte target) {
+        this.recorder = recorder;
+        this.traceTarget = target;
+    }
+
     /**
      * Method to set up a model - as part of the MVC architecture.
      *
@@ -68,6 +125,9 @@ public class DrawingController {
      * @param col : the colour to be set
      */
     public void setCurrentColour(Color col) {
+        if (recorder != null) {
+            recorder.colour(traceTarget, col);
+        }
         iModel.setCurrentColour(col);
     }
 
@@ -90,15 +150,157 @@ public class DrawingController {
     }
 
     /**
-     * Method to handle key pressed on the keyboard by the user. Deletes the selected shape when DELETE key is pressed.
+     * Method to handle key pressed on the keyboard by the user. Deletes the selected shape when DELETE key is pressed,
+     * Shortcut+C copies it, Shortcut+V pastes the copied shape and Shortcut+D duplicates the selected shape next to it.
+     * Shortcut+G groups the selected shape with the shapes inside it and Shortcut+Shift+G splits a selected group.
+     * Shortcut+; turns snapping to other shapes on or off and Shortcut+' does the same for snapping to a grid.
      *
      * @param keyEvent : Keyboard Key Event
      */
     public void handleKeyPressed(KeyEvent keyEvent) {
+        if (recorder != null) {
+            recorder.key(traceTarget, keyEvent);
+        }
         if (keyEvent.getCode() == KeyCode.DELETE) {
             model.deleteSelectedShape();
             iModel.setSelectedShape(model.createShape(iModel.getCurrentShapeType(), 0, 0));
+        } else if (keyEvent.isShortcutDown() && keyEvent.getCode() == KeyCode.C) {
+            copySelection();
+        } else if (keyEvent.isShortcutDown() && keyEvent.getCode() == KeyCode.V) {
+            paste();
+        } else if (keyEvent.isShortcutDown() && keyEvent.getCode() == KeyCode.D) {
+            duplicate(2, 1);
+        } else if (keyEvent.isShortcutDown() && keyEvent.isShiftDown() && keyEvent.getCode() == KeyCode.G) {
+            ungroupSelection();
+        } else if (keyEvent.isShortcutDown() && keyEvent.getCode() == KeyCode.G) {
+            groupSelection();
+        } else if (keyEvent.isShortcutDown() && keyEvent.getCode() == KeyCode.SEMICOLON) {
+            iModel.setSnapToShapes(!iModel.isSnapToShapes());
+        } else if (keyEvent.isShortcutDown() && keyEvent.getCode() == KeyCode.QUOTE) {
+            iModel.setSnapGrid(iModel.getSnapGrid() > 0 ? 0 : SNAP_GRID);
+        }
+    }
+
+    /**
+     * Method to group the selected shape, if it is in the model, with every shape lying entirely within its bounds, e.g.
+     * a frame drawn around the shapes to be grouped. Nothing happens if no other shape lies within it.
+     */
+    public void groupSelection() {
+        XShape selected = getSelectionInModel();
+        if (selected == null) {
+            return;
+        }
+        double left = selected.getBoundsLeft(), top = selected.getBoundsTop();
+        double right = selected.getBoundsRight(), bottom = selected.getBoundsBottom();
+        ArrayList<XShape> members = new ArrayList<>();
+        for (int i : model.shapesIntersecting(left, top, right - left, bottom - top)) {
+            XShape shape = model.getShapes().get(i);
+            if (shape == selected || (shape.getBoundsLeft() >= left && shape.getBoundsTop() >= top
+                    && shape.getBoundsRight() <= right && shape.getBoundsBottom() <= bottom)) {
+                members.add(shape);
+            }
+        }
+        if (members.size() < 2) {
+            return;
+        }
+        currentState = State.SELECTION;
+        iModel.setSelectedShape(model.groupShapes(members));
+    }
+
+    /**
+     * Method to split the selected shape, if it is a group in the model, back into its children and select the
+     * top-most of them.
+     */
+    public void ungroupSelection() {
+        if (getSelectionInModel() instanceof XGroup group) {
+            model.ungroupShape(group);
+            currentState = State.SELECTION;
+            iModel.setSelectedShape(model.foundShape());
+        }
+    }
+
+    /**
+     * Method to copy the selected shape, if it is in the model, to the clipboard of the iModel.
+     */
+    public void copySelection() {
+        XShape selected = getSelectionInModel();
+        if (selected != null) {
+            iModel.setClipboard(ShapeCloner.copy(List.of(selected), 0, 0));
+        }
+    }
+
+    /**
+     * Method to add copies of the shapes on the clipboard, a little below and to the right of where they were copied
+     * from, and select the top-most of them. Pasting again places the next copies further along.
+     */
+    public void paste() {
+        List<XShape> clipboard = iModel.getClipboard();
+        if (clipboard.isEmpty()) {
+            return;
+        }
+        List<XShape> copies = ShapeCloner.copy(clipboard, PASTE_OFFSET, PASTE_OFFSET);
+        for (XShape shape : clipboard) {
+            // XShape.move() moves by the negated distance
+            shape.move(-PASTE_OFFSET, -PASTE_OFFSET);
+        }
+        select(copies);
+    }
+
+    /**
+     * Method to duplicate the selected shape, if it is in the model, into a grid: the shape stays in the first cell and
+     * every other cell gets a copy, the cells as far apart as the shape is large plus a gap. The copies are added as one
+     * batch and the last one is selected. Called from outside the controller, e.g. by a dialog, so it is recorded on
+     * its own.
+     *
+     * @param columns : number of columns of the grid
+     * @param rows    : number of rows of the grid
+     */
+    public void duplicateSelection(int columns, int rows) {
+        if (recorder != null) {
+            recorder.duplicate(traceTarget, columns, rows);
+        }
+        duplicate(columns, rows);
+    }
+
+    /**
+     * Helper method to duplicate the selected shape into a grid, see duplicateSelection(). Called directly for a key
+     * press, which is recorded already.
+     *
+     * @param columns : number of columns of the grid
+     * @param rows    : number of rows of the grid
+     */
+    private void duplicate(int columns, int rows) {
+        XShape selected = getSelectionInModel();
+        if (selected == null) {
+            return;
+        }
+        double offsetX = selected.getBoundsRight() - selected.getBoundsLeft() + ARRAY_GAP;
+        double offsetY = selected.getBoundsBottom() - selected.getBoundsTop() + ARRAY_GAP;
+        select(ShapeCloner.array(List.of(selected), columns, rows, offsetX, offsetY));
+    }
+
+    /**
+     * Helper method to find the selected shape if it is in the model, rather than the shape about to be created.
+     *
+     * @return : selected shape, or null
+     */
+    private XShape getSelectionInModel() {
+        XShape selected = iModel.getSelectedShape();
+        return selected != null && model.getShape(selected.getId()) == selected ? selected : null;
+    }
+
+    /**
+     * Helper method to add copies to the model and select the top-most of them.
+     *
+     * @param copies : copies to be added, from bottom to top
+     */
+    private void select(List<XShape> copies) {
+        if (copies.isEmpty()) {
+            return;
         }
+        model.addCopies(copies);
+        currentState = State.SELECTION;
+        iModel.setSelectedShape(model.foundShape());
     }
 
     /**
@@ -110,6 +312,9 @@ public class DrawingController {
      * @param mouseEvent : Mouse Event
      */
     public void handlePressed(double x, double y, MouseEvent mouseEvent) {
+        if (recorder != null) {
+            recorder.mouse(traceTarget, InputRecorder.PRESSED, x, y, mouseEvent);
+        }
         // Switch to handle primary or secondary mouse clicks
         switch (mouseEvent.getButton()) {
             case PRIMARY -> {
@@ -128,6 +333,7 @@ public class DrawingController {
                             iModel.setSelectedShape(model.foundShape());
                             prevX = x;
                             prevY = y;
+                            grab(x, y);
                         } else {
                             // Action: Left Click | Context: OnBackground | Side Effect: Create a temporary shape
                             // Switch state from Ready to Prepare to Create
@@ -145,6 +351,7 @@ public class DrawingController {
                             currentState = State.MOVING;
                             prevX = x;
                             prevY = y;
+                            grab(x, y);
                         } else if (shapeHit) {
                             // Action: Left Click | Context: OnResize Handle | Side Effect: None OR if different shape selected, select that shape
                             // Switch state from Selection to Resizing
@@ -173,47 +380,92 @@ public class DrawingController {
     }
 
     /**
-     * Method to handle mouse drag by the user. Mouse drag can resize and move the shape or pan the viewport.
+     * Method to handle mouse drag by the user. Mouse drag can resize and move the shape or pan the viewport. Shapes
+     * being created, moved or resized snap to the anchors of nearby shapes or to the grid, unless ALT is held.
      *
      * @param x          : X coordinate of the mouse click.
      * @param y          : Y coordinate of the mouse click.
      * @param mouseEvent : Mouse Event
      */
     public void handleMove(double x, double y, MouseEvent mouseEvent) {
+        if (recorder != null) {
+            recorder.mouse(traceTarget, InputRecorder.DRAGGED, x, y, mouseEvent);
+        }
         // Switch to handle primary or secondary mouse clicks
         switch (mouseEvent.getButton()) {
             case PRIMARY -> {
                 // Adjust the x and y coordinate of the mouse click based on where mouse is, in respect to the world/document
                 x = getAdjustedX(x);
                 y = getAdjustedY(y);
+                boolean snapping = !mouseEvent.isAltDown();
                 switch (currentState) {
                     case PREPARE_CREATE -> {
                         // Action: Mouse Drag of Left Click | Context: None | Side effect: create a temporary shape
                         // State switch from Prepare to Create -> Dragging
+                        // a freehand stroke started where the button was pressed and goes on from there
+                        boolean stroke = iModel.getSelectedShape() instanceof XFreehand;
+                        if (snapping && !stroke) {
+                            snapPoint(x, y, null);
+                            x = snapX;
+                            y = snapY;
+                        }
                         prevX = x;
                         prevY = y;
                         currentState = State.CREATING;
-                        iModel.setSelectedShape(model.createShape(iModel.getCurrentShapeType(), x, y));
+                        if (stroke) {
+                            iModel.addStrokePoint(x, y);
+                        } else {
+                            iModel.setSelectedShape(model.createShape(iModel.getCurrentShapeType(), x, y));
+                        }
                     }
                     case CREATING -> {
                         // Action: Mouse Drag of Left Click | Context: None | Side effect: Resize the temporary shape in iModel
                         // State remains the same at DRAGGING
+                        // a freehand stroke records every sample instead
                         XShape curShape = iModel.getSelectedShape();
-                        resize(prevX, prevY, x, y, curShape);
+                        if (curShape instanceof XFreehand) {
+                            iModel.addStrokePoint(x, y);
+                        } else if (snapping) {
+                            snapPoint(x, y, null);
+                            resize(prevX, prevY, snapX, snapY, curShape);
+                        } else {
+                            resize(prevX, prevY, x, y, curShape);
+                        }
                     }
                     case MOVING -> {
                         // Action: Mouse Drag of Left Click | Context: None | Side Effect: Move shape to new location
-                        // Pass distance of mouse move for moving line and current x, y of mouse for other shapes
-                        iModel.moveShape(prevX - x, prevY - y);
+                        // The selected shape is in the model, so it is moved through the model, to where the
+                        // pointer holds it or to the nearest place it snaps to
+                        XShape shape = iModel.getSelectedShape();
+                        double dX = x + grabX - shape.getBoundsLeft(), dY = y + grabY - shape.getBoundsTop();
+                        if (snapping && iModel.isSnapToShapes()) {
+                            // edges in view line up when no anchor was near, and guides show what lines up
+                            boolean anchored = snapMove(shape, dX, dY);
+                            align(shape, snapX, snapY, !anchored);
+                            dX = snapX;
+                            dY = snapY;
+                        } else if (snapping) {
+                            snapMove(shape, dX, dY);
+                            dX = snapX;
+                            dY = snapY;
+                        } else {
+                            iModel.setGuides(NO_GUIDES);
+                        }
+                        model.moveShape(shape, dX, dY);
                         prevX = x;
                         prevY = y;
 
                     }
                     case RESIZING -> {
                         // Action: Mouse Drag of Left Click | Context: None | Side Effect: Resize the selected shape
+                        // in place, it stays in the model
                         XShape shape = iModel.getSelectedShape();
-                        model.deleteSelectedShape();
                         existingShape = true;
+                        if (snapping) {
+                            snapPoint(x, y, shape);
+                            x = snapX;
+                            y = snapY;
+                        }
                         resize(prevX, prevY, x, y, shape);
                     }
                 }
@@ -236,6 +488,9 @@ public class DrawingController {
      * @param mouseEvent : Mouse Event
      */
     public void handleReleased(double x, double y, MouseEvent mouseEvent) {
+        if (recorder != null) {
+            recorder.mouse(traceTarget, InputRecorder.RELEASED, x, y, mouseEvent);
+        }
         // Switch based on which mouse button is released
         switch (mouseEvent.getButton()) {
             case PRIMARY -> {
@@ -252,19 +507,22 @@ public class DrawingController {
                     case CREATING -> {
                         // Action: Left Click released | Context: None | Side effect: Add the temporary shape to model
                         // State switch from Creating -> Ready
+                        if (iModel.getSelectedShape() instanceof XFreehand stroke) {
+                            stroke.finish();
+                        }
                         model.addShape(iModel.getSelectedShape());
                         currentState = State.READY;
                     }
                     case MOVING -> {
-                        // Action: Left Click released | Context: None | Side effect: None
+                        // Action: Left Click released | Context: None | Side effect: Hide the alignment guides
                         // State switch from Moving -> Selection
+                        iModel.setGuides(NO_GUIDES);
                         currentState = State.SELECTION;
                     }
                     case RESIZING -> {
-                        // Action: Left Click released | Context: None | Side effect: Add the resized shape to the model
+                        // Action: Left Click released | Context: None | Side effect: None, the shape was resized in place
                         // State switch from Resizing -> Selection
                         existingShape = false;
-                        model.addShape(iModel.getSelectedShape());
                         currentState = State.SELECTION;
                     }
                 }
@@ -299,6 +557,160 @@ public class DrawingController {
         return y;
     }
 
+    /**
+     * Helper method to remember where the pointer holds the selected shape when a move starts.
+     *
+     * @param x : x coordinate of the pointer
+     * @param y : y coordinate of the pointer
+     */
+    private void grab(double x, double y) {
+        grabX = iModel.getSelectedShape().getBoundsLeft() - x;
+        grabY = iModel.getSelectedShape().getBoundsTop() - y;
+    }
+
+    /**
+     * Helper method to snap a point to the nearest anchor of another shape within SNAP_DISTANCE or, failing that, to the
+     * grid. The result is left in snapX and snapY.
+     *
+     * @param x       : x coordinate of the point
+     * @param y       : y coordinate of the point
+     * @param exclude : shape not to snap to, e.g. the one being resized, or null
+     */
+    private void snapPoint(double x, double y, XShape exclude) {
+        snapX = x;
+        snapY = y;
+        if (snapIndex != null && iModel.isSnapToShapes()) {
+            int entry = snapIndex.nearest(x, y, SNAP_DISTANCE, exclude);
+            if (entry >= 0) {
+                snapX = snapIndex.getAnchorX(entry);
+                snapY = snapIndex.getAnchorY(entry);
+                return;
+            }
+        }
+        double grid = iModel.getSnapGrid();
+        if (grid > 0) {
+            snapX = Math.round(x / grid) * grid;
+            snapY = Math.round(y / grid) * grid;
+        }
+    }
+
+    /**
+     * Helper method to snap a move of a shape, so that the anchor of the moved shape nearest to an anchor of another
+     * shape lands on it or, failing that, its top-left corner lands on the grid. The snapped distance is left in snapX
+     * and snapY.
+     *
+     * @param shape : shape being moved
+     * @param dX    : distance to move by along x
+     * @param dY    : distance to move by along y
+     * @return : true if the shape snapped to an anchor of another shape
+     */
+    private boolean snapMove(XShape shape, double dX, double dY) {
+        double left = shape.getBoundsLeft() + dX, top = shape.getBoundsTop() + dY;
+        snapX = dX;
+        snapY = dY;
+        if (snapIndex != null && iModel.isSnapToShapes()) {
+            SnapIndex.anchorsOf(left, top, shape.getBoundsRight() + dX, shape.getBoundsBottom() + dY, movedX, movedY, 0);
+            double radius = SNAP_DISTANCE;
+            boolean found = false;
+            for (int i = 0; i < SnapIndex.ANCHORS; i++) {
+                int entry = snapIndex.nearest(movedX[i], movedY[i], radius, shape);
+                if (entry >= 0) {
+                    // later anchors only snap if they are closer
+                    double offsetX = snapIndex.getAnchorX(entry) - movedX[i];
+                    double offsetY = snapIndex.getAnchorY(entry) - movedY[i];
+                    radius = Math.hypot(offsetX, offsetY);
+                    snapX = dX + offsetX;
+                    snapY = dY + offsetY;
+                    found = true;
+                }
+            }
+            if (found) {
+                return true;
+            }
+        }
+        double grid = iModel.getSnapGrid();
+        if (grid > 0) {
+            snapX = dX + Math.round(left / grid) * grid - left;
+            snapY = dY + Math.round(top / grid) * grid - top;
+        }
+        return false;
+    }
+
+    /**
+     * Helper method to line a moved shape up with the shapes in view and find the alignment guides to show. Along each
+     * axis, the edge or centre of the moved shape nearest to an edge or centre of another shape within GUIDE_DISTANCE
+     * can be moved onto it. Then every edge and centre of the moved shape that lines up gets a guide, from the moved
+     * shape to the shape it lines up with. The distance to move by is left in snapX and snapY.
+     *
+     * @param shape : shape being moved
+     * @param dX    : distance to move by along x
+     * @param dY    : distance to move by along y
+     * @param snap  : true to move the shape onto the nearest edges, false to only find the guides
+     */
+    private void align(XShape shape, double dX, double dY, boolean snap) {
+        double viewLeft = iModel.getViewLeft(), viewTop = iModel.getViewTop();
+        double viewWidth = iModel.getViewFinderWidth(), viewHeight = iModel.getViewFinderHeight();
+        EdgeIndex edgesX = model.getEdgesX(viewLeft, viewTop, viewWidth, viewHeight);
+        EdgeIndex edgesY = model.getEdgesY(viewLeft, viewTop, viewWidth, viewHeight);
+        if (snap) {
+            dX += alignOffset(edgesX, shape.getBoundsLeft() + dX, shape.getBoundsRight() + dX, shape);
+            dY += alignOffset(edgesY, shape.getBoundsTop() + dY, shape.getBoundsBottom() + dY, shape);
+        }
+        snapX = dX;
+        snapY = dY;
+        double left = shape.getBoundsLeft() + dX, right = shape.getBoundsRight() + dX;
+        double top = shape.getBoundsTop() + dY, bottom = shape.getBoundsBottom() + dY;
+        double[] guides = foundGuides;
+        int count = 0;
+        for (int k = 0; k < 3; k++) {
+            double x = EdgeIndex.edge(left, right, k);
+            int entry = edgesX.nearest(x, ALIGNED, shape);
+            if (entry >= 0) {
+                XShape other = edgesX.getShape(entry);
+                guides[count++] = x;
+                guides[count++] = Math.min(top, other.getBoundsTop());
+                guides[count++] = x;
+                guides[count++] = Math.max(bottom, other.getBoundsBottom());
+            }
+            double y = EdgeIndex.edge(top, bottom, k);
+            entry = edgesY.nearest(y, ALIGNED, shape);
+            if (entry >= 0) {
+                XShape other = edgesY.getShape(entry);
+                guides[count++] = Math.min(left, other.getBoundsLeft());
+                guides[count++] = y;
+                guides[count++] = Math.max(right, other.getBoundsRight());
+                guides[count++] = y;
+            }
+        }
+        double[] shown = count == 0 ? NO_GUIDES : guideArrays[count / 4];
+        System.arraycopy(guides, 0, shown, 0, count);
+        iModel.setGuides(shown);
+    }
+
+    /**
+     * Helper method to find how far to move a shape along one axis so that its edge or centre nearest to an edge or
+     * centre of another shape in view lands on it.
+     *
+     * @param edges : sorted edges along the axis of the shapes in view
+     * @param low   : left or top edge of the moved shape
+     * @param high  : right or bottom edge of the moved shape
+     * @param shape : shape being moved
+     * @return : distance to move by, 0 if no edge is within GUIDE_DISTANCE
+     */
+    private static double alignOffset(EdgeIndex edges, double low, double high, XShape shape) {
+        double tolerance = GUIDE_DISTANCE, offset = 0;
+        for (int k = 0; k < 3; k++) {
+            double value = EdgeIndex.edge(low, high, k);
+            int entry = edges.nearest(value, tolerance, shape);
+            if (entry >= 0) {
+                // later edges only line up if they are closer
+                offset = edges.getValue(entry) - value;
+                tolerance = Math.abs(offset);
+            }
+        }
+        return offset;
+    }
+
     /**
      * Helper method to help controller resize the newly created or existing shape based on which shape is selected.
      *
@@ -329,7 +741,7 @@ public class DrawingController {
 
         // handle resizing of line - line does not take width and height. it takes old x,y and new x,y
         if (curShape instanceof XLine) {
-            iModel.resizeShape(prevX, prevY, x, y, color);
+            applyResize(curShape, prevX, prevY, x, y, color);
         }
         // handle resizing of square and circle - both have constraints on size and the starting points need to change
         else if (curShape instanceof XSquare || curShape instanceof XCircle) {
@@ -348,11 +760,30 @@ public class DrawingController {
                 x1 = prevX;
                 y1 = prevY - size;
             }
-            iModel.resizeShape(x1, y1, size, size, color);
+            applyResize(curShape, x1, y1, size, size, color);
         }
         // handle resizing of rectangle and oval
         else {
-            iModel.resizeShape(x1, y1, w, h, color);
+            applyResize(curShape, x1, y1, w, h, color);
+        }
+    }
+
+    /**
+     * Helper method to apply a new size to the shape being created (through iModel) or to an existing shape (in place
+     * in the model).
+     *
+     * @param curShape : shape to resize
+     * @param x        : x coordinate
+     * @param y        : y coordinate
+     * @param w        : width
+     * @param h        : height
+     * @param color    : colour of an existing shape, null for a new shape
+     */
+    private void applyResize(XShape curShape, double x, double y, double w, double h, Color color) {
+        if (existingShape) {
+            model.resizeShape(curShape, x, y, w, h);
+        } else {
+            iModel.resizeShape(x, y, w, h, color);
         }
     }
 }
@@ -0,0 +1,297 @@
+package com.example.drawing_application;
+
+import javafx.application.Platform;
+import javafx.scene.layout.StackPane;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * One open document: its own model and iModel, the drawing view and mini view showing them and the controllers
+ * handling their input. The views share their render resources with all other documents. An unbounded document streams
+ * its chunks from the file it was opened from.
+ */
+public class DrawingDocument {
+    /*
+        Threads reading and decoding chunks for all documents, off the JavaFX thread.
+     */
+    private static final ExecutorService CHUNK_READER = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "chunk-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /*
+        Instance variables to store the model pair, views and controllers of the document and the pane showing it.
+     */
+    private final DrawingModel model;
+    private final InteractionModel iModel;
+    private final DrawingView drawingView;
+    private final MiniDrawingView miniDrawingView;
+    private final DrawingController controller;
+    private final DrawingController miniController;
+    private final StackPane content;
+    private final RenderResources resources;
+
+    /*
+        Instance variables to store the world of an unbounded document and the file the document is saved to.
+     */
+    private final ChunkedWorld world;
+    private final ChunkFile file;
+    private Path path;
+    // recorder of the input of this document, or null
+    private InputRecorder recorder;
+
+    /**
+     * Default constructor for this class. Sets up a new, empty document wired up as in the MVC architecture.
+     *
+     * @param resources : render resources shared with the other documents
+     */
+    public DrawingDocument(RenderResources resources) {
+        this(resources, null, null);
+    }
+
+    /**
+     * Constructor for a document opened from a chunked file. The document is unbounded and loads the chunks of the
+     * file as they come into view.
+     *
+     * @param resources : render resources shared with the other documents
+     * @param path      : file the document was opened from
+     * @throws IOException : if the file could not be opened
+     */
+    public DrawingDocument(RenderResources resources, Path path) throws IOException {
+        this(resources, ChunkFile.open(path), path);
+    }
+
+    /**
+     * Helper constructor setting up a document wired up as in the MVC architecture.
+     *
+     * @param resources : render resources shared with the other documents
+     * @param file      : chunked file to stream the document from, or null
+     * @param path      : file the document was opened from, or null
+     */
+    private DrawingDocument(RenderResources resources, ChunkFile file, Path path) {
+        this.resources = resources;
+        this.file = file;
+        this.path = path;
+
+        // Setup Model
+        model = new DrawingModel();
+        iModel = new InteractionModel();
+
+        // Setup View
+        drawingView = new DrawingView(2000, 2000, 500, 500);
+        miniDrawingView = new MiniDrawingView(2000, 2000, 100, 100);
+
+        // Setup Controllers
+        controller = new DrawingController();
+        miniController = new MiniDrawingController();
+
+        // Connect the DrawingView
+        drawingView.setModel(model);
+        drawingView.setIModel(iModel);
+        drawingView.setController(controller);
+        drawingView.setRenderResources(resources);
+
+        // Connect the Mini Drawing View
+        miniDrawingView.setModel(model);
+        miniDrawingView.setIModel(iModel);
+        miniDrawingView.setController(miniController);
+        miniDrawingView.setRenderResources(resources);
+
+        // Connect the Controllers
+        controller.setModel(model);
+        controller.setIModel(iModel);
+        miniController.setModel(model);
+        miniController.setIModel(iModel);
+
+        // Pick through a buffer kept over the main view's view-port
+        if (PickBuffer.ENABLED) {
+            PickBuffer pickBuffer = new PickBuffer(model, 2000, 2000);
+            drawingView.setPickBuffer(pickBuffer);
+            model.setPickBuffer(pickBuffer);
+        }
+
+        // Snap shapes being drawn or dragged in the main view to the shapes near them
+        SnapIndex snapIndex = new SnapIndex(model);
+        model.setSnapIndex(snapIndex);
+        controller.setSnapIndex(snapIndex);
+
+        // Draw the mini view from a raster pyramid of the document
+        if (OverviewPyramid.ENABLED) {
+            miniDrawingView.setPyramid(new OverviewPyramid(model));
+        }
+
+        // Connect subscribers to Model
+        model.addSubscriber(drawingView);
+        model.addSubscriber(miniDrawingView);
+
+        // Connect subscribers to iModel - an unbounded canvas first, so that the views see the chunks it loads
+        if (ChunkedWorld.ENABLED || file != null) {
+            world = new ChunkedWorld(model, iModel, file, CHUNK_READER, Platform::runLater, ChunkedWorld.BUDGET);
+            iModel.addISubscriber(world);
+            miniDrawingView.setWorld(world);
+        } else {
+            world = null;
+        }
+        iModel.addISubscriber(drawingView);
+        iModel.addISubscriber(miniDrawingView);
+
+        content = new StackPane();
+        MainUI.layOutDrawingArea(content, drawingView, miniDrawingView);
+    }
+
+    /**
+     * Method to show or hide the views of this document, e.g. when its tab is selected or deselected.
+     *
+     * @param shown : true if the document is on screen
+     */
+    public void setShown(boolean shown) {
+        drawingView.setShown(shown);
+        miniDrawingView.setShown(shown);
+    }
+
+    /**
+     * Method to close the document and stop accounting its views in the shared memory budget.
+     */
+    public void close() {
+        setShown(false);
+        resources.remove(drawingView);
+        resources.remove(miniDrawingView);
+        try {
+            stopRecording();
+            if (file != null) {
+                file.close();
+            }
+        } catch (IOException e) {
+            // the document is gone either way
+        }
+    }
+
+    /**
+     * Method to start recording the input of both controllers of the document into a trace for InputReplay, replacing
+     * any recording in progress.
+     *
+     * @param path : trace to be written
+     * @throws IOException : if the trace could not be created
+     */
+    public void startRecording(Path path) throws IOException {
+        stopRecording();
+        recorder = new InputRecorder(path, iModel);
+        controller.setRecorder(recorder, InputRecorder.TARGET_MAIN);
+        miniController.setRecorder(recorder, InputRecorder.TARGET_MINI);
+    }
+
+    /**
+     * Method to stop recording the input of the document and finish the trace, if it is being recorded.
+     *
+     * @throws IOException : if the trace could not be written
+     */
+    public void stopRecording() throws IOException {
+        if (recorder != null) {
+            controller.setRecorder(null, InputRecorder.TARGET_MAIN);
+            miniController.setRecorder(null, InputRecorder.TARGET_MINI);
+            recorder.close();
+            recorder = null;
+        }
+    }
+
+    /**
+     * Method to save the document as a chunked file with an overview pyramid. An unbounded document keeps streaming
+     * from the file it was opened from.
+     *
+     * @param path : file to be written
+     * @throws IOException : if the file could not be written
+     */
+    public void save(Path path) throws IOException {
+        if (world != null) {
+            world.save(path);
+        } else {
+            ChunkedWorld.save(model.getShapes(), path);
+        }
+        this.path = path;
+    }
+
+    /**
+     * Getter method for the file the document was opened from or last saved to.
+     *
+     * @return : file of the document, or null if it has none yet
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Getter method for the world of an unbounded document.
+     *
+     * @return : world, or null if the document is bounded
+     */
+    public ChunkedWorld getWorld() {
+        return world;
+    }
+
+    /**
+     * Getter method for the model of the document.
+     *
+     * @return : model
+     */
+    public DrawingModel getModel() {
+        return model;
+    }
+
+    /**
+     * Getter method for the iModel of the document.
+     *
+     * @return : iModel
+     */
+    public InteractionModel getIModel() {
+        return iModel;
+    }
+
+    /**
+     * Getter method for the controller of the main drawing view, which the toolbars and keyboard go through.
+     *
+     * @return : controller
+     */
+    public DrawingController getController() {
+        return controller;
+    }
+
+    /**
+     * Getter method for the main drawing view of the document.
+     *
+     * @return : drawing view
+     */
+    DrawingView getDrawingView() {
+        return drawingView;
+    }
+
+    /**
+     * Getter method for the mini view of the document.
+     *
+     * @return : mini drawing view
+     */
+    DrawingView getMiniDrawingView() {
+        return miniDrawingView;
+    }
+
+    /**
+     * Getter method for the controller of the mini view.
+     *
+     * @return : mini controller
+     */
+    public DrawingController getMiniController() {
+        return miniController;
+    }
+
+    /**
+     * Getter method for the pane showing the drawing view with its mini view.
+     *
+     * @return : content of the document's tab
+     */
+    public StackPane getContent() {
+        return content;
+    }
+}
@@ -1,27 +1,89 @@
 package com.example.drawing_application;
 
+import javafx.scene.paint.Color;
+
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
 /**
  * The model for this drawing application. Stores the shapes and has method to check if a shape was clicked or not.
  * Uses publisher-subscriber model to notify its subscribers of any changes made to model by the controller.
  */
 public class DrawingModel {
+    // comparator for sorting shapes by z-order, shared so that sorting does not allocate it
+    private static final Comparator<XShape> Z_ORDER = Comparator.comparingInt(XShape::getZOrder);
+    // largest change whose shapes are moved within the sorted edges one by one, rather than sorting them all again
+    private static final int EDGE_UPDATES = 64;
+
     /*
-        Instance variables to store the shapes, the highest z-order for the latest shape and the list of model-subscribers.
+        Instance variables to store the shapes (in z-order), the index of the shapes by id, the highest z-order for the
+        latest shape and the list of model-subscribers.
      */
     private final ArrayList<XShape> shapes;
+    private final ShapeIndex shapesById;
     private final ArrayList<ModelSubscriber> subs;
     XShape foundShape;
     int highestZOrder;
 
+    /*
+        Instance variables to store the packed hit-test mirror of the shapes, whether it still matches the list and the
+        number of geometry changes it reflects.
+     */
+    private final HitTestKernel hitTest;
+    private boolean hitTestValid;
+    private int hitTestChanges;
+
+    /*
+        Instance variable to store the number of moves and resizes of the shapes in this model so far, counted by the
+        shapes themselves (see XShape.geometryChanged()), so that copies of their geometry can tell if shapes were
+        changed behind the model's back.
+     */
+    int geometryChanges;
+
+    /*
+        Instance variables to store the pick buffer of the main view, if any, and the number of geometry changes it has
+        been told about.
+     */
+    private PickBuffer pickBuffer;
+    private int pickChanges;
+
+    /*
+        Instance variable to store the index of anchors shapes snap to, kept up to date like the pick buffer.
+     */
+    private SnapIndex snapIndex;
+
+    /*
+        Instance variables to store the sorted edges and centres of the shapes in a region along x and along y, for
+        alignment guides, and whether they match the shapes. They are built on first use for a region and then kept up
+        to date change by change.
+     */
+    private final EdgeIndex edgesX;
+    private final EdgeIndex edgesY;
+    private boolean edgesValid;
+
+    /*
+        Instance variables to store the event reused for moving or resizing a single shape, e.g. on every tick of a
+        drag, and whether subscribers are being notified, in which case a change they make gets an event of its own.
+     */
+    private final ModelEvent singleEvent;
+    private boolean notifying;
+
     /**
      * Default constructor for this class. Initializes the data-structure to store shapes and subscribers.
      */
     public DrawingModel() {
         this.subs = new ArrayList<>();
         this.shapes = new ArrayList<>();
+        this.shapesById = new ShapeIndex();
+        this.hitTest = new HitTestKernel();
+        this.edgesX = new EdgeIndex(false);
+        this.edgesY = new EdgeIndex(true);
+        this.singleEvent = new ModelEvent();
         foundShape = new XSquare();
         highestZOrder = 0;
     }
@@ -52,6 +114,60 @@ public class DrawingModel {
         subs.forEach(ModelSubscriber::modelChanged);
     }
 
+    /**
+     * Helper method to tell the pick buffer and the snap index that the shapes changed in a way no event describes.
+     */
+    private void invalidateIndexes() {
+        if (pickBuffer != null) {
+            pickBuffer.invalidate();
+        }
+        if (snapIndex != null) {
+            snapIndex.invalidate();
+        }
+        edgesValid = false;
+    }
+
+    /**
+     * Helper method to notify all the subscribers of a typed change to the model.
+     *
+     * @param event : the change
+     */
+    private void notifySubscribers(ModelEvent event) {
+        if (pickBuffer != null) {
+            pickBuffer.invalidate(event);
+        }
+        if (snapIndex != null) {
+            snapIndex.update(event);
+        }
+        if (edgesValid && event.getShapes().size() > EDGE_UPDATES) {
+            // sorting again is cheaper than moving this many entries one by one
+            edgesValid = false;
+        } else if (edgesValid) {
+            edgesX.update(event);
+            edgesY.update(event);
+        }
+        boolean nested = notifying;
+        notifying = true;
+        try {
+            for (int i = 0; i < subs.size(); i++) {
+                subs.get(i).modelChanged(event);
+            }
+        } finally {
+            notifying = nested;
+        }
+    }
+
+    /**
+     * Helper method to start describing the move or resize of a single shape, see ModelEvent.before().
+     *
+     * @param type  : MOVED or RESIZED
+     * @param shape : the shape about to change
+     * @return : the reused event, or a new one while the reused one is being handed to the subscribers
+     */
+    private ModelEvent singleEvent(ModelEvent.Type type, XShape shape) {
+        return (notifying ? new ModelEvent() : singleEvent).before(type, shape);
+    }
+
     /**
      * Method to add a shape to the model.
      *
@@ -62,12 +178,247 @@ public class DrawingModel {
         currentShape.setZOrder(getHighestZOrder());
         foundShape = currentShape;
         shapes.add(currentShape);
+        index(currentShape);
+        hitTestValid = false;
 
         // sort the list in order of z-order
-        shapes.sort(Comparator.comparingInt(XShape::getZOrder));
+        shapes.sort(Z_ORDER);
+        notifySubscribers(new ModelEvent(ModelEvent.Type.ADDED, List.of(currentShape), null));
+    }
+
+    /**
+     * Method to add many shapes to the model at once. Z-orders are assigned in one pass in the order of the collection,
+     * the list is sorted once and the subscribers are notified once.
+     *
+     * @param newShapes : shapes to be added, from bottom to top
+     */
+    public void addShapes(Collection<? extends XShape> newShapes) {
+        if (newShapes.isEmpty()) {
+            return;
+        }
+        shapesById.ensureCapacity(newShapes.size());
+        for (XShape shape : newShapes) {
+            shape.setZOrder(getHighestZOrder());
+            index(shape);
+        }
+        shapes.ensureCapacity(shapes.size() + newShapes.size());
+        shapes.addAll(newShapes);
+        hitTestValid = false;
+        // new shapes are above all others, so this only has work to do if the list was out of order before
+        shapes.sort(Z_ORDER);
+        notifySubscribers(new ModelEvent(ModelEvent.Type.ADDED, List.copyOf(newShapes), null));
+    }
+
+    /**
+     * Method to add copies of shapes, e.g. pasted or duplicated ones, as one batch and select the top-most of them.
+     *
+     * @param copies : copies to be added, from bottom to top, see ShapeCloner
+     */
+    public void addCopies(List<XShape> copies) {
+        addShapes(copies);
+        if (!copies.isEmpty()) {
+            foundShape = copies.get(copies.size() - 1);
+        }
+    }
+
+    /**
+     * Method to remove many shapes from the model at once with a single pass over the list and a single notification.
+     *
+     * @param oldShapes : shapes to be removed
+     */
+    public void removeShapes(Collection<? extends XShape> oldShapes) {
+        Set<XShape> removed = Collections.newSetFromMap(new IdentityHashMap<>(oldShapes.size()));
+        removed.addAll(oldShapes);
+        if (shapes.removeIf(removed::contains)) {
+            hitTestValid = false;
+            List<XShape> gone = unindex(removed);
+            if (removed.contains(foundShape)) {
+                foundShape = null;
+            }
+            notifySubscribers(new ModelEvent(ModelEvent.Type.REMOVED, gone, ModelEvent.boundsOf(gone)));
+        }
+    }
+
+    /**
+     * Method to move many shapes at once with a single notification.
+     *
+     * @param movedShapes : shapes to be moved
+     * @param dX          : distance to move by along x
+     * @param dY          : distance to move by along y
+     */
+    public void moveShapes(Collection<? extends XShape> movedShapes, double dX, double dY) {
+        List<XShape> moved = List.copyOf(movedShapes);
+        double[] oldBounds = ModelEvent.boundsOf(moved);
+        int changes = geometryChanges;
+        for (XShape shape : moved) {
+            // XShape.move() moves by the negated distance
+            shape.move(-dX, -dY);
+        }
+        updateHitTest(moved, changes);
+        notifySubscribers(new ModelEvent(ModelEvent.Type.MOVED, moved, oldBounds));
+    }
+
+    /**
+     * Method to move a single shape of the model, e.g. on every tick of a drag.
+     *
+     * @param shape : shape to be moved
+     * @param dX    : distance to move by along x
+     * @param dY    : distance to move by along y
+     */
+    public void moveShape(XShape shape, double dX, double dY) {
+        ModelEvent event = singleEvent(ModelEvent.Type.MOVED, shape);
+        int changes = geometryChanges;
+        // XShape.move() moves by the negated distance
+        shape.move(-dX, -dY);
+        updateHitTest(event.getShapes(), changes);
+        notifySubscribers(event.after());
+    }
+
+    /**
+     * Method to scale many shapes about a point at once with a single notification. Circles and squares stay circles
+     * and squares, and a negative factor mirrors where the shapes are (see XShape.scale()).
+     *
+     * @param scaledShapes : shapes to be scaled
+     * @param originX      : x coordinate of the point to scale about
+     * @param originY      : y coordinate of the point to scale about
+     * @param scaleX       : scale factor along x
+     * @param scaleY       : scale factor along y
+     */
+    public void scaleShapes(Collection<? extends XShape> scaledShapes, double originX, double originY, double scaleX, double scaleY) {
+        List<XShape> scaled = List.copyOf(scaledShapes);
+        double[] oldBounds = ModelEvent.boundsOf(scaled);
+        int changes = geometryChanges;
+        for (XShape shape : scaled) {
+            shape.scale(originX, originY, scaleX, scaleY);
+        }
+        updateHitTest(scaled, changes);
+        notifySubscribers(new ModelEvent(ModelEvent.Type.RESIZED, scaled, oldBounds));
+    }
+
+    /**
+     * Method to recolour many shapes at once with a single notification.
+     *
+     * @param recolouredShapes : shapes to be recoloured
+     * @param color            : new colour
+     */
+    public void recolourShapes(Collection<? extends XShape> recolouredShapes, Color color) {
+        List<XShape> recoloured = List.copyOf(recolouredShapes);
+        for (XShape shape : recoloured) {
+            shape.setColor(color);
+        }
+        notifySubscribers(new ModelEvent(ModelEvent.Type.RECOLOURED, recoloured, ModelEvent.boundsOf(recoloured)));
+    }
+
+    /**
+     * Method to apply a batch of changes with a single notification: removes some shapes, adds others on top of the
+     * rest and tells the subscribers about shapes that were changed in place before the call, e.g. by a remote edit.
+     * The notification is not typed, as the shapes changed in place are not known to the model.
+     *
+     * @param removedShapes : shapes to be removed
+     * @param addedShapes   : shapes to be added, from bottom to top
+     */
+    public void updateShapes(Collection<? extends XShape> removedShapes, Collection<? extends XShape> addedShapes) {
+        takeOut(removedShapes);
+        for (XShape shape : addedShapes) {
+            shape.setZOrder(getHighestZOrder());
+            index(shape);
+        }
+        shapes.addAll(addedShapes);
+        hitTestValid = false;
+        invalidateIndexes();
+        notifySubscribers();
+    }
+
+    /**
+     * Method to swap shapes out of and back into the model with a single notification, e.g. when an unbounded canvas
+     * unloads and loads chunks around the view-port. Unlike updateShapes(), shapes put back keep their ids and z-orders
+     * and so return to the place in the z-order they were taken out of.
+     *
+     * @param removedShapes  : shapes to be taken out
+     * @param restoredShapes : shapes to be put back, with the z-orders they had in this model
+     */
+    public void reloadShapes(Collection<? extends XShape> removedShapes, Collection<? extends XShape> restoredShapes) {
+        if (removedShapes.isEmpty() && restoredShapes.isEmpty()) {
+            return;
+        }
+        takeOut(removedShapes);
+        for (XShape shape : restoredShapes) {
+            index(shape);
+            // shapes created while these were out already have higher z-orders
+            highestZOrder = Math.max(highestZOrder, shape.getZOrder() + 1);
+        }
+        shapes.addAll(restoredShapes);
+        shapes.sort(Z_ORDER);
+        hitTestValid = false;
+        invalidateIndexes();
         notifySubscribers();
     }
 
+    /**
+     * Method to group shapes of the model with a single notification. The group takes the place of the top-most of
+     * them in the z-order and becomes the selected shape.
+     *
+     * @param members : shapes to be grouped, at least one
+     * @return : the group
+     */
+    public XGroup groupShapes(Collection<? extends XShape> members) {
+        List<XShape> children = new ArrayList<>(members);
+        children.sort(Z_ORDER);
+        XGroup group = new XGroup(children);
+        group.setZOrder(children.get(children.size() - 1).getZOrder());
+        takeOut(children);
+        shapes.add(group);
+        index(group);
+        shapes.sort(Z_ORDER);
+        hitTestValid = false;
+        invalidateIndexes();
+        foundShape = group;
+        notifySubscribers();
+        return group;
+    }
+
+    /**
+     * Method to split a group of the model back into its children with a single notification. The children are put
+     * on top of all other shapes and the top-most of them becomes the selected shape.
+     *
+     * @param group : group to be split
+     * @return : the children, from bottom to top
+     */
+    public List<XShape> ungroupShape(XGroup group) {
+        List<XShape> children = group.getChildren();
+        takeOut(List.of(group));
+        for (XShape child : children) {
+            child.setZOrder(getHighestZOrder());
+            index(child);
+        }
+        shapes.addAll(children);
+        hitTestValid = false;
+        invalidateIndexes();
+        foundShape = children.get(children.size() - 1);
+        notifySubscribers();
+        return children;
+    }
+
+    /**
+     * Helper method to remove shapes from the list and the index without notifying the subscribers.
+     *
+     * @param removedShapes : shapes to be removed
+     */
+    private void takeOut(Collection<? extends XShape> removedShapes) {
+        if (removedShapes.isEmpty()) {
+            return;
+        }
+        Set<XShape> removed = Collections.newSetFromMap(new IdentityHashMap<>(removedShapes.size()));
+        removed.addAll(removedShapes);
+        if (shapes.removeIf(removed::contains)) {
+            unindex(removed);
+        }
+        hitTestValid = false;
+        if (removed.contains(foundShape)) {
+            foundShape = null;
+        }
+    }
+
     /**
      * Method to return the shape which had contains() called last.
      *
@@ -96,26 +447,283 @@ public class DrawingModel {
      * @return : true if a shape found else false
      */
     public boolean contains(double x, double y) {
+        // Read the shape from the pick buffer if the point is in view
+        if (pickBuffer != null && pickBuffer.covers(x, y) && pick(x, y)) {
+            return foundShape != null;
+        }
+
         // Sort list based on z-order (ascending)
-        shapes.sort(Comparator.comparingInt(XShape::getZOrder));
-
-        // Search in reverse to find the first shape with the highest z-order
-        for (int i = shapes.size() - 1; i >= 0; i--) {
-            if (shapes.get(i).contains(x, y)) {
-                foundShape = shapes.get(i);
-                // get the selected shape to the top
-                foundShape.setZOrder(getHighestZOrder());
-                return true;
-            } else {
-                if (resizeClicked(x, y)) {
-                    // Special case: x, y not within shape but within the resize handle (oval, circle)
-                    return true;
-                }
+        shapes.sort(Z_ORDER);
+
+        // Search the packed mirror from the top to find the first shape with the highest z-order
+        HitTestKernel kernel = hitTest();
+        int i = kernel.topShapeAt(x, y);
+        if (i >= 0 && kernel.getShape(i) != shapes.get(i)) {
+            // the sort above re-ordered the list, e.g. after a z-order was set from outside - mirror it again
+            hitTestValid = false;
+            kernel = hitTest();
+            i = kernel.topShapeAt(x, y);
+        }
+        return select(i, x, y);
+    }
+
+    /**
+     * Helper method for contains() to find the top-most shape through the pick buffer.
+     *
+     * @param x : x coordinate of the mouse click
+     * @param y : y coordinate of the mouse click
+     * @return : true if the pick buffer answered, false if the shape it holds is no longer in the model
+     */
+    private boolean pick(double x, double y) {
+        if (pickChanges != geometryChanges) {
+            // shapes were moved or resized outside the model, e.g. by a remote edit
+            pickBuffer.invalidate();
+            pickChanges = geometryChanges;
+        }
+        XShape shape = pickBuffer.shapeAt(x, y);
+        int i = shape == null ? -1 : indexOf(shape);
+        if (shape != null && i < 0) {
+            pickBuffer.invalidate();
+            return false;
+        }
+        select(i, x, y);
+        return true;
+    }
+
+    /**
+     * Helper method for contains() and pick() to select the top-most shape at a point. The shape is raised to the top
+     * and moved to the end of the list to keep it in z-order, and the hit-test mirror and the pick buffer follow.
+     *
+     * @param i : index of the top-most shape at the point, or -1 if there is none
+     * @param x : x coordinate of the mouse click
+     * @param y : y coordinate of the mouse click
+     * @return : true if a shape was found, or the resize handle of the found shape was clicked
+     */
+    private boolean select(int i, double x, double y) {
+        if (i != shapes.size() - 1 && !shapes.isEmpty() && resizeClicked(x, y)) {
+            // Special case: x, y not within the top shape but within the resize handle (oval, circle)
+            return true;
+        }
+        if (i < 0) {
+            // no shape found - mark found shape as null
+            foundShape = null;
+            return false;
+        }
+        foundShape = shapes.get(i);
+        // get the selected shape to the top, and to the end of the list to keep it in z-order
+        foundShape.setZOrder(getHighestZOrder());
+        shapes.remove(i);
+        shapes.add(foundShape);
+        if (isHitTestInSync() && hitTest.size() == shapes.size()) {
+            hitTest.moveToEnd(i);
+        } else {
+            hitTestValid = false;
+        }
+        if (pickBuffer != null) {
+            pickBuffer.paintOnTop(foundShape);
+        }
+        return true;
+    }
+
+    /**
+     * Method to pick through a pick buffer covering the view-port of the main view instead of searching the shapes.
+     * The buffer is told about every change of the model.
+     *
+     * @param pickBuffer : pick buffer, or null to search the shapes only
+     */
+    public void setPickBuffer(PickBuffer pickBuffer) {
+        this.pickBuffer = pickBuffer;
+        pickChanges = geometryChanges;
+        if (pickBuffer != null) {
+            pickBuffer.invalidate();
+        }
+    }
+
+    /**
+     * Method to get the sorted edges and centres along x of the shapes in a region: their left edges, centres and
+     * right edges.
+     *
+     * @param left   : x coordinate of the top-left corner of the region, e.g. the view-port
+     * @param top    : y coordinate of the top-left corner of the region
+     * @param width  : width of the region
+     * @param height : height of the region
+     * @return : edges along x, up to date with the shapes
+     */
+    public EdgeIndex getEdgesX(double left, double top, double width, double height) {
+        updateEdges(left, top, width, height);
+        return edgesX;
+    }
+
+    /**
+     * Method to get the sorted edges and middles along y of the shapes in a region: their top edges, middles and
+     * bottom edges.
+     *
+     * @param left   : x coordinate of the top-left corner of the region, e.g. the view-port
+     * @param top    : y coordinate of the top-left corner of the region
+     * @param width  : width of the region
+     * @param height : height of the region
+     * @return : edges along y, up to date with the shapes
+     */
+    public EdgeIndex getEdgesY(double left, double top, double width, double height) {
+        updateEdges(left, top, width, height);
+        return edgesY;
+    }
+
+    /**
+     * Helper method to sort the edges of the shapes in a region again if a change could not be followed or the region
+     * has changed, e.g. when the view-port has scrolled.
+     *
+     * @param left   : x coordinate of the top-left corner of the region
+     * @param top    : y coordinate of the top-left corner of the region
+     * @param width  : width of the region
+     * @param height : height of the region
+     */
+    private void updateEdges(double left, double top, double width, double height) {
+        if (!edgesValid || !edgesX.covers(left, top, width, height)) {
+            HitTestKernel kernel = hitTest();
+            int count = kernel.countShapesIntersecting(left, top, width, height);
+            edgesX.rebuild(shapes, kernel.getFound(), count, left, top, width, height);
+            edgesY.rebuild(shapes, kernel.getFound(), count, left, top, width, height);
+            edgesValid = true;
+        }
+    }
+
+    /**
+     * Method to keep an index of the anchors of the shapes, for snapping, up to date with every change of the model.
+     *
+     * @param snapIndex : index over the shapes of this model, or null
+     */
+    public void setSnapIndex(SnapIndex snapIndex) {
+        this.snapIndex = snapIndex;
+        if (snapIndex != null) {
+            snapIndex.invalidate();
+        }
+    }
+
+    /**
+     * Helper method to get the hit-test mirror of the shapes, rebuilding it if the list changed or shapes were moved or
+     * resized outside the model (e.g. by a remote edit).
+     *
+     * @return : the mirror, in the order of the list
+     */
+    private HitTestKernel hitTest() {
+        if (!isHitTestInSync() || hitTest.size() != shapes.size()) {
+            hitTest.rebuild(shapes);
+            hitTestValid = true;
+            hitTestChanges = geometryChanges;
+        }
+        return hitTest;
+    }
+
+    /**
+     * Helper method to check if the hit-test mirror matches the shapes.
+     *
+     * @return : true if no shape was added, removed, moved or resized since the mirror was last updated
+     */
+    private boolean isHitTestInSync() {
+        return hitTestValid && hitTestChanges == geometryChanges;
+    }
+
+    /**
+     * Helper method to update the mirrored geometry of shapes the model just moved or resized. The mirror is rebuilt
+     * on the next hit-test instead if it was not in sync before, or if so many shapes changed that finding each of them
+     * would cost more.
+     *
+     * @param changed       : shapes that were moved or resized
+     * @param changesBefore : number of geometry changes before the change
+     */
+    private void updateHitTest(List<XShape> changed, int changesBefore) {
+        // the pick buffer learns about the change from its event
+        if (pickChanges == changesBefore) {
+            pickChanges = geometryChanges;
+        }
+        boolean inSync = hitTestValid && hitTestChanges == changesBefore;
+        if (!inSync || changed.size() > shapes.size() / 8) {
+            hitTestValid = false;
+            return;
+        }
+        for (int i = 0; i < changed.size(); i++) {
+            XShape shape = changed.get(i);
+            int index = indexOf(shape);
+            if (index < 0) {
+                hitTestValid = false;
+                return;
             }
+            hitTest.set(index, shape);
         }
-        // no shape found - mark found shape as null
-        foundShape = null;
-        return false;
+        hitTestChanges = geometryChanges;
+    }
+
+    /**
+     * Method to build a spatial grid over the shapes of the model for bulk queries. The grid is a snapshot and can be
+     * reused for several queries as long as the shapes are not changed. Indexes returned by the grid are indexes into
+     * getShapes().
+     *
+     * @return : grid over the shapes in z-order
+     */
+    public ShapeGrid buildGrid() {
+        // Sort list based on z-order (ascending) so that grid indexes match the list
+        shapes.sort(Z_ORDER);
+        return new ShapeGrid(shapes);
+    }
+
+    /**
+     * Method to find the top-most shape under each of the given points. Unlike contains(), this does not select the
+     * shape or change its z-order.
+     *
+     * @param xs : x coordinates of the points
+     * @param ys : y coordinates of the points
+     * @return : index into getShapes() of the top-most shape for every point, or -1 if no shape contains the point
+     */
+    public int[] topShapesAt(double[] xs, double[] ys) {
+        return buildGrid().topShapesAt(xs, ys);
+    }
+
+    /**
+     * Method to count the shapes under each of the given points.
+     *
+     * @param xs : x coordinates of the points
+     * @param ys : y coordinates of the points
+     * @return : number of shapes containing each point
+     */
+    public int[] countShapesAt(double[] xs, double[] ys) {
+        return buildGrid().countShapesAt(xs, ys);
+    }
+
+    /**
+     * Method to find all the shapes whose bounds intersect a region.
+     *
+     * @param left   : x coordinate of the top-left corner of the region
+     * @param top    : y coordinate of the top-left corner of the region
+     * @param width  : width of the region
+     * @param height : height of the region
+     * @return : indexes into getShapes() of the intersecting shapes, in z-order
+     */
+    public int[] shapesIntersecting(double left, double top, double width, double height) {
+        return hitTest().shapesIntersecting(left, top, width, height);
+    }
+
+    /**
+     * Method to find all the shapes whose bounds intersect a region without copying the result, for views that query
+     * on every frame.
+     *
+     * @param left   : x coordinate of the top-left corner of the region
+     * @param top    : y coordinate of the top-left corner of the region
+     * @param width  : width of the region
+     * @param height : height of the region
+     * @return : number of shapes found, with their indexes into getShapes() at the start of getFoundShapes()
+     */
+    public int countShapesIntersecting(double left, double top, double width, double height) {
+        return hitTest().countShapesIntersecting(left, top, width, height);
+    }
+
+    /**
+     * Getter method for the shapes found by the last call to countShapesIntersecting(). Valid until the next query.
+     *
+     * @return : buffer of indexes into getShapes()
+     */
+    public int[] getFoundShapes() {
+        return hitTest().getFound();
     }
 
     /**
@@ -146,13 +754,14 @@ public class DrawingModel {
         // check if the given x, y coordinate is within the resize handle
         double cx = resizeLeft + resizeHandleSize / 2;
         double cy = resizeTop + resizeHandleSize / 2;
-        return Math.hypot(x - cx, y - cy) <= resizeHandleSize / 2;
+        double dx = x - cx, dy = y - cy;
+        return dx * dx + dy * dy <= resizeHandleSize * resizeHandleSize / 4;
     }
 
     /**
      * Method to create a new shape.
      *
-     * @param shape : shape to be created 0 = rectangle, 1 = square, 2 = circle, 3 = oval and 4 = line
+     * @param shape : shape to be created 0 = rectangle, 1 = square, 2 = circle, 3 = oval, 4 = line and 5 = freehand
      * @param x     : initial x location for the newly created shape
      * @param y     :  initial y location for the newly created shape
      * @return : the newly created shape
@@ -164,16 +773,187 @@ public class DrawingModel {
             case 2 -> foundShape = new XCircle(x, y, 0, 0, getHighestZOrder());
             case 3 -> foundShape = new XOval(x, y, 0, 0, getHighestZOrder());
             case 4 -> foundShape = new XLine(x, y, x, y, getHighestZOrder());
+            case 5 -> foundShape = new XFreehand(x, y, getHighestZOrder());
         }
         notifySubscribers();
         return foundShape;
     }
 
+    /**
+     * Method to build a new shape without adding it to the model or notifying the subscribers. The z-order is assigned
+     * when the shape is added.
+     *
+     * @param shape  : shape to be created 0 = rectangle, 1 = square, 2 = circle, 3 = oval, 4 = line and 5 = freehand
+     * @param left   : x coordinate of the top-left corner, or of the start of a line
+     * @param top    : y coordinate of the top-left corner, or of the start of a line
+     * @param width  : width of the shape, or x coordinate of the end of a line
+     * @param height : height of the shape, or y coordinate of the end of a line
+     * @param color  : colour of the shape
+     * @return : the newly built shape, a freehand stroke is a straight stroke across its bounds
+     */
+    public static XShape newShape(int shape, double left, double top, double width, double height, Color color) {
+        XShape newShape = switch (shape) {
+            case 0 -> new XRectangle(left, top, width, height, 0);
+            case 1 -> new XSquare(left, top, width, height, 0);
+            case 2 -> new XCircle(left, top, width, height, 0);
+            case 3 -> new XOval(left, top, width, height, 0);
+            case 4 -> new XLine(left, top, width, height, 0);
+            case 5 -> straightStroke(left, top, width, height);
+            default -> throw new IllegalArgumentException("Unknown shape: " + shape);
+        };
+        newShape.setColor(color);
+        return newShape;
+    }
+
+    /**
+     * Helper method to build a finished freehand stroke that runs straight from the top-left to the bottom-right corner of
+     * its bounds.
+     *
+     * @param left   : x coordinate of the top-left corner
+     * @param top    : y coordinate of the top-left corner
+     * @param width  : width of the stroke
+     * @param height : height of the stroke
+     * @return : the new stroke
+     */
+    private static XFreehand straightStroke(double left, double top, double width, double height) {
+        return new XFreehand(new double[]{left, top, left + width, top + height}, 2, null);
+    }
+
+    /**
+     * Method to resize a shape of the model in place, e.g. on every tick of a resize drag. The shape keeps its z-order
+     * and its place in the list, and its id stays in the index, so the cost does not depend on the number of shapes.
+     *
+     * @param shape  : shape of the model to be resized
+     * @param x      : new x coordinate
+     * @param y      : new y coordinate
+     * @param width  : new width (x coordinate of the end point for a line)
+     * @param height : new height (y coordinate of the end point for a line)
+     */
+    public void resizeShape(XShape shape, double x, double y, double width, double height) {
+        ModelEvent event = singleEvent(ModelEvent.Type.RESIZED, shape);
+        int changes = geometryChanges;
+        shape.resize(x, y, width, height);
+        updateHitTest(event.getShapes(), changes);
+        notifySubscribers(event.after());
+    }
+
+    /**
+     * Method to find a shape by its id.
+     *
+     * @param id : id of the shape
+     * @return : the shape, or null if the model has no shape with this id
+     */
+    public XShape getShape(long id) {
+        return shapesById.get(id);
+    }
+
+    /**
+     * Method to remove a shape by its id.
+     *
+     * @param id : id of the shape
+     * @return : the removed shape, or null if the model has no shape with this id
+     */
+    public XShape removeShape(long id) {
+        XShape shape = shapesById.get(id);
+        if (shape != null) {
+            removeFromList(shape);
+            if (shape == foundShape) {
+                foundShape = null;
+            }
+            notifySubscribers(removedEvent(shape));
+        }
+        return shape;
+    }
+
     /**
      * Method to delete the last found shape.
      */
     public void deleteSelectedShape() {
-        shapes.remove(foundShape);
-        notifySubscribers();
+        if (foundShape != null && shapesById.get(foundShape.getId()) == foundShape) {
+            removeFromList(foundShape);
+            notifySubscribers(removedEvent(foundShape));
+        } else {
+            notifySubscribers();
+        }
+    }
+
+    /**
+     * Helper method to describe the removal of a single shape.
+     *
+     * @param shape : removed shape
+     * @return : the event
+     */
+    private static ModelEvent removedEvent(XShape shape) {
+        List<XShape> removed = List.of(shape);
+        return new ModelEvent(ModelEvent.Type.REMOVED, removed, ModelEvent.boundsOf(removed));
+    }
+
+    /**
+     * Helper method to remove a shape of the model from the list and the index.
+     *
+     * @param shape : shape to be removed
+     */
+    private void removeFromList(XShape shape) {
+        shapes.remove(indexOf(shape));
+        shapesById.remove(shape.getId());
+        shape.model = null;
+        hitTestValid = false;
+    }
+
+    /**
+     * Helper method to add a shape to the index and make it count its geometry changes in this model.
+     *
+     * @param shape : shape added to the model
+     */
+    private void index(XShape shape) {
+        shapesById.put(shape);
+        shape.model = this;
+    }
+
+    /**
+     * Helper method to find the position of a shape in the list. The list is in z-order, so the shape is found by a
+     * binary search on its z-order instead of a scan.
+     *
+     * @param shape : shape to be found
+     * @return : its index, or -1 if it is not in the list
+     */
+    private int indexOf(XShape shape) {
+        int low = 0, high = shapes.size() - 1;
+        int index = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int z = shapes.get(mid).getZOrder();
+            if (z < shape.getZOrder()) {
+                low = mid + 1;
+            } else if (z > shape.getZOrder()) {
+                high = mid - 1;
+            } else {
+                index = mid;
+                break;
+            }
+        }
+        if (index < 0 || shapes.get(index) != shape) {
+            // the shape's z-order was changed from outside the model - fall back to a scan
+            index = shapes.indexOf(shape);
+        }
+        return index;
+    }
+
+    /**
+     * Helper method to remove shapes from the index.
+     *
+     * @param removed : shapes that were removed from the list
+     * @return : the shapes that were in the model
+     */
+    private List<XShape> unindex(Collection<XShape> removed) {
+        List<XShape> gone = new ArrayList<>(removed.size());
+        for (XShape shape : removed) {
+            if (shapesById.get(shape.getId()) == shape) {
+                shapesById.remove(shape.getId());
+                shape.model = null;
+                gone.add(shape);
+            }
+        }
+        return gone;
     }
 }
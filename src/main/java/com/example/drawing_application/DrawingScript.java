@@ -0,0 +1,293 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless API for creating, transforming and querying shapes in bulk without mouse events or a stage. Shapes created
+ * through the script are collected and only added to the model on commit(), which assigns their z-orders in one pass
+ * and notifies the subscribers once. Only needs the model and iModel, so it works without the JavaFX toolkit running.
+ */
+public class DrawingScript {
+    /*
+        Instance variables to store the models being scripted, the shapes waiting to be committed and the colour used
+        for new shapes.
+     */
+    private final DrawingModel model;
+    private final InteractionModel iModel;
+    private final ArrayList<XShape> pending;
+    private Color colour;
+
+    /**
+     * Default constructor for this class. Scripts a new, empty model and iModel.
+     */
+    public DrawingScript() {
+        this(new DrawingModel(), new InteractionModel());
+    }
+
+    /**
+     * Constructor for this class that scripts existing models, for example the ones shown by a running application.
+     *
+     * @param model  : model to add shapes to
+     * @param iModel : iModel to select shapes with
+     */
+    public DrawingScript(DrawingModel model, InteractionModel iModel) {
+        this.model = model;
+        this.iModel = iModel;
+        this.pending = new ArrayList<>();
+        this.colour = (Color) iModel.getCurrentColour();
+    }
+
+    /**
+     * Getter method for the model being scripted.
+     *
+     * @return : model
+     */
+    public DrawingModel getModel() {
+        return model;
+    }
+
+    /**
+     * Getter method for the iModel being scripted.
+     *
+     * @return : iModel
+     */
+    public InteractionModel getIModel() {
+        return iModel;
+    }
+
+    /**
+     * Method to set the colour for the shapes created after this call.
+     *
+     * @param colour : colour of new shapes
+     * @return : this script
+     */
+    public DrawingScript colour(Color colour) {
+        this.colour = colour;
+        return this;
+    }
+
+    /**
+     * Method to reserve room for a number of shapes that are about to be created.
+     *
+     * @param count : number of shapes to be created
+     * @return : this script
+     */
+    public DrawingScript reserve(int count) {
+        pending.ensureCapacity(pending.size() + count);
+        model.getShapes().ensureCapacity(model.getShapes().size() + pending.size() + count);
+        return this;
+    }
+
+    /**
+     * Method to create a rectangle.
+     *
+     * @param left   : x coordinate of the top-left corner
+     * @param top    : y coordinate of the top-left corner
+     * @param width  : width
+     * @param height : height
+     * @return : the new rectangle
+     */
+    public XShape rectangle(double left, double top, double width, double height) {
+        return create(0, left, top, width, height);
+    }
+
+    /**
+     * Method to create a square.
+     *
+     * @param left : x coordinate of the top-left corner
+     * @param top  : y coordinate of the top-left corner
+     * @param size : length of a side
+     * @return : the new square
+     */
+    public XShape square(double left, double top, double size) {
+        return create(1, left, top, size, size);
+    }
+
+    /**
+     * Method to create a circle.
+     *
+     * @param left : x coordinate of the top-left corner of its bounds
+     * @param top  : y coordinate of the top-left corner of its bounds
+     * @param size : diameter
+     * @return : the new circle
+     */
+    public XShape circle(double left, double top, double size) {
+        return create(2, left, top, size, size);
+    }
+
+    /**
+     * Method to create an oval.
+     *
+     * @param left   : x coordinate of the top-left corner of its bounds
+     * @param top    : y coordinate of the top-left corner of its bounds
+     * @param width  : width of its bounds
+     * @param height : height of its bounds
+     * @return : the new oval
+     */
+    public XShape oval(double left, double top, double width, double height) {
+        return create(3, left, top, width, height);
+    }
+
+    /**
+     * Method to create a line.
+     *
+     * @param x1 : x coordinate of the start
+     * @param y1 : y coordinate of the start
+     * @param x2 : x coordinate of the end
+     * @param y2 : y coordinate of the end
+     * @return : the new line
+     */
+    public XShape line(double x1, double y1, double x2, double y2) {
+        return create(4, x1, y1, x2, y2);
+    }
+
+    /**
+     * Method to create a freehand stroke through the given points, kept as they are.
+     *
+     * @param points : points of the stroke, x and y interleaved
+     * @return : the new stroke
+     */
+    public XShape stroke(double... points) {
+        XShape newShape = new XFreehand(points.clone(), points.length / 2, colour);
+        pending.add(newShape);
+        return newShape;
+    }
+
+    /**
+     * Method to create a shape of the given type in the current colour. The shape is drawn on top of all earlier shapes
+     * once the script is committed.
+     *
+     * @param shape  : shape to be created 0 = rectangle, 1 = square, 2 = circle, 3 = oval, 4 = line and 5 = freehand
+     * @param left   : x coordinate of the top-left corner, or of the start of a line
+     * @param top    : y coordinate of the top-left corner, or of the start of a line
+     * @param width  : width of the shape, or x coordinate of the end of a line
+     * @param height : height of the shape, or y coordinate of the end of a line
+     * @return : the new shape
+     */
+    public XShape create(int shape, double left, double top, double width, double height) {
+        XShape newShape = DrawingModel.newShape(shape, left, top, width, height, colour);
+        pending.add(newShape);
+        return newShape;
+    }
+
+    /**
+     * Method to add all shapes created since the last commit to the model with a single notification.
+     *
+     * @return : number of shapes added
+     */
+    public int commit() {
+        int count = pending.size();
+        model.addShapes(pending);
+        pending.clear();
+        return count;
+    }
+
+    /**
+     * Method to move shapes of the model with a single notification.
+     *
+     * @param shapes : shapes to be moved
+     * @param dX     : distance to move by along x
+     * @param dY     : distance to move by along y
+     */
+    public void move(List<? extends XShape> shapes, double dX, double dY) {
+        model.moveShapes(shapes, dX, dY);
+    }
+
+    /**
+     * Method to scale shapes of the model about a point with a single notification.
+     *
+     * @param shapes  : shapes to be scaled
+     * @param originX : x coordinate of the point to scale about
+     * @param originY : y coordinate of the point to scale about
+     * @param scale   : scale factor
+     */
+    public void scale(List<? extends XShape> shapes, double originX, double originY, double scale) {
+        model.scaleShapes(shapes, originX, originY, scale, scale);
+    }
+
+    /**
+     * Method to recolour shapes of the model with a single notification.
+     *
+     * @param shapes : shapes to be recoloured
+     * @param colour : new colour
+     */
+    public void recolour(List<? extends XShape> shapes, Color colour) {
+        model.recolourShapes(shapes, colour);
+    }
+
+    /**
+     * Method to remove shapes from the model with a single notification. Clears the selection if it was removed.
+     *
+     * @param shapes : shapes to be removed
+     */
+    public void remove(List<? extends XShape> shapes) {
+        XShape selected = iModel.getSelectedShape();
+        model.removeShapes(shapes);
+        if (shapes.contains(selected)) {
+            iModel.setSelectedShape(new XSquare());
+        }
+    }
+
+    /**
+     * Method to select the top-most shape at a point, like clicking on it would.
+     *
+     * @param x : x coordinate
+     * @param y : y coordinate
+     * @return : the selected shape, or null if there is no shape at the point
+     */
+    public XShape select(double x, double y) {
+        if (!model.contains(x, y)) {
+            return null;
+        }
+        iModel.setSelectedShape(model.foundShape());
+        return model.foundShape();
+    }
+
+    /**
+     * Method to find the shapes whose bounds intersect a region.
+     *
+     * @param left   : x coordinate of the top-left corner of the region
+     * @param top    : y coordinate of the top-left corner of the region
+     * @param width  : width of the region
+     * @param height : height of the region
+     * @return : intersecting shapes in z-order
+     */
+    public List<XShape> shapesIn(double left, double top, double width, double height) {
+        ShapeGrid grid = model.buildGrid();
+        int[] found = grid.shapesIntersecting(left, top, width, height);
+        List<XShape> result = new ArrayList<>(found.length);
+        for (int i : found) {
+            result.add(grid.getShape(i));
+        }
+        return result;
+    }
+
+    /**
+     * Method to find the top-most shape for each of the given points, in parallel.
+     *
+     * @param xs : x coordinates of the points
+     * @param ys : y coordinates of the points
+     * @return : top-most shape for each point, null for points not inside any shape
+     */
+    public XShape[] shapesAt(double[] xs, double[] ys) {
+        ShapeGrid grid = model.buildGrid();
+        int[] found = grid.topShapesAt(xs, ys);
+        XShape[] result = new XShape[found.length];
+        for (int p = 0; p < found.length; p++) {
+            result[p] = found[p] < 0 ? null : grid.getShape(found[p]);
+        }
+        return result;
+    }
+
+    /**
+     * Getter method for the number of shapes in the model, not counting uncommitted ones.
+     *
+     * @return : number of shapes
+     */
+    public int size() {
+        return model.getShapes().size();
+    }
+}
@@ -1,14 +1,22 @@
 package com.example.drawing_application;
 
+import javafx.application.Platform;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * View class that has the canvas for the user to draw. Subscribes to model and interactive model for changes.
  */
-public class DrawingView extends StackPane implements ModelSubscriber, InteractionModelSubscriber {
+public class DrawingView extends StackPane implements ModelSubscriber, InteractionModelSubscriber, RenderResources.Cache {
+    // dash pattern of the bounding box, shared so that drawing a frame does not allocate it
+    private static final double[] DASH_PATTERN = {7, 7};
+
     /*
         Instance variables to store the canvas, graphic context, model, iModel and other variables to assist with the
         drawing of shapes.
@@ -20,6 +28,25 @@ public class DrawingView extends StackPane implements ModelSubscriber, Interacti
     // canvas/document size
     double docWidth, docHeight;
     double shapeLeft, shapeTop, shapeWidth, shapeHeight;
+    // de-normalized points of the last freehand stroke, reused between strokes
+    double[] strokeXs = new double[64], strokeYs = new double[64];
+    // optional off-thread renderer, the render list reused for its frames and the image its tiles are uploaded to
+    TileRenderer tileRenderer;
+    TileRenderer.RenderList renderList = new TileRenderer.RenderList();
+    WritableImage tileImage;
+    // a frame is being rendered from the render list, and another has been asked for in the meantime
+    boolean rendering, renderRequested;
+    // groups the shapes of a frame into runs drawn with few state changes
+    RenderBatcher batcher = new RenderBatcher();
+    // render resources shared with the views of other documents, if any
+    RenderResources resources;
+    // off-screen buffer of the shapes under each pixel of the view-port, if the model picks through one
+    PickBuffer pickBuffer;
+    // hidden views skip drawing until they are shown again, released views have given up their canvas pixels
+    boolean shown = true, dirty, released;
+    double releasedWidth, releasedHeight;
+    // number of frames drawn so far, e.g. to tell what the application allocates beyond redrawing
+    long frames;
 
     /**
      * Default constructor for this class. Sets up the canvas/document for the user to interact with. Draw shapes based
@@ -56,15 +83,115 @@ public class DrawingView extends StackPane implements ModelSubscriber, Interacti
         this.iModel = iModel;
     }
 
+    /**
+     * Method to render the shapes of the model through a tile renderer instead of the graphics context. Shapes are then
+     * rasterized off the JavaFX Application Thread and only the selection and overlays are drawn on it.
+     *
+     * @param tileRenderer : renderer to be used, or null to draw directly through the graphics context
+     */
+    public void setTileRenderer(TileRenderer tileRenderer) {
+        this.tileRenderer = tileRenderer;
+    }
+
+    /**
+     * Method to keep a pick buffer placed over the view-port of this view. The buffer is repainted from the model when
+     * it is read, only the view-port and size of the canvas come from the view.
+     *
+     * @param pickBuffer : pick buffer of the model, or null
+     */
+    public void setPickBuffer(PickBuffer pickBuffer) {
+        this.pickBuffer = pickBuffer;
+    }
+
+    /**
+     * Method to share the renderers and colour cache of other documents and have the canvas accounted in their memory
+     * budget.
+     *
+     * @param resources : shared render resources
+     */
+    public void setRenderResources(RenderResources resources) {
+        this.resources = resources;
+        this.batcher = resources.getBatcher();
+        this.tileRenderer = resources.getTileRenderer();
+        resources.update(this);
+    }
+
+    /**
+     * Method to show or hide this view, e.g. when the tab of its document is selected or deselected. A hidden view only
+     * remembers that it needs a redraw, and may have its canvas released by the shared render resources. It is
+     * redrawn, and its canvas rebuilt, once shown again.
+     *
+     * @param shown : true if the view is on screen
+     */
+    public void setShown(boolean shown) {
+        this.shown = shown;
+        if (shown) {
+            if (released) {
+                released = false;
+                myCanvas.setWidth(releasedWidth);
+                myCanvas.setHeight(releasedHeight);
+            }
+            if (dirty) {
+                draw();
+            }
+        }
+        if (resources != null) {
+            resources.update(this);
+        }
+    }
+
+    /**
+     * Method to return the memory held by the canvas' pixels.
+     *
+     * @return : size of the canvas in bytes, 0 once released
+     */
+    @Override
+    public long cacheBytes() {
+        long pickBytes = pickBuffer == null ? 0 : pickBuffer.bytes();
+        long tileBytes = tileImage == null ? 0 : (long) (tileImage.getWidth() * tileImage.getHeight() * 4);
+        return released ? pickBytes : (long) (myCanvas.getWidth() * myCanvas.getHeight() * 4) + pickBytes + tileBytes;
+    }
+
+    /**
+     * Method to check if this view is on screen.
+     *
+     * @return : true if shown
+     */
+    @Override
+    public boolean isCacheInUse() {
+        return shown;
+    }
+
+    /**
+     * Method to release the canvas' pixels of a hidden view by shrinking the canvas to nothing. Its size is restored
+     * when the view is shown again.
+     */
+    @Override
+    public void releaseCache() {
+        if (released || shown) {
+            return;
+        }
+        released = true;
+        dirty = true;
+        releasedWidth = myCanvas.getWidth();
+        releasedHeight = myCanvas.getHeight();
+        myCanvas.setWidth(0);
+        myCanvas.setHeight(0);
+        tileImage = null;
+        if (pickBuffer != null) {
+            pickBuffer.release();
+        }
+    }
+
     /**
      * Method to pass on mouse events to the controller. The coordinates are passed on as normalized coordinates.
      *
      * @param controller : controller that handles all the communication between this view and model/iModel
      */
     public void setController(DrawingController controller) {
-        myCanvas.setOnMousePressed(e -> controller.handlePressed(e.getX() / docWidth, e.getY() / docHeight, e));
-        myCanvas.setOnMouseDragged(e -> controller.handleMove(e.getX() / docWidth, e.getY() / docHeight, e));
-        myCanvas.setOnMouseReleased(e -> controller.handleReleased(e.getX() / docWidth, e.getY() / docHeight, e));
+        myCanvas.setOnMousePressed(e -> controller.handlePressed(normalizeX(e.getX()), normalizeY(e.getY()), e));
+        myCanvas.setOnMouseDragged(e -> controller.handleMove(normalizeX(e.getX()), normalizeY(e.getY()), e));
+        myCanvas.setOnMouseReleased(e -> controller.handleReleased(normalizeX(e.getX()), normalizeY(e.getY()), e));
 
         // update view-port width and height when the window size changes
         this.widthProperty().addListener((observable, oldVal, newVal) -> {
@@ -83,6 +210,26 @@ public class DrawingView extends StackPane implements ModelSubscriber, Interacti
         });
     }
 
+    /**
+     * Helper method to normalize the x coordinate of a mouse event on the canvas.
+     *
+     * @param x : x coordinate in pixels
+     * @return : normalized x coordinate
+     */
+    protected double normalizeX(double x) {
+        return x / docWidth;
+    }
+
+    /**
+     * Helper method to normalize the y coordinate of a mouse event on the canvas.
+     *
+     * @param y : y coordinate in pixels
+     * @return : normalized y coordinate
+     */
+    protected double normalizeY(double y) {
+        return y / docHeight;
+    }
+
     /**
      * Method for receiving publish notifications from model. Part of publisher-subscriber model.
      */
@@ -100,21 +247,250 @@ public class DrawingView extends StackPane implements ModelSubscriber, Interacti
     }
 
     /**
-     * Method to draw various shapes from the model and the selected shape from iModel.
+     * Method for receiving typed changes from model. Changes that are entirely outside the part of the document this
+     * view shows are skipped.
+     *
+     * @param event : the change
+     */
+    @Override
+    public void modelChanged(ModelEvent event) {
+        if (showsChange(event)) {
+            draw();
+        }
+    }
+
+    /**
+     * Method for receiving view-port changes from iModel. A view-port that did not move, e.g. when panning against the
+     * edge of the document, is skipped.
+     *
+     * @param event : the view-port before and after the change
+     */
+    @Override
+    public void iModelChanged(ViewportEvent event) {
+        if (event.isChanged()) {
+            draw();
+        }
+    }
+
+    /**
+     * Helper method to check if a change of the model is visible in this view, i.e. touches the part of the document
+     * covered by the canvas.
+     *
+     * @param event : the change
+     * @return : true if the view has to be redrawn
+     */
+    protected boolean showsChange(ModelEvent event) {
+        double left = iModel.getViewLeft(), top = iModel.getViewTop();
+        return event.intersects(left, top, left + myCanvas.getWidth() / docWidth, top + myCanvas.getHeight() / docHeight);
+    }
+
+    /**
+     * Method to draw various shapes from the model and the selected shape from iModel. The selected shape and its
+     * bounding box are drawn once, on top of the others, by drawCurrentShape().
      */
     protected void draw() {
+        if (!shown) {
+            dirty = true;
+            return;
+        }
+        dirty = false;
+        frames++;
+        if (resources != null) {
+            resources.checkPressure();
+        }
+        if (pickBuffer != null) {
+            pickBuffer.setViewport(iModel.getViewLeft(), iModel.getViewTop(), myCanvas.getWidth(), myCanvas.getHeight());
+        }
+        if (tileRenderer != null) {
+            drawTiled();
+            return;
+        }
         gc.clearRect(0, 0, myCanvas.getWidth(), myCanvas.getHeight());
-        gc.setStroke(Color.BLACK);
-        model.getShapes().forEach(shape -> {
-            // call helper method to draw according to the shape
-            drawBasedOnShape(shape);
-            if (shape == iModel.getSelectedShape()) {
-                deNormalize(shape);
-                drawBoundingBox(shape);
-            }
-        });
+        drawUnderlay();
+        drawShapes();
         // call helper method to draw current shape from iModel
         drawCurrentShape();
+        drawOverlay();
+    }
+
+    /**
+     * Method to draw the shapes of the model through the batcher. Shapes out of view are skipped, groups with their
+     * whole subtree.
+     */
+    protected void drawShapes() {
+        // batch the shapes into runs of the same primitive and colour - indexed loop avoids the iterator and capturing
+        // lambda on every frame
+        ArrayList<XShape> shapes = model.getShapes();
+        batcher.begin(myCanvas.getWidth(), myCanvas.getHeight());
+        for (int i = 0; i < shapes.size(); i++) {
+            XShape shape = shapes.get(i);
+            if (isVisible(shape)) {
+                addToBatch(shape);
+            }
+        }
+        batcher.flush(gc);
+    }
+
+    /**
+     * Helper method to de-normalize a shape and add it to the batch. The children of a group are added in turn, from
+     * bottom to top, skipping those out of view.
+     *
+     * @param shape : shape to be added
+     */
+    private void addToBatch(XShape shape) {
+        if (shape instanceof XGroup group) {
+            List<XShape> children = group.getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                if (isVisible(children.get(i))) {
+                    addToBatch(children.get(i));
+                }
+            }
+            return;
+        }
+        if (shape instanceof XFreehand stroke) {
+            int n = deNormalizeStroke(stroke);
+            batcher.addPolyline(strokeXs, strokeYs, n, shape.getColor());
+            return;
+        }
+        byte primitive = deNormalizeToPrimitive(shape);
+        batcher.add(primitive, shapeLeft, shapeTop, shapeWidth, shapeHeight, shape.getColor());
+    }
+
+    /**
+     * Helper method to check if the bounds of a shape, or of a whole group, touch the part of the document covered by
+     * the canvas, with a pixel to spare for outlines.
+     *
+     * @param shape : shape to be checked
+     * @return : true if the shape may be visible
+     */
+    protected boolean isVisible(XShape shape) {
+        double marginX = 1 / docWidth, marginY = 1 / docHeight;
+        double left = iModel.getViewLeft() - marginX, top = iModel.getViewTop() - marginY;
+        double right = left + myCanvas.getWidth() / docWidth + 2 * marginX, bottom = top + myCanvas.getHeight() / docHeight + 2 * marginY;
+        return shape.getBoundsRight() >= left && shape.getBoundsLeft() <= right && shape.getBoundsBottom() >= top
+                && shape.getBoundsTop() <= bottom;
+    }
+
+    /**
+     * Method to draw anything that sits below the shapes. The main view has no underlay.
+     */
+    protected void drawUnderlay() {
+    }
+
+    /**
+     * Method to draw anything that sits on top of the shapes: the main view shows the alignment guides of a shape being
+     * dragged.
+     */
+    protected void drawOverlay() {
+        double[] guides = iModel.getGuides();
+        if (guides.length == 0) {
+            return;
+        }
+        gc.setStroke(Color.MAGENTA);
+        for (int i = 0; i < guides.length; i += 4) {
+            // centre the line on a pixel so that it stays one pixel wide
+            double x1 = Math.floor((guides[i] - iModel.getViewLeft()) * docWidth) + 0.5;
+            double y1 = Math.floor((guides[i + 1] - iModel.getViewTop()) * docHeight) + 0.5;
+            double x2 = Math.floor((guides[i + 2] - iModel.getViewLeft()) * docWidth) + 0.5;
+            double y2 = Math.floor((guides[i + 3] - iModel.getViewTop()) * docHeight) + 0.5;
+            gc.strokeLine(x1, y1, x2, y2);
+        }
+        gc.setStroke(Color.BLACK);
+    }
+
+    /**
+     * Helper method to draw the shapes through the tile renderer. The shapes in view are copied into the render list,
+     * rasterized on the renderer's pool and drawn on the JavaFX Application Thread over the underlay, below the current
+     * shape and overlay. The render list is reused, so while a frame is being rendered a new one is only asked for, and
+     * started once the frame in flight has been drawn.
+     */
+    private void drawTiled() {
+        if (rendering) {
+            renderRequested = true;
+            return;
+        }
+        rendering = true;
+        renderRequested = false;
+        renderList.clear();
+        ArrayList<XShape> shapes = model.getShapes();
+        for (int i = 0; i < shapes.size(); i++) {
+            XShape shape = shapes.get(i);
+            if (isVisible(shape)) {
+                addToRenderList(renderList, shape);
+            }
+        }
+        int width = (int) Math.ceil(myCanvas.getWidth());
+        int height = (int) Math.ceil(myCanvas.getHeight());
+        tileRenderer.render(renderList, width, height).thenAcceptAsync(tiles -> {
+            rendering = false;
+            // a newer frame has been asked for in the meantime - show this one and render the next
+            if (renderRequested) {
+                draw();
+            }
+            if (width == 0 || height == 0) {
+                return;
+            }
+            if (tileImage == null || tileImage.getWidth() != width || tileImage.getHeight() != height) {
+                tileImage = new WritableImage(width, height);
+            }
+            // the tiles replace the pixels they are uploaded to, so they go to an image drawn over the underlay
+            TileRenderer.upload(tiles, tileImage.getPixelWriter());
+            gc.clearRect(0, 0, myCanvas.getWidth(), myCanvas.getHeight());
+            drawUnderlay();
+            gc.drawImage(tileImage, 0, 0);
+            drawCurrentShape();
+            drawOverlay();
+        }, Platform::runLater);
+    }
+
+    /**
+     * Helper method to de-normalize a shape and append it to the render list of the tile renderer.
+     *
+     * @param list  : render list to be appended to
+     * @param shape : shape to be appended
+     */
+    private void addToRenderList(TileRenderer.RenderList list, XShape shape) {
+        if (shape instanceof XGroup group) {
+            List<XShape> children = group.getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                if (isVisible(children.get(i))) {
+                    addToRenderList(list, children.get(i));
+                }
+            }
+            return;
+        }
+        int colour = resources != null ? resources.argb(shape.getColor()) : Rasterizer.toArgbPre(shape.getColor());
+        // the tile renderer draws a freehand stroke as its segments
+        if (shape instanceof XFreehand stroke) {
+            int n = deNormalizeStroke(stroke);
+            for (int p = 1; p < n; p++) {
+                list.add(TileRenderer.LINE, strokeXs[p - 1], strokeYs[p - 1], strokeXs[p], strokeYs[p], colour);
+            }
+            return;
+        }
+        byte primitive = deNormalizeToPrimitive(shape);
+        list.add(primitive, shapeLeft, shapeTop, shapeWidth, shapeHeight, colour);
+    }
+
+    /**
+     * Helper method to de-normalize a shape and find the primitive it is drawn with.
+     *
+     * @param shape : shape to be de-normalized
+     * @return : TileRenderer.RECTANGLE, OVAL or LINE
+     */
+    private byte deNormalizeToPrimitive(XShape shape) {
+        deNormalize(shape);
+        return switch (shape) {
+            case XRectangle rectangle -> TileRenderer.RECTANGLE;
+            case XSquare square -> TileRenderer.RECTANGLE;
+            case XCircle circle -> TileRenderer.OVAL;
+            case XOval oval -> TileRenderer.OVAL;
+            case XLine line -> {
+                deNormalizeLine(line);
+                yield TileRenderer.LINE;
+            }
+            default -> throw new IllegalStateException("Unexpected value");
+        };
     }
 
     /**
@@ -123,6 +499,12 @@ public class DrawingView extends StackPane implements ModelSubscriber, Interacti
      * @param shape : shape based on which to call draw method
      */
     private void drawBasedOnShape(XShape shape) {
+        if (shape instanceof XGroup group) {
+            for (XShape child : group.getChildren()) {
+                drawBasedOnShape(child);
+            }
+            return;
+        }
         // helper method to denormalize coordinates based on the document width and height
         deNormalize(shape);
         switch (shape) {
@@ -131,6 +513,7 @@ public class DrawingView extends StackPane implements ModelSubscriber, Interacti
             case XCircle circle -> this.drawOval(circle);
             case XOval oval -> this.drawOval(oval);
             case XLine line -> this.drawLine(line);
+            case XFreehand stroke -> this.drawStroke(stroke);
             default -> throw new IllegalStateException("Unexpected value");
         }
     }
@@ -170,10 +553,9 @@ public class DrawingView extends StackPane implements ModelSubscriber, Interacti
      * @param shape : shape for which the bounding box is to be drawn
      */
     protected void drawBoundingBox(XShape shape) {
-        double[] dashPattern = {7, 7};
         gc.setStroke(Color.RED);
         gc.setLineWidth(3.0);
-        gc.setLineDashes(dashPattern);
+        gc.setLineDashes(DASH_PATTERN);
 
         // draw bounding box based on shape - line uses strokeLine()
         if (!(shape instanceof XLine)) {
@@ -234,6 +616,60 @@ public class DrawingView extends StackPane implements ModelSubscriber, Interacti
         gc.setStroke(Color.BLACK);
     }
 
+    /**
+     * Helper method to draw a freehand stroke with a single polyline.
+     *
+     * @param shape : freehand stroke
+     */
+    private void drawStroke(XFreehand shape) {
+        int n = deNormalizeStroke(shape);
+        gc.setStroke(shape.getColor());
+        gc.strokePolyline(strokeXs, strokeYs, n);
+        gc.setStroke(Color.BLACK);
+    }
+
+    /**
+     * Helper method to de-normalize the points of a freehand stroke into strokeXs and strokeYs. The points are placed
+     * relative to the stroke's de-normalized location, so views that de-normalize differently place them the same way.
+     *
+     * @param shape : freehand stroke
+     * @return : number of points
+     */
+    private int deNormalizeStroke(XFreehand shape) {
+        deNormalize(shape);
+        int n = shape.getPointCount();
+        if (strokeXs.length < n) {
+            strokeXs = new double[Math.max(n, strokeXs.length * 2)];
+            strokeYs = new double[strokeXs.length];
+        }
+        double[] points = shape.getPoints();
+        double left = shape.getLeft(), top = shape.getTop();
+        double scaleX = getPixelsPerUnitX(), scaleY = getPixelsPerUnitY();
+        for (int p = 0; p < n; p++) {
+            strokeXs[p] = shapeLeft + (points[p * 2] - left) * scaleX;
+            strokeYs[p] = shapeTop + (points[p * 2 + 1] - top) * scaleY;
+        }
+        return n;
+    }
+
+    /**
+     * Helper method to find how many pixels a normalized distance along x takes on the canvas.
+     *
+     * @return : pixels per normalized unit
+     */
+    protected double getPixelsPerUnitX() {
+        return docWidth;
+    }
+
+    /**
+     * Helper method to find how many pixels a normalized distance along y takes on the canvas.
+     *
+     * @return : pixels per normalized unit
+     */
+    protected double getPixelsPerUnitY() {
+        return docHeight;
+    }
+
     /**
      * Helper method to de-normalize coordinates for a line. Line does not store size so de-normalize start and end points.
      *
@@ -325,6 +761,11 @@ public class DrawingView extends StackPane implements ModelSubscriber, Interacti
         public void resize(double width, double height) {
             super.setWidth(width);
             super.setHeight(height);
+            // a laid out canvas is no longer released
+            view.released = false;
+            if (view.resources != null) {
+                view.resources.update(view);
+            }
             view.draw();
         }
     }
@@ -0,0 +1,401 @@
+package com.example.drawing_application;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorted coordinates of the edges and centres of shapes along one axis, for alignment guides: the left edges, centres
+ * and right edges of the bounds along x, or the top edges, middles and bottom edges along y. Each coordinate is kept
+ * with the shape it belongs to, in primitive arrays sorted by coordinate, so that the edge nearest to a coordinate is
+ * found by a binary search.
+ * <p>
+ * Only the shapes whose bounds intersect a region, e.g. the view-port, are indexed. The index is filled from a region
+ * query of the model, so a search never walks past the edges of shapes out of view, however many of them line up.
+ * <p>
+ * A moved or resized shape has its entries moved to their new places by shifting only the entries in between, which
+ * is a handful for the small steps of a drag. A shape moved into or out of the region is added or taken out.
+ */
+public class EdgeIndex {
+    // entries per shape
+    private static final int EDGES = 3;
+    // ranges this short are sorted by insertion
+    private static final int INSERTION_SORT = 16;
+
+    /*
+        Instance variables to store the axis, the coordinates in ascending order, the shape each belongs to and the
+        number of entries.
+     */
+    private final boolean vertical;
+    private double[] values;
+    private XShape[] owners;
+    private int size;
+    // region the indexed shapes intersect, empty until the index is filled
+    private double regionLeft = Double.NaN, regionTop = Double.NaN, regionRight = Double.NaN, regionBottom = Double.NaN;
+
+    /**
+     * Default constructor for this class. The index starts empty.
+     *
+     * @param vertical : true for the top edges, middles and bottom edges, false for the left edges, centres and right
+     *                 edges
+     */
+    public EdgeIndex(boolean vertical) {
+        this.vertical = vertical;
+        this.values = new double[EDGES * 16];
+        this.owners = new XShape[EDGES * 16];
+    }
+
+    /**
+     * Method to fill the index with the edges of the shapes found by a region query, replacing what it held.
+     *
+     * @param shapes : shapes of the model
+     * @param found  : indexes into shapes of those intersecting the region
+     * @param count  : number of indexes found
+     * @param left   : x coordinate of the top-left corner of the region
+     * @param top    : y coordinate of the top-left corner of the region
+     * @param width  : width of the region
+     * @param height : height of the region
+     */
+    public void rebuild(List<XShape> shapes, int[] found, int count, double left, double top, double width, double height) {
+        regionLeft = left;
+        regionTop = top;
+        regionRight = left + width;
+        regionBottom = top + height;
+        size = 0;
+        ensureCapacity(count * EDGES);
+        Arrays.fill(owners, null);
+        for (int i = 0; i < count; i++) {
+            XShape shape = shapes.get(found[i]);
+            double low = low(shape), high = high(shape);
+            for (int k = 0; k < EDGES; k++) {
+                values[size] = edge(low, high, k);
+                owners[size++] = shape;
+            }
+        }
+        sort(0, size - 1);
+    }
+
+    /**
+     * Method to check if the index holds the shapes of a region.
+     *
+     * @param left   : x coordinate of the top-left corner of the region
+     * @param top    : y coordinate of the top-left corner of the region
+     * @param width  : width of the region
+     * @param height : height of the region
+     * @return : true if the index was filled for this region
+     */
+    public boolean covers(double left, double top, double width, double height) {
+        return regionLeft == left && regionTop == top && regionRight == left + width && regionBottom == top + height;
+    }
+
+    /**
+     * Method to bring the entries of the shapes named by a change up to date.
+     *
+     * @param event : the change
+     */
+    public void update(ModelEvent event) {
+        List<XShape> shapes = event.getShapes();
+        double[] oldBounds = event.getOldBounds();
+        for (int i = 0; i < shapes.size(); i++) {
+            XShape shape = shapes.get(i);
+            switch (event.getType()) {
+                case ADDED -> {
+                    if (inRegion(shape)) {
+                        insert(shape);
+                    }
+                }
+                case REMOVED -> {
+                    double low = oldBounds[i * 4 + (vertical ? 1 : 0)], high = oldBounds[i * 4 + (vertical ? 3 : 2)];
+                    for (int k = 0; k < EDGES; k++) {
+                        remove(edge(low, high, k), shape);
+                    }
+                }
+                case MOVED, RESIZED -> {
+                    double oldLow = oldBounds[i * 4 + (vertical ? 1 : 0)], oldHigh = oldBounds[i * 4 + (vertical ? 3 : 2)];
+                    double low = low(shape), high = high(shape);
+                    boolean indexed = find(oldLow, shape) >= 0, inRegion = inRegion(shape);
+                    for (int k = 0; k < EDGES && indexed; k++) {
+                        if (inRegion) {
+                            move(edge(oldLow, oldHigh, k), edge(low, high, k), shape);
+                        } else {
+                            remove(edge(oldLow, oldHigh, k), shape);
+                        }
+                    }
+                    if (!indexed && inRegion) {
+                        insert(shape);
+                    }
+                }
+                case RECOLOURED -> {
+                    // edges do not depend on the colour
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to find the entry nearest to a coordinate, among the shapes of the region.
+     *
+     * @param value     : coordinate to be matched
+     * @param tolerance : largest distance to look at
+     * @param exclude   : shape whose entries are ignored, e.g. the one being dragged, or null
+     * @return : nearest entry, see getValue() and getShape(), or -1 if there is none within the tolerance
+     */
+    public int nearest(double value, double tolerance, XShape exclude) {
+        int above = lowerBound(value), below = above - 1;
+        // walk outwards from the coordinate, the nearer side first, until both sides are out of tolerance
+        while (true) {
+            double up = above < size ? values[above] - value : Double.MAX_VALUE;
+            double down = below >= 0 ? value - values[below] : Double.MAX_VALUE;
+            if (Math.min(up, down) > tolerance) {
+                return -1;
+            }
+            int entry = up <= down ? above++ : below--;
+            if (owners[entry] != exclude) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Getter method for the coordinate of an entry.
+     *
+     * @param entry : entry, from nearest()
+     * @return : coordinate
+     */
+    public double getValue(int entry) {
+        return values[entry];
+    }
+
+    /**
+     * Getter method for the shape of an entry.
+     *
+     * @param entry : entry, from nearest()
+     * @return : shape whose edge or centre the entry is
+     */
+    public XShape getShape(int entry) {
+        return owners[entry];
+    }
+
+    /**
+     * Getter method for the number of entries.
+     *
+     * @return : three per shape indexed
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Method to find an edge or the centre between the low and high edge of a shape along the axis.
+     *
+     * @param low  : left or top edge
+     * @param high : right or bottom edge
+     * @param k    : 0 for the low edge, 1 for the centre and 2 for the high edge
+     * @return : coordinate
+     */
+    public static double edge(double low, double high, int k) {
+        return k == 0 ? low : k == 2 ? high : (low + high) / 2;
+    }
+
+    /**
+     * Helper method to find the low edge of a shape along the axis.
+     *
+     * @param shape : shape to be measured
+     * @return : left or top edge of the bounds
+     */
+    private double low(XShape shape) {
+        return vertical ? shape.getBoundsTop() : shape.getBoundsLeft();
+    }
+
+    /**
+     * Helper method to find the high edge of a shape along the axis.
+     *
+     * @param shape : shape to be measured
+     * @return : right or bottom edge of the bounds
+     */
+    private double high(XShape shape) {
+        return vertical ? shape.getBoundsBottom() : shape.getBoundsRight();
+    }
+
+    /**
+     * Helper method to check if the bounds of a shape intersect the region, like the region query the index is filled
+     * from.
+     *
+     * @param shape : shape to be checked
+     * @return : true if the shape belongs in the index
+     */
+    private boolean inRegion(XShape shape) {
+        return shape.getBoundsLeft() <= regionRight && shape.getBoundsRight() >= regionLeft
+                && shape.getBoundsTop() <= regionBottom && shape.getBoundsBottom() >= regionTop;
+    }
+
+    /**
+     * Helper method to find the first entry not below a coordinate.
+     *
+     * @param value : coordinate
+     * @return : index of the entry, size if all are below
+     */
+    private int lowerBound(double value) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Helper method to find the entry of a shape at a coordinate.
+     *
+     * @param value : coordinate of the entry
+     * @param shape : shape of the entry
+     * @return : index of the entry, or -1 if the shape has none there
+     */
+    private int find(double value, XShape shape) {
+        for (int i = lowerBound(value); i < size && values[i] == value; i++) {
+            if (owners[i] == shape) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Helper method to add the entries of a shape in their places.
+     *
+     * @param shape : shape to be added
+     */
+    private void insert(XShape shape) {
+        ensureCapacity(size + EDGES);
+        double low = low(shape), high = high(shape);
+        for (int k = 0; k < EDGES; k++) {
+            insert(edge(low, high, k), shape);
+        }
+    }
+
+    /**
+     * Helper method to add an entry in its place, the capacity for which has been ensured.
+     *
+     * @param value : coordinate of the entry
+     * @param shape : shape of the entry
+     */
+    private void insert(double value, XShape shape) {
+        int i = lowerBound(value);
+        System.arraycopy(values, i, values, i + 1, size - i);
+        System.arraycopy(owners, i, owners, i + 1, size - i);
+        values[i] = value;
+        owners[i] = shape;
+        size++;
+    }
+
+    /**
+     * Helper method to take an entry out.
+     *
+     * @param value : coordinate of the entry
+     * @param shape : shape of the entry
+     */
+    private void remove(double value, XShape shape) {
+        int i = find(value, shape);
+        if (i < 0) {
+            return;
+        }
+        System.arraycopy(values, i + 1, values, i, size - i - 1);
+        System.arraycopy(owners, i + 1, owners, i, size - i - 1);
+        owners[--size] = null;
+    }
+
+    /**
+     * Helper method to move an entry to a new coordinate, shifting the entries in between by one.
+     *
+     * @param oldValue : coordinate of the entry
+     * @param newValue : new coordinate of the entry
+     * @param shape    : shape of the entry
+     */
+    private void move(double oldValue, double newValue, XShape shape) {
+        int i = find(oldValue, shape);
+        if (i < 0) {
+            return;
+        }
+        if (newValue > oldValue) {
+            int j = lowerBound(newValue) - 1;
+            System.arraycopy(values, i + 1, values, i, j - i);
+            System.arraycopy(owners, i + 1, owners, i, j - i);
+            i = j;
+        } else if (newValue < oldValue) {
+            int j = lowerBound(newValue);
+            System.arraycopy(values, j, values, j + 1, i - j);
+            System.arraycopy(owners, j, owners, j + 1, i - j);
+            i = j;
+        }
+        values[i] = newValue;
+        owners[i] = shape;
+    }
+
+    /**
+     * Helper method to make room for a number of entries.
+     *
+     * @param capacity : number of entries to hold
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            int length = Math.max(capacity, values.length * 2);
+            values = Arrays.copyOf(values, length);
+            owners = Arrays.copyOf(owners, length);
+        }
+    }
+
+    /**
+     * Helper method to sort a range of the entries by coordinate, keeping each with its shape.
+     *
+     * @param low  : first entry of the range
+     * @param high : last entry of the range
+     */
+    private void sort(int low, int high) {
+        while (high - low >= INSERTION_SORT) {
+            double pivot = values[(low + high) >>> 1];
+            int i = low, j = high;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            // recurse into the smaller part and loop on the larger one
+            if (j - low < high - i) {
+                sort(low, j);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && values[j - 1] > values[j]; j--) {
+                swap(j - 1, j);
+            }
+        }
+    }
+
+    /**
+     * Helper method to swap two entries.
+     *
+     * @param i : first entry
+     * @param j : second entry
+     */
+    private void swap(int i, int j) {
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+        XShape owner = owners[i];
+        owners[i] = owners[j];
+        owners[j] = owner;
+    }
+}
@@ -0,0 +1,513 @@
+package com.example.drawing_application;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Packed mirror of the geometry of a list of shapes, for hit-testing many shapes per instruction. Every shape is stored
+ * in primitive arrays (structure of arrays) as its bounds plus a quadratic term, so that one test covers rectangles,
+ * squares, circles and ovals:
+ * <pre>
+ *     left &lt;= x &lt;= right  and  top &lt;= y &lt;= bottom  and  ((x - cx) * sx)^2 + ((y - cy) * sy)^2 &lt;= limit
+ * </pre>
+ * Rectangles have sx = sy = limit = 0, circles sx = sy = 1 and limit = r^2, and ovals sx and sy the inverse half-axes
+ * and limit = 1, which is the same arithmetic as their contains(). Other shapes (lines) are only tested against their
+ * bounds here and confirmed through their own contains().
+ * <p>
+ * The tests run on the Vector API (jdk.incubator.vector) when its module is present, with a scalar loop for the tail
+ * and as the fallback, e.g. when started from a plain class path without --add-modules jdk.incubator.vector. Setting
+ * -Ddrawing.vectorHitTest=false forces the scalar loop.
+ * <p>
+ * A shape raised to the top of the z-order is appended after the last slot rather than shifting every column, and the
+ * slot it leaves becomes a hole that no test can hit. Indexes passed in and returned are indexes into the mirrored list,
+ * which skip the holes. The holes are squeezed out once there are MAX_HOLES of them.
+ */
+public class HitTestKernel {
+    // whether the Vector API is used - checked once, before any class of the incubator module is touched
+    public static final boolean VECTORIZED = Boolean.parseBoolean(System.getProperty("drawing.vectorHitTest", "true"))
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    // holes left by raised shapes before they are squeezed out, so that mapping an index to its slot stays cheap
+    private static final int MAX_HOLES = 256;
+
+    /*
+        Instance variables to store the shapes and their packed geometry by slot, in the order of the list they mirror,
+        and the number of slots in use, holes included.
+     */
+    private XShape[] shapes;
+    private double[] left, top, right, bottom;
+    private double[] centerX, centerY, scaleX, scaleY, limit;
+    // false for shapes that are only tested against their bounds and need their own contains() to confirm a hit
+    private boolean[] exact;
+    private int size;
+    /*
+        Instance variables to store the slots left behind by raised shapes, in ascending order.
+     */
+    private final int[] holes = new int[MAX_HOLES];
+    private int holeCount;
+    // result buffer of region queries, grown as needed
+    private int[] found = new int[16];
+
+    /**
+     * Default constructor for this class. Creates an empty mirror.
+     */
+    public HitTestKernel() {
+        allocate(16);
+    }
+
+    /**
+     * Method to replace the mirror with the geometry of the given shapes.
+     *
+     * @param shapeList : shapes to be mirrored, in z-order
+     */
+    public void rebuild(List<XShape> shapeList) {
+        if (shapeList.size() > shapes.length) {
+            allocate(Math.max(shapeList.size(), shapes.length * 2));
+        } else if (shapeList.size() < size) {
+            // drop the references to shapes that are no longer mirrored
+            Arrays.fill(shapes, shapeList.size(), size, null);
+        }
+        size = shapeList.size();
+        holeCount = 0;
+        for (int i = 0; i < size; i++) {
+            put(i, shapeList.get(i));
+        }
+    }
+
+    /**
+     * Method to update the mirrored geometry of a single shape, e.g. after it was moved or resized.
+     *
+     * @param index : index of the shape in the mirrored list
+     * @param shape : the shape
+     */
+    public void set(int index, XShape shape) {
+        put(slotOf(index), shape);
+    }
+
+    /**
+     * Helper method to pack the geometry of a shape into a slot.
+     *
+     * @param index : slot of the shape
+     * @param shape : the shape
+     */
+    private void put(int index, XShape shape) {
+        shapes[index] = shape;
+        exact[index] = true;
+        switch (shape) {
+            case XCircle circle -> {
+                // same arithmetic as XCircle.contains(), which uses the width as the diameter
+                double radius = shape.getWidth() / 2;
+                centerX[index] = shape.getLeft() + radius;
+                centerY[index] = shape.getTop() + shape.getHeight() / 2;
+                scaleX[index] = 1;
+                scaleY[index] = 1;
+                limit[index] = shape.getWidth() * shape.getWidth() / 4;
+                left[index] = centerX[index] - radius;
+                top[index] = centerY[index] - radius;
+                right[index] = centerX[index] + radius;
+                bottom[index] = centerY[index] + radius;
+                return;
+            }
+            case XOval oval -> {
+                // same arithmetic as XOval.contains()
+                centerX[index] = shape.getLeft() + shape.getWidth() / 2;
+                centerY[index] = shape.getTop() + shape.getHeight() / 2;
+                scaleX[index] = 2 / shape.getWidth();
+                scaleY[index] = 2 / shape.getHeight();
+                limit[index] = 1;
+            }
+            case XRectangle rectangle -> clearQuadratic(index);
+            case XSquare square -> clearQuadratic(index);
+            default -> {
+                clearQuadratic(index);
+                exact[index] = false;
+            }
+        }
+        left[index] = shape.getBoundsLeft();
+        top[index] = shape.getBoundsTop();
+        right[index] = shape.getBoundsRight();
+        bottom[index] = shape.getBoundsBottom();
+    }
+
+    /**
+     * Method to move a shape to the end of the mirror, e.g. after it was brought to the top of the z-order.
+     *
+     * @param index : index of the shape to be moved
+     */
+    public void moveToEnd(int index) {
+        int slot = slotOf(index);
+        XShape shape = shapes[slot];
+        punch(slot);
+        if (holeCount == MAX_HOLES || size == shapes.length) {
+            squeeze();
+        }
+        put(size++, shape);
+    }
+
+    /**
+     * Getter method for a mirrored shape.
+     *
+     * @param index : index of the shape
+     * @return : the shape
+     */
+    public XShape getShape(int index) {
+        return shapes[slotOf(index)];
+    }
+
+    /**
+     * Getter method for the number of mirrored shapes.
+     *
+     * @return : number of shapes
+     */
+    public int size() {
+        return size - holeCount;
+    }
+
+    /**
+     * Method to find the top-most shape containing a point.
+     *
+     * @param x : x coordinate to be checked
+     * @param y : y coordinate to be checked
+     * @return : index of the last shape in the list that contains the point, or -1 if there is none
+     */
+    public int topShapeAt(double x, double y) {
+        return indexOf(VECTORIZED ? Vectorized.topShapeAt(this, x, y) : topShapeAt(x, y, 0, size));
+    }
+
+    /**
+     * Method to find the top-most shape containing a point with the scalar loop only.
+     *
+     * @param x : x coordinate to be checked
+     * @param y : y coordinate to be checked
+     * @return : index of the last shape in the list that contains the point, or -1 if there is none
+     */
+    public int topShapeAtScalar(double x, double y) {
+        return indexOf(topShapeAt(x, y, 0, size));
+    }
+
+    /**
+     * Method to find all shapes whose bounds intersect a region.
+     *
+     * @param left   : x coordinate of the top-left corner of the region
+     * @param top    : y coordinate of the top-left corner of the region
+     * @param width  : width of the region
+     * @param height : height of the region
+     * @return : indexes of the intersecting shapes in z-order
+     */
+    public int[] shapesIntersecting(double left, double top, double width, double height) {
+        // the query may grow the buffer, so it has to run before the buffer is read
+        int count = countShapesIntersecting(left, top, width, height);
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Method to find all shapes whose bounds intersect a region without copying the result, for callers that query on
+     * every frame.
+     *
+     * @param left   : x coordinate of the top-left corner of the region
+     * @param top    : y coordinate of the top-left corner of the region
+     * @param width  : width of the region
+     * @param height : height of the region
+     * @return : number of shapes found, with their indexes in z-order at the start of getFound()
+     */
+    public int countShapesIntersecting(double left, double top, double width, double height) {
+        int count = VECTORIZED ? Vectorized.shapesIntersecting(this, left, top, left + width, top + height)
+                : shapesIntersecting(left, top, left + width, top + height, 0, size, 0);
+        // slots to indexes, both in ascending order
+        for (int i = 0, h = 0; i < count && holeCount > 0; i++) {
+            while (h < holeCount && holes[h] < found[i]) {
+                h++;
+            }
+            found[i] -= h;
+        }
+        return count;
+    }
+
+    /**
+     * Getter method for the result buffer of the last region query. Valid until the next query.
+     *
+     * @return : buffer holding the indexes found by countShapesIntersecting()
+     */
+    public int[] getFound() {
+        return found;
+    }
+
+    /**
+     * Helper method for the scalar loop over a range of the shapes, from the top down.
+     *
+     * @param x     : x coordinate to be checked
+     * @param y     : y coordinate to be checked
+     * @param start : index of the first shape to check
+     * @param end   : index after the last shape to check
+     * @return : index of the top-most shape in the range containing the point, or -1
+     */
+    private int topShapeAt(double x, double y, int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (x >= left[i] && x <= right[i] && y >= top[i] && y <= bottom[i]) {
+                double dx = (x - centerX[i]) * scaleX[i], dy = (y - centerY[i]) * scaleY[i];
+                if (dx * dx + dy * dy <= limit[i] && confirm(i, x, y)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Helper method for the scalar loop of region queries.
+     *
+     * @param regionLeft   : left edge of the region
+     * @param regionTop    : top edge of the region
+     * @param regionRight  : right edge of the region
+     * @param regionBottom : bottom edge of the region
+     * @param start        : index of the first shape to check
+     * @param end          : index after the last shape to check
+     * @param count        : number of shapes found so far
+     * @return : number of shapes found, with their indexes in found
+     */
+    private int shapesIntersecting(double regionLeft, double regionTop, double regionRight, double regionBottom,
+                                   int start, int end, int count) {
+        for (int i = start; i < end; i++) {
+            if (left[i] <= regionRight && right[i] >= regionLeft && top[i] <= regionBottom && bottom[i] >= regionTop) {
+                append(count++, i);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Helper method to append an index to the result buffer of region queries, growing it if needed.
+     *
+     * @param count : number of indexes in the buffer
+     * @param index : index to be appended
+     */
+    private void append(int count, int index) {
+        if (count == found.length) {
+            found = Arrays.copyOf(found, found.length * 2);
+        }
+        found[count] = index;
+    }
+
+    /**
+     * Helper method to confirm a hit of the packed test through the shape itself, for shapes only tested against their
+     * bounds.
+     *
+     * @param i : index of the shape
+     * @param x : x coordinate
+     * @param y : y coordinate
+     * @return : true if the shape contains the point
+     */
+    private boolean confirm(int i, double x, double y) {
+        return exact[i] || shapes[i].contains(x, y);
+    }
+
+    /**
+     * Helper method to find the slot of a shape from its index in the mirrored list.
+     *
+     * @param index : index of the shape
+     * @return : slot of the shape
+     */
+    private int slotOf(int index) {
+        int slot = index;
+        for (int h = 0; h < holeCount && holes[h] <= slot; h++) {
+            slot++;
+        }
+        return slot;
+    }
+
+    /**
+     * Helper method to find the index in the mirrored list of the shape in a slot.
+     *
+     * @param slot : slot of the shape, or -1
+     * @return : index of the shape, or -1
+     */
+    private int indexOf(int slot) {
+        if (slot < 0 || holeCount == 0) {
+            return slot;
+        }
+        // the insertion point is the number of holes below the slot, which is never a hole itself
+        return slot + Arrays.binarySearch(holes, 0, holeCount, slot) + 1;
+    }
+
+    /**
+     * Helper method to turn a slot into a hole, with bounds that no test hits.
+     *
+     * @param slot : slot of the shape that was raised
+     */
+    private void punch(int slot) {
+        shapes[slot] = null;
+        exact[slot] = true;
+        clearQuadratic(slot);
+        // every comparison with NaN is false, also against an unbounded region
+        left[slot] = Double.NaN;
+        top[slot] = Double.NaN;
+        right[slot] = Double.NaN;
+        bottom[slot] = Double.NaN;
+        int h = holeCount++;
+        for (; h > 0 && holes[h - 1] > slot; h--) {
+            holes[h] = holes[h - 1];
+        }
+        holes[h] = slot;
+    }
+
+    /**
+     * Helper method to close the holes by moving the slots between them down, in one pass over the columns.
+     */
+    private void squeeze() {
+        int target = holes[0];
+        for (int h = 0; h < holeCount; h++) {
+            int from = holes[h] + 1;
+            int length = (h + 1 < holeCount ? holes[h + 1] : size) - from;
+            shift(from, target, length);
+            target += length;
+        }
+        Arrays.fill(shapes, target, size, null);
+        size = target;
+        holeCount = 0;
+    }
+
+    /**
+     * Helper method to move a run of slots down.
+     *
+     * @param from   : first slot of the run
+     * @param to     : slot the run is moved to
+     * @param length : number of slots in the run
+     */
+    private void shift(int from, int to, int length) {
+        System.arraycopy(shapes, from, shapes, to, length);
+        System.arraycopy(exact, from, exact, to, length);
+        System.arraycopy(left, from, left, to, length);
+        System.arraycopy(top, from, top, to, length);
+        System.arraycopy(right, from, right, to, length);
+        System.arraycopy(bottom, from, bottom, to, length);
+        System.arraycopy(centerX, from, centerX, to, length);
+        System.arraycopy(centerY, from, centerY, to, length);
+        System.arraycopy(scaleX, from, scaleX, to, length);
+        System.arraycopy(scaleY, from, scaleY, to, length);
+        System.arraycopy(limit, from, limit, to, length);
+    }
+
+    /**
+     * Helper method to set the quadratic term of a shape to always pass.
+     *
+     * @param index : index of the shape
+     */
+    private void clearQuadratic(int index) {
+        centerX[index] = 0;
+        centerY[index] = 0;
+        scaleX[index] = 0;
+        scaleY[index] = 0;
+        limit[index] = 0;
+    }
+
+    /**
+     * Helper method to allocate the arrays, keeping the shapes mirrored so far.
+     *
+     * @param capacity : new capacity
+     */
+    private void allocate(int capacity) {
+        shapes = shapes == null ? new XShape[capacity] : Arrays.copyOf(shapes, capacity);
+        left = grow(left, capacity);
+        top = grow(top, capacity);
+        right = grow(right, capacity);
+        bottom = grow(bottom, capacity);
+        centerX = grow(centerX, capacity);
+        centerY = grow(centerY, capacity);
+        scaleX = grow(scaleX, capacity);
+        scaleY = grow(scaleY, capacity);
+        limit = grow(limit, capacity);
+        exact = exact == null ? new boolean[capacity] : Arrays.copyOf(exact, capacity);
+    }
+
+    /**
+     * Helper method to grow a column.
+     *
+     * @param column   : column, or null
+     * @param capacity : new capacity
+     * @return : the grown column
+     */
+    private static double[] grow(double[] column, int capacity) {
+        return column == null ? new double[capacity] : Arrays.copyOf(column, capacity);
+    }
+
+    /**
+     * Vector API versions of the tests. Kept in their own class so that the incubator module is only loaded when it is
+     * present.
+     */
+    private static final class Vectorized {
+        // widest vector shape the hardware supports well, e.g. 4 doubles with AVX2 or 8 with AVX-512
+        private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+        /**
+         * Method to find the top-most shape containing a point, testing a vector of shapes at a time from the top
+         * down and finishing the bottom of the list with the scalar loop.
+         *
+         * @param kernel : the mirror
+         * @param x      : x coordinate to be checked
+         * @param y      : y coordinate to be checked
+         * @return : index of the top-most shape containing the point, or -1
+         */
+        static int topShapeAt(HitTestKernel kernel, double x, double y) {
+            int lanes = SPECIES.length();
+            int end = kernel.size;
+            for (; end >= lanes; end -= lanes) {
+                int base = end - lanes;
+                VectorMask<Double> mask = DoubleVector.fromArray(SPECIES, kernel.left, base).compare(VectorOperators.LE, x)
+                        .and(DoubleVector.fromArray(SPECIES, kernel.right, base).compare(VectorOperators.GE, x))
+                        .and(DoubleVector.fromArray(SPECIES, kernel.top, base).compare(VectorOperators.LE, y))
+                        .and(DoubleVector.fromArray(SPECIES, kernel.bottom, base).compare(VectorOperators.GE, y));
+                if (!mask.anyTrue()) {
+                    continue;
+                }
+                DoubleVector dx = DoubleVector.broadcast(SPECIES, x).sub(DoubleVector.fromArray(SPECIES, kernel.centerX, base))
+                        .mul(DoubleVector.fromArray(SPECIES, kernel.scaleX, base));
+                DoubleVector dy = DoubleVector.broadcast(SPECIES, y).sub(DoubleVector.fromArray(SPECIES, kernel.centerY, base))
+                        .mul(DoubleVector.fromArray(SPECIES, kernel.scaleY, base));
+                mask = mask.and(dx.mul(dx).add(dy.mul(dy)).compare(VectorOperators.LE,
+                        DoubleVector.fromArray(SPECIES, kernel.limit, base)));
+                // the few vectors with a hit are searched again lane by lane, as VectorMask.toLong() is not compiled to
+                // a vector instruction on JDK 17 and would allocate the mask on every vector
+                if (mask.anyTrue()) {
+                    int hit = kernel.topShapeAt(x, y, base, end);
+                    if (hit >= 0) {
+                        return hit;
+                    }
+                }
+            }
+            return kernel.topShapeAt(x, y, 0, end);
+        }
+
+        /**
+         * Method to find all shapes whose bounds intersect a region, a vector of shapes at a time.
+         *
+         * @param kernel       : the mirror
+         * @param regionLeft   : left edge of the region
+         * @param regionTop    : top edge of the region
+         * @param regionRight  : right edge of the region
+         * @param regionBottom : bottom edge of the region
+         * @return : number of shapes found, with their indexes in kernel.found
+         */
+        static int shapesIntersecting(HitTestKernel kernel, double regionLeft, double regionTop, double regionRight,
+                                      double regionBottom) {
+            int lanes = SPECIES.length();
+            int bound = SPECIES.loopBound(kernel.size);
+            int count = 0;
+            for (int base = 0; base < bound; base += lanes) {
+                VectorMask<Double> mask = DoubleVector.fromArray(SPECIES, kernel.left, base).compare(VectorOperators.LE, regionRight)
+                        .and(DoubleVector.fromArray(SPECIES, kernel.right, base).compare(VectorOperators.GE, regionLeft))
+                        .and(DoubleVector.fromArray(SPECIES, kernel.top, base).compare(VectorOperators.LE, regionBottom))
+                        .and(DoubleVector.fromArray(SPECIES, kernel.bottom, base).compare(VectorOperators.GE, regionTop));
+                // vectors with a hit are collected lane by lane, see topShapeAt()
+                if (mask.anyTrue()) {
+                    count = kernel.shapesIntersecting(regionLeft, regionTop, regionRight, regionBottom, base,
+                            base + lanes, count);
+                }
+            }
+            return kernel.shapesIntersecting(regionLeft, regionTop, regionRight, regionBottom, bound, kernel.size, count);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.drawing_application;
+
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Recorder of the input a document's controllers handle, written to a compact binary trace that InputReplay plays back.
+ * Records the normalized coordinates, button, modifiers and phase of every mouse press, drag and release, every key
+ * press, every change of the shape or colour from the toolbars and every duplication into a grid from the dialog, each
+ * with the time since the one before.
+ * <p>
+ * A trace starts with MAGIC, VERSION and the state of the iModel when recording started: the view-port, the size of the
+ * view-finder, the shape type, the colour, the snap grid and whether shapes snap to other shapes. Every event then
+ * starts with its kind, the controller it went to
+ * (TARGET_MAIN or TARGET_MINI) and the microseconds since the previous event, followed by
+ * <ul>
+ *     <li>mouse: button ordinal, modifiers and the normalized x and y as doubles, 24 bytes in all</li>
+ *     <li>key: modifiers and the name of the key code</li>
+ *     <li>shape: shape type</li>
+ *     <li>colour: colour packed as by ShapeCodec.toRgba()</li>
+ *     <li>duplicate: number of columns and rows of the grid</li>
+ * </ul>
+ */
+public class InputRecorder implements Closeable {
+    // first bytes of every trace, "DRWT", and the version of the format
+    public static final int MAGIC = 0x44525754;
+    public static final byte VERSION = 2;
+    // kinds of events
+    public static final byte PRESSED = 0, DRAGGED = 1, RELEASED = 2, KEY = 3, SHAPE = 4, COLOUR = 5, DUPLICATE = 6;
+    // controllers an event can go to
+    public static final byte TARGET_MAIN = 0, TARGET_MINI = 1;
+    // bits of the modifiers
+    public static final byte SHIFT = 1, CONTROL = 2, ALT = 4, META = 8;
+
+    /*
+        Instance variables to store the stream the trace is written to and the time of the last event.
+     */
+    private final DataOutputStream out;
+    private long lastNanos;
+
+    /**
+     * Default constructor for this class. Creates the trace and writes its header.
+     *
+     * @param path   : file to be written
+     * @param iModel : iModel whose state the replay starts from
+     * @throws IOException : if the file could not be written
+     */
+    public InputRecorder(Path path, InteractionModel iModel) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeDouble(iModel.getViewLeft());
+        out.writeDouble(iModel.getViewTop());
+        out.writeDouble(iModel.getViewFinderWidth());
+        out.writeDouble(iModel.getViewFinderHeight());
+        out.writeInt(iModel.getCurrentShapeType());
+        out.writeInt(ShapeCodec.toRgba((Color) iModel.getCurrentColour()));
+        out.writeDouble(iModel.getSnapGrid());
+        out.writeBoolean(iModel.isSnapToShapes());
+        lastNanos = System.nanoTime();
+    }
+
+    /**
+     * Method to record a mouse event handed to a controller.
+     *
+     * @param target     : controller the event went to, TARGET_MAIN or TARGET_MINI
+     * @param phase      : PRESSED, DRAGGED or RELEASED
+     * @param x          : normalized x coordinate handed to the controller
+     * @param y          : normalized y coordinate handed to the controller
+     * @param mouseEvent : the event
+     */
+    public void mouse(byte target, byte phase, double x, double y, MouseEvent mouseEvent) {
+        try {
+            header(phase, target);
+            out.writeByte(mouseEvent.getButton().ordinal());
+            out.writeByte(modifiers(mouseEvent.isShiftDown(), mouseEvent.isControlDown(), mouseEvent.isAltDown(), mouseEvent.isMetaDown()));
+            out.writeDouble(x);
+            out.writeDouble(y);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Method to record a key press handed to a controller.
+     *
+     * @param target   : controller the event went to, TARGET_MAIN or TARGET_MINI
+     * @param keyEvent : the event
+     */
+    public void key(byte target, KeyEvent keyEvent) {
+        try {
+            header(KEY, target);
+            out.writeByte(modifiers(keyEvent.isShiftDown(), keyEvent.isControlDown(), keyEvent.isAltDown(), keyEvent.isMetaDown()));
+            out.writeUTF(keyEvent.getCode().name());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Method to record a change of the shape to be drawn.
+     *
+     * @param target : controller the change went to, TARGET_MAIN or TARGET_MINI
+     * @param shape  : shape type
+     */
+    public void shape(byte target, int shape) {
+        try {
+            header(SHAPE, target);
+            out.writeInt(shape);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Method to record a change of the colour to draw with.
+     *
+     * @param target : controller the change went to, TARGET_MAIN or TARGET_MINI
+     * @param colour : new colour
+     */
+    public void colour(byte target, Color colour) {
+        try {
+            header(COLOUR, target);
+            out.writeInt(ShapeCodec.toRgba(colour));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Method to record a duplication of the selected shape into a grid.
+     *
+     * @param target  : controller the duplication went to, TARGET_MAIN or TARGET_MINI
+     * @param columns : number of columns of the grid
+     * @param rows    : number of rows of the grid
+     */
+    public void duplicate(byte target, int columns, int rows) {
+        try {
+            header(DUPLICATE, target);
+            out.writeInt(columns);
+            out.writeInt(rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Method to finish the trace and close the file.
+     *
+     * @throws IOException : if the trace could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Helper method to write the kind, target and time of an event.
+     *
+     * @param kind   : kind of the event
+     * @param target : controller the event went to
+     * @throws IOException : if the trace could not be written
+     */
+    private void header(byte kind, byte target) throws IOException {
+        long now = System.nanoTime();
+        out.writeByte(kind);
+        out.writeByte(target);
+        out.writeInt((int) Math.min(Integer.MAX_VALUE, (now - lastNanos) / 1000));
+        lastNanos = now;
+    }
+
+    /**
+     * Helper method to pack the modifier keys held during an event.
+     *
+     * @param shift   : SHIFT held
+     * @param control : CONTROL held
+     * @param alt     : ALT held
+     * @param meta    : META held
+     * @return : modifier bits
+     */
+    private static int modifiers(boolean shift, boolean control, boolean alt, boolean meta) {
+        return (shift ? SHIFT : 0) | (control ? CONTROL : 0) | (alt ? ALT : 0) | (meta ? META : 0);
+    }
+}
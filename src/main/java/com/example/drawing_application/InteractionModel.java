@@ -4,6 +4,7 @@ import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * iModel for the MVC architecture. Stores the selected colour, shape and supports method to get and set them. Uses
@@ -19,6 +20,21 @@ public class InteractionModel {
     double viewLeft, viewTop, viewFinderWidth, viewFinderHeight;
     int currentShapeType;
     double resizeHandleSize;
+    // an unbounded view-port is not kept within the document, see ChunkedWorld
+    boolean unbounded;
+    // copies of the shapes last copied, not in any model, empty if nothing was copied
+    List<XShape> clipboard = List.of();
+    // spacing of the grid shapes snap to, 0 for none, and whether they snap to the edges and centres of other shapes
+    double snapGrid;
+    boolean snapToShapes;
+    // alignment guides shown while a shape is dragged, packed four per guide as x1, y1, x2 and y2
+    double[] guides = new double[0];
+    /*
+        Instance variables to store the event reused for every change of the view-port and whether subscribers are
+        being told of a change, in which case a change they make gets an event of its own.
+     */
+    private final ViewportEvent viewportEvent = new ViewportEvent();
+    private boolean notifying;
 
 
     /**
@@ -49,15 +65,18 @@ public class InteractionModel {
      * @param viewLeft : value to be used
      */
     public void setViewLeft(double viewLeft) {
+        double oldLeft = this.viewLeft;
         // bounds of the view-port
-        if (viewLeft < 0.000) {
+        if (unbounded) {
+            this.viewLeft = viewLeft;
+        } else if (viewLeft < 0.000) {
             this.viewLeft = 0.000;
         } else if (viewLeft > (0.999 - viewFinderWidth)) {
             this.viewLeft = (0.999 - viewFinderWidth);
         } else {
             this.viewLeft = viewLeft;
         }
-        notifySubscriber();
+        notifyViewportChanged(oldLeft, viewTop, viewFinderWidth, viewFinderHeight);
     }
 
     /**
@@ -75,15 +94,27 @@ public class InteractionModel {
      * @param viewTop : value to be used
      */
     public void setViewTop(double viewTop) {
+        double oldTop = this.viewTop;
         // bounds of the view-port
-        if (viewTop < 0.000) {
+        if (unbounded) {
+            this.viewTop = viewTop;
+        } else if (viewTop < 0.000) {
             this.viewTop = 0.000;
         } else if (viewTop > (0.999 - viewFinderHeight)) {
             this.viewTop = 0.999 - viewFinderHeight;
         } else {
             this.viewTop = viewTop;
         }
-        notifySubscriber();
+        notifyViewportChanged(viewLeft, oldTop, viewFinderWidth, viewFinderHeight);
+    }
+
+    /**
+     * Method to let the view-port move past the edges of the document, for an unbounded canvas.
+     *
+     * @param unbounded : true to stop keeping the view-port within 0..1
+     */
+    public void setUnbounded(boolean unbounded) {
+        this.unbounded = unbounded;
     }
 
     /**
@@ -104,6 +135,15 @@ public class InteractionModel {
         subs.add(subscriber);
     }
 
+    /**
+     * Method to remove a subscriber, e.g. a toolbar moving on to the iModel of another document.
+     *
+     * @param subscriber : subscriber to be removed
+     */
+    public void removeISubscriber(InteractionModelSubscriber subscriber) {
+        subs.remove(subscriber);
+    }
+
     /**
      * Method to notify all the subscribers.
      */
@@ -111,6 +151,30 @@ public class InteractionModel {
         subs.forEach(InteractionModelSubscriber::iModelChanged);
     }
 
+    /**
+     * Method to notify all the subscribers of a change of the view-port. Subscribers that do not look at the event get
+     * it through the default iModelChanged(ViewportEvent), which treats it as any other change.
+     *
+     * @param oldLeft   : x coordinate of the view-port before the change
+     * @param oldTop    : y coordinate of the view-port before the change
+     * @param oldWidth  : width of the view-port before the change
+     * @param oldHeight : height of the view-port before the change
+     */
+    private void notifyViewportChanged(double oldLeft, double oldTop, double oldWidth, double oldHeight) {
+        // e.g. ChunkedWorld moves the view-port along with the origin while being told of a pan
+        ViewportEvent event = (notifying ? new ViewportEvent() : viewportEvent).set(oldLeft, oldTop, oldWidth, oldHeight,
+                viewLeft, viewTop, viewFinderWidth, viewFinderHeight);
+        boolean nested = notifying;
+        notifying = true;
+        try {
+            for (int i = 0; i < subs.size(); i++) {
+                subs.get(i).iModelChanged(event);
+            }
+        } finally {
+            notifying = nested;
+        }
+    }
+
     /**
      * Method to get the current selected colour.
      *
@@ -149,6 +213,20 @@ public class InteractionModel {
         notifySubscriber();
     }
 
+    /**
+     * Method to extend the selected freehand stroke while it is drawn. The stroke takes the current selected colour.
+     *
+     * @param x : x coordinate of the new sample
+     * @param y : y coordinate of the new sample
+     */
+    public void addStrokePoint(double x, double y) {
+        if (selectedShape instanceof XFreehand stroke) {
+            stroke.setColor(currentColour);
+            stroke.addPoint(x, y);
+            notifySubscriber();
+        }
+    }
+
     /**
      * Method to get the current selected shape.
      *
@@ -169,13 +247,18 @@ public class InteractionModel {
     }
 
     /**
-     * Method to move the selected shape.
+     * Method to move the selected shape. A shape in a model is moved through DrawingModel.moveShape(), so that the
+     * model's indexes and subscribers see the move.
      *
-     * @param x : new x coordinate
-     * @param y : new y coordinate
+     * @param x : distance to move by along x, negated as for XShape.move()
+     * @param y : distance to move by along y, negated as for XShape.move()
      */
     public void moveShape(double x, double y) {
-        selectedShape.move(x, y);
+        if (selectedShape.model != null) {
+            selectedShape.model.moveShape(selectedShape, -x, -y);
+        } else {
+            selectedShape.move(x, y);
+        }
         notifySubscriber();
     }
 
@@ -194,8 +277,9 @@ public class InteractionModel {
      * @param viewFinderWidth : new width of the view-port
      */
     public void setViewFinderWidth(double viewFinderWidth) {
+        double oldWidth = this.viewFinderWidth;
         this.viewFinderWidth = viewFinderWidth;
-        notifySubscriber();
+        notifyViewportChanged(viewLeft, viewTop, oldWidth, viewFinderHeight);
     }
 
     /**
@@ -213,8 +297,9 @@ public class InteractionModel {
      * @param viewFinderHeight : new height of the view-port
      */
     public void setViewFinderHeight(double viewFinderHeight) {
+        double oldHeight = this.viewFinderHeight;
         this.viewFinderHeight = viewFinderHeight;
-        notifySubscriber();
+        notifyViewportChanged(viewLeft, viewTop, viewFinderWidth, oldHeight);
     }
 
     /**
@@ -234,4 +319,81 @@ public class InteractionModel {
     public void setCurrentShapeType(int newShape) {
         this.currentShapeType = newShape;
     }
+
+    /**
+     * Getter method for the shapes last copied.
+     *
+     * @return : copies of the shapes, not in any model
+     */
+    public List<XShape> getClipboard() {
+        return clipboard;
+    }
+
+    /**
+     * Setter method for the shapes last copied.
+     *
+     * @param clipboard : copies of the shapes, not in any model
+     */
+    public void setClipboard(List<XShape> clipboard) {
+        this.clipboard = clipboard;
+    }
+
+    /**
+     * Getter method for the spacing of the snapping grid.
+     *
+     * @return : spacing of the grid, in normalized coordinates, 0 if shapes do not snap to a grid
+     */
+    public double getSnapGrid() {
+        return snapGrid;
+    }
+
+    /**
+     * Setter method for the spacing of the snapping grid.
+     *
+     * @param snapGrid : spacing of the grid, in normalized coordinates, 0 to stop snapping to a grid
+     */
+    public void setSnapGrid(double snapGrid) {
+        this.snapGrid = snapGrid;
+    }
+
+    /**
+     * Getter method for whether shapes snap to the edges and centres of other shapes.
+     *
+     * @return : true if shapes snap to other shapes
+     */
+    public boolean isSnapToShapes() {
+        return snapToShapes;
+    }
+
+    /**
+     * Setter method for whether shapes snap to the edges and centres of other shapes.
+     *
+     * @param snapToShapes : true to snap to other shapes
+     */
+    public void setSnapToShapes(boolean snapToShapes) {
+        this.snapToShapes = snapToShapes;
+    }
+
+    /**
+     * Getter method for the alignment guides.
+     *
+     * @return : guides packed four per guide as x1, y1, x2 and y2, empty if none are shown
+     */
+    public double[] getGuides() {
+        return guides;
+    }
+
+    /**
+     * Setter method for the alignment guides. Guides are set along with a change of the model on every tick of a drag,
+     * so the subscribers are only notified when the last guides are taken away.
+     *
+     * @param guides : guides packed four per guide as x1, y1, x2 and y2, empty to show none
+     */
+    public void setGuides(double[] guides) {
+        boolean cleared = guides.length == 0 && this.guides.length > 0;
+        this.guides = guides;
+        if (cleared) {
+            notifySubscriber();
+        }
+    }
 }
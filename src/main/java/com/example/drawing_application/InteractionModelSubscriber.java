@@ -4,5 +4,18 @@ package com.example.drawing_application;
  * Interface for subscribers to implement methods to get notifications for iModel changes.
  */
 public interface InteractionModelSubscriber {
+    /**
+     * Method for receiving notifications of iModel changes other than the view-port, e.g. the selection or colour.
+     */
     void iModelChanged();
-}
\ No newline at end of file
+
+    /**
+     * Method for receiving a change of the view-port. Subscribers that do not look at the event treat it as any other
+     * change.
+     *
+     * @param event : the view-port before and after the change
+     */
+    default void iModelChanged(ViewportEvent event) {
+        iModelChanged();
+    }
+}
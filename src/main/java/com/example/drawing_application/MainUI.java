@@ -28,19 +28,59 @@ public class MainUI extends BorderPane {
      * @param colourToolbar : colour toolbar to be placed on the right
      */
     public void setUI(ShapeToolbar shapeToolbar, DrawingView drawingView, DrawingView miniView, ColourToolbar colourToolbar) {
-        this.setLeft(shapeToolbar);
+        setDrawingArea(drawingView, miniView);
+        setToolbars(shapeToolbar, colourToolbar);
+    }
+
+    /**
+     * Method to lay out the drawing view and the mini view in the center. Can be shown on its own before the toolbars
+     * are added.
+     *
+     * @param drawingView : main drawing view to be placed on the center
+     * @param miniView    : mini drawing view to be placed on top left of the drawing view
+     */
+    public void setDrawingArea(DrawingView drawingView, DrawingView miniView) {
         this.setCenter(centerPane);
-        this.setRight(colourToolbar);
+        layOutDrawingArea(centerPane, drawingView, miniView);
+    }
+
+    /**
+     * Method to show the tabs of several open documents in the center instead of a single drawing area.
+     *
+     * @param documents : tabs of the open documents
+     */
+    public void setDocuments(DocumentTabs documents) {
+        this.setCenter(documents);
+    }
 
+    /**
+     * Method to lay out a drawing view with its mini view on top left in the given pane.
+     *
+     * @param pane        : pane to lay out the views in
+     * @param drawingView : main drawing view to be placed on the center
+     * @param miniView    : mini drawing view to be placed on top left of the drawing view
+     */
+    public static void layOutDrawingArea(StackPane pane, DrawingView drawingView, DrawingView miniView) {
         // set mini-drawing view's background as grey to differentiate it from the main drawing view
         miniView.setStyle("-fx-background-color: grey;");
 
         // add and lay out all components
-        centerPane.getChildren().addAll(miniView, drawingView);
+        pane.getChildren().addAll(miniView, drawingView);
         StackPane.setAlignment(miniView, Pos.TOP_LEFT);
         StackPane.setAlignment(drawingView, Pos.CENTER);
 
         // push the mini view to the front to let it receive the mouse/keyboard events
         miniView.toFront();
     }
+
+    /**
+     * Method to add the toolbars on either side of the drawing area.
+     *
+     * @param shapeToolbar  : shape toolbar to be placed on the left
+     * @param colourToolbar : colour toolbar to be placed on the right
+     */
+    public void setToolbars(ShapeToolbar shapeToolbar, ColourToolbar colourToolbar) {
+        this.setLeft(shapeToolbar);
+        this.setRight(colourToolbar);
+    }
 }
@@ -1,12 +1,42 @@
 package com.example.drawing_application;
 
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
 /**
  * View class for the mini-view that has the canvas for the user to draw. Subscribes to model and interactive model for changes.
- * An extension of the main Drawing View. Adds the functionality to draw the view-finder rectangle.
+ * An extension of the main Drawing View. Adds the functionality to draw the view-finder rectangle. For an unbounded
+ * document opened from a file it shows the whole world instead, drawing the file's overview pyramid under the shapes
+ * that are loaded. Otherwise the shapes are drawn from a raster pyramid of the document kept up to date with the
+ * model, if one is set.
  */
 public class MiniDrawingView extends DrawingView {
+    /*
+        Instance variables to store the world of an unbounded document, the part of it shown - relative to the origin
+        chunk, in chunks - and the level of the pyramid drawn with the tiles read from it so far, null where a tile is
+        empty.
+     */
+    private ChunkedWorld world;
+    private double overviewLeft, overviewTop, overviewSpan = 1;
+    private int overviewLevel = -1;
+    private final HashMap<Long, WritableImage> overviewTiles = new HashMap<>();
+
+    /*
+        Instance variables to store the raster pyramid of the document, the image of the level drawn and the version of
+        every tile uploaded to it.
+     */
+    private OverviewPyramid pyramid;
+    private WritableImage pyramidImage;
+    private int pyramidLevel = -1;
+    private long[] uploaded;
+    private boolean showingFile;
+
     /**
      * Default constructor for this class. Calls super's constructor and sets the size of the document to draw the full
      * canvas.
@@ -25,18 +55,270 @@ public class MiniDrawingView extends DrawingView {
     }
 
     /**
-     * Over-ridden draw method to add the functionality of drawing the view-finder.
+     * Method to show the whole world of an unbounded document. The mini-view then draws itself directly, as the
+     * overview pyramid sits under the shapes.
+     *
+     * @param world : world of the document
+     */
+    public void setWorld(ChunkedWorld world) {
+        this.world = world;
+        setTileRenderer(null);
+    }
+
+    /**
+     * Method to draw the shapes from a raster pyramid of the document instead of one by one. The mini-view then draws
+     * itself directly and tells the pyramid about every change of the model.
+     *
+     * @param pyramid : pyramid of the document's model
+     */
+    public void setPyramid(OverviewPyramid pyramid) {
+        this.pyramid = pyramid;
+        setTileRenderer(null);
+    }
+
+    /**
+     * Over-ridden method for receiving publish notifications from model. Marks the whole pyramid dirty.
      */
     @Override
-    protected void draw() {
-        super.draw();
+    public void modelChanged() {
+        if (pyramid != null) {
+            pyramid.invalidate();
+        }
+        super.modelChanged();
+    }
+
+    /**
+     * Over-ridden method for receiving typed changes from model. Marks the tiles of the pyramid the change touches
+     * dirty.
+     *
+     * @param event : the change
+     */
+    @Override
+    public void modelChanged(ModelEvent event) {
+        if (pyramid != null) {
+            pyramid.invalidate(event);
+        }
+        super.modelChanged(event);
+    }
+
+    /**
+     * Over-ridden underlay method to draw the overview pyramid of the file the world was opened from, at the level
+     * closest to the size of the view, or else the document's own pyramid.
+     */
+    @Override
+    protected void drawUnderlay() {
+        ChunkFile file = world == null ? null : world.getFile();
+        showingFile = file != null && file.getLevels() > 0;
+        if (!showingFile) {
+            overviewLeft = overviewTop = 0;
+            overviewSpan = 1;
+            if (pyramid != null) {
+                drawPyramid();
+            }
+            return;
+        }
+        // the file's chunks and the origin chunk, squared up
+        int left = Math.min(file.getLeft(), world.getOriginX()), right = Math.max(file.getRight(), world.getOriginX());
+        int top = Math.min(file.getTop(), world.getOriginY()), bottom = Math.max(file.getBottom(), world.getOriginY());
+        overviewSpan = Math.max(right - left, bottom - top) + 1;
+        overviewLeft = left - world.getOriginX() - (overviewSpan - (right - left + 1)) / 2;
+        overviewTop = top - world.getOriginY() - (overviewSpan - (bottom - top + 1)) / 2;
+
+        // a tile of level n covers 2^n chunks
+        int level = (int) Math.floor(Math.log(overviewSpan * ChunkFile.TILE_SIZE / docWidth) / Math.log(2));
+        level = Math.max(0, Math.min(file.getLevels() - 1, level));
+        if (level != overviewLevel) {
+            overviewTiles.clear();
+            overviewLevel = level;
+        }
+        int chunks = 1 << level;
+        double tileSize = chunks * getPixelsPerUnitX();
+        int firstX = Math.floorDiv((int) Math.floor(world.getOriginX() + overviewLeft) - file.getLeft(), chunks);
+        int firstY = Math.floorDiv((int) Math.floor(world.getOriginY() + overviewTop) - file.getTop(), chunks);
+        int lastX = Math.floorDiv((int) Math.ceil(world.getOriginX() + overviewLeft + overviewSpan) - file.getLeft(), chunks);
+        int lastY = Math.floorDiv((int) Math.ceil(world.getOriginY() + overviewTop + overviewSpan) - file.getTop(), chunks);
+        for (int y = Math.max(0, firstY); y <= lastY; y++) {
+            for (int x = Math.max(0, firstX); x <= lastX; x++) {
+                WritableImage tile = readTile(file, level, x, y);
+                if (tile != null) {
+                    double tileLeft = (file.getLeft() + (double) x * chunks - world.getOriginX() - overviewLeft) * getPixelsPerUnitX();
+                    double tileTop = (file.getTop() + (double) y * chunks - world.getOriginY() - overviewTop) * getPixelsPerUnitY();
+                    gc.drawImage(tile, tileLeft, tileTop, tileSize, tileSize);
+                }
+            }
+        }
+    }
+
+    /**
+     * Over-ridden method to draw the shapes of the model, unless they are drawn by the document's pyramid.
+     */
+    @Override
+    protected void drawShapes() {
+        if (pyramid == null || showingFile) {
+            super.drawShapes();
+        }
+    }
+
+    /**
+     * Helper method to draw the level of the document's pyramid closest to the size of the view, uploading only the
+     * tiles that changed since the last frame.
+     */
+    private void drawPyramid() {
+        int level = pyramid.getLevelFor(Math.max(docWidth, docHeight));
+        int tiles = pyramid.getTiles(level);
+        if (level != pyramidLevel || pyramidImage == null) {
+            pyramidLevel = level;
+            pyramidImage = new WritableImage(pyramid.getSize(level), pyramid.getSize(level));
+            uploaded = new long[tiles * tiles];
+            Arrays.fill(uploaded, -1);
+        }
+        pyramid.update(level);
+        for (int row = 0; row < tiles; row++) {
+            for (int col = 0; col < tiles; col++) {
+                long version = pyramid.getVersion(level, col, row);
+                if (uploaded[row * tiles + col] != version) {
+                    uploaded[row * tiles + col] = version;
+                    pyramidImage.getPixelWriter().setPixels(col * OverviewPyramid.TILE_SIZE, row * OverviewPyramid.TILE_SIZE,
+                            OverviewPyramid.TILE_SIZE, OverviewPyramid.TILE_SIZE, PixelFormat.getIntArgbPreInstance(),
+                            pyramid.getTile(level, col, row), 0, OverviewPyramid.TILE_SIZE);
+                }
+            }
+        }
+        gc.drawImage(pyramidImage, 0, 0, docWidth, docHeight);
+    }
+
+    /**
+     * Over-ridden method to return the memory held by the canvas' pixels and the document's pyramid.
+     *
+     * @return : size of the canvas and pyramid in bytes
+     */
+    @Override
+    public long cacheBytes() {
+        return super.cacheBytes() + (pyramid == null ? 0 : pyramid.bytes());
+    }
+
+    /**
+     * Over-ridden method to release the pixels of the pyramid of a hidden view along with its canvas.
+     */
+    @Override
+    public void releaseCache() {
+        super.releaseCache();
+        if (pyramid != null && released) {
+            pyramid.release();
+            pyramidImage = null;
+        }
+    }
+
+    /**
+     * Helper method to get a tile of the overview pyramid as an image, reading it from the file the first time. Tiles
+     * are small, so they are read on the spot.
+     *
+     * @param file  : file the world was opened from
+     * @param level : level of the pyramid
+     * @param x     : column of the tile
+     * @param y     : row of the tile
+     * @return : image of the tile, or null if nothing is drawn on it
+     */
+    private WritableImage readTile(ChunkFile file, int level, int x, int y) {
+        long key = ChunkFile.key(x, y);
+        if (overviewTiles.containsKey(key)) {
+            return overviewTiles.get(key);
+        }
+        WritableImage image = null;
+        try {
+            int[] pixels = file.readTile(level, x, y);
+            if (pixels != null) {
+                image = new WritableImage(ChunkFile.TILE_SIZE, ChunkFile.TILE_SIZE);
+                image.getPixelWriter().setPixels(0, 0, ChunkFile.TILE_SIZE, ChunkFile.TILE_SIZE, PixelFormat.getIntArgbPreInstance(), pixels, 0, ChunkFile.TILE_SIZE);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the overview", e);
+        }
+        overviewTiles.put(key, image);
+        return image;
+    }
+
+    /**
+     * Over-ridden helper method to normalize the x coordinate of a mouse event, in the part of the world shown.
+     *
+     * @param x : x coordinate in pixels
+     * @return : normalized x coordinate
+     */
+    @Override
+    protected double normalizeX(double x) {
+        return x / getPixelsPerUnitX() + overviewLeft;
+    }
+
+    /**
+     * Over-ridden helper method to normalize the y coordinate of a mouse event, in the part of the world shown.
+     *
+     * @param y : y coordinate in pixels
+     * @return : normalized y coordinate
+     */
+    @Override
+    protected double normalizeY(double y) {
+        return y / getPixelsPerUnitY() + overviewTop;
+    }
+
+    /**
+     * Over-ridden helper method to find how many pixels a normalized distance along x takes: the view shows the whole
+     * document, or the whole world of an unbounded one.
+     *
+     * @return : pixels per normalized unit
+     */
+    @Override
+    protected double getPixelsPerUnitX() {
+        return docWidth / overviewSpan;
+    }
+
+    /**
+     * Over-ridden helper method to find how many pixels a normalized distance along y takes: the view shows the whole
+     * document, or the whole world of an unbounded one.
+     *
+     * @return : pixels per normalized unit
+     */
+    @Override
+    protected double getPixelsPerUnitY() {
+        return docHeight / overviewSpan;
+    }
+
+    /**
+     * Over-ridden helper method to check if the bounds of a shape touch the part of the document, or world, shown.
+     *
+     * @param shape : shape to be checked
+     * @return : true if the shape may be visible
+     */
+    @Override
+    protected boolean isVisible(XShape shape) {
+        double margin = 1 / getPixelsPerUnitX();
+        return shape.getBoundsRight() >= overviewLeft - margin && shape.getBoundsLeft() <= overviewLeft + overviewSpan + margin
+                && shape.getBoundsBottom() >= overviewTop - margin && shape.getBoundsTop() <= overviewTop + overviewSpan + margin;
+    }
+
+    /**
+     * Over-ridden overlay method to add the functionality of drawing the view-finder.
+     */
+    @Override
+    protected void drawOverlay() {
         gc.setStroke(Color.YELLOW);
         gc.setLineWidth(2);
-        gc.strokeRect(iModel.getViewLeft() * docWidth, iModel.getViewTop() * docHeight, iModel.getViewFinderWidth() * docWidth, iModel.getViewFinderHeight() * docHeight);
+        gc.strokeRect((iModel.getViewLeft() - overviewLeft) * getPixelsPerUnitX(), (iModel.getViewTop() - overviewTop) * getPixelsPerUnitY(), iModel.getViewFinderWidth() * getPixelsPerUnitX(), iModel.getViewFinderHeight() * getPixelsPerUnitY());
         gc.setStroke(Color.BLACK);
         gc.setLineWidth(1);
     }
 
+    /**
+     * Over-ridden helper method to check if a change of the model is visible. Mini-view shows the whole document,
+     * therefore every change is.
+     *
+     * @param event : the change
+     * @return : always true
+     */
+    @Override
+    protected boolean showsChange(ModelEvent event) {
+        return true;
+    }
+
     /**
      * Over-ridden helper method to calculate the de-normalized coordinates. Mini-view draws all the shapes on the canvas
      * therefore does not need the values to be adjusted based on the view-port.
@@ -45,10 +327,15 @@ public class MiniDrawingView extends DrawingView {
      */
     @Override
     protected void deNormalize(XShape shape) {
-        shapeLeft = (shape.getLeft()) * docWidth;
-        shapeTop = (shape.getTop()) * docHeight;
-        shapeWidth = shape.getWidth() * docWidth;
-        shapeHeight = shape.getHeight() * docHeight;
+        shapeLeft = (shape.getLeft() - overviewLeft) * getPixelsPerUnitX();
+        shapeTop = (shape.getTop() - overviewTop) * getPixelsPerUnitY();
+        shapeWidth = shape.getWidth() * getPixelsPerUnitX();
+        shapeHeight = shape.getHeight() * getPixelsPerUnitY();
+        // the size of a line is its other end point
+        if (shape instanceof XLine) {
+            shapeWidth -= overviewLeft * getPixelsPerUnitX();
+            shapeHeight -= overviewTop * getPixelsPerUnitY();
+        }
     }
 
     /**
@@ -0,0 +1,188 @@
+package com.example.drawing_application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Typed change of a DrawingModel, passed to ModelSubscriber.modelChanged(ModelEvent). Holds the kind of change, the
+ * shapes affected and their bounds before and after the change, so that subscribers can limit their work to the region
+ * that changed.
+ * <p>
+ * Bounds are packed four per shape, in the order of the shapes, as left, top, right and bottom (see
+ * XShape.getBoundsLeft() etc.).
+ * <p>
+ * A model describes the changes of a single shape it makes on every tick of a drag with one event it reuses, so
+ * subscribers are not to keep an event past modelChanged().
+ */
+public class ModelEvent {
+    /**
+     * Kinds of changes.
+     */
+    public enum Type {
+        ADDED, REMOVED, MOVED, RESIZED, RECOLOURED
+    }
+
+    /*
+        Instance variables to store the kind of change, the affected shapes and their packed bounds before and after.
+     */
+    private Type type;
+    private final List<XShape> shapes;
+    private double[] oldBounds;
+    private double[] newBounds;
+
+    /*
+        Instance variables to store the shape of a reused single-shape event, null for other events.
+     */
+    private final ArrayList<XShape> single;
+
+    /**
+     * Default constructor for this class. Takes the bounds after the change from the shapes, so it is to be created
+     * once the change has been made.
+     *
+     * @param type      : kind of change
+     * @param shapes    : affected shapes
+     * @param oldBounds : packed bounds of the shapes before the change, null for added shapes
+     */
+    public ModelEvent(Type type, List<XShape> shapes, double[] oldBounds) {
+        this.type = type;
+        this.shapes = shapes;
+        this.oldBounds = oldBounds;
+        this.newBounds = type == Type.REMOVED ? null : boundsOf(shapes);
+        this.single = null;
+    }
+
+    /**
+     * Constructor for a single-shape event to be reused for change after change, see before() and after().
+     */
+    ModelEvent() {
+        this.single = new ArrayList<>(1);
+        this.single.add(null);
+        this.shapes = Collections.unmodifiableList(single);
+        this.oldBounds = new double[4];
+        this.newBounds = new double[4];
+    }
+
+    /**
+     * Method to start describing the move or resize of a single shape with a reused event, before it is made.
+     *
+     * @param type  : MOVED or RESIZED
+     * @param shape : the shape about to change
+     * @return : this event
+     */
+    ModelEvent before(Type type, XShape shape) {
+        this.type = type;
+        single.set(0, shape);
+        pack(shape, oldBounds, 0);
+        return this;
+    }
+
+    /**
+     * Method to finish describing the change of a single shape started by before(), once it has been made.
+     *
+     * @return : this event
+     */
+    ModelEvent after() {
+        pack(shapes.get(0), newBounds, 0);
+        return this;
+    }
+
+    /**
+     * Getter method for the kind of change.
+     *
+     * @return : kind of change
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Getter method for the affected shapes.
+     *
+     * @return : affected shapes
+     */
+    public List<XShape> getShapes() {
+        return shapes;
+    }
+
+    /**
+     * Getter method for the packed bounds of the shapes before the change.
+     *
+     * @return : bounds before the change, null for added shapes
+     */
+    public double[] getOldBounds() {
+        return oldBounds;
+    }
+
+    /**
+     * Getter method for the packed bounds of the shapes after the change.
+     *
+     * @return : bounds after the change, null for removed shapes
+     */
+    public double[] getNewBounds() {
+        return newBounds;
+    }
+
+    /**
+     * Method to check if the change touches a region, before or after it was made.
+     *
+     * @param left   : x coordinate of the left edge of the region
+     * @param top    : y coordinate of the top edge of the region
+     * @param right  : x coordinate of the right edge of the region
+     * @param bottom : y coordinate of the bottom edge of the region
+     * @return : true if the old or new bounds of any affected shape intersect the region
+     */
+    public boolean intersects(double left, double top, double right, double bottom) {
+        return intersects(oldBounds, left, top, right, bottom) || intersects(newBounds, left, top, right, bottom);
+    }
+
+    /**
+     * Method to pack the current bounds of shapes.
+     *
+     * @param shapes : shapes to be measured
+     * @return : packed bounds
+     */
+    public static double[] boundsOf(List<XShape> shapes) {
+        double[] bounds = new double[shapes.size() * 4];
+        for (int i = 0; i < shapes.size(); i++) {
+            pack(shapes.get(i), bounds, i * 4);
+        }
+        return bounds;
+    }
+
+    /**
+     * Helper method to pack the current bounds of a shape.
+     *
+     * @param shape  : shape to be measured
+     * @param bounds : array receiving the bounds
+     * @param offset : index of the left edge in the array
+     */
+    private static void pack(XShape shape, double[] bounds, int offset) {
+        bounds[offset] = shape.getBoundsLeft();
+        bounds[offset + 1] = shape.getBoundsTop();
+        bounds[offset + 2] = shape.getBoundsRight();
+        bounds[offset + 3] = shape.getBoundsBottom();
+    }
+
+    /**
+     * Helper method to check packed bounds against a region.
+     *
+     * @param bounds : packed bounds, or null
+     * @param left   : x coordinate of the left edge of the region
+     * @param top    : y coordinate of the top edge of the region
+     * @param right  : x coordinate of the right edge of the region
+     * @param bottom : y coordinate of the bottom edge of the region
+     * @return : true if any of the bounds intersect the region
+     */
+    private static boolean intersects(double[] bounds, double left, double top, double right, double bottom) {
+        if (bounds == null) {
+            return false;
+        }
+        for (int i = 0; i < bounds.length; i += 4) {
+            if (bounds[i] <= right && bounds[i + 2] >= left && bounds[i + 1] <= bottom && bounds[i + 3] >= top) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
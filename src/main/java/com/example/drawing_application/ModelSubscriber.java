@@ -4,5 +4,19 @@ package com.example.drawing_application;
  * Interface for subscribers to implement methods to get notifications for model changes.
  */
 public interface ModelSubscriber {
+    /**
+     * Method for receiving notifications that the model changed in a way not described by an event, e.g. a batch of
+     * remote changes. Subscribers should assume that everything changed.
+     */
     void modelChanged();
-}
\ No newline at end of file
+
+    /**
+     * Method for receiving a typed change of the model. Subscribers that do not look at the event treat it as any other
+     * change.
+     *
+     * @param event : the change, with the affected shapes and their old and new bounds
+     */
+    default void modelChanged(ModelEvent event) {
+        modelChanged();
+    }
+}
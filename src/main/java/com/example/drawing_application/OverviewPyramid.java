@@ -0,0 +1,290 @@
+package com.example.drawing_application;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Raster pyramid of the document for views that show it zoomed out, such as the mini-view. Level 0 holds the document
+ * at BASE_SIZE pixels a side and every further level halves the resolution, down to a single tile. Every level is split
+ * into tiles of TILE_SIZE pixels.
+ * <p>
+ * Changes of the model mark the level 0 tiles their bounds touch, and the tiles above those, dirty. Dirty tiles are
+ * brought up to date when a level is read: a tile of level 0 by drawing the shapes intersecting it from a region query
+ * of the model, a tile above by shrinking the four tiles below it. A view drawing a level then pays for its size and
+ * the tiles that changed, not for the number of shapes.
+ * <p>
+ * Enabled by default, run with -Ddrawing.overviewPyramid=false to draw the mini-view from the shapes.
+ */
+public class OverviewPyramid {
+    // whether mini-views draw from a pyramid
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("drawing.overviewPyramid", "true"));
+    // width and height of a tile in pixels
+    public static final int TILE_SIZE = 64;
+    // tiles along each side of level 0
+    private static final int BASE_TILES = 8;
+    // width and height of level 0 in pixels
+    public static final int BASE_SIZE = BASE_TILES * TILE_SIZE;
+
+    /*
+        Instance variables to store the model the pyramid shows and the shape that was on top of it when it was last
+        brought up to date, as selecting a shape raises it without a change of the model.
+     */
+    private final DrawingModel model;
+    private XShape top;
+
+    /*
+        Instance variables to store the pixels of every tile by level, row-major, whether each tile is dirty and how
+        often it has been redrawn, so that a view only uploads the tiles that changed. The pixels, and a rasterizer for
+        every tile of level 0, are allocated on first use.
+     */
+    private final int levels;
+    private int[][][] tiles;
+    private Rasterizer[] rasterizers;
+    private final boolean[][] dirty;
+    private final long[][] versions;
+
+    /**
+     * Default constructor for this class. All tiles start dirty.
+     *
+     * @param model : model whose shapes are drawn
+     */
+    public OverviewPyramid(DrawingModel model) {
+        this.model = model;
+        this.levels = Integer.numberOfTrailingZeros(BASE_TILES) + 1;
+        this.dirty = new boolean[levels][];
+        this.versions = new long[levels][];
+        for (int level = 0; level < levels; level++) {
+            int side = BASE_TILES >> level;
+            dirty[level] = new boolean[side * side];
+            versions[level] = new long[side * side];
+        }
+        invalidate();
+    }
+
+    /**
+     * Getter method for the number of levels.
+     *
+     * @return : number of levels, the last one a single tile
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Method to find the size of a level.
+     *
+     * @param level : level of the pyramid
+     * @return : width and height of the level in pixels
+     */
+    public int getSize(int level) {
+        return BASE_SIZE >> level;
+    }
+
+    /**
+     * Method to find the number of tiles along each side of a level.
+     *
+     * @param level : level of the pyramid
+     * @return : tiles per row and per column
+     */
+    public int getTiles(int level) {
+        return BASE_TILES >> level;
+    }
+
+    /**
+     * Method to find the coarsest level that still has at least as many pixels as a view drawing the whole document.
+     *
+     * @param pixels : width or height of the document in the view's pixels
+     * @return : level to be drawn
+     */
+    public int getLevelFor(double pixels) {
+        int level = 0;
+        while (level < levels - 1 && getSize(level + 1) >= pixels) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Getter method for the pixels of a tile, as pre-multiplied ARGB. Up to date after update() for its level.
+     *
+     * @param level : level of the pyramid
+     * @param col   : column of the tile
+     * @param row   : row of the tile
+     * @return : TILE_SIZE * TILE_SIZE pixels, row-major
+     */
+    public int[] getTile(int level, int col, int row) {
+        return tiles[level][row * getTiles(level) + col];
+    }
+
+    /**
+     * Getter method for the number of times a tile has been redrawn.
+     *
+     * @param level : level of the pyramid
+     * @param col   : column of the tile
+     * @param row   : row of the tile
+     * @return : version of the tile
+     */
+    public long getVersion(int level, int col, int row) {
+        return versions[level][row * getTiles(level) + col];
+    }
+
+    /**
+     * Method to mark every tile dirty, e.g. after a change the model cannot describe.
+     */
+    public void invalidate() {
+        for (boolean[] level : dirty) {
+            Arrays.fill(level, true);
+        }
+    }
+
+    /**
+     * Method to mark the tiles touched by a change of the model dirty.
+     *
+     * @param event : the change
+     */
+    public void invalidate(ModelEvent event) {
+        invalidate(event.getOldBounds());
+        invalidate(event.getNewBounds());
+    }
+
+    /**
+     * Method to bring the dirty tiles of a level, and of the levels below it, up to date.
+     *
+     * @param level : level to be read
+     */
+    public void update(int level) {
+        if (tiles == null) {
+            tiles = new int[levels][][];
+            for (int l = 0; l < levels; l++) {
+                tiles[l] = new int[dirty[l].length][TILE_SIZE * TILE_SIZE];
+            }
+            rasterizers = new Rasterizer[BASE_TILES * BASE_TILES];
+            for (int i = 0; i < rasterizers.length; i++) {
+                int col = i % BASE_TILES, row = i / BASE_TILES;
+                rasterizers[i] = new Rasterizer(tiles[0][i], col * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+            }
+        }
+        // a shape raised by selecting it is drawn again, on top
+        List<XShape> shapes = model.getShapes();
+        XShape last = shapes.isEmpty() ? null : shapes.get(shapes.size() - 1);
+        if (last != top) {
+            top = last;
+            if (last != null) {
+                invalidate(ModelEvent.boundsOf(List.of(last)));
+            }
+        }
+        for (int l = 0; l <= level; l++) {
+            int side = getTiles(l);
+            for (int i = 0; i < dirty[l].length; i++) {
+                if (!dirty[l][i]) {
+                    continue;
+                }
+                if (l == 0) {
+                    redraw(i % side, i / side);
+                } else {
+                    shrink(l, i % side, i / side);
+                }
+                dirty[l][i] = false;
+                versions[l][i]++;
+            }
+        }
+    }
+
+    /**
+     * Method to give up the pixels, e.g. while the view is hidden. They are allocated and redrawn on the next update.
+     */
+    public void release() {
+        tiles = null;
+        rasterizers = null;
+        invalidate();
+    }
+
+    /**
+     * Method to return the memory held by the pixels.
+     *
+     * @return : size of the pyramid in bytes
+     */
+    public long bytes() {
+        if (tiles == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (int[][] level : tiles) {
+            bytes += (long) level.length * TILE_SIZE * TILE_SIZE * 4;
+        }
+        return bytes;
+    }
+
+    /**
+     * Helper method to mark the tiles touched by packed bounds (see ModelEvent) dirty, with a pixel to spare for the
+     * outlines.
+     *
+     * @param bounds : packed bounds, or null
+     */
+    private void invalidate(double[] bounds) {
+        if (bounds == null) {
+            return;
+        }
+        double margin = 1.0 / BASE_SIZE;
+        for (int i = 0; i < bounds.length; i += 4) {
+            int col0 = Math.max(0, tileOf(bounds[i] - margin));
+            int row0 = Math.max(0, tileOf(bounds[i + 1] - margin));
+            int col1 = Math.min(BASE_TILES - 1, tileOf(bounds[i + 2] + margin));
+            int row1 = Math.min(BASE_TILES - 1, tileOf(bounds[i + 3] + margin));
+            for (int row = row0; row <= row1; row++) {
+                for (int col = col0; col <= col1; col++) {
+                    // the tile and every tile above it
+                    for (int l = 0; l < levels; l++) {
+                        dirty[l][(row >> l) * getTiles(l) + (col >> l)] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method to find the column or row of the level 0 tile holding a coordinate.
+     *
+     * @param coordinate : normalized coordinate
+     * @return : column or row, possibly outside the pyramid
+     */
+    private static int tileOf(double coordinate) {
+        return (int) Math.floor(Math.max(-1, Math.min(2, coordinate)) * BASE_TILES);
+    }
+
+    /**
+     * Helper method to redraw a tile of level 0 from the shapes intersecting it, bottom to top.
+     *
+     * @param col : column of the tile
+     * @param row : row of the tile
+     */
+    private void redraw(int col, int row) {
+        Arrays.fill(tiles[0][row * BASE_TILES + col], 0);
+        Rasterizer rasterizer = rasterizers[row * BASE_TILES + col];
+        // one pixel more each way for the outlines of shapes just outside
+        double size = (double) TILE_SIZE / BASE_SIZE, margin = 1.0 / BASE_SIZE;
+        int count = model.countShapesIntersecting(col * size - margin, row * size - margin, size + 2 * margin,
+                size + 2 * margin);
+        int[] found = model.getFoundShapes();
+        List<XShape> shapes = model.getShapes();
+        for (int i = 0; i < count; i++) {
+            rasterizer.drawShape(shapes.get(found[i]), 0, 0, BASE_SIZE);
+        }
+    }
+
+    /**
+     * Helper method to redraw a tile from the four tiles below it.
+     *
+     * @param level : level of the tile, above 0
+     * @param col   : column of the tile
+     * @param row   : row of the tile
+     */
+    private void shrink(int level, int col, int row) {
+        int[] pixels = tiles[level][row * getTiles(level) + col];
+        int half = TILE_SIZE / 2;
+        for (int quadrant = 0; quadrant < 4; quadrant++) {
+            int x = quadrant % 2, y = quadrant / 2;
+            Rasterizer.downsample(getTile(level - 1, col * 2 + x, row * 2 + y), pixels, TILE_SIZE, x * half, y * half);
+        }
+    }
+}
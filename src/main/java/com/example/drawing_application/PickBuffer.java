@@ -0,0 +1,489 @@
+package com.example.drawing_application;
+
+import java.util.Arrays;
+
+/**
+ * Off-screen pick buffer: one int per pixel of the view-port holding a code for the top-most shape at that pixel, so
+ * that finding the shape under a click is a single read no matter how many shapes overlap there.
+ * <p>
+ * The buffer lies on the pixel grid of the document (normalized coordinate times the document size), so panning by
+ * whole pixels scrolls its contents and only the exposed strips are painted again. A pixel holds the shape whose
+ * contains() is true at the pixel's centre. Changes of the model mark the bounds they touch as dirty; dirty regions are
+ * repainted, bottom to top from a region query of the model, before the next read.
+ * <p>
+ * A shape keeps its code (XShape.pickCode) as long as the buffer maps the code back to it. Codes of removed shapes are
+ * not reused; all codes are recycled by a full repaint once the table grows well past the number of shapes.
+ * <p>
+ * Enabled by default, run with -Ddrawing.pickBuffer=false to pick through HitTestKernel only.
+ */
+public class PickBuffer {
+    // whether documents pick through a pick buffer
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("drawing.pickBuffer", "true"));
+    // number of dirty regions kept apart before they are merged into their union
+    private static final int MAX_DIRTY_REGIONS = 8;
+
+    /*
+        Instance variables to store the model the buffer shows and the size of the document in pixels.
+     */
+    private final DrawingModel model;
+    private final double docWidth, docHeight;
+
+    /*
+        Instance variables to store the pixels and the location of the top-left pixel and the size of the buffer on
+        the document's pixel grid.
+     */
+    private int[] pixels = new int[0];
+    private int originCol, originRow, width, height;
+
+    /*
+        Instance variables to store the shapes by code, code 0 being the background, and the next free code.
+     */
+    private XShape[] shapesByCode = new XShape[1024];
+    private int nextCode = 1;
+
+    /*
+        Instance variables to store the dirty regions as buffer pixels, four ints (left, top, right, bottom; right and
+        bottom exclusive) per region, and whether the whole buffer is dirty.
+     */
+    private int[] dirty = new int[MAX_DIRTY_REGIONS * 4];
+    private int dirtyCount;
+    private boolean allDirty = true;
+
+    /**
+     * Default constructor for this class.
+     *
+     * @param model     : model whose shapes are picked
+     * @param docWidth  : width of the document in pixels
+     * @param docHeight : height of the document in pixels
+     */
+    public PickBuffer(DrawingModel model, double docWidth, double docHeight) {
+        this.model = model;
+        this.docWidth = docWidth;
+        this.docHeight = docHeight;
+    }
+
+    /**
+     * Method to place the buffer over the view-port. Called by the view on every frame: a view-port that moved by whole
+     * pixels scrolls the contents, a resized one is repainted.
+     *
+     * @param viewLeft    : x coordinate of the view-port, normalized
+     * @param viewTop     : y coordinate of the view-port, normalized
+     * @param pixelWidth  : width of the view-port in pixels
+     * @param pixelHeight : height of the view-port in pixels
+     */
+    public void setViewport(double viewLeft, double viewTop, double pixelWidth, double pixelHeight) {
+        int col = (int) Math.floor(viewLeft * docWidth), row = (int) Math.floor(viewTop * docHeight);
+        // one more pixel each way, as the view-port is not aligned to the pixel grid
+        int w = (int) Math.ceil(pixelWidth) + 1, h = (int) Math.ceil(pixelHeight) + 1;
+        if (w != width || h != height) {
+            width = w;
+            height = h;
+            pixels = new int[w * h];
+            originCol = col;
+            originRow = row;
+            invalidate();
+            return;
+        }
+        if (col != originCol || row != originRow) {
+            scroll(originCol - col, originRow - row);
+            originCol = col;
+            originRow = row;
+        }
+    }
+
+    /**
+     * Method to mark the whole buffer dirty, e.g. after a change the model cannot describe.
+     */
+    public void invalidate() {
+        allDirty = true;
+        dirtyCount = 0;
+    }
+
+    /**
+     * Method to mark the bounds touched by a change of the model dirty.
+     *
+     * @param event : the change
+     */
+    public void invalidate(ModelEvent event) {
+        if (event.getType() == ModelEvent.Type.RECOLOURED) {
+            return;
+        }
+        if (event.getType() == ModelEvent.Type.ADDED && event.getShapes().size() <= MAX_DIRTY_REGIONS) {
+            // added shapes are above all others, so a few of them are simply painted over the buffer
+            for (XShape shape : event.getShapes()) {
+                paintOnTop(shape);
+            }
+            return;
+        }
+        invalidate(event.getOldBounds());
+        invalidate(event.getNewBounds());
+    }
+
+    /**
+     * Method to paint a shape that has just become the top-most shape, e.g. one selected or added, over the buffer.
+     * Pixels that are dirty get the shape again when they are repainted.
+     *
+     * @param shape : the top-most shape
+     */
+    public void paintOnTop(XShape shape) {
+        if (!allDirty) {
+            paint(shape, 0, 0, width, height);
+        }
+    }
+
+    /**
+     * Method to find the top-most shape at a point, repainting the dirty regions first.
+     *
+     * @param x : x coordinate, normalized
+     * @param y : y coordinate, normalized
+     * @return : the shape, or null if there is none or the point is not covered by the buffer
+     */
+    public XShape shapeAt(double x, double y) {
+        int col = (int) Math.floor(x * docWidth) - originCol, row = (int) Math.floor(y * docHeight) - originRow;
+        if (col < 0 || row < 0 || col >= width || row >= height) {
+            return null;
+        }
+        update();
+        return shapesByCode[pixels[row * width + col]];
+    }
+
+    /**
+     * Method to check if a point is covered by the buffer, i.e. if shapeAt() can answer for it.
+     *
+     * @param x : x coordinate, normalized
+     * @param y : y coordinate, normalized
+     * @return : true if the point lies on the buffer
+     */
+    public boolean covers(double x, double y) {
+        int col = (int) Math.floor(x * docWidth) - originCol, row = (int) Math.floor(y * docHeight) - originRow;
+        return col >= 0 && row >= 0 && col < width && row < height;
+    }
+
+    /**
+     * Method to repaint the dirty regions.
+     */
+    public void update() {
+        if (nextCode > 2 * model.getShapes().size() + 1024) {
+            // the table holds mostly codes of removed shapes - start afresh
+            invalidate();
+        }
+        if (allDirty) {
+            allDirty = false;
+            Arrays.fill(shapesByCode, 1, nextCode, null);
+            nextCode = 1;
+            repaint(0, 0, width, height);
+            return;
+        }
+        for (int i = 0; i < dirtyCount; i++) {
+            repaint(dirty[i * 4], dirty[i * 4 + 1], dirty[i * 4 + 2], dirty[i * 4 + 3]);
+        }
+        dirtyCount = 0;
+    }
+
+    /**
+     * Method to give up the pixels, e.g. while the view is hidden. They are allocated and repainted on the next frame.
+     */
+    public void release() {
+        pixels = new int[0];
+        width = 0;
+        height = 0;
+        invalidate();
+    }
+
+    /**
+     * Method to return the memory held by the pixels.
+     *
+     * @return : size of the buffer in bytes
+     */
+    public long bytes() {
+        return (long) pixels.length * 4;
+    }
+
+    /**
+     * Helper method to mark packed bounds (see ModelEvent) dirty.
+     *
+     * @param bounds : packed bounds, or null
+     */
+    private void invalidate(double[] bounds) {
+        if (bounds == null || allDirty) {
+            return;
+        }
+        for (int i = 0; i < bounds.length; i += 4) {
+            int left = Math.max(0, (int) Math.floor(bounds[i] * docWidth) - originCol);
+            int top = Math.max(0, (int) Math.floor(bounds[i + 1] * docHeight) - originRow);
+            int right = Math.min(width, (int) Math.floor(bounds[i + 2] * docWidth) - originCol + 1);
+            int bottom = Math.min(height, (int) Math.floor(bounds[i + 3] * docHeight) - originRow + 1);
+            addDirty(left, top, right, bottom);
+        }
+    }
+
+    /**
+     * Helper method to add a dirty region, merging all regions into their union once there are too many.
+     *
+     * @param left   : left column
+     * @param top    : top row
+     * @param right  : column after the right edge
+     * @param bottom : row after the bottom edge
+     */
+    private void addDirty(int left, int top, int right, int bottom) {
+        if (left >= right || top >= bottom) {
+            return;
+        }
+        if (dirtyCount == MAX_DIRTY_REGIONS) {
+            for (int i = 1; i < dirtyCount; i++) {
+                dirty[0] = Math.min(dirty[0], dirty[i * 4]);
+                dirty[1] = Math.min(dirty[1], dirty[i * 4 + 1]);
+                dirty[2] = Math.max(dirty[2], dirty[i * 4 + 2]);
+                dirty[3] = Math.max(dirty[3], dirty[i * 4 + 3]);
+            }
+            dirty[0] = Math.min(dirty[0], left);
+            dirty[1] = Math.min(dirty[1], top);
+            dirty[2] = Math.max(dirty[2], right);
+            dirty[3] = Math.max(dirty[3], bottom);
+            dirtyCount = 1;
+            return;
+        }
+        dirty[dirtyCount * 4] = left;
+        dirty[dirtyCount * 4 + 1] = top;
+        dirty[dirtyCount * 4 + 2] = right;
+        dirty[dirtyCount * 4 + 3] = bottom;
+        dirtyCount++;
+    }
+
+    /**
+     * Helper method to move the contents of the buffer and mark the exposed strips dirty.
+     *
+     * @param dx : columns to move the contents right by
+     * @param dy : rows to move the contents down by
+     */
+    private void scroll(int dx, int dy) {
+        if (allDirty || Math.abs(dx) >= width || Math.abs(dy) >= height) {
+            invalidate();
+            return;
+        }
+        // dirty regions move with the contents
+        for (int i = 0; i < dirtyCount; i++) {
+            dirty[i * 4] = Math.max(0, dirty[i * 4] + dx);
+            dirty[i * 4 + 1] = Math.max(0, dirty[i * 4 + 1] + dy);
+            dirty[i * 4 + 2] = Math.min(width, dirty[i * 4 + 2] + dx);
+            dirty[i * 4 + 3] = Math.min(height, dirty[i * 4 + 3] + dy);
+        }
+        int rowLength = width - Math.abs(dx);
+        int fromCol = Math.max(0, -dx), toCol = Math.max(0, dx);
+        if (dy > 0) {
+            for (int row = height - 1; row >= dy; row--) {
+                System.arraycopy(pixels, (row - dy) * width + fromCol, pixels, row * width + toCol, rowLength);
+            }
+        } else {
+            for (int row = 0; row < height + dy; row++) {
+                System.arraycopy(pixels, (row - dy) * width + fromCol, pixels, row * width + toCol, rowLength);
+            }
+        }
+        // the exposed columns and rows
+        if (dx > 0) {
+            addDirty(0, 0, dx, height);
+        } else if (dx < 0) {
+            addDirty(width + dx, 0, width, height);
+        }
+        if (dy > 0) {
+            addDirty(0, 0, width, dy);
+        } else if (dy < 0) {
+            addDirty(0, height + dy, width, height);
+        }
+    }
+
+    /**
+     * Helper method to clear a region and paint the shapes intersecting it, bottom to top.
+     *
+     * @param left   : left column
+     * @param top    : top row
+     * @param right  : column after the right edge
+     * @param bottom : row after the bottom edge
+     */
+    private void repaint(int left, int top, int right, int bottom) {
+        if (left >= right || top >= bottom) {
+            return;
+        }
+        for (int row = top; row < bottom; row++) {
+            Arrays.fill(pixels, row * width + left, row * width + right, 0);
+        }
+        // every shape with a pixel centre in the region intersects it
+        int[] found = model.shapesIntersecting((originCol + left) / docWidth, (originRow + top) / docHeight,
+                (right - left) / docWidth, (bottom - top) / docHeight);
+        for (int i : found) {
+            paint(model.getShapes().get(i), left, top, right, bottom);
+        }
+    }
+
+    /**
+     * Helper method to paint a shape with its code, clipped to a region. Rectangles and squares fill their bounds.
+     * For other shapes every row is narrowed down to the span the shape can cover on it (the chord of an oval, the band
+     * around a line or a stroke's segments) and only the pixels of that span are sampled through contains() at their
+     * centres, so a long diagonal line costs its length rather than the area of its bounds.
+     *
+     * @param shape  : shape to be painted
+     * @param left   : left column of the clip
+     * @param top    : top row of the clip
+     * @param right  : column after the right edge of the clip
+     * @param bottom : row after the bottom edge of the clip
+     */
+    private void paint(XShape shape, int left, int top, int right, int bottom) {
+        if (!overlaps(shape, left, top, right, bottom)) {
+            return;
+        }
+        int code = shape.pickCode;
+        if (code <= 0 || code >= nextCode || shapesByCode[code] != shape) {
+            if (nextCode == shapesByCode.length) {
+                shapesByCode = Arrays.copyOf(shapesByCode, shapesByCode.length * 2);
+            }
+            code = nextCode++;
+            shapesByCode[code] = shape;
+            shape.pickCode = code;
+        }
+        paint(shape, code, left, top, right, bottom);
+    }
+
+    /**
+     * Helper method to check if the pixel centres within the bounds of a shape reach into a region.
+     *
+     * @param shape  : shape to be checked
+     * @param left   : left column of the region
+     * @param top    : top row of the region
+     * @param right  : column after the right edge of the region
+     * @param bottom : row after the bottom edge of the region
+     * @return : true if the shape may cover a pixel of the region
+     */
+    private boolean overlaps(XShape shape, int left, int top, int right, int bottom) {
+        return Math.max(left, (int) Math.ceil(shape.getBoundsLeft() * docWidth - 0.5) - originCol)
+                <= Math.min(right - 1, (int) Math.floor(shape.getBoundsRight() * docWidth - 0.5) - originCol)
+                && Math.max(top, (int) Math.ceil(shape.getBoundsTop() * docHeight - 0.5) - originRow)
+                <= Math.min(bottom - 1, (int) Math.floor(shape.getBoundsBottom() * docHeight - 0.5) - originRow);
+    }
+
+    /**
+     * Helper method to paint a shape with a code, clipped to a region. A group paints its children, skipping those
+     * outside the region, with its own code.
+     *
+     * @param shape  : shape to be painted
+     * @param code   : code to paint
+     * @param left   : left column of the clip
+     * @param top    : top row of the clip
+     * @param right  : column after the right edge of the clip
+     * @param bottom : row after the bottom edge of the clip
+     */
+    private void paint(XShape shape, int code, int left, int top, int right, int bottom) {
+        if (shape instanceof XGroup group) {
+            for (XShape child : group.getChildren()) {
+                if (overlaps(child, left, top, right, bottom)) {
+                    paint(child, code, left, top, right, bottom);
+                }
+            }
+            return;
+        }
+        // pixels whose centres lie within the bounds
+        int col0 = Math.max(left, (int) Math.ceil(shape.getBoundsLeft() * docWidth - 0.5) - originCol);
+        int col1 = Math.min(right - 1, (int) Math.floor(shape.getBoundsRight() * docWidth - 0.5) - originCol);
+        int row0 = Math.max(top, (int) Math.ceil(shape.getBoundsTop() * docHeight - 0.5) - originRow);
+        int row1 = Math.min(bottom - 1, (int) Math.floor(shape.getBoundsBottom() * docHeight - 0.5) - originRow);
+        for (int row = row0; row <= row1; row++) {
+            int offset = row * width;
+            double y = (originRow + row + 0.5) / docHeight;
+            switch (shape) {
+                case XRectangle rectangle -> Arrays.fill(pixels, offset + col0, offset + col1 + 1, code);
+                case XSquare square -> Arrays.fill(pixels, offset + col0, offset + col1 + 1, code);
+                case XCircle circle -> paintChord(shape, code, row, y, circle.getWidth() / 2, circle.getWidth() / 2, col0, col1);
+                case XOval oval -> paintChord(shape, code, row, y, oval.getWidth() / 2, oval.getHeight() / 2, col0, col1);
+                case XLine line -> paintBand(shape, code, row, y, line.getLeft(), line.getTop(), line.getWidth(),
+                        line.getHeight(), col0, col1);
+                case XFreehand stroke -> {
+                    double[] points = stroke.getPoints();
+                    for (int i = 2; i < stroke.getPointCount() * 2; i += 2) {
+                        if (Math.min(points[i - 1], points[i + 1]) - XLine.TOLERANCE <= y
+                                && Math.max(points[i - 1], points[i + 1]) + XLine.TOLERANCE >= y) {
+                            paintBand(shape, code, row, y, points[i - 2], points[i - 1], points[i], points[i + 1], col0, col1);
+                        }
+                    }
+                    if (stroke.getPointCount() == 1) {
+                        paintSpan(shape, code, row, y, points[0] - XLine.TOLERANCE, points[0] + XLine.TOLERANCE, col0, col1);
+                    }
+                }
+                default -> paintSpan(shape, code, row, y, shape.getBoundsLeft(), shape.getBoundsRight(), col0, col1);
+            }
+        }
+    }
+
+    /**
+     * Helper method to paint the chord of an oval on a row.
+     *
+     * @param shape   : oval or circle
+     * @param code    : code to paint
+     * @param row     : row of the buffer
+     * @param y       : y coordinate of the row's pixel centres, normalized
+     * @param radiusX : horizontal radius
+     * @param radiusY : vertical radius
+     * @param col0    : first column that may be painted
+     * @param col1    : last column that may be painted
+     */
+    private void paintChord(XShape shape, int code, int row, double y, double radiusX, double radiusY, int col0, int col1) {
+        double centerX = shape.getLeft() + shape.getWidth() / 2, centerY = shape.getTop() + shape.getHeight() / 2;
+        double dy = (y - centerY) / radiusY;
+        if (dy * dy > 1) {
+            return;
+        }
+        double half = radiusX * Math.sqrt(1 - dy * dy);
+        paintSpan(shape, code, row, y, centerX - half, centerX + half, col0, col1);
+    }
+
+    /**
+     * Helper method to paint the part of a row that lies within the click tolerance of the line through two points.
+     *
+     * @param shape : line or stroke
+     * @param code  : code to paint
+     * @param row   : row of the buffer
+     * @param y     : y coordinate of the row's pixel centres, normalized
+     * @param x1    : x coordinate of the first point
+     * @param y1    : y coordinate of the first point
+     * @param x2    : x coordinate of the second point
+     * @param y2    : y coordinate of the second point
+     * @param col0  : first column that may be painted
+     * @param col1  : last column that may be painted
+     */
+    private void paintBand(XShape shape, int code, int row, double y, double x1, double y1, double x2, double y2,
+                           int col0, int col1) {
+        double low = Math.min(x1, x2) - XLine.TOLERANCE, high = Math.max(x1, x2) + XLine.TOLERANCE;
+        double dy = y2 - y1;
+        if (Math.abs(dy) > 1e-12) {
+            // x of the line on this row, and how far along x the tolerance reaches from it
+            double dx = x2 - x1;
+            double x = x1 + (y - y1) * dx / dy;
+            double reach = XLine.TOLERANCE * Math.sqrt(dx * dx + dy * dy) / Math.abs(dy);
+            low = Math.max(low, x - reach);
+            high = Math.min(high, x + reach);
+        }
+        paintSpan(shape, code, row, y, low, high, col0, col1);
+    }
+
+    /**
+     * Helper method to sample a shape at the pixel centres of a span of a row, one pixel wider on each side than the
+     * span so that rounding cannot lose a pixel.
+     *
+     * @param shape : shape to be sampled
+     * @param code  : code to paint
+     * @param row   : row of the buffer
+     * @param y     : y coordinate of the row's pixel centres, normalized
+     * @param low   : left end of the span, normalized
+     * @param high  : right end of the span, normalized
+     * @param col0  : first column that may be painted
+     * @param col1  : last column that may be painted
+     */
+    private void paintSpan(XShape shape, int code, int row, double y, double low, double high, int col0, int col1) {
+        int start = Math.max(col0, (int) Math.floor(low * docWidth - 0.5) - originCol - 1);
+        int end = Math.min(col1, (int) Math.ceil(high * docWidth - 0.5) - originCol + 1);
+        int offset = row * width;
+        for (int col = start; col <= end; col++) {
+            if (pixels[offset + col] != code && shape.contains((originCol + col + 0.5) / docWidth, y)) {
+                pixels[offset + col] = code;
+            }
+        }
+    }
+}
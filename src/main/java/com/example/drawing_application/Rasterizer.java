@@ -0,0 +1,400 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+
+/**
+ * Pure-Java rasterizer that draws the primitives used by the shapes of this application into a rectangular block of
+ * pre-multiplied ARGB pixels. Works without the JavaFX Application Thread so that it can be used from worker threads.
+ */
+public class Rasterizer {
+    /*
+        Instance variables to store the pixel buffer and the location and size of the block it represents on the canvas.
+     */
+    final int[] pixels;
+    final int originX, originY, width, height;
+
+    /**
+     * Default constructor for this class. Sets up the rasterizer for the given block of pixels.
+     *
+     * @param pixels  : pixel buffer of the block, row-major with a scan-line stride of width
+     * @param originX : x coordinate of the top-left pixel of the block on the canvas
+     * @param originY : y coordinate of the top-left pixel of the block on the canvas
+     * @param width   : width of the block
+     * @param height  : height of the block
+     */
+    public Rasterizer(int[] pixels, int originX, int originY, int width, int height) {
+        this.pixels = pixels;
+        this.originX = originX;
+        this.originY = originY;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Helper method to convert a colour to a pre-multiplied ARGB pixel. Shapes without a colour are drawn black, which
+     * is the default colour of the graphics context.
+     *
+     * @param color : colour to be converted
+     * @return : pre-multiplied ARGB value
+     */
+    public static int toArgbPre(Color color) {
+        if (color == null) {
+            return 0xFF000000;
+        }
+        double a = color.getOpacity();
+        int alpha = (int) Math.round(a * 255);
+        int r = (int) Math.round(color.getRed() * a * 255);
+        int g = (int) Math.round(color.getGreen() * a * 255);
+        int b = (int) Math.round(color.getBlue() * a * 255);
+        return (alpha << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Method to fill a rectangle given in canvas coordinates.
+     *
+     * @param x    : x coordinate of the top-left corner
+     * @param y    : y coordinate of the top-left corner
+     * @param w    : width of the rectangle
+     * @param h    : height of the rectangle
+     * @param argb : pre-multiplied colour
+     */
+    public void fillRect(double x, double y, double w, double h, int argb) {
+        int x0 = Math.max(px(x) - originX, 0);
+        int y0 = Math.max(px(y) - originY, 0);
+        int x1 = Math.min(px(x + w) - originX, width);
+        int y1 = Math.min(px(y + h) - originY, height);
+        for (int row = y0; row < y1; row++) {
+            span(row, x0, x1, argb);
+        }
+    }
+
+    /**
+     * Method to draw the one pixel outline of a rectangle given in canvas coordinates.
+     *
+     * @param x    : x coordinate of the top-left corner
+     * @param y    : y coordinate of the top-left corner
+     * @param w    : width of the rectangle
+     * @param h    : height of the rectangle
+     * @param argb : pre-multiplied colour
+     */
+    public void strokeRect(double x, double y, double w, double h, int argb) {
+        int left = px(x);
+        int top = px(y);
+        int right = px(x + w);
+        int bottom = px(y + h);
+        hLine(top, left, right, argb);
+        hLine(bottom, left, right, argb);
+        vLine(left, top + 1, bottom - 1, argb);
+        vLine(right, top + 1, bottom - 1, argb);
+    }
+
+    /**
+     * Method to fill an oval bounded by the given rectangle in canvas coordinates.
+     *
+     * @param x    : x coordinate of the top-left corner of the bounds
+     * @param y    : y coordinate of the top-left corner of the bounds
+     * @param w    : width of the bounds
+     * @param h    : height of the bounds
+     * @param argb : pre-multiplied colour
+     */
+    public void fillOval(double x, double y, double w, double h, int argb) {
+        double rx = w / 2, ry = h / 2;
+        if (rx <= 0 || ry <= 0) {
+            return;
+        }
+        double cx = x + rx, cy = y + ry;
+        int y0 = Math.max(px(Math.floor(y)) - originY, 0);
+        int y1 = Math.min(px(Math.ceil(y + h)) - originY, height);
+        for (int row = y0; row < y1; row++) {
+            // solve the oval equation for the half-width of this scan-line at the pixel center
+            double dy = (row + originY + 0.5 - cy) / ry;
+            double t = 1 - dy * dy;
+            if (t < 0) {
+                continue;
+            }
+            double half = rx * Math.sqrt(t);
+            int x0 = Math.max(px(cx - half) - originX, 0);
+            int x1 = Math.min(px(cx + half) - originX, width);
+            span(row, x0, x1, argb);
+        }
+    }
+
+    /**
+     * Method to draw the one pixel outline of an oval bounded by the given rectangle in canvas coordinates.
+     *
+     * @param x    : x coordinate of the top-left corner of the bounds
+     * @param y    : y coordinate of the top-left corner of the bounds
+     * @param w    : width of the bounds
+     * @param h    : height of the bounds
+     * @param argb : pre-multiplied colour
+     */
+    public void strokeOval(double x, double y, double w, double h, int argb) {
+        double rx = w / 2, ry = h / 2;
+        if (rx <= 0 || ry <= 0 || !touches(x, y, w, h)) {
+            return;
+        }
+        // approximate the outline with short segments, enough for a segment to stay around a pixel long
+        int segments = (int) Math.min(4096, Math.max(16, Math.ceil(Math.PI * (rx + ry))));
+        double cx = x + rx, cy = y + ry;
+        double prevX = cx + rx, prevY = cy;
+        for (int i = 1; i <= segments; i++) {
+            double angle = 2 * Math.PI * i / segments;
+            double nextX = cx + rx * Math.cos(angle);
+            double nextY = cy + ry * Math.sin(angle);
+            drawLine(prevX, prevY, nextX, nextY, argb);
+            prevX = nextX;
+            prevY = nextY;
+        }
+    }
+
+    /**
+     * Method to draw a one pixel wide line between two points in canvas coordinates using Bresenham's algorithm.
+     *
+     * @param x1   : x coordinate of the start of the line
+     * @param y1   : y coordinate of the start of the line
+     * @param x2   : x coordinate of the end of the line
+     * @param y2   : y coordinate of the end of the line
+     * @param argb : pre-multiplied colour
+     */
+    public void drawLine(double x1, double y1, double x2, double y2, int argb) {
+        // clip the line to this block (Liang-Barsky) so that every block only walks its own part of the line
+        double dX = x2 - x1, dY = y2 - y1;
+        double t0 = 0, t1 = 1;
+        // edges left, right, top and bottom, without arrays as every outline calls this for each of its segments
+        for (int i = 0; i < 4; i++) {
+            double p = switch (i) {
+                case 0 -> -dX;
+                case 1 -> dX;
+                case 2 -> -dY;
+                default -> dY;
+            };
+            double q = switch (i) {
+                case 0 -> x1 - (originX - 1);
+                case 1 -> (originX + width) - x1;
+                case 2 -> y1 - (originY - 1);
+                default -> (originY + height) - y1;
+            };
+            if (p == 0) {
+                if (q < 0) {
+                    return;
+                }
+            } else {
+                double t = q / p;
+                if (p < 0) {
+                    t0 = Math.max(t0, t);
+                } else {
+                    t1 = Math.min(t1, t);
+                }
+            }
+        }
+        if (t0 > t1) {
+            return;
+        }
+        int x = px(x1 + t0 * dX), y = px(y1 + t0 * dY);
+        int ex = px(x1 + t1 * dX), ey = px(y1 + t1 * dY);
+        int dx = Math.abs(ex - x), sx = x < ex ? 1 : -1;
+        int dy = -Math.abs(ey - y), sy = y < ey ? 1 : -1;
+        int err = dx + dy;
+        while (true) {
+            plot(x, y, argb);
+            if (x == ex && y == ey) {
+                break;
+            }
+            int e2 = 2 * err;
+            if (e2 >= dy) {
+                err += dy;
+                x += sx;
+            }
+            if (e2 <= dx) {
+                err += dx;
+                y += sy;
+            }
+        }
+    }
+
+    /**
+     * Method to draw a shape the way the views draw it: filled and outlined in black, a line or the segments of a
+     * stroke in its colour, the children of a group in turn. A normalized coordinate c lies at (c + offset) * scale on the canvas.
+     *
+     * @param shape   : shape to be drawn
+     * @param offsetX : offset added to the x coordinates before scaling
+     * @param offsetY : offset added to the y coordinates before scaling
+     * @param scale   : pixels per normalized unit
+     */
+    public void drawShape(XShape shape, double offsetX, double offsetY, double scale) {
+        if (shape instanceof XGroup group) {
+            for (XShape child : group.getChildren()) {
+                drawShape(child, offsetX, offsetY, scale);
+            }
+            return;
+        }
+        int colour = toArgbPre(shape.getColor());
+        double x = (shape.getLeft() + offsetX) * scale, y = (shape.getTop() + offsetY) * scale;
+        double w = shape.getWidth() * scale, h = shape.getHeight() * scale;
+        switch (shape) {
+            case XRectangle rectangle -> {
+                fillRect(x, y, w, h, colour);
+                strokeRect(x, y, w, h, 0xFF000000);
+            }
+            case XSquare square -> {
+                fillRect(x, y, w, h, colour);
+                strokeRect(x, y, w, h, 0xFF000000);
+            }
+            case XCircle circle -> {
+                fillOval(x, y, w, h, colour);
+                strokeOval(x, y, w, h, 0xFF000000);
+            }
+            case XOval oval -> {
+                fillOval(x, y, w, h, colour);
+                strokeOval(x, y, w, h, 0xFF000000);
+            }
+            // line stores the end point instead of the size
+            case XLine line -> drawLine(x, y, (shape.getWidth() + offsetX) * scale, (shape.getHeight() + offsetY) * scale, colour);
+            case XFreehand stroke -> {
+                double[] points = stroke.getPoints();
+                for (int p = 1; p < stroke.getPointCount(); p++) {
+                    drawLine((points[p * 2 - 2] + offsetX) * scale, (points[p * 2 - 1] + offsetY) * scale,
+                            (points[p * 2] + offsetX) * scale, (points[p * 2 + 1] + offsetY) * scale, colour);
+                }
+            }
+            default -> throw new IllegalStateException("Unexpected value");
+        }
+    }
+
+    /**
+     * Method to shrink a square block of pixels to half its size into a quadrant of another block of the same size,
+     * each pixel the average of four.
+     *
+     * @param source  : block to be shrunk
+     * @param target  : block to be drawn into
+     * @param size    : width and height of both blocks
+     * @param offsetX : x coordinate of the quadrant in the target, 0 or size / 2
+     * @param offsetY : y coordinate of the quadrant in the target, 0 or size / 2
+     */
+    public static void downsample(int[] source, int[] target, int size, int offsetX, int offsetY) {
+        int half = size / 2;
+        for (int row = 0; row < half; row++) {
+            for (int col = 0; col < half; col++) {
+                int i = row * 2 * size + col * 2;
+                target[(offsetY + row) * size + offsetX + col] = average(source[i], source[i + 1], source[i + size],
+                        source[i + size + 1]);
+            }
+        }
+    }
+
+    /**
+     * Helper method to average four pre-multiplied ARGB pixels channel by channel.
+     *
+     * @param a : top-left pixel
+     * @param b : top-right pixel
+     * @param c : bottom-left pixel
+     * @param d : bottom-right pixel
+     * @return : the average pixel
+     */
+    private static int average(int a, int b, int c, int d) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int sum = ((a >>> shift) & 0xFF) + ((b >>> shift) & 0xFF) + ((c >>> shift) & 0xFF) + ((d >>> shift) & 0xFF);
+            result |= ((sum + 2) / 4) << shift;
+        }
+        return result;
+    }
+
+    /**
+     * Helper method to check if a rectangle given in canvas coordinates touches this block.
+     *
+     * @param x : x coordinate of the top-left corner
+     * @param y : y coordinate of the top-left corner
+     * @param w : width of the rectangle
+     * @param h : height of the rectangle
+     * @return : true if the rectangle overlaps the block, including a one pixel margin for outlines
+     */
+    private boolean touches(double x, double y, double w, double h) {
+        return x + w >= originX - 1 && x <= originX + width + 1 && y + h >= originY - 1 && y <= originY + height + 1;
+    }
+
+    /**
+     * Helper method to round a canvas coordinate to a pixel. Coordinates far outside the canvas are clamped first so
+     * that they cannot overflow an int.
+     *
+     * @param v : canvas coordinate
+     * @return : pixel coordinate
+     */
+    private static int px(double v) {
+        return (int) Math.round(Math.max(-1e9, Math.min(1e9, v)));
+    }
+
+    /**
+     * Helper method to draw a horizontal one pixel line in canvas coordinates, both ends inclusive.
+     */
+    private void hLine(int y, int x0, int x1, int argb) {
+        int row = y - originY;
+        if (row < 0 || row >= height) {
+            return;
+        }
+        span(row, Math.max(x0 - originX, 0), Math.min(x1 - originX + 1, width), argb);
+    }
+
+    /**
+     * Helper method to draw a vertical one pixel line in canvas coordinates, both ends inclusive.
+     */
+    private void vLine(int x, int y0, int y1, int argb) {
+        int col = x - originX;
+        if (col < 0 || col >= width) {
+            return;
+        }
+        int start = Math.max(y0 - originY, 0);
+        int end = Math.min(y1 - originY, height - 1);
+        for (int row = start; row <= end; row++) {
+            blend(row * width + col, argb);
+        }
+    }
+
+    /**
+     * Helper method to plot a single pixel given in canvas coordinates.
+     */
+    private void plot(int x, int y, int argb) {
+        int col = x - originX, row = y - originY;
+        if (col >= 0 && col < width && row >= 0 && row < height) {
+            blend(row * width + col, argb);
+        }
+    }
+
+    /**
+     * Helper method to fill the block-relative pixels [x0, x1) of a row.
+     */
+    private void span(int row, int x0, int x1, int argb) {
+        if (x0 >= x1) {
+            return;
+        }
+        int offset = row * width;
+        if ((argb >>> 24) == 0xFF) {
+            // opaque colours simply replace the pixels
+            Arrays.fill(pixels, offset + x0, offset + x1, argb);
+        } else {
+            for (int i = offset + x0; i < offset + x1; i++) {
+                blend(i, argb);
+            }
+        }
+    }
+
+    /**
+     * Helper method to composite a pre-multiplied colour over the pixel at the given index (source-over).
+     */
+    private void blend(int index, int src) {
+        int srcAlpha = src >>> 24;
+        if (srcAlpha == 0xFF) {
+            pixels[index] = src;
+            return;
+        }
+        int dst = pixels[index];
+        int inv = 255 - srcAlpha;
+        int a = srcAlpha + ((dst >>> 24) * inv + 127) / 255;
+        int r = ((src >> 16) & 0xFF) + (((dst >> 16) & 0xFF) * inv + 127) / 255;
+        int g = ((src >> 8) & 0xFF) + (((dst >> 8) & 0xFF) * inv + 127) / 255;
+        int b = (src & 0xFF) + ((dst & 0xFF) * inv + 127) / 255;
+        pixels[index] = (a << 24) | (r << 16) | (g << 8) | b;
+    }
+}
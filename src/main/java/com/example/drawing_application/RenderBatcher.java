@@ -0,0 +1,342 @@
+package com.example.drawing_application;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+
+/**
+ * Helper for drawing many shapes with few graphics context state changes. Shapes are added in z-order and split into
+ * layers so that no two shapes of a layer overlap, which means the shapes of a layer can be drawn in any order. Each
+ * layer is then drawn as runs of the same primitive and colour, every run as a single path with one fill and one stroke.
+ * <p>
+ * A shape goes one layer above the highest layer drawn in any of the grid cells it covers, so overlapping shapes keep
+ * their z-order. All buffers are reused between frames.
+ * <p>
+ * Besides the primitives of TileRenderer the batcher takes polylines (freehand strokes), which are stroked in their
+ * colour like lines.
+ */
+public class RenderBatcher {
+    // primitive for polylines, only understood by the batcher
+    public static final byte POLYLINE = 3;
+    // distance around a shape that its outline and anti-aliasing can reach, in pixels
+    private static final double STROKE_MARGIN = 1.5;
+    // size of a cell of the overlap grid, in pixels
+    private static final int CELL_SIZE = 16;
+    // distance of the control points of a quarter-oval bezier curve, relative to the radius
+    private static final double KAPPA = 0.5522847498307936;
+
+    /*
+        Instance variables to store the added shapes in canvas coordinates and the links between shapes of a layer.
+     */
+    private byte[] kinds = new byte[64];
+    private double[] coords = new double[64 * 4];
+    private Color[] colours = new Color[64];
+    private int[] nextInLayer = new int[64];
+    private boolean[] drawn = new boolean[64];
+    private int size;
+    // points of the polylines, a polyline's coords hold the index of its first point and the number of points
+    private double[] pointXs = new double[256];
+    private double[] pointYs = new double[256];
+    private int points;
+    private double canvasWidth, canvasHeight;
+
+    /*
+        Instance variables to store the layers (first and last shape of each) and, per grid cell, the number of layers
+        that have a shape in that cell.
+     */
+    private int[] layerFirst = new int[16];
+    private int[] layerLast = new int[16];
+    private int layers;
+    private int[] cellLayers = new int[0];
+    private int columns, rows;
+
+    /*
+        Instance variables to track the state of the graphics context while flushing.
+     */
+    private Color currentFill, currentStroke;
+
+    /**
+     * Method to start a new frame.
+     *
+     * @param canvasWidth  : width of the canvas, shapes outside it are skipped
+     * @param canvasHeight : height of the canvas, shapes outside it are skipped
+     */
+    public void begin(double canvasWidth, double canvasHeight) {
+        this.canvasWidth = canvasWidth;
+        this.canvasHeight = canvasHeight;
+        size = 0;
+        layers = 0;
+        points = 0;
+        columns = (int) Math.ceil(canvasWidth / CELL_SIZE) + 1;
+        rows = (int) Math.ceil(canvasHeight / CELL_SIZE) + 1;
+        if (cellLayers.length < columns * rows) {
+            cellLayers = new int[columns * rows];
+        } else {
+            Arrays.fill(cellLayers, 0, columns * rows, 0);
+        }
+    }
+
+    /**
+     * Method to add the next shape in z-order.
+     *
+     * @param kind   : primitive of the shape, one of TileRenderer.RECTANGLE, OVAL or LINE
+     * @param x      : x coordinate of the top-left corner or the start of a line
+     * @param y      : y coordinate of the top-left corner or the start of a line
+     * @param w      : width of the shape or x coordinate of the end of a line
+     * @param h      : height of the shape or y coordinate of the end of a line
+     * @param colour : colour of the shape
+     */
+    public void add(byte kind, double x, double y, double w, double h, Color colour) {
+        double minX, minY, maxX, maxY;
+        if (kind == TileRenderer.LINE) {
+            minX = Math.min(x, w);
+            maxX = Math.max(x, w);
+            minY = Math.min(y, h);
+            maxY = Math.max(y, h);
+        } else {
+            minX = x;
+            minY = y;
+            maxX = x + w;
+            maxY = y + h;
+        }
+        place(kind, x, y, w, h, colour, minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Method to add the next shape in z-order as a polyline. The points are copied, so the arrays can be reused by the
+     * caller.
+     *
+     * @param xs     : x coordinates of the points
+     * @param ys     : y coordinates of the points
+     * @param n      : number of points
+     * @param colour : colour of the polyline
+     */
+    public void addPolyline(double[] xs, double[] ys, int n, Color colour) {
+        if (n == 0) {
+            return;
+        }
+        double minX = xs[0], minY = ys[0], maxX = minX, maxY = minY;
+        for (int p = 1; p < n; p++) {
+            minX = Math.min(minX, xs[p]);
+            maxX = Math.max(maxX, xs[p]);
+            minY = Math.min(minY, ys[p]);
+            maxY = Math.max(maxY, ys[p]);
+        }
+        if (place(POLYLINE, points, n, 0, 0, colour, minX, minY, maxX, maxY)) {
+            if (points + n > pointXs.length) {
+                int capacity = Math.max(pointXs.length * 2, points + n);
+                pointXs = Arrays.copyOf(pointXs, capacity);
+                pointYs = Arrays.copyOf(pointYs, capacity);
+            }
+            System.arraycopy(xs, 0, pointXs, points, n);
+            System.arraycopy(ys, 0, pointYs, points, n);
+            points += n;
+        }
+    }
+
+    /**
+     * Helper method to store a shape and put it into its layer, unless it is not on the canvas.
+     *
+     * @param kind   : primitive of the shape
+     * @param x      : first coordinate
+     * @param y      : second coordinate
+     * @param w      : third coordinate
+     * @param h      : fourth coordinate
+     * @param colour : colour of the shape
+     * @param minX   : left edge of the shape on the canvas
+     * @param minY   : top edge of the shape on the canvas
+     * @param maxX   : right edge of the shape on the canvas
+     * @param maxY   : bottom edge of the shape on the canvas
+     * @return : true if the shape was stored
+     */
+    private boolean place(byte kind, double x, double y, double w, double h, Color colour,
+                          double minX, double minY, double maxX, double maxY) {
+        minX -= STROKE_MARGIN;
+        minY -= STROKE_MARGIN;
+        maxX += STROKE_MARGIN;
+        maxY += STROKE_MARGIN;
+        // skip shapes that are not on the canvas
+        if (maxX < 0 || maxY < 0 || minX > canvasWidth || minY > canvasHeight) {
+            return false;
+        }
+
+        if (size == kinds.length) {
+            grow();
+        }
+        int i = size++;
+        kinds[i] = kind;
+        coords[i * 4] = x;
+        coords[i * 4 + 1] = y;
+        coords[i * 4 + 2] = w;
+        coords[i * 4 + 3] = h;
+        colours[i] = colour == null ? Color.BLACK : colour;
+        nextInLayer[i] = -1;
+        drawn[i] = false;
+
+        // the shape goes one layer above the highest layer drawn in the cells it covers
+        int col0 = cell(minX, columns), col1 = cell(maxX, columns);
+        int row0 = cell(minY, rows), row1 = cell(maxY, rows);
+        int layer = 0;
+        for (int row = row0; row <= row1; row++) {
+            for (int col = col0; col <= col1; col++) {
+                layer = Math.max(layer, cellLayers[row * columns + col]);
+            }
+        }
+        for (int row = row0; row <= row1; row++) {
+            Arrays.fill(cellLayers, row * columns + col0, row * columns + col1 + 1, layer + 1);
+        }
+        appendToLayer(i, layer);
+        return true;
+    }
+
+    /**
+     * Helper method to find the grid cell of a canvas coordinate, clamped to the grid.
+     *
+     * @param v     : canvas coordinate
+     * @param cells : number of cells along the axis
+     * @return : cell index
+     */
+    private static int cell(double v, int cells) {
+        return (int) Math.max(0, Math.min(cells - 1, v / CELL_SIZE));
+    }
+
+    /**
+     * Method to draw the shapes added since begin(). Leaves the stroke of the graphics context black and its fill
+     * unspecified.
+     *
+     * @param gc : graphics context to draw with
+     */
+    public void flush(GraphicsContext gc) {
+        currentFill = null;
+        currentStroke = Color.BLACK;
+        gc.setStroke(Color.BLACK);
+        for (int l = 0; l < layers; l++) {
+            for (int i = layerFirst[l]; i >= 0; i = nextInLayer[i]) {
+                if (!drawn[i]) {
+                    drawRun(gc, i);
+                }
+            }
+        }
+        if (currentStroke != Color.BLACK) {
+            gc.setStroke(Color.BLACK);
+        }
+        // drop the references to the colours of this frame
+        Arrays.fill(colours, 0, size, null);
+    }
+
+    /**
+     * Helper method to draw the run of shapes that starts with the given shape: every later shape of the same layer with
+     * the same primitive and colour.
+     *
+     * @param gc    : graphics context to draw with
+     * @param first : first shape of the run
+     */
+    private void drawRun(GraphicsContext gc, int first) {
+        byte kind = kinds[first];
+        Color colour = colours[first];
+        gc.beginPath();
+        for (int i = first; i >= 0; i = nextInLayer[i]) {
+            if (drawn[i] || kinds[i] != kind || !colours[i].equals(colour)) {
+                continue;
+            }
+            drawn[i] = true;
+            double x = coords[i * 4], y = coords[i * 4 + 1], w = coords[i * 4 + 2], h = coords[i * 4 + 3];
+            switch (kind) {
+                case TileRenderer.RECTANGLE -> gc.rect(x, y, w, h);
+                case TileRenderer.OVAL -> appendOval(gc, x, y, w, h);
+                case TileRenderer.LINE -> {
+                    gc.moveTo(x, y);
+                    gc.lineTo(w, h);
+                }
+                case POLYLINE -> {
+                    int start = (int) x, end = start + (int) y;
+                    gc.moveTo(pointXs[start], pointYs[start]);
+                    for (int p = start + 1; p < end; p++) {
+                        gc.lineTo(pointXs[p], pointYs[p]);
+                    }
+                }
+            }
+        }
+        if (kind == TileRenderer.LINE || kind == POLYLINE) {
+            // lines and polylines are stroked in their own colour
+            setStroke(gc, colour);
+        } else {
+            // other shapes are filled in their colour and outlined in black
+            if (colour != currentFill) {
+                gc.setFill(colour);
+                currentFill = colour;
+            }
+            gc.fill();
+            setStroke(gc, Color.BLACK);
+        }
+        gc.stroke();
+    }
+
+    /**
+     * Helper method to append an oval to the current path as four bezier curves. Unlike GraphicsContext.arc(), this
+     * does not allocate.
+     *
+     * @param gc : graphics context to draw with
+     * @param x  : x coordinate of the top-left corner of the bounds
+     * @param y  : y coordinate of the top-left corner of the bounds
+     * @param w  : width of the bounds
+     * @param h  : height of the bounds
+     */
+    private static void appendOval(GraphicsContext gc, double x, double y, double w, double h) {
+        double rx = w / 2, ry = h / 2;
+        double cx = x + rx, cy = y + ry;
+        double kx = rx * KAPPA, ky = ry * KAPPA;
+        gc.moveTo(cx + rx, cy);
+        gc.bezierCurveTo(cx + rx, cy + ky, cx + kx, cy + ry, cx, cy + ry);
+        gc.bezierCurveTo(cx - kx, cy + ry, cx - rx, cy + ky, cx - rx, cy);
+        gc.bezierCurveTo(cx - rx, cy - ky, cx - kx, cy - ry, cx, cy - ry);
+        gc.bezierCurveTo(cx + kx, cy - ry, cx + rx, cy - ky, cx + rx, cy);
+        gc.closePath();
+    }
+
+    /**
+     * Helper method to change the stroke only if it differs from the current one.
+     *
+     * @param gc     : graphics context to draw with
+     * @param colour : stroke colour
+     */
+    private void setStroke(GraphicsContext gc, Color colour) {
+        if (colour != currentStroke) {
+            gc.setStroke(colour);
+            currentStroke = colour;
+        }
+    }
+
+    /**
+     * Helper method to append a shape to a layer, creating the layer if needed.
+     *
+     * @param i     : shape to be appended
+     * @param layer : layer to append to
+     */
+    private void appendToLayer(int i, int layer) {
+        if (layer == layers) {
+            if (layers == layerFirst.length) {
+                layerFirst = Arrays.copyOf(layerFirst, layers * 2);
+                layerLast = Arrays.copyOf(layerLast, layers * 2);
+            }
+            layerFirst[layer] = i;
+            layers++;
+        } else {
+            nextInLayer[layerLast[layer]] = i;
+        }
+        layerLast[layer] = i;
+    }
+
+    /**
+     * Helper method to double the capacity of the shape buffers.
+     */
+    private void grow() {
+        int capacity = kinds.length * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        coords = Arrays.copyOf(coords, capacity * 4);
+        colours = Arrays.copyOf(colours, capacity);
+        nextInLayer = Arrays.copyOf(nextInLayer, capacity);
+        drawn = Arrays.copyOf(drawn, capacity);
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * Render resources shared by the views of all open documents: one tile renderer (and with it one worker pool), one
+ * render batcher, a cache of pre-multiplied colours and a global memory budget for the render caches of the views.
+ * <p>
+ * Views register their caches and report whenever they are shown, hidden or resized. Once the caches use more than the
+ * budget, or the garbage collector signals memory pressure by clearing a soft reference, the caches of hidden views are
+ * released, least recently used first. A released view rebuilds its cache when it is shown again.
+ * <p>
+ * Everything except the tile renderer must only be used on the JavaFX Application Thread.
+ */
+public class RenderResources {
+    // default budget, as a fraction of the maximum heap size
+    private static final int DEFAULT_BUDGET_DIVISOR = 8;
+
+    /*
+        Instance variables to store the shared renderers and colours.
+     */
+    private final TileRenderer tileRenderer;
+    private final RenderBatcher batcher;
+    private final HashMap<Color, Integer> argbColours;
+
+    /*
+        Instance variables to store the registered caches in order of use (least recent first), the budget and the
+        reference the garbage collector clears under memory pressure.
+     */
+    private final LinkedHashSet<Cache> caches;
+    private final long budgetBytes;
+    private SoftReference<Object> pressureSentinel;
+
+    /**
+     * Default constructor for this class. Draws through the graphics context and uses the default budget.
+     */
+    public RenderResources() {
+        this(null);
+    }
+
+    /**
+     * Constructor for this class that supports a shared tile renderer. Uses the budget given in MB by the
+     * drawing.renderBudgetMB property, or an eighth of the maximum heap size.
+     *
+     * @param tileRenderer : renderer shared by all views, or null to draw through the graphics context
+     */
+    public RenderResources(TileRenderer tileRenderer) {
+        this(tileRenderer, Long.getLong("drawing.renderBudgetMB",
+                Runtime.getRuntime().maxMemory() / DEFAULT_BUDGET_DIVISOR / (1024 * 1024)) * 1024 * 1024);
+    }
+
+    /**
+     * Constructor for this class that supports a shared tile renderer and a memory budget.
+     *
+     * @param tileRenderer : renderer shared by all views, or null to draw through the graphics context
+     * @param budgetBytes  : number of bytes the render caches may use together
+     */
+    public RenderResources(TileRenderer tileRenderer, long budgetBytes) {
+        this.tileRenderer = tileRenderer;
+        this.budgetBytes = budgetBytes;
+        this.batcher = new RenderBatcher();
+        this.argbColours = new HashMap<>();
+        this.caches = new LinkedHashSet<>();
+        this.pressureSentinel = new SoftReference<>(new Object());
+    }
+
+    /**
+     * Getter method for the shared tile renderer.
+     *
+     * @return : tile renderer, or null if views draw through the graphics context
+     */
+    public TileRenderer getTileRenderer() {
+        return tileRenderer;
+    }
+
+    /**
+     * Getter method for the shared render batcher. Views use it one at a time, from begin() to flush() within a draw.
+     *
+     * @return : render batcher
+     */
+    public RenderBatcher getBatcher() {
+        return batcher;
+    }
+
+    /**
+     * Method to convert a colour to pre-multiplied ARGB, computing each distinct colour only once for all documents.
+     *
+     * @param color : colour to be converted
+     * @return : pre-multiplied ARGB value
+     */
+    public int argb(Color color) {
+        if (color == null) {
+            return Rasterizer.toArgbPre(null);
+        }
+        Integer argb = argbColours.get(color);
+        if (argb == null) {
+            argb = Rasterizer.toArgbPre(color);
+            argbColours.put(color, argb);
+        }
+        return argb;
+    }
+
+    /**
+     * Getter method for the memory budget of the render caches.
+     *
+     * @return : budget in bytes
+     */
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * Method to find the number of bytes used by all registered caches.
+     *
+     * @return : bytes in use
+     */
+    public long getUsedBytes() {
+        long used = 0;
+        for (Cache cache : caches) {
+            used += cache.cacheBytes();
+        }
+        return used;
+    }
+
+    /**
+     * Method to register a cache or report that it was used, shown, hidden or resized. Marks it as the most recently
+     * used and releases hidden caches if the budget is exceeded.
+     *
+     * @param cache : cache that changed
+     */
+    public void update(Cache cache) {
+        caches.remove(cache);
+        caches.add(cache);
+        trim(false);
+    }
+
+    /**
+     * Method to stop tracking a cache, e.g. when its document is closed.
+     *
+     * @param cache : cache to be removed
+     */
+    public void remove(Cache cache) {
+        caches.remove(cache);
+    }
+
+    /**
+     * Method to release the caches of hidden views if the garbage collector has signalled memory pressure since the
+     * last check. Cheap enough to be called on every frame.
+     */
+    public void checkPressure() {
+        if (pressureSentinel.get() == null) {
+            pressureSentinel = new SoftReference<>(new Object());
+            trim(true);
+        }
+    }
+
+    /**
+     * Helper method to release hidden caches, least recently used first, until the budget is met - or all of them
+     * under memory pressure.
+     *
+     * @param pressure : true to release every hidden cache
+     */
+    private void trim(boolean pressure) {
+        long used = getUsedBytes();
+        for (Cache cache : caches) {
+            if (!pressure && used <= budgetBytes) {
+                return;
+            }
+            if (!cache.isCacheInUse()) {
+                used -= cache.cacheBytes();
+                cache.releaseCache();
+            }
+        }
+    }
+
+    /**
+     * A render cache that can be released while it is not shown and rebuilt when it is needed again.
+     */
+    public interface Cache {
+        /**
+         * Method to return the memory held by the cache.
+         *
+         * @return : size of the cache in bytes, 0 once released
+         */
+        long cacheBytes();
+
+        /**
+         * Method to check if the cache is in use, i.e. its view is on screen. Caches in use are never released.
+         *
+         * @return : true if the cache is in use
+         */
+        boolean isCacheInUse();
+
+        /**
+         * Method to release the memory held by the cache.
+         */
+        void releaseCache();
+    }
+}
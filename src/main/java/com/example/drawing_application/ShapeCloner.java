@@ -0,0 +1,73 @@
+package com.example.drawing_application;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk engine for copies of shapes, used by copy, paste and duplicate. Copies are made by XShape.copy() with ids from
+ * one reserved block, and are returned from bottom to top so that DrawingModel.addShapes() or addCopies() can add all
+ * of them with one pass over their z-orders, one sort and one notification, however many there are.
+ */
+public class ShapeCloner {
+    /**
+     * Method to copy shapes, moved by a distance.
+     *
+     * @param shapes : shapes to be copied, from bottom to top
+     * @param dX     : distance to move the copies by along x
+     * @param dY     : distance to move the copies by along y
+     * @return : the copies, in the same order
+     */
+    public static List<XShape> copy(List<? extends XShape> shapes, double dX, double dY) {
+        ArrayList<XShape> copies = new ArrayList<>(shapes.size());
+        copyInto(copies, shapes, XShape.reserveIds(shapes.size()), dX, dY);
+        return copies;
+    }
+
+    /**
+     * Method to copy shapes into a grid: the shapes themselves fill the first cell and every other cell of the grid
+     * gets a copy of all of them, the cells a fixed offset apart. Cells are filled row by row, so later cells lie on top.
+     *
+     * @param shapes  : shapes to be copied, from bottom to top
+     * @param columns : number of columns of the grid
+     * @param rows    : number of rows of the grid
+     * @param offsetX : distance between two columns
+     * @param offsetY : distance between two rows
+     * @return : the copies of every cell but the first, from bottom to top
+     */
+    public static List<XShape> array(List<? extends XShape> shapes, int columns, int rows, double offsetX, double offsetY) {
+        int count = Math.multiplyExact(shapes.size(), Math.multiplyExact(columns, rows) - 1);
+        if (count <= 0) {
+            return List.of();
+        }
+        ArrayList<XShape> copies = new ArrayList<>(count);
+        long id = XShape.reserveIds(count);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                if (row != 0 || col != 0) {
+                    id = copyInto(copies, shapes, id, col * offsetX, row * offsetY);
+                }
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * Helper method to append moved copies of shapes to a list.
+     *
+     * @param copies : list to append to
+     * @param shapes : shapes to be copied
+     * @param id     : id of the first copy, from a reserved block
+     * @param dX     : distance to move the copies by along x
+     * @param dY     : distance to move the copies by along y
+     * @return : id of the next copy
+     */
+    private static long copyInto(List<XShape> copies, List<? extends XShape> shapes, long id, double dX, double dY) {
+        for (XShape shape : shapes) {
+            XShape copy = shape.copy(id++);
+            // XShape.move() moves by the negated distance
+            copy.move(-dX, -dY);
+            copies.add(copy);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of shapes and shape changes. Every message is a frame of an int length followed by that many
+ * bytes of payload, the first of which is the message type.
+ * <p>
+ * A shape is stored as its type (as numbered by DrawingModel.createShape()), its four coordinates and its colour as
+ * 8-bit RGBA. A freehand stroke is followed by its number of points and the points, x and y interleaved, so its frames
+ * vary in size (see upsertFrameBytes()).
+ */
+public class ShapeCodec {
+    /*
+        Message types.
+     */
+    public static final byte HELLO = 1, UPSERT = 2, DELETE = 3;
+    // shape types, in the numbering of DrawingModel.createShape()
+    public static final byte RECTANGLE = 0, SQUARE = 1, CIRCLE = 2, OVAL = 3, LINE = 4, FREEHAND = 5, GROUP = 6;
+
+    /*
+        Sizes of the messages, including the length prefix. Upserts of freehand strokes are larger.
+     */
+    public static final int SHAPE_BYTES = 1 + 4 * 8 + 4;
+    public static final int HELLO_FRAME_BYTES = 4 + 1 + 4;
+    public static final int UPSERT_FRAME_BYTES = 4 + 1 + 8 + 8 + 4 + SHAPE_BYTES;
+    public static final int DELETE_FRAME_BYTES = 4 + 1 + 8 + 8 + 4;
+
+    /**
+     * Method to find the type number of a shape.
+     *
+     * @param shape : shape to be checked
+     * @return : 0 = rectangle, 1 = square, 2 = circle, 3 = oval, 4 = line, 5 = freehand and 6 = group
+     */
+    public static byte typeOf(XShape shape) {
+        return switch (shape) {
+            case XRectangle rectangle -> RECTANGLE;
+            case XSquare square -> SQUARE;
+            case XCircle circle -> CIRCLE;
+            case XOval oval -> OVAL;
+            case XLine line -> LINE;
+            case XFreehand stroke -> FREEHAND;
+            case XGroup group -> GROUP;
+            default -> throw new IllegalArgumentException("Unknown shape: " + shape);
+        };
+    }
+
+    /**
+     * Method to write a shape's type, geometry and colour.
+     *
+     * @param buffer : buffer to write to
+     * @param shape  : shape to be written
+     */
+    public static void writeShape(ByteBuffer buffer, XShape shape) {
+        buffer.put(typeOf(shape));
+        buffer.putDouble(shape.getLeft());
+        buffer.putDouble(shape.getTop());
+        buffer.putDouble(shape.getWidth());
+        buffer.putDouble(shape.getHeight());
+        buffer.putInt(toRgba(shape.getColor()));
+        if (shape instanceof XFreehand stroke) {
+            int count = stroke.getPointCount();
+            buffer.putInt(count);
+            double[] points = stroke.getPoints();
+            for (int i = 0; i < count * 2; i++) {
+                buffer.putDouble(points[i]);
+            }
+        } else if (shape instanceof XGroup group) {
+            // the children follow the group, each written the same way
+            buffer.putInt(group.getChildren().size());
+            for (XShape child : group.getChildren()) {
+                writeShape(buffer, child);
+            }
+        }
+    }
+
+    /**
+     * Method to find the size of a shape as written by writeShape().
+     *
+     * @param shape : shape to be written
+     * @return : number of bytes
+     */
+    public static int shapeBytes(XShape shape) {
+        if (shape instanceof XFreehand stroke) {
+            return SHAPE_BYTES + 4 + stroke.getPointCount() * 2 * 8;
+        }
+        if (shape instanceof XGroup group) {
+            int bytes = SHAPE_BYTES + 4;
+            for (XShape child : group.getChildren()) {
+                bytes += shapeBytes(child);
+            }
+            return bytes;
+        }
+        return SHAPE_BYTES;
+    }
+
+    /**
+     * Method to find the size of the upsert frame of a shape, including the length prefix.
+     *
+     * @param shape : shape to be written
+     * @return : number of bytes
+     */
+    public static int upsertFrameBytes(XShape shape) {
+        return UPSERT_FRAME_BYTES - SHAPE_BYTES + shapeBytes(shape);
+    }
+
+    /**
+     * Method to read a shape written by writeShape(). The shape gets a z-order of 0 until it is added to a model.
+     *
+     * @param buffer : buffer to read from
+     * @return : the new shape
+     * @throws IllegalArgumentException : if a stroke has no points or a group no children, or more than the buffer holds
+     */
+    public static XShape readShape(ByteBuffer buffer) {
+        byte type = buffer.get();
+        double left = buffer.getDouble(), top = buffer.getDouble();
+        double width = buffer.getDouble(), height = buffer.getDouble();
+        Color color = fromRgba(buffer.getInt());
+        if (type == FREEHAND) {
+            // the bounds of a stroke follow from its points
+            int count = readCount(buffer, 2 * 8);
+            double[] points = new double[count * 2];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = buffer.getDouble();
+            }
+            return new XFreehand(points, count, color);
+        }
+        if (type == GROUP) {
+            // the bounds of a group follow from its children
+            int count = readCount(buffer, SHAPE_BYTES);
+            List<XShape> children = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                children.add(readShape(buffer));
+            }
+            XGroup group = new XGroup(children);
+            group.color = color;
+            return group;
+        }
+        return DrawingModel.newShape(type, left, top, width, height, color);
+    }
+
+    /**
+     * Helper method to read the number of points of a stroke or children of a group, before anything is allocated for
+     * them.
+     *
+     * @param buffer    : buffer to read from
+     * @param itemBytes : fewest bytes each point or child takes
+     * @return : the number, at least 1
+     * @throws IllegalArgumentException : if the number is below 1 or more than the rest of the buffer can hold
+     */
+    private static int readCount(ByteBuffer buffer, int itemBytes) {
+        int count = buffer.getInt();
+        if (count < 1 || count > buffer.remaining() / itemBytes) {
+            throw new IllegalArgumentException("Invalid count: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Method to write a hello frame, sent by the server to tell a client its number.
+     *
+     * @param buffer   : buffer to write to
+     * @param clientId : number of the client
+     */
+    public static void writeHello(ByteBuffer buffer, int clientId) {
+        buffer.putInt(HELLO_FRAME_BYTES - 4);
+        buffer.put(HELLO);
+        buffer.putInt(clientId);
+    }
+
+    /**
+     * Method to write a frame that creates or replaces a shape.
+     *
+     * @param buffer  : buffer to write to
+     * @param id      : id of the shape
+     * @param version : version of the shape after this change
+     * @param origin  : number of the client that made the change
+     * @param shape   : new state of the shape
+     */
+    public static void writeUpsert(ByteBuffer buffer, long id, long version, int origin, XShape shape) {
+        buffer.putInt(upsertFrameBytes(shape) - 4);
+        buffer.put(UPSERT);
+        buffer.putLong(id);
+        buffer.putLong(version);
+        buffer.putInt(origin);
+        writeShape(buffer, shape);
+    }
+
+    /**
+     * Method to write a frame that deletes a shape.
+     *
+     * @param buffer  : buffer to write to
+     * @param id      : id of the shape
+     * @param version : version of the shape after this change
+     * @param origin  : number of the client that made the change
+     */
+    public static void writeDelete(ByteBuffer buffer, long id, long version, int origin) {
+        buffer.putInt(DELETE_FRAME_BYTES - 4);
+        buffer.put(DELETE);
+        buffer.putLong(id);
+        buffer.putLong(version);
+        buffer.putInt(origin);
+    }
+
+    /**
+     * Method to check if a buffer holds a complete frame at its position.
+     *
+     * @param buffer : buffer in read mode
+     * @return : true if the length prefix and the whole payload are available
+     */
+    public static boolean hasFrame(ByteBuffer buffer) {
+        return buffer.remaining() >= 4 && buffer.remaining() >= 4 + buffer.getInt(buffer.position());
+    }
+
+    /**
+     * Method to make room in a read buffer that a frame does not fit into, e.g. a long freehand stroke. To be called after
+     * compacting the buffer.
+     *
+     * @param buffer : buffer in write mode
+     * @return : the buffer, or a larger copy of it if it was full
+     */
+    public static ByteBuffer makeRoom(ByteBuffer buffer) {
+        if (buffer.hasRemaining()) {
+            return buffer;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    /**
+     * Method to check if a change wins over the current state of a shape under last-writer-wins: the higher version
+     * wins, ties are broken by the higher client number so that every replica picks the same winner.
+     *
+     * @param version        : version of the change
+     * @param origin         : client that made the change
+     * @param currentVersion : current version of the shape
+     * @param currentOrigin  : client that made the current version
+     * @return : true if the change replaces the current state
+     */
+    public static boolean wins(long version, int origin, long currentVersion, int currentOrigin) {
+        return version > currentVersion || (version == currentVersion && origin > currentOrigin);
+    }
+
+    /**
+     * Helper method to pack a colour into 8-bit RGBA. Shapes without a colour are stored as opaque black.
+     *
+     * @param color : colour to be packed
+     * @return : packed colour
+     */
+    public static int toRgba(Color color) {
+        if (color == null) {
+            return 0x000000FF;
+        }
+        return ((int) Math.round(color.getRed() * 255) << 24) | ((int) Math.round(color.getGreen() * 255) << 16)
+                | ((int) Math.round(color.getBlue() * 255) << 8) | (int) Math.round(color.getOpacity() * 255);
+    }
+
+    /**
+     * Helper method to unpack a colour packed by toRgba().
+     *
+     * @param rgba : packed colour
+     * @return : colour
+     */
+    public static Color fromRgba(int rgba) {
+        return Color.rgb(rgba >>> 24, (rgba >>> 16) & 0xFF, (rgba >>> 8) & 0xFF, (rgba & 0xFF) / 255.0);
+    }
+}
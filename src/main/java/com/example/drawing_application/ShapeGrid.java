@@ -0,0 +1,296 @@
+package com.example.drawing_application;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Uniform grid over the bounds of a list of shapes. Each cell stores the indexes of the shapes whose bounds overlap it,
+ * in z-order, so that point and region queries only look at the shapes near them. The grid is a snapshot of the shapes
+ * at the time it was built.
+ */
+public class ShapeGrid {
+    // upper limit for the number of cells along one axis
+    private static final int MAX_CELLS = 1024;
+    // shapes overlapping more cells than this are kept in a separate list instead of being copied into every cell
+    private static final int LARGE_SHAPE_CELLS = 64;
+    // number of points handed to one parallel task at a time
+    private static final int POINTS_PER_TASK = 4096;
+
+    /*
+        Instance variables to store the shapes, their bounds and the packed cell lists.
+     */
+    private final XShape[] shapes;
+    private final double[] bounds;
+    private final double minX, minY, cellWidth, cellHeight;
+    private final int columns, rows;
+    private final int[] cellStart;
+    private final int[] cellEntries;
+    private final int[] largeShapes;
+
+    /**
+     * Default constructor for this class. Builds the grid for the given shapes.
+     *
+     * @param shapeList : shapes to be indexed, in z-order
+     */
+    public ShapeGrid(List<XShape> shapeList) {
+        int n = shapeList.size();
+        shapes = shapeList.toArray(new XShape[0]);
+        bounds = new double[n * 4];
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            XShape shape = shapes[i];
+            bounds[i * 4] = shape.getBoundsLeft();
+            bounds[i * 4 + 1] = shape.getBoundsTop();
+            bounds[i * 4 + 2] = shape.getBoundsRight();
+            bounds[i * 4 + 3] = shape.getBoundsBottom();
+            x0 = Math.min(x0, bounds[i * 4]);
+            y0 = Math.min(y0, bounds[i * 4 + 1]);
+            x1 = Math.max(x1, bounds[i * 4 + 2]);
+            y1 = Math.max(y1, bounds[i * 4 + 3]);
+        }
+        if (n == 0) {
+            x0 = y0 = 0;
+            x1 = y1 = 1;
+        }
+
+        // aim for a handful of shapes per cell
+        int cellsPerAxis = (int) Math.max(1, Math.min(MAX_CELLS, Math.ceil(Math.sqrt(n / 2.0))));
+        minX = x0;
+        minY = y0;
+        columns = cellsPerAxis;
+        rows = cellsPerAxis;
+        cellWidth = Math.max((x1 - x0) / columns, Double.MIN_NORMAL);
+        cellHeight = Math.max((y1 - y0) / rows, Double.MIN_NORMAL);
+
+        // count the shapes per cell, turn the counts into offsets and fill the cells in z-order
+        cellStart = new int[columns * rows + 1];
+        boolean[] large = new boolean[n];
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            long cells = (long) (row(bounds[i * 4 + 3]) - row(bounds[i * 4 + 1]) + 1)
+                    * (column(bounds[i * 4 + 2]) - column(bounds[i * 4]) + 1);
+            if (cells > LARGE_SHAPE_CELLS) {
+                large[i] = true;
+                largeCount++;
+                continue;
+            }
+            for (int row = row(bounds[i * 4 + 1]); row <= row(bounds[i * 4 + 3]); row++) {
+                for (int col = column(bounds[i * 4]); col <= column(bounds[i * 4 + 2]); col++) {
+                    cellStart[row * columns + col + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellEntries = new int[cellStart[columns * rows]];
+        largeShapes = new int[largeCount];
+        int[] next = Arrays.copyOf(cellStart, columns * rows);
+        for (int i = 0, l = 0; i < n; i++) {
+            if (large[i]) {
+                largeShapes[l++] = i;
+                continue;
+            }
+            for (int row = row(bounds[i * 4 + 1]); row <= row(bounds[i * 4 + 3]); row++) {
+                for (int col = column(bounds[i * 4]); col <= column(bounds[i * 4 + 2]); col++) {
+                    cellEntries[next[row * columns + col]++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to find the top-most shape containing the given point.
+     *
+     * @param x : x coordinate to be checked
+     * @param y : y coordinate to be checked
+     * @return : index of the shape with the highest z-order containing the point, or -1 if there is none
+     */
+    public int topShapeAt(double x, double y) {
+        int cell = cellAt(x, y);
+        if (cell < 0) {
+            return -1;
+        }
+        // cells are in z-order, search in reverse to find the highest z-order first
+        int top = -1;
+        for (int k = cellStart[cell + 1] - 1; k >= cellStart[cell]; k--) {
+            if (hit(cellEntries[k], x, y)) {
+                top = cellEntries[k];
+                break;
+            }
+        }
+        // a large shape only wins if it is above the shape found in the cell
+        for (int k = largeShapes.length - 1; k >= 0 && largeShapes[k] > top; k--) {
+            if (hit(largeShapes[k], x, y)) {
+                return largeShapes[k];
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Method to find the top-most shape for each of the given points. Points are processed in parallel.
+     *
+     * @param xs : x coordinates of the points
+     * @param ys : y coordinates of the points
+     * @return : index of the top-most shape for every point, or -1 for points not inside any shape
+     */
+    public int[] topShapesAt(double[] xs, double[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("Number of x and y coordinates differ");
+        }
+        int[] result = new int[xs.length];
+        int tasks = (xs.length + POINTS_PER_TASK - 1) / POINTS_PER_TASK;
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            int end = Math.min(xs.length, (t + 1) * POINTS_PER_TASK);
+            for (int p = t * POINTS_PER_TASK; p < end; p++) {
+                result[p] = topShapeAt(xs[p], ys[p]);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Method to count how many shapes contain each of the given points. Points are processed in parallel.
+     *
+     * @param xs : x coordinates of the points
+     * @param ys : y coordinates of the points
+     * @return : number of shapes containing each point
+     */
+    public int[] countShapesAt(double[] xs, double[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("Number of x and y coordinates differ");
+        }
+        int[] result = new int[xs.length];
+        int tasks = (xs.length + POINTS_PER_TASK - 1) / POINTS_PER_TASK;
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            int end = Math.min(xs.length, (t + 1) * POINTS_PER_TASK);
+            for (int p = t * POINTS_PER_TASK; p < end; p++) {
+                double x = xs[p], y = ys[p];
+                int cell = cellAt(x, y);
+                if (cell < 0) {
+                    continue;
+                }
+                int count = 0;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    if (hit(cellEntries[k], x, y)) {
+                        count++;
+                    }
+                }
+                for (int i : largeShapes) {
+                    if (hit(i, x, y)) {
+                        count++;
+                    }
+                }
+                result[p] = count;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Method to find all shapes whose bounds intersect the given region.
+     *
+     * @param left   : x coordinate of the top-left corner of the region
+     * @param top    : y coordinate of the top-left corner of the region
+     * @param width  : width of the region
+     * @param height : height of the region
+     * @return : indexes of the intersecting shapes in z-order
+     */
+    public int[] shapesIntersecting(double left, double top, double width, double height) {
+        double right = left + width, bottom = top + height;
+        if (shapes.length == 0 || right < minX || bottom < minY
+                || left > minX + cellWidth * columns || top > minY + cellHeight * rows) {
+            return new int[0];
+        }
+        // a shape spanning several cells is only reported once
+        boolean[] seen = new boolean[shapes.length];
+        int found = 0;
+        for (int row = row(top); row <= row(bottom); row++) {
+            for (int col = column(left); col <= column(right); col++) {
+                int cell = row * columns + col;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellEntries[k];
+                    if (!seen[i] && bounds[i * 4] <= right && bounds[i * 4 + 2] >= left
+                            && bounds[i * 4 + 1] <= bottom && bounds[i * 4 + 3] >= top) {
+                        seen[i] = true;
+                        found++;
+                    }
+                }
+            }
+        }
+        for (int i : largeShapes) {
+            if (bounds[i * 4] <= right && bounds[i * 4 + 2] >= left && bounds[i * 4 + 1] <= bottom && bounds[i * 4 + 3] >= top) {
+                seen[i] = true;
+                found++;
+            }
+        }
+        int[] result = new int[found];
+        int next = 0;
+        for (int i = 0; i < seen.length && next < found; i++) {
+            if (seen[i]) {
+                result[next++] = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Getter method for the shape at the given index of the snapshot.
+     *
+     * @param index : index of the shape
+     * @return : shape at that index
+     */
+    public XShape getShape(int index) {
+        return shapes[index];
+    }
+
+    /**
+     * Helper method to check a point against the bounds of a shape first and the shape itself after.
+     *
+     * @param i : index of the shape
+     * @param x : x coordinate
+     * @param y : y coordinate
+     * @return : true if the shape contains the point
+     */
+    private boolean hit(int i, double x, double y) {
+        return x >= bounds[i * 4] && x <= bounds[i * 4 + 2] && y >= bounds[i * 4 + 1] && y <= bounds[i * 4 + 3]
+                && shapes[i].contains(x, y);
+    }
+
+    /**
+     * Helper method to find the cell of a point.
+     *
+     * @param x : x coordinate
+     * @param y : y coordinate
+     * @return : index of the cell, or -1 if the point is outside the grid
+     */
+    private int cellAt(double x, double y) {
+        double cx = (x - minX) / cellWidth, cy = (y - minY) / cellHeight;
+        if (!(cx >= 0 && cx <= columns && cy >= 0 && cy <= rows)) {
+            return -1;
+        }
+        return row(y) * columns + column(x);
+    }
+
+    /**
+     * Helper method to find the column of an x coordinate, clamped to the grid.
+     *
+     * @param x : x coordinate
+     * @return : column
+     */
+    private int column(double x) {
+        return (int) Math.max(0, Math.min(columns - 1, Math.floor((x - minX) / cellWidth)));
+    }
+
+    /**
+     * Helper method to find the row of a y coordinate, clamped to the grid.
+     *
+     * @param y : y coordinate
+     * @return : row
+     */
+    private int row(double y) {
+        return (int) Math.max(0, Math.min(rows - 1, Math.floor((y - minY) / cellHeight)));
+    }
+}
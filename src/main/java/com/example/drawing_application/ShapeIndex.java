@@ -0,0 +1,159 @@
+package com.example.drawing_application;
+
+import java.util.Arrays;
+
+/**
+ * Hash index from shape ids to shapes. Uses open addressing with linear probing over primitive arrays, so that lookups,
+ * insertions and removals take constant time and do not box the ids.
+ */
+public class ShapeIndex {
+    // the table is grown once it is more than this full
+    private static final double MAX_LOAD = 0.5;
+
+    /*
+        Instance variables to store the ids and shapes of the table and the number of shapes in it. Empty slots have a
+        null shape.
+     */
+    private long[] ids;
+    private XShape[] shapes;
+    private int size;
+
+    /**
+     * Default constructor for this class. Creates an empty index.
+     */
+    public ShapeIndex() {
+        ids = new long[16];
+        shapes = new XShape[16];
+    }
+
+    /**
+     * Method to find a shape by its id.
+     *
+     * @param id : id of the shape
+     * @return : the shape, or null if there is no shape with this id
+     */
+    public XShape get(long id) {
+        int mask = ids.length - 1;
+        for (int slot = slot(id, mask); shapes[slot] != null; slot = (slot + 1) & mask) {
+            if (ids[slot] == id) {
+                return shapes[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method to add a shape under its id, replacing any shape with the same id.
+     *
+     * @param shape : shape to be added
+     */
+    public void put(XShape shape) {
+        if (size + 1 > ids.length * MAX_LOAD) {
+            rehash(ids.length * 2);
+        }
+        long id = shape.getId();
+        int mask = ids.length - 1;
+        int slot = slot(id, mask);
+        while (shapes[slot] != null && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        if (shapes[slot] == null) {
+            size++;
+        }
+        ids[slot] = id;
+        shapes[slot] = shape;
+    }
+
+    /**
+     * Method to make room for a number of shapes that are about to be added, so that the table is grown at most once.
+     *
+     * @param count : number of shapes to be added
+     */
+    public void ensureCapacity(int count) {
+        int capacity = ids.length;
+        while (size + count > capacity * MAX_LOAD) {
+            capacity *= 2;
+        }
+        if (capacity != ids.length) {
+            rehash(capacity);
+        }
+    }
+
+    /**
+     * Method to remove the shape with the given id.
+     *
+     * @param id : id of the shape
+     * @return : the removed shape, or null if there was no shape with this id
+     */
+    public XShape remove(long id) {
+        int mask = ids.length - 1;
+        int slot = slot(id, mask);
+        while (shapes[slot] != null && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        XShape removed = shapes[slot];
+        if (removed == null) {
+            return null;
+        }
+        // shift the following entries of the probe run back so that no lookup stops at the hole
+        int hole = slot;
+        for (int next = (hole + 1) & mask; shapes[next] != null; next = (next + 1) & mask) {
+            int home = slot(ids[next], mask);
+            // move the entry if its home slot is not between the hole and its current slot (cyclically)
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                ids[hole] = ids[next];
+                shapes[hole] = shapes[next];
+                hole = next;
+            }
+        }
+        shapes[hole] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Method to remove all shapes.
+     */
+    public void clear() {
+        Arrays.fill(shapes, null);
+        size = 0;
+    }
+
+    /**
+     * Getter method for the number of shapes in the index.
+     *
+     * @return : number of shapes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Helper method to grow the table and re-insert every shape.
+     *
+     * @param capacity : new capacity, a power of two
+     */
+    private void rehash(int capacity) {
+        XShape[] oldShapes = shapes;
+        ids = new long[capacity];
+        shapes = new XShape[capacity];
+        size = 0;
+        for (XShape shape : oldShapes) {
+            if (shape != null) {
+                put(shape);
+            }
+        }
+    }
+
+    /**
+     * Helper method to find the home slot of an id by mixing its bits.
+     *
+     * @param id   : id of a shape
+     * @param mask : capacity of the table minus one
+     * @return : home slot
+     */
+    private static int slot(long id, int mask) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -5,28 +5,35 @@ import javafx.scene.effect.DropShadow;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
 import javafx.scene.shape.*;
 
 /**
- * View class that creates 5 buttons to let the user select which shape to create on to the canvas. The shapes in order
- * are: Rectangle, Square, Circle, Oval and Line. The selected shape has a drop-shadow and a fill of the selected colour
- * in the iModel.
+ * View class that creates 6 buttons to let the user select which shape to create on to the canvas. The shapes in order
+ * are: Rectangle, Square, Circle, Oval, Line and Pen (freehand). The selected shape has a drop-shadow and a fill of the
+ * selected colour in the iModel.
  */
 public class ShapeToolbar extends VBox implements InteractionModelSubscriber {
     /*
         Instance variables to store buttons, graphics and the list to contain them.
      */
     InteractionModel iModel;
-    ToggleButton buttonRect, buttonSquare, buttonCircle, buttonOval, buttonLine;
+    ToggleButton buttonRect, buttonSquare, buttonCircle, buttonOval, buttonLine, buttonPen;
     Rectangle rect;
     Rectangle square;
     Circle circle;
     Ellipse oval;
     Line line;
+    Polyline pen;
     ToggleButton selectedButton;
     Shape selectedShape;
     ToggleButton[] buttons;
     Shape[] shapes;
+    // drop shadow of the selected button and the selection/colour it currently shows, so that iModel changes which do
+    // not affect the toolbar (e.g. panning) neither allocate nor touch the scene graph
+    DropShadow selectedShadow;
+    ToggleButton shownButton;
+    Paint shownColour;
 
     /**
      * Default constructor for this class. Sets up the buttons and adds graphic shapes to them.
@@ -46,7 +53,8 @@ public class ShapeToolbar extends VBox implements InteractionModelSubscriber {
         circle = new Circle(0, 0, 10);
         oval = new Ellipse(0, 0, 15, 10);
         line = new Line(0, 0, 10, 10);
-        shapes = new Shape[]{rect, square, circle, oval, line};
+        pen = new Polyline(0, 8, 4, 0, 8, 10, 12, 2, 16, 6);
+        shapes = new Shape[]{rect, square, circle, oval, line, pen};
     }
 
     /**
@@ -68,7 +76,10 @@ public class ShapeToolbar extends VBox implements InteractionModelSubscriber {
         buttonLine = new ToggleButton("Line");
         buttonLine.setGraphic(line);
 
-        buttons = new ToggleButton[]{buttonRect, buttonSquare, buttonCircle, buttonOval, buttonLine};
+        buttonPen = new ToggleButton("Pen");
+        buttonPen.setGraphic(pen);
+
+        buttons = new ToggleButton[]{buttonRect, buttonSquare, buttonCircle, buttonOval, buttonLine, buttonPen};
 
         // set up properties for each button
         for (ToggleButton b : buttons) {
@@ -81,10 +92,13 @@ public class ShapeToolbar extends VBox implements InteractionModelSubscriber {
 
         // Initial selection of the default button
         buttonSquare.setSelected(true);
-        buttonSquare.setEffect(new DropShadow(25, Color.AQUA));
+        selectedShadow = new DropShadow(25, Color.AQUA);
+        buttonSquare.setEffect(selectedShadow);
         square.setFill(Color.AQUA);
         selectedButton = buttonSquare;
         selectedShape = square;
+        shownButton = buttonSquare;
+        shownColour = Color.AQUA;
     }
 
     /**
@@ -133,6 +147,12 @@ public class ShapeToolbar extends VBox implements InteractionModelSubscriber {
             selectedShape = line;
             changeSelection();
         });
+        buttonPen.setOnAction(e -> {
+            controller.setNewShape(5);
+            selectedButton = buttonPen;
+            selectedShape = pen;
+            changeSelection();
+        });
     }
 
     /**
@@ -140,9 +160,16 @@ public class ShapeToolbar extends VBox implements InteractionModelSubscriber {
      * drop shadow to the selected shape.
      */
     private void changeSelection() {
+        Paint colour = iModel.getCurrentColour();
+        if (selectedButton == shownButton && colour == shownColour) {
+            return;
+        }
+        shownButton = selectedButton;
+        shownColour = colour;
         for (ToggleButton b : buttons) {
             if (b == selectedButton) {
-                b.setEffect(new DropShadow(25, (Color) iModel.getCurrentColour()));
+                selectedShadow.setColor((Color) colour);
+                b.setEffect(selectedShadow);
             } else {
                 b.setSelected(false);
                 b.setEffect(null);
@@ -152,8 +179,8 @@ public class ShapeToolbar extends VBox implements InteractionModelSubscriber {
             s.setFill(Color.BLACK);
             s.setStroke(Color.BLACK);
         }
-        selectedShape.setStroke(iModel.getCurrentColour());
-        selectedShape.setFill(iModel.getCurrentColour());
+        selectedShape.setStroke(colour);
+        selectedShape.setFill(colour);
     }
 
     /**
@@ -0,0 +1,423 @@
+package com.example.drawing_application;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Nearest-neighbour index over the anchors of the shapes of a model, used to snap the pointer or a dragged shape to the
+ * edges and centres of the shapes near it. Every shape has nine anchors: the corners, the middles of the edges and the
+ * centre of its bounds.
+ * <p>
+ * Shapes are hashed into the square cells of CELL_SIZE their anchors fall into, most of them into a single one, so a
+ * query only looks at the shapes in the cells within its radius, however many shapes the model has. The model tells the
+ * index about every change: a typed change moves only the shapes it names, e.g. the one shape dragged on every tick,
+ * while any other change marks the index stale and it is rebuilt on the next query.
+ * <p>
+ * Cells are kept like ShapeIndex keeps shapes, in an open-addressing table over primitive arrays, and the shapes of a
+ * cell in a linked list through per-shape nodes, so that moving a shape and looking up the cells around a point do not
+ * allocate once the arrays are large enough.
+ */
+public class SnapIndex {
+    // anchors per shape
+    public static final int ANCHORS = 9;
+    // width and height of a cell, in normalized coordinates
+    private static final double CELL_SIZE = 1.0 / 128;
+    // the table of cells is grown once it is more than this full
+    private static final double MAX_LOAD = 0.5;
+
+    /*
+        Instance variables to store the model and whether the index has to be rebuilt from it.
+     */
+    private final DrawingModel model;
+    private boolean stale;
+
+    /*
+        Instance variables to store the anchors in slots of ANCHORS consecutive entries per shape, the shape owning each
+        slot and the slots free for reuse. A shape knows its slot (XShape.snapSlot).
+     */
+    private double[] anchorX;
+    private double[] anchorY;
+    private XShape[] owners;
+    private int[] freeSlots;
+    private int freeCount, slotCount;
+
+    /*
+        Instance variables to store the cells: their packed columns and rows, the first node of the list of shapes in
+        each (-1 for an empty slot of the table) and the number of cells. The k-th distinct cell of the shape in a slot
+        has the node slot * ANCHORS + k, linked to the next and previous nodes of the cell.
+     */
+    private long[] cellKeys;
+    private int[] cellHeads;
+    private int cellCount;
+    private int[] next;
+    private int[] prev;
+    // keys of the distinct cells of the shape being added or removed
+    private final long[] keys = new long[ANCHORS];
+
+    /**
+     * Default constructor for this class. The index is built on the first query.
+     *
+     * @param model : model whose shapes are indexed
+     */
+    public SnapIndex(DrawingModel model) {
+        this.model = model;
+        this.cellKeys = new long[1024];
+        this.cellHeads = new int[1024];
+        Arrays.fill(cellHeads, -1);
+        this.anchorX = new double[ANCHORS * 16];
+        this.anchorY = new double[ANCHORS * 16];
+        this.next = new int[ANCHORS * 16];
+        this.prev = new int[ANCHORS * 16];
+        this.owners = new XShape[16];
+        this.freeSlots = new int[16];
+        this.stale = true;
+    }
+
+    /**
+     * Method to mark the index stale after a change of the model it cannot see into.
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Method to move the anchors of the shapes named by a change of the model.
+     *
+     * @param event : the change
+     */
+    public void update(ModelEvent event) {
+        if (stale) {
+            return;
+        }
+        switch (event.getType()) {
+            case ADDED, MOVED, RESIZED -> {
+                List<XShape> shapes = event.getShapes();
+                for (int i = 0; i < shapes.size(); i++) {
+                    remove(shapes.get(i));
+                    add(shapes.get(i));
+                }
+            }
+            case REMOVED -> {
+                List<XShape> shapes = event.getShapes();
+                for (int i = 0; i < shapes.size(); i++) {
+                    remove(shapes.get(i));
+                }
+            }
+            case RECOLOURED -> {
+                // anchors do not depend on the colour
+            }
+        }
+    }
+
+    /**
+     * Method to find the anchor nearest to a point, within a radius.
+     *
+     * @param x       : x coordinate of the point
+     * @param y       : y coordinate of the point
+     * @param radius  : largest distance to look at
+     * @param exclude : shape whose anchors are ignored, e.g. the one being dragged, or null
+     * @return : entry of the nearest anchor, see getAnchorX() and getAnchorY(), or -1 if there is none within the radius
+     */
+    public int nearest(double x, double y, double radius, XShape exclude) {
+        if (stale) {
+            rebuild();
+        }
+        int col0 = cellOf(x - radius), col1 = cellOf(x + radius);
+        int row0 = cellOf(y - radius), row1 = cellOf(y + radius);
+        int found = -1;
+        double best = radius * radius;
+        for (int row = row0; row <= row1; row++) {
+            for (int col = col0; col <= col1; col++) {
+                int cell = find(key(col, row));
+                for (int node = cell < 0 ? -1 : cellHeads[cell]; node >= 0; node = next[node]) {
+                    int slot = node / ANCHORS;
+                    if (owners[slot] == exclude) {
+                        continue;
+                    }
+                    for (int entry = slot * ANCHORS; entry < (slot + 1) * ANCHORS; entry++) {
+                        double dX = anchorX[entry] - x, dY = anchorY[entry] - y;
+                        double distance = dX * dX + dY * dY;
+                        if (distance <= best) {
+                            best = distance;
+                            found = entry;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Getter method for the x coordinate of an anchor.
+     *
+     * @param entry : entry of the anchor, from nearest()
+     * @return : x coordinate
+     */
+    public double getAnchorX(int entry) {
+        return anchorX[entry];
+    }
+
+    /**
+     * Getter method for the y coordinate of an anchor.
+     *
+     * @param entry : entry of the anchor, from nearest()
+     * @return : y coordinate
+     */
+    public double getAnchorY(int entry) {
+        return anchorY[entry];
+    }
+
+    /**
+     * Method to find the anchors of bounds, as the index would store them.
+     *
+     * @param left   : x coordinate of the left edge
+     * @param top    : y coordinate of the top edge
+     * @param right  : x coordinate of the right edge
+     * @param bottom : y coordinate of the bottom edge
+     * @param xs     : array receiving the ANCHORS x coordinates
+     * @param ys     : array receiving the ANCHORS y coordinates
+     * @param offset : index of the first anchor in the arrays
+     */
+    public static void anchorsOf(double left, double top, double right, double bottom, double[] xs, double[] ys, int offset) {
+        for (int i = 0; i < ANCHORS; i++) {
+            xs[offset + i] = left + (right - left) * (i % 3) / 2;
+            ys[offset + i] = top + (bottom - top) * (i / 3) / 2;
+        }
+    }
+
+    /**
+     * Helper method to index the anchors of every shape of the model again.
+     */
+    private void rebuild() {
+        Arrays.fill(cellHeads, -1);
+        cellCount = 0;
+        Arrays.fill(owners, 0, slotCount, null);
+        slotCount = 0;
+        freeCount = 0;
+        List<XShape> shapes = model.getShapes();
+        if (owners.length < shapes.size()) {
+            owners = new XShape[shapes.size()];
+            anchorX = new double[shapes.size() * ANCHORS];
+            anchorY = new double[shapes.size() * ANCHORS];
+            next = new int[shapes.size() * ANCHORS];
+            prev = new int[shapes.size() * ANCHORS];
+        }
+        for (XShape shape : shapes) {
+            add(shape);
+        }
+        stale = false;
+    }
+
+    /**
+     * Helper method to store the anchors of a shape and add it to the cells they fall into.
+     *
+     * @param shape : shape to be indexed
+     */
+    private void add(XShape shape) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount == owners.length) {
+                owners = Arrays.copyOf(owners, slotCount * 2);
+                anchorX = Arrays.copyOf(anchorX, slotCount * 2 * ANCHORS);
+                anchorY = Arrays.copyOf(anchorY, slotCount * 2 * ANCHORS);
+                next = Arrays.copyOf(next, slotCount * 2 * ANCHORS);
+                prev = Arrays.copyOf(prev, slotCount * 2 * ANCHORS);
+            }
+            slot = slotCount++;
+        }
+        owners[slot] = shape;
+        shape.snapSlot = slot;
+        anchorsOf(shape.getBoundsLeft(), shape.getBoundsTop(), shape.getBoundsRight(), shape.getBoundsBottom(),
+                anchorX, anchorY, slot * ANCHORS);
+        int count = cellsOf(slot);
+        for (int k = 0; k < count; k++) {
+            // the node goes first in the list of its cell
+            int node = slot * ANCHORS + k, cell = insert(keys[k]);
+            int head = cellHeads[cell];
+            next[node] = head;
+            prev[node] = -1;
+            if (head >= 0) {
+                prev[head] = node;
+            }
+            cellHeads[cell] = node;
+        }
+    }
+
+    /**
+     * Helper method to take a shape out of its cells and free its slot.
+     *
+     * @param shape : shape to be taken out, ignored if it is not indexed
+     */
+    private void remove(XShape shape) {
+        int slot = shape.snapSlot;
+        if (slot < 0 || slot >= slotCount || owners[slot] != shape) {
+            return;
+        }
+        int count = cellsOf(slot);
+        for (int k = 0; k < count; k++) {
+            // the anchors are the ones stored when the shape was added, so are the cells and their nodes
+            int node = slot * ANCHORS + k;
+            if (next[node] >= 0) {
+                prev[next[node]] = prev[node];
+            }
+            if (prev[node] >= 0) {
+                next[prev[node]] = next[node];
+            } else {
+                int cell = find(keys[k]);
+                cellHeads[cell] = next[node];
+                if (next[node] < 0) {
+                    delete(cell);
+                }
+            }
+        }
+        owners[slot] = null;
+        shape.snapSlot = -1;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Helper method to find the distinct cells the anchors of a slot fall into. The keys are left in keys.
+     *
+     * @param slot : slot of the shape
+     * @return : number of cells
+     */
+    private int cellsOf(int slot) {
+        int count = 0;
+        for (int entry = slot * ANCHORS; entry < (slot + 1) * ANCHORS; entry++) {
+            long key = key(cellOf(anchorX[entry]), cellOf(anchorY[entry]));
+            int k = 0;
+            while (k < count && keys[k] != key) {
+                k++;
+            }
+            if (k == count) {
+                keys[count++] = key;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Helper method to find a cell in the table.
+     *
+     * @param key : key of the cell
+     * @return : its slot in the table, or -1 if no shape has anchors in it
+     */
+    private int find(long key) {
+        int mask = cellKeys.length - 1;
+        for (int i = hash(key, mask); cellHeads[i] >= 0; i = (i + 1) & mask) {
+            if (cellKeys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Helper method to find a cell in the table, adding it with an empty list if it is not there.
+     *
+     * @param key : key of the cell
+     * @return : its slot in the table, whose head is -1 for a new cell until a node is linked in
+     */
+    private int insert(long key) {
+        int cell = find(key);
+        if (cell >= 0) {
+            return cell;
+        }
+        if (cellCount + 1 > cellKeys.length * MAX_LOAD) {
+            rehash(cellKeys.length * 2);
+        }
+        int mask = cellKeys.length - 1;
+        cell = hash(key, mask);
+        while (cellHeads[cell] >= 0) {
+            cell = (cell + 1) & mask;
+        }
+        cellKeys[cell] = key;
+        cellCount++;
+        return cell;
+    }
+
+    /**
+     * Helper method to take an empty cell out of the table, shifting the following cells of its probe run back as
+     * ShapeIndex.remove() does.
+     *
+     * @param cell : slot of the cell in the table
+     */
+    private void delete(int cell) {
+        int mask = cellKeys.length - 1;
+        int hole = cell;
+        for (int i = (hole + 1) & mask; cellHeads[i] >= 0; i = (i + 1) & mask) {
+            int home = hash(cellKeys[i], mask);
+            // move the cell if its home slot is not between the hole and its current slot (cyclically)
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                cellKeys[hole] = cellKeys[i];
+                cellHeads[hole] = cellHeads[i];
+                hole = i;
+            }
+        }
+        cellHeads[hole] = -1;
+        cellCount--;
+    }
+
+    /**
+     * Helper method to grow the table and re-insert every cell with its list.
+     *
+     * @param capacity : new capacity, a power of two
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = cellKeys;
+        int[] oldHeads = cellHeads;
+        cellKeys = new long[capacity];
+        cellHeads = new int[capacity];
+        Arrays.fill(cellHeads, -1);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] >= 0) {
+                int cell = hash(oldKeys[i], mask);
+                while (cellHeads[cell] >= 0) {
+                    cell = (cell + 1) & mask;
+                }
+                cellKeys[cell] = oldKeys[i];
+                cellHeads[cell] = oldHeads[i];
+            }
+        }
+    }
+
+    /**
+     * Helper method to find the home slot of a cell by mixing the bits of its key.
+     *
+     * @param key  : key of the cell
+     * @param mask : capacity of the table minus one
+     * @return : home slot
+     */
+    private static int hash(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Helper method to find the column or row of the cell holding a coordinate.
+     *
+     * @param coordinate : normalized coordinate
+     * @return : column or row
+     */
+    private static int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    /**
+     * Helper method to pack the column and row of a cell into a key.
+     *
+     * @param col : column of the cell
+     * @param row : row of the cell
+     * @return : key of the cell
+     */
+    private static long key(int col, int row) {
+        return ((long) col << 32) | (row & 0xffffffffL);
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.drawing_application;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renderer that rasterizes a list of shapes into fixed size tiles on a ForkJoin pool. The shapes are copied into a
+ * primitive render list on the JavaFX Application Thread, rasterized in parallel off that thread and the finished tiles
+ * are then uploaded to a canvas through its PixelWriter.
+ */
+public class TileRenderer {
+    /*
+        Size of a tile in pixels and the primitives understood by the renderer.
+     */
+    public static final int TILE_SIZE = 128;
+    public static final byte RECTANGLE = 0, OVAL = 1, LINE = 2;
+    // number of tiles below which a task does not split any further
+    private static final int TILE_THRESHOLD = 2;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Default constructor for this class. Renders on the common ForkJoin pool.
+     */
+    public TileRenderer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for this class that renders on the given pool.
+     *
+     * @param pool : pool to rasterize the tiles on
+     */
+    public TileRenderer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Method to rasterize the render list into tiles covering a canvas of the given size. The render list must not be
+     * changed until the returned future is complete.
+     *
+     * @param list   : shapes to be drawn, in z-order
+     * @param width  : width of the canvas
+     * @param height : height of the canvas
+     * @return : future that completes with the finished tiles
+     */
+    public CompletableFuture<Tile[]> render(RenderList list, int width, int height) {
+        return CompletableFuture.supplyAsync(() -> {
+            int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+            int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+            Tile[] tiles = new Tile[columns * rows];
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < columns; col++) {
+                    int x = col * TILE_SIZE, y = row * TILE_SIZE;
+                    tiles[row * columns + col] = new Tile(x, y, Math.min(TILE_SIZE, width - x), Math.min(TILE_SIZE, height - y));
+                }
+            }
+            Bins bins = new Bins(list, columns, rows);
+            new TileTask(list, bins, tiles, 0, tiles.length).invoke();
+            return tiles;
+        }, pool);
+    }
+
+    /**
+     * Method to upload finished tiles to a canvas. Must be called on the JavaFX Application Thread.
+     *
+     * @param tiles  : tiles to be uploaded
+     * @param writer : pixel writer of the canvas' graphics context
+     */
+    public static void upload(Tile[] tiles, PixelWriter writer) {
+        PixelFormat<IntBuffer> format = PixelFormat.getIntArgbPreInstance();
+        for (Tile tile : tiles) {
+            if (tile.width > 0 && tile.height > 0) {
+                writer.setPixels(tile.x, tile.y, tile.width, tile.height, format, tile.pixels, 0, tile.width);
+            }
+        }
+    }
+
+    /**
+     * Helper method to rasterize every shape of the render list that touches the given tile.
+     *
+     * @param list : shapes to be drawn
+     * @param bins : shapes binned per tile
+     * @param tile : tile to be drawn
+     * @param bin  : index of the tile's bin
+     */
+    private static void rasterize(RenderList list, Bins bins, Tile tile, int bin) {
+        Rasterizer rasterizer = new Rasterizer(tile.pixels, tile.x, tile.y, tile.width, tile.height);
+        for (int k = bins.start[bin]; k < bins.start[bin + 1]; k++) {
+            int i = bins.entries[k];
+            double x = list.coords[i * 4], y = list.coords[i * 4 + 1];
+            double w = list.coords[i * 4 + 2], h = list.coords[i * 4 + 3];
+            int colour = list.colours[i];
+            switch (list.kinds[i]) {
+                case RECTANGLE -> {
+                    rasterizer.fillRect(x, y, w, h, colour);
+                    rasterizer.strokeRect(x, y, w, h, 0xFF000000);
+                }
+                case OVAL -> {
+                    rasterizer.fillOval(x, y, w, h, colour);
+                    rasterizer.strokeOval(x, y, w, h, 0xFF000000);
+                }
+                // line stores the end point instead of the size
+                case LINE -> rasterizer.drawLine(x, y, w, h, colour);
+            }
+        }
+    }
+
+    /**
+     * Render list of shapes stored in primitive arrays. Shapes are stored in canvas coordinates in the order they are
+     * to be drawn.
+     */
+    public static class RenderList {
+        byte[] kinds;
+        double[] coords;
+        int[] colours;
+        int size;
+
+        /**
+         * Default constructor for this class. Creates an empty render list.
+         */
+        public RenderList() {
+            kinds = new byte[64];
+            coords = new double[64 * 4];
+            colours = new int[64];
+        }
+
+        /**
+         * Method to append a shape to the render list.
+         *
+         * @param kind   : primitive of the shape, one of RECTANGLE, OVAL or LINE
+         * @param x      : x coordinate of the top-left corner or the start of a line
+         * @param y      : y coordinate of the top-left corner or the start of a line
+         * @param w      : width of the shape or x coordinate of the end of a line
+         * @param h      : height of the shape or y coordinate of the end of a line
+         * @param colour : pre-multiplied ARGB colour of the shape
+         */
+        public void add(byte kind, double x, double y, double w, double h, int colour) {
+            if (size == kinds.length) {
+                kinds = Arrays.copyOf(kinds, size * 2);
+                coords = Arrays.copyOf(coords, size * 8);
+                colours = Arrays.copyOf(colours, size * 2);
+            }
+            kinds[size] = kind;
+            coords[size * 4] = x;
+            coords[size * 4 + 1] = y;
+            coords[size * 4 + 2] = w;
+            coords[size * 4 + 3] = h;
+            colours[size] = colour;
+            size++;
+        }
+
+        /**
+         * Method to empty the render list, keeping its arrays for the next frame.
+         */
+        public void clear() {
+            size = 0;
+        }
+
+        /**
+         * Getter method for the number of shapes in the list.
+         *
+         * @return : number of shapes
+         */
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * A rectangular block of the canvas and its pixels in pre-multiplied ARGB.
+     */
+    public static class Tile {
+        final int x, y, width, height;
+        final int[] pixels;
+
+        /**
+         * Default constructor for this class. Creates a transparent tile.
+         *
+         * @param x      : x coordinate of the tile on the canvas
+         * @param y      : y coordinate of the tile on the canvas
+         * @param width  : width of the tile
+         * @param height : height of the tile
+         */
+        Tile(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.pixels = new int[Math.max(width, 0) * Math.max(height, 0)];
+        }
+    }
+
+    /**
+     * Indexes of the shapes that touch each tile, kept in z-order and packed into one array per render.
+     */
+    private static class Bins {
+        final int[] start;
+        final int[] entries;
+
+        /**
+         * Default constructor for this class. Bins every shape of the render list with a counting pass followed by a
+         * filling pass.
+         *
+         * @param list    : shapes to be binned
+         * @param columns : number of tile columns
+         * @param rows    : number of tile rows
+         */
+        Bins(RenderList list, int columns, int rows) {
+            int[] range = new int[4];
+            start = new int[columns * rows + 1];
+            for (int i = 0; i < list.size; i++) {
+                if (tileRange(list, i, columns, rows, range)) {
+                    for (int row = range[1]; row <= range[3]; row++) {
+                        for (int col = range[0]; col <= range[2]; col++) {
+                            start[row * columns + col + 1]++;
+                        }
+                    }
+                }
+            }
+            for (int b = 0; b < columns * rows; b++) {
+                start[b + 1] += start[b];
+            }
+            entries = new int[start[columns * rows]];
+            int[] next = Arrays.copyOf(start, columns * rows);
+            for (int i = 0; i < list.size; i++) {
+                if (tileRange(list, i, columns, rows, range)) {
+                    for (int row = range[1]; row <= range[3]; row++) {
+                        for (int col = range[0]; col <= range[2]; col++) {
+                            entries[next[row * columns + col]++] = i;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Helper method to find the range of tiles touched by a shape, including a pixel for its outline.
+         *
+         * @param list    : render list
+         * @param i       : index of the shape
+         * @param columns : number of tile columns
+         * @param rows    : number of tile rows
+         * @param range   : output for the first column, first row, last column and last row
+         * @return : true if the shape touches any tile
+         */
+        private static boolean tileRange(RenderList list, int i, int columns, int rows, int[] range) {
+            double x1 = list.coords[i * 4], y1 = list.coords[i * 4 + 1];
+            double x2 = list.coords[i * 4 + 2], y2 = list.coords[i * 4 + 3];
+            if (list.kinds[i] != LINE) {
+                x2 += x1;
+                y2 += y1;
+            }
+            double minX = Math.min(x1, x2) - 1, maxX = Math.max(x1, x2) + 1;
+            double minY = Math.min(y1, y2) - 1, maxY = Math.max(y1, y2) + 1;
+            range[0] = (int) Math.max(0, Math.floor(minX / TILE_SIZE));
+            range[1] = (int) Math.max(0, Math.floor(minY / TILE_SIZE));
+            range[2] = (int) Math.min(columns - 1, Math.floor(maxX / TILE_SIZE));
+            range[3] = (int) Math.min(rows - 1, Math.floor(maxY / TILE_SIZE));
+            return range[0] <= range[2] && range[1] <= range[3];
+        }
+    }
+
+    /**
+     * Fork/join task that splits a range of tiles in half until it is small enough to rasterize directly.
+     */
+    private static class TileTask extends RecursiveAction {
+        final RenderList list;
+        final Bins bins;
+        final Tile[] tiles;
+        final int from, to;
+
+        TileTask(RenderList list, Bins bins, Tile[] tiles, int from, int to) {
+            this.list = list;
+            this.bins = bins;
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TILE_THRESHOLD) {
+                for (int t = from; t < to; t++) {
+                    rasterize(list, bins, tiles[t], t);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TileTask(list, bins, tiles, from, mid), new TileTask(list, bins, tiles, mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.drawing_application;
+
+/**
+ * Change of the view-port of an InteractionModel, passed to InteractionModelSubscriber.iModelChanged(ViewportEvent).
+ * Holds the view-port rectangle before and after the change, in normalized coordinates.
+ * <p>
+ * An iModel reuses one event for every change of its view-port, e.g. on every tick of a pan, so subscribers are not to
+ * keep an event past iModelChanged().
+ */
+public final class ViewportEvent {
+    /*
+        Instance variables to store the view-port rectangle before and after the change.
+     */
+    private double oldLeft, oldTop, oldWidth, oldHeight;
+    private double newLeft, newTop, newWidth, newHeight;
+
+    /**
+     * Method to describe a change of the view-port.
+     *
+     * @param oldLeft   : x coordinate of the view-port before the change
+     * @param oldTop    : y coordinate of the view-port before the change
+     * @param oldWidth  : width of the view-port before the change
+     * @param oldHeight : height of the view-port before the change
+     * @param newLeft   : x coordinate of the view-port after the change
+     * @param newTop    : y coordinate of the view-port after the change
+     * @param newWidth  : width of the view-port after the change
+     * @param newHeight : height of the view-port after the change
+     * @return : this event
+     */
+    ViewportEvent set(double oldLeft, double oldTop, double oldWidth, double oldHeight,
+                      double newLeft, double newTop, double newWidth, double newHeight) {
+        this.oldLeft = oldLeft;
+        this.oldTop = oldTop;
+        this.oldWidth = oldWidth;
+        this.oldHeight = oldHeight;
+        this.newLeft = newLeft;
+        this.newTop = newTop;
+        this.newWidth = newWidth;
+        this.newHeight = newHeight;
+        return this;
+    }
+
+    /**
+     * Method to check if the view-port actually changed, e.g. a pan against the edge of the document does not.
+     *
+     * @return : true if the old and new rectangles differ
+     */
+    public boolean isChanged() {
+        return oldLeft != newLeft || oldTop != newTop || oldWidth != newWidth || oldHeight != newHeight;
+    }
+
+    /**
+     * Getter method to get the x coordinate of the view-port before the change.
+     *
+     * @return : x coordinate before the change
+     */
+    public double oldLeft() {
+        return oldLeft;
+    }
+
+    /**
+     * Getter method to get the y coordinate of the view-port before the change.
+     *
+     * @return : y coordinate before the change
+     */
+    public double oldTop() {
+        return oldTop;
+    }
+
+    /**
+     * Getter method to get the width of the view-port before the change.
+     *
+     * @return : width before the change
+     */
+    public double oldWidth() {
+        return oldWidth;
+    }
+
+    /**
+     * Getter method to get the height of the view-port before the change.
+     *
+     * @return : height before the change
+     */
+    public double oldHeight() {
+        return oldHeight;
+    }
+
+    /**
+     * Getter method to get the x coordinate of the view-port after the change.
+     *
+     * @return : x coordinate after the change
+     */
+    public double newLeft() {
+        return newLeft;
+    }
+
+    /**
+     * Getter method to get the y coordinate of the view-port after the change.
+     *
+     * @return : y coordinate after the change
+     */
+    public double newTop() {
+        return newTop;
+    }
+
+    /**
+     * Getter method to get the width of the view-port after the change.
+     *
+     * @return : width after the change
+     */
+    public double newWidth() {
+        return newWidth;
+    }
+
+    /**
+     * Getter method to get the height of the view-port after the change.
+     *
+     * @return : height after the change
+     */
+    public double newHeight() {
+        return newHeight;
+    }
+}
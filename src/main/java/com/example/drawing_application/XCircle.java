@@ -4,11 +4,17 @@ package com.example.drawing_application;
  * Shape to represent a circle. An extension of XShape.
  */
 public class XCircle extends XShape {
+    /*
+        Cached geometry for contains(): the center and the squared radius, updated on every move or resize.
+     */
+    private double centerX, centerY, radiusSquared;
+
     /**
      * Default constructor for this class. Calls super's constructor.
      */
     public XCircle() {
         super();
+        updateGeometry();
     }
 
     /**
@@ -22,6 +28,7 @@ public class XCircle extends XShape {
      */
     public XCircle(double left, double top, double width, double height, int z) {
         super(left, top, width, height, z);
+        updateGeometry();
     }
 
     /**
@@ -33,10 +40,53 @@ public class XCircle extends XShape {
      */
     @Override
     public boolean contains(double x, double y) {
-        // calculate the center point of the circle
-        double cx = left + width / 2;
-        double cy = top + height / 2;
+        // compare squared distances to avoid the square root
+        double dx = x - centerX, dy = y - centerY;
+        return dx * dx + dy * dy <= radiusSquared;
+    }
+
+    /**
+     * Getter method for the y coordinate of the top edge of the area the shape can be hit in. The width is the diameter
+     * of the circle, so a circle that is narrower than it is tall reaches above its top.
+     *
+     * @return : top edge of the bounds
+     */
+    @Override
+    public double getBoundsTop() {
+        return top + height / 2 - width / 2;
+    }
+
+    /**
+     * Getter method for the y coordinate of the bottom edge of the area the shape can be hit in.
+     *
+     * @return : bottom edge of the bounds
+     */
+    @Override
+    public double getBoundsBottom() {
+        return top + height / 2 + width / 2;
+    }
+
+    /**
+     * Method to recompute the center and squared radius used by contains().
+     */
+    @Override
+    protected void updateGeometry() {
+        centerX = left + width / 2;
+        centerY = top + height / 2;
+        radiusSquared = width * width / 4;
+    }
 
-        return Math.hypot(x - cx, y - cy) <= width / 2;
+    /**
+     * Over-ridden method to scale the circle about a point. It stays a circle, scaled by the smaller of the two factors
+     * about its scaled centre.
+     *
+     * @param originX : x coordinate of the point to scale about
+     * @param originY : y coordinate of the point to scale about
+     * @param scaleX  : scale factor along x
+     * @param scaleY  : scale factor along y
+     */
+    @Override
+    public void scale(double originX, double originY, double scaleX, double scaleY) {
+        scaleUniformly(originX, originY, scaleX, scaleY);
     }
 }
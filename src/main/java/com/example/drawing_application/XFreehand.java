@@ -0,0 +1,320 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+
+/**
+ * Shape to represent a freehand stroke drawn with the pen. An extension of XShape.
+ * <p>
+ * The points are stored in one primitive array, x and y interleaved, and left, top, width and height hold their bounding
+ * box. While the stroke is drawn every new point is simplified against the points since the last kept one: as long as
+ * all of them lie within SIMPLIFY_TOLERANCE of the straight segment from that point to the new one, the new point
+ * replaces the tip instead of being appended. The stroke therefore never strays further than the tolerance from what
+ * was drawn, while slow or straight parts of a stroke with thousands of samples keep only a few points.
+ */
+public class XFreehand extends XShape {
+    // greatest distance of a dropped sample from the simplified stroke, in normalized coordinates
+    static final double SIMPLIFY_TOLERANCE = 0.0005;
+    // greatest number of samples a tip is checked against before it is kept regardless, bounds the work per point
+    private static final int MAX_PENDING = 64;
+
+    /*
+        Instance variables to store the points, x and y interleaved, and the number of points.
+     */
+    private double[] points;
+    private int count;
+
+    /*
+        Instance variables to store the samples since the last kept point while the stroke is drawn, null once the
+        stroke is finished.
+     */
+    private double[] pending;
+    private int pendingCount;
+
+    /**
+     * Constructor to start a new stroke at a point with a z-order.
+     *
+     * @param x      : x coordinate of the first point
+     * @param y      : y coordinate of the first point
+     * @param zOrder : z-order
+     */
+    public XFreehand(double x, double y, int zOrder) {
+        super(x, y, 0, 0, zOrder);
+        points = new double[32];
+        points[0] = x;
+        points[1] = y;
+        count = 1;
+        pending = new double[MAX_PENDING * 2];
+    }
+
+    /**
+     * Constructor to create a finished stroke from its points, e.g. one that was read from another client.
+     *
+     * @param points : points, x and y interleaved, taken over by the shape
+     * @param count  : number of points
+     * @param color  : colour of the stroke
+     */
+    public XFreehand(double[] points, int count, Color color) {
+        super(0, 0, 0, 0, color);
+        this.points = points;
+        this.count = count;
+        updateBounds();
+    }
+
+    /**
+     * Method to add the next sample of the stroke while it is drawn.
+     *
+     * @param x : x coordinate of the sample
+     * @param y : y coordinate of the sample
+     */
+    public void addPoint(double x, double y) {
+        if (pending == null) {
+            throw new IllegalStateException("Stroke is finished");
+        }
+        int last = (count - 1) * 2;
+        if (points[last] == x && points[last + 1] == y) {
+            return;
+        }
+        // the tip can move to the new sample if the samples it stood for stay close to the segment from the anchor,
+        // the point before the tip
+        if (count > 1 && pendingCount < MAX_PENDING
+                && pendingWithinTolerance(points[last - 2], points[last - 1], x, y)) {
+            points[last] = x;
+            points[last + 1] = y;
+        } else {
+            // keep the tip as the new anchor and start a new tip
+            pendingCount = 0;
+            if (count * 2 == points.length) {
+                points = Arrays.copyOf(points, points.length * 2);
+            }
+            points[count * 2] = x;
+            points[count * 2 + 1] = y;
+            count++;
+        }
+        pending[pendingCount * 2] = x;
+        pending[pendingCount * 2 + 1] = y;
+        pendingCount++;
+        growBounds(x, y);
+    }
+
+    /**
+     * Method to end the drawing of the stroke. Trims the points to their number, drops the samples kept for the
+     * simplification and fits the bounding box to the points that were kept.
+     */
+    public void finish() {
+        points = Arrays.copyOf(points, count * 2);
+        pending = null;
+        pendingCount = 0;
+        updateBounds();
+    }
+
+    /**
+     * Helper method to check if all the pending samples lie within the tolerance of a segment.
+     *
+     * @param x1 : x coordinate of the start of the segment
+     * @param y1 : y coordinate of the start of the segment
+     * @param x2 : x coordinate of the end of the segment
+     * @param y2 : y coordinate of the end of the segment
+     * @return : true if no sample is further away
+     */
+    private boolean pendingWithinTolerance(double x1, double y1, double x2, double y2) {
+        for (int i = 0; i < pendingCount; i++) {
+            if (distanceSquared(pending[i * 2], pending[i * 2 + 1], x1, y1, x2, y2) > SIMPLIFY_TOLERANCE * SIMPLIFY_TOLERANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method to find the squared distance of a point from a segment.
+     *
+     * @param px : x coordinate of the point
+     * @param py : y coordinate of the point
+     * @param x1 : x coordinate of the start of the segment
+     * @param y1 : y coordinate of the start of the segment
+     * @param x2 : x coordinate of the end of the segment
+     * @param y2 : y coordinate of the end of the segment
+     * @return : squared distance
+     */
+    private static double distanceSquared(double px, double py, double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1, dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - x1) * dx + (py - y1) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = x1 + t * dx - px, ey = y1 + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * Method to check whether the given x & y coordinates are on the stroke, within the click tolerance of a line.
+     *
+     * @param x : x coordinate to be checked
+     * @param y : y coordinate to be checked
+     * @return : true if yes else false
+     */
+    @Override
+    public boolean contains(double x, double y) {
+        if (x < getBoundsLeft() || x > getBoundsRight() || y < getBoundsTop() || y > getBoundsBottom()) {
+            return false;
+        }
+        double toleranceSquared = XLine.TOLERANCE * XLine.TOLERANCE;
+        if (count == 1) {
+            return distanceSquared(x, y, points[0], points[1], points[0], points[1]) <= toleranceSquared;
+        }
+        for (int i = 2; i < count * 2; i += 2) {
+            double x1 = points[i - 2], y1 = points[i - 1], x2 = points[i], y2 = points[i + 1];
+            // skip segments whose bounds grown by the tolerance miss the point
+            if (x < Math.min(x1, x2) - XLine.TOLERANCE || x > Math.max(x1, x2) + XLine.TOLERANCE
+                    || y < Math.min(y1, y2) - XLine.TOLERANCE || y > Math.max(y1, y2) + XLine.TOLERANCE) {
+                continue;
+            }
+            if (distanceSquared(x, y, x1, y1, x2, y2) <= toleranceSquared) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method to resize the stroke. The points are scaled from the old bounding box into the new one.
+     *
+     * @param x      : new x coordinate
+     * @param y      : new y coordinate
+     * @param width  : new width
+     * @param height : new height
+     */
+    @Override
+    public void resize(double x, double y, double width, double height) {
+        // a stroke without extent along an axis keeps its points on that axis where they are relative to the box
+        double scaleX = this.width == 0 ? 0 : width / this.width;
+        double scaleY = this.height == 0 ? 0 : height / this.height;
+        for (int i = 0; i < count * 2; i += 2) {
+            points[i] = x + (points[i] - left) * scaleX;
+            points[i + 1] = y + (points[i + 1] - top) * scaleY;
+        }
+        super.resize(x, y, this.width == 0 ? 0 : width, this.height == 0 ? 0 : height);
+    }
+
+    /**
+     * Over-ridden method to make a copy of the stroke with a given id. The copy has its own points and is finished.
+     *
+     * @param id : id of the copy
+     * @return : the copy
+     */
+    @Override
+    protected XShape copy(long id) {
+        XFreehand copy = (XFreehand) super.copy(id);
+        copy.points = Arrays.copyOf(points, count * 2);
+        copy.pending = null;
+        copy.pendingCount = 0;
+        return copy;
+    }
+
+    /**
+     * Method to move the stroke to a new location. All the points move with it.
+     *
+     * @param dX : distance to move x coordinate by
+     * @param dY : distance to move y coordinate by
+     */
+    @Override
+    public void move(double dX, double dY) {
+        for (int i = 0; i < count * 2; i += 2) {
+            points[i] -= dX;
+            points[i + 1] -= dY;
+        }
+        super.move(dX, dY);
+    }
+
+    /**
+     * Getter method for the left edge of the bounds, grown by the click tolerance.
+     *
+     * @return : left edge of the bounds
+     */
+    @Override
+    public double getBoundsLeft() {
+        return left - XLine.TOLERANCE;
+    }
+
+    /**
+     * Getter method for the top edge of the bounds, grown by the click tolerance.
+     *
+     * @return : top edge of the bounds
+     */
+    @Override
+    public double getBoundsTop() {
+        return top - XLine.TOLERANCE;
+    }
+
+    /**
+     * Getter method for the right edge of the bounds, grown by the click tolerance.
+     *
+     * @return : right edge of the bounds
+     */
+    @Override
+    public double getBoundsRight() {
+        return left + width + XLine.TOLERANCE;
+    }
+
+    /**
+     * Getter method for the bottom edge of the bounds, grown by the click tolerance.
+     *
+     * @return : bottom edge of the bounds
+     */
+    @Override
+    public double getBoundsBottom() {
+        return top + height + XLine.TOLERANCE;
+    }
+
+    /**
+     * Getter method for the points, x and y interleaved. Only the first getPointCount() points are valid.
+     *
+     * @return : points of the stroke, not to be modified
+     */
+    public double[] getPoints() {
+        return points;
+    }
+
+    /**
+     * Getter method for the number of points.
+     *
+     * @return : number of points
+     */
+    public int getPointCount() {
+        return count;
+    }
+
+    /**
+     * Helper method to grow the bounding box to a new point.
+     *
+     * @param x : x coordinate of the point
+     * @param y : y coordinate of the point
+     */
+    private void growBounds(double x, double y) {
+        double right = Math.max(left + width, x), bottom = Math.max(top + height, y);
+        left = Math.min(left, x);
+        top = Math.min(top, y);
+        width = right - left;
+        height = bottom - top;
+        geometryChanged();
+    }
+
+    /**
+     * Helper method to compute the bounding box from all the points.
+     */
+    private void updateBounds() {
+        double minX = points[0], minY = points[1], maxX = minX, maxY = minY;
+        for (int i = 2; i < count * 2; i += 2) {
+            minX = Math.min(minX, points[i]);
+            maxX = Math.max(maxX, points[i]);
+            minY = Math.min(minY, points[i + 1]);
+            maxY = Math.max(maxY, points[i + 1]);
+        }
+        left = minX;
+        top = minY;
+        width = maxX - minX;
+        height = maxY - minY;
+        geometryChanged();
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Shape to represent a group of shapes that is moved, resized, recoloured and z-ordered as a unit. An extension of
+ * XShape; groups can be nested.
+ * <p>
+ * The children are kept from bottom to top and are not in any model themselves. Left, top, width and height hold the
+ * geometric extent of the children, which the group is moved and resized by, e.g. the end points of a line rather
+ * than its bounds grown by the click tolerance. The union of the bounds of the children is cached alongside, whenever
+ * the group changes, so that hit-tests and views can reject a whole subtree with one comparison of its bounds before
+ * looking at any of its children.
+ */
+public class XGroup extends XShape {
+    /*
+        Instance variables to store the children, from bottom to top.
+     */
+    private ArrayList<XShape> children;
+    // union of the bounds of the children
+    private double boundsLeft, boundsTop, boundsRight, boundsBottom;
+
+    /**
+     * Constructor to group shapes. The group takes the colour of the top-most shape.
+     *
+     * @param children : shapes to be grouped, from bottom to top, at least one
+     */
+    public XGroup(List<? extends XShape> children) {
+        super(0, 0, 0, 0, children.get(children.size() - 1).getColor());
+        this.children = new ArrayList<>(children);
+        updateBounds();
+    }
+
+    /**
+     * Method to find out whether the given x & y coordinates are within one of the children. Points outside the bounds
+     * of the group are rejected without looking at the children.
+     *
+     * @param x : x coordinate to be checked
+     * @param y : y coordinate to be checked
+     * @return : true if x & y within a child else false
+     */
+    @Override
+    public boolean contains(double x, double y) {
+        if (x < boundsLeft || x > boundsRight || y < boundsTop || y > boundsBottom) {
+            return false;
+        }
+        for (int i = children.size() - 1; i >= 0; i--) {
+            if (children.get(i).contains(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method to move the group to a new location. All the children move with it.
+     *
+     * @param dX : distance to move x coordinate by
+     * @param dY : distance to move y coordinate by
+     */
+    @Override
+    public void move(double dX, double dY) {
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).move(dX, dY);
+        }
+        updateBounds();
+    }
+
+    /**
+     * Method to resize the group. The children are scaled from the old extent into the new one, circles and squares
+     * by the smaller of the two factors about their scaled centres (see XShape.scale()), so they keep their shape.
+     *
+     * @param x      : new x coordinate
+     * @param y      : new y coordinate
+     * @param width  : new width
+     * @param height : new height
+     */
+    @Override
+    public void resize(double x, double y, double width, double height) {
+        double scaleX = this.width == 0 ? 1 : width / this.width;
+        double scaleY = this.height == 0 ? 1 : height / this.height;
+        for (XShape child : children) {
+            // scale about the old corner, then move that corner to the new one
+            child.scale(left, top, scaleX, scaleY);
+            child.move(left - x, top - y);
+        }
+        updateBounds();
+    }
+
+    /**
+     * Setter method for x coordinate of top-left corner. The children move with the group.
+     *
+     * @param left : new x coordinate
+     */
+    @Override
+    public void setLeft(double left) {
+        move(this.left - left, 0);
+    }
+
+    /**
+     * Setter method for y coordinate of top-left corner. The children move with the group.
+     *
+     * @param top : new y coordinate
+     */
+    @Override
+    public void setTop(double top) {
+        move(0, this.top - top);
+    }
+
+    /**
+     * Setter method for width of the group. The children are scaled like in resize().
+     *
+     * @param width : new width
+     */
+    @Override
+    public void setWidth(double width) {
+        resize(left, top, width, height);
+    }
+
+    /**
+     * Setter method for height of the group. The children are scaled like in resize().
+     *
+     * @param height : new height
+     */
+    @Override
+    public void setHeight(double height) {
+        resize(left, top, width, height);
+    }
+
+    /**
+     * Method to set the colour of the group and all of its children. Children keep their own colours until the group is
+     * given a different colour, e.g. when a remote update restates the colour it already has.
+     *
+     * @param color : new colour
+     */
+    @Override
+    public void setColor(Color color) {
+        if (!Objects.equals(color, this.color)) {
+            for (XShape child : children) {
+                child.setColor(color);
+            }
+        }
+        super.setColor(color);
+    }
+
+    /**
+     * Over-ridden method to make a copy of the group with a given id. The children are copied as well.
+     *
+     * @param id : id of the copy
+     * @return : the copy
+     */
+    @Override
+    protected XShape copy(long id) {
+        XGroup copy = (XGroup) super.copy(id);
+        copy.children = new ArrayList<>(children.size());
+        for (XShape child : children) {
+            copy.children.add(child.copy());
+        }
+        return copy;
+    }
+
+    /**
+     * Getter method for the children.
+     *
+     * @return : children from bottom to top, not to be modified
+     */
+    public List<XShape> getChildren() {
+        return children;
+    }
+
+    /**
+     * Getter method for the left edge of the bounds: the left-most edge of the bounds of the children.
+     *
+     * @return : left edge of the bounds
+     */
+    @Override
+    public double getBoundsLeft() {
+        return boundsLeft;
+    }
+
+    /**
+     * Getter method for the top edge of the bounds: the top-most edge of the bounds of the children.
+     *
+     * @return : top edge of the bounds
+     */
+    @Override
+    public double getBoundsTop() {
+        return boundsTop;
+    }
+
+    /**
+     * Getter method for the right edge of the bounds: the right-most edge of the bounds of the children.
+     *
+     * @return : right edge of the bounds
+     */
+    @Override
+    public double getBoundsRight() {
+        return boundsRight;
+    }
+
+    /**
+     * Getter method for the bottom edge of the bounds: the bottom-most edge of the bounds of the children.
+     *
+     * @return : bottom edge of the bounds
+     */
+    @Override
+    public double getBoundsBottom() {
+        return boundsBottom;
+    }
+
+    /**
+     * Helper method to cache the extent of the children and the union of their bounds.
+     */
+    private void updateBounds() {
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        boundsLeft = Double.MAX_VALUE;
+        boundsTop = Double.MAX_VALUE;
+        boundsRight = -Double.MAX_VALUE;
+        boundsBottom = -Double.MAX_VALUE;
+        // indexed loop, as groups are moved on every tick of a drag
+        for (int i = 0; i < children.size(); i++) {
+            XShape child = children.get(i);
+            if (child instanceof XLine) {
+                // a line stores its end point instead of a size
+                x0 = Math.min(x0, Math.min(child.left, child.width));
+                y0 = Math.min(y0, Math.min(child.top, child.height));
+                x1 = Math.max(x1, Math.max(child.left, child.width));
+                y1 = Math.max(y1, Math.max(child.top, child.height));
+            } else if (child instanceof XGroup || child instanceof XFreehand) {
+                // bounds grown by the click tolerance
+                x0 = Math.min(x0, child.left);
+                y0 = Math.min(y0, child.top);
+                x1 = Math.max(x1, child.left + child.width);
+                y1 = Math.max(y1, child.top + child.height);
+            } else {
+                x0 = Math.min(x0, child.getBoundsLeft());
+                y0 = Math.min(y0, child.getBoundsTop());
+                x1 = Math.max(x1, child.getBoundsRight());
+                y1 = Math.max(y1, child.getBoundsBottom());
+            }
+            boundsLeft = Math.min(boundsLeft, child.getBoundsLeft());
+            boundsTop = Math.min(boundsTop, child.getBoundsTop());
+            boundsRight = Math.max(boundsRight, child.getBoundsRight());
+            boundsBottom = Math.max(boundsBottom, child.getBoundsBottom());
+        }
+        left = x0;
+        top = y0;
+        width = x1 - x0;
+        height = y1 - y0;
+        geometryChanged();
+    }
+}
@@ -4,11 +4,21 @@ package com.example.drawing_application;
  * Shape to represent a line. An extension of XShape.
  */
 public class XLine extends XShape {
+    // tolerance to allow for a click to represent a click on the line
+    static final double TOLERANCE = 0.008;
+
+    /*
+        Cached geometry for contains(): the coefficients of the line's normal form a * x + b * y + c = 0, scaled so that
+        the left-hand side is the distance from the line, updated on every move or resize.
+     */
+    private double normalA, normalB, normalC;
+
     /**
      * Default constructor for this class. Calls super's constructor.
      */
     public XLine() {
         super();
+        updateGeometry();
     }
 
     /**
@@ -22,6 +32,7 @@ public class XLine extends XShape {
      */
     public XLine(double x1, double y1, double x2, double y2, int zOrder) {
         super(x1, y1, x2, y2, zOrder);
+        updateGeometry();
     }
 
     /**
@@ -33,54 +44,85 @@ public class XLine extends XShape {
      */
     @Override
     public boolean contains(double mx, double my) {
-        double x1, y1, x2, y2;
-        double ratioA, ratioB, ratioC;
-
         // line coordinates
-        x1 = left;
-        y1 = top;
-        x2 = width;
-        y2 = height;
-        double lengthOfLine = dist(x1, y1, x2, y2);
-
-        // tolerance to allow for a click to represent a click on the line
-        double tolerance = 0.008;
+        double x1 = left, y1 = top, x2 = width, y2 = height;
 
-        // ratios to check how far is the given point from the line
-        ratioA = (y1 - y2) / lengthOfLine;
-        ratioB = (x2 - x1) / lengthOfLine;
-        ratioC = -1 * ((y1 - y2) * x1 + (x2 - x1) * y1) / lengthOfLine;
-
-        double distanceFromLine = ratioA * mx + ratioB * my + ratioC;
+        // distance of the given point from the line, through the cached normal form
+        double distanceFromLine = normalA * mx + normalB * my + normalC;
 
         // check if the given point is close to the line
-        boolean closeToLine = (Math.abs(distanceFromLine) < tolerance);
+        boolean closeToLine = (Math.abs(distanceFromLine) < TOLERANCE);
 
         // check if the given points are within the bounds of the line
         boolean withinBoundsX = ((mx >= x1) && (mx <= x2));
         boolean withinBoundsY = ((my >= y1) && (my <= y2));
 
         // Edge case: Where the lines are almost vertical or horizontal
-        if ((x2 - x1) <= tolerance) {
+        if ((x2 - x1) <= TOLERANCE) {
             withinBoundsX = true;
-        } else if ((y2 - y1) <= tolerance) {
+        } else if ((y2 - y1) <= TOLERANCE) {
             withinBoundsY = true;
         }
 
-        return closeToLine && withinBoundsX && withinBoundsY;
+        // never beyond the bounds grown by the tolerance, which the edge case alone allows along the line's extension
+        boolean withinTolerance = mx >= getBoundsLeft() && mx <= getBoundsRight()
+                && my >= getBoundsTop() && my <= getBoundsBottom();
+
+        return closeToLine && withinBoundsX && withinBoundsY && withinTolerance;
+    }
+
+    /**
+     * Method to recompute the normal form used by contains(). The coefficients are NaN for a line of length 0, which
+     * then contains no point.
+     */
+    @Override
+    protected void updateGeometry() {
+        double dx = width - left, dy = height - top;
+        double inverseLength = 1 / Math.sqrt(dx * dx + dy * dy);
+        normalA = -dy * inverseLength;
+        normalB = dx * inverseLength;
+        normalC = (dy * left - dx * top) * inverseLength;
+    }
+
+    /**
+     * Getter method for the left edge of the bounds. Line stores its end point instead of a size, so the bounds are
+     * taken from both points and grown by the click tolerance.
+     *
+     * @return : left edge of the bounds
+     */
+    @Override
+    public double getBoundsLeft() {
+        return Math.min(left, width) - TOLERANCE;
+    }
+
+    /**
+     * Getter method for the top edge of the bounds, grown by the click tolerance.
+     *
+     * @return : top edge of the bounds
+     */
+    @Override
+    public double getBoundsTop() {
+        return Math.min(top, height) - TOLERANCE;
     }
 
     /**
-     * Helper method to calculate the distance between two points.
+     * Getter method for the right edge of the bounds, grown by the click tolerance.
      *
-     * @param x1 : x coordinate of first point
-     * @param y1 : y coordinate of first point
-     * @param x2 : x coordinate of second point
-     * @param y2 : y coordinate of second point
-     * @return : distance between points
+     * @return : right edge of the bounds
      */
-    private double dist(double x1, double y1, double x2, double y2) {
-        return Math.sqrt(Math.pow(x2 - x1, 2) + Math.pow(y2 - y1, 2));
+    @Override
+    public double getBoundsRight() {
+        return Math.max(left, width) + TOLERANCE;
+    }
+
+    /**
+     * Getter method for the bottom edge of the bounds, grown by the click tolerance.
+     *
+     * @return : bottom edge of the bounds
+     */
+    @Override
+    public double getBoundsBottom() {
+        return Math.max(top, height) + TOLERANCE;
     }
 
     /**
@@ -96,5 +138,27 @@ public class XLine extends XShape {
         this.top -= dY;
         this.width -= dX;
         this.height -= dY;
+        geometryChanged();
+    }
+
+    /**
+     * Over-ridden method to scale the line about a point. Both end points are scaled, so a negative factor mirrors
+     * the line. The upper end point stays the start, like the end points of a line drawn by dragging down.
+     *
+     * @param originX : x coordinate of the point to scale about
+     * @param originY : y coordinate of the point to scale about
+     * @param scaleX  : scale factor along x
+     * @param scaleY  : scale factor along y
+     */
+    @Override
+    public void scale(double originX, double originY, double scaleX, double scaleY) {
+        // line stores the end point instead of the size
+        double x1 = originX + (left - originX) * scaleX, y1 = originY + (top - originY) * scaleY;
+        double x2 = originX + (width - originX) * scaleX, y2 = originY + (height - originY) * scaleY;
+        if (y2 < y1) {
+            resize(x2, y2, x1, y1);
+        } else {
+            resize(x1, y1, x2, y2);
+        }
     }
 }
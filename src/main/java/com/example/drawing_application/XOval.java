@@ -4,11 +4,17 @@ package com.example.drawing_application;
  * Shape to represent an oval. An extension of XShape.
  */
 public class XOval extends XShape {
+    /*
+        Cached geometry for contains(): the center and the inverses of the half-axes, updated on every move or resize.
+     */
+    private double centerX, centerY, inverseHalfWidth, inverseHalfHeight;
+
     /**
      * Default constructor for this class. Calls super's constructor.
      */
     public XOval() {
         super();
+        updateGeometry();
     }
 
     /**
@@ -22,6 +28,7 @@ public class XOval extends XShape {
      */
     public XOval(double left, double top, double width, double height, int zOrder) {
         super(left, top, width, height, zOrder);
+        updateGeometry();
     }
 
     /**
@@ -34,41 +41,22 @@ public class XOval extends XShape {
     @Override
     public boolean contains(double x, double y) {
         /*
-            Oval can be thought of as a circle which is scaled to one or both directions. To check if a point is within
-            the shape we can scale the oval back to a circle and use the check for a circle which is simpler.
+            Oval can be thought of as a circle which is scaled to one or both directions. Scaling the point by the
+            inverse half-axes turns the oval into the unit circle, which is checked with the squared distance.
          */
-        double scaledSize = width;
-        double scaledX = x;
-        double scaledY = y;
-        double scaleFactor;
-        boolean scaledWidth = false;
-
-        // check which direction the oval is scaled and un-scale
-        if (width > height) {
-            scaleFactor = width / height;
-            scaledSize = width / scaleFactor;
-            scaledX = x / scaleFactor;
-            scaledWidth = true;
-        } else if (height > width) {
-            scaleFactor = height / width;
-            scaledY = y / scaleFactor;
-        } else {
-            // if not scaled simply check like a circle
-            double centerX = left + width / 2;
-            double centerY = top + height / 2;
-            return Math.hypot(x - centerX, y - centerY) <= width / 2;
-        }
-
-        // scale the center as well
-        double centerX = left + width / 2;
-        double centerY = top + height / 2;
-        if (scaledWidth) {
-            centerX = centerX / scaleFactor;
-        } else {
-            centerY = centerY / scaleFactor;
-        }
+        double dx = (x - centerX) * inverseHalfWidth;
+        double dy = (y - centerY) * inverseHalfHeight;
+        return dx * dx + dy * dy <= 1;
+    }
 
-        // check the un-scaled version of the oval
-        return Math.hypot(scaledX - centerX, scaledY - centerY) <= scaledSize / 2;
+    /**
+     * Method to recompute the center and inverse half-axes used by contains().
+     */
+    @Override
+    protected void updateGeometry() {
+        centerX = left + width / 2;
+        centerY = top + height / 2;
+        inverseHalfWidth = 2 / width;
+        inverseHalfHeight = 2 / height;
     }
 }
@@ -2,16 +2,32 @@ package com.example.drawing_application;
 
 import javafx.scene.paint.Color;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Abstract class for a Shape. Supports move, resize, create, get and set colours and the z-order.
  */
-public abstract class XShape {
+public abstract class XShape implements Cloneable {
+    // source of shape ids: a random prefix per process in the upper 32 bits followed by a counter, so that shapes
+    // created by different processes (e.g. collaborating clients) get different ids
+    private static final AtomicLong NEXT_ID = new AtomicLong((long) ThreadLocalRandom.current().nextInt() << 32);
+
     /*
         Variables to store required elements for a shape.
      */
     double left, top, width, height;
     int zOrder;
     Color color;
+    // stable identifier of the shape, unique for the lifetime of the shape
+    long id = NEXT_ID.getAndIncrement();
+    // code of the shape in the pick buffer of its model, valid only while the buffer maps the code back to the shape
+    int pickCode;
+    // slot of the shape in the snap index of its model, valid only while the index maps the slot back to the shape
+    int snapSlot = -1;
+    // model the shape is in, which counts the changes of its geometry, null while it is in none (e.g. while it is being
+    // built, drawn or read off another thread)
+    DrawingModel model;
 
     /**
      * Default constructor for this class. Creates a new default black coloured shape.
@@ -80,6 +96,78 @@ public abstract class XShape {
         this.top = y;
         this.width = width;
         this.height = height;
+        geometryChanged();
+    }
+
+    /**
+     * Method to scale the shape about a point, e.g. as part of a selection. A negative factor mirrors where the shape
+     * is: the shape takes the place between its two scaled edges, but is not flipped itself.
+     *
+     * @param originX : x coordinate of the point to scale about
+     * @param originY : y coordinate of the point to scale about
+     * @param scaleX  : scale factor along x
+     * @param scaleY  : scale factor along y
+     */
+    public void scale(double originX, double originY, double scaleX, double scaleY) {
+        double x0 = originX + (left - originX) * scaleX, x1 = originX + (left + width - originX) * scaleX;
+        double y0 = originY + (top - originY) * scaleY, y1 = originY + (top + height - originY) * scaleY;
+        resize(Math.min(x0, x1), Math.min(y0, y1), Math.abs(x1 - x0), Math.abs(y1 - y0));
+    }
+
+    /**
+     * Helper method for shapes that keep their proportions, e.g. circles and squares, to scale about a point: the
+     * centre is scaled and the size is scaled by the smaller of the two factors.
+     *
+     * @param originX : x coordinate of the point to scale about
+     * @param originY : y coordinate of the point to scale about
+     * @param scaleX  : scale factor along x
+     * @param scaleY  : scale factor along y
+     */
+    protected final void scaleUniformly(double originX, double originY, double scaleX, double scaleY) {
+        double scale = Math.min(Math.abs(scaleX), Math.abs(scaleY));
+        double centerX = originX + (left + width / 2 - originX) * scaleX;
+        double centerY = originY + (top + height / 2 - originY) * scaleY;
+        resize(centerX - width * scale / 2, centerY - height * scale / 2, width * scale, height * scale);
+    }
+
+    /**
+     * Method to make a copy of the shape with a new id, e.g. to paste or duplicate it. The copy is not in any model and
+     * gets its z-order when it is added to one.
+     *
+     * @return : the copy
+     */
+    public XShape copy() {
+        return copy(NEXT_ID.getAndIncrement());
+    }
+
+    /**
+     * Method to make a copy of the shape with a given id, see reserveIds(). Subclasses holding arrays copy them.
+     *
+     * @param id : id of the copy
+     * @return : the copy
+     */
+    protected XShape copy(long id) {
+        try {
+            XShape copy = (XShape) clone();
+            copy.id = id;
+            copy.zOrder = 0;
+            copy.pickCode = 0;
+            copy.snapSlot = -1;
+            copy.model = null;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Method to reserve a block of ids for shapes created in bulk, e.g. by ShapeCloner.
+     *
+     * @param count : number of ids
+     * @return : first id of the block
+     */
+    static long reserveIds(int count) {
+        return NEXT_ID.getAndAdd(count);
     }
 
     /**
@@ -91,6 +179,27 @@ public abstract class XShape {
     public void move(double x, double y) {
         this.left -= x;
         this.top -= y;
+        geometryChanged();
+    }
+
+    /**
+     * Method to be called after every change of the location or size: counts the change in the model the shape is in,
+     * if any, and updates the cached geometry. Shapes in a model are only changed on the thread that owns the model,
+     * so the count needs no synchronization, and changes made in constructors are not counted at all.
+     */
+    protected final void geometryChanged() {
+        if (model != null) {
+            model.geometryChanges++;
+        }
+        updateGeometry();
+    }
+
+    /**
+     * Method to recompute whatever a shape caches to speed up contains(). Called after every change of the location or
+     * size, so that hit-tests, which are far more frequent than changes, only do the arithmetic that depends on the
+     * point. Shapes with caches also call it from their constructors.
+     */
+    protected void updateGeometry() {
     }
 
     /**
@@ -111,6 +220,25 @@ public abstract class XShape {
         this.zOrder = zOrder;
     }
 
+    /**
+     * Getter method for the id of the shape.
+     *
+     * @return : id of the shape
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Setter method for the id of the shape, e.g. to give a shape received from another client its original id. Must
+     * not be called while the shape is in a model, which indexes its shapes by id.
+     *
+     * @param id : new id
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
     /**
      * Getter method for x coordinate of top-left corner.
      *
@@ -121,12 +249,14 @@ public abstract class XShape {
     }
 
     /**
-     * Setter method for x coordinate of top-left corner.
+     * Setter method for x coordinate of top-left corner. Like the other setters of the location and size, it does not
+     * notify anyone, so shapes in a model are moved and resized through the model instead.
      *
      * @param left : new x coordinate
      */
     public void setLeft(double left) {
         this.left = left;
+        geometryChanged();
     }
 
     /**
@@ -145,6 +275,7 @@ public abstract class XShape {
      */
     public void setTop(double top) {
         this.top = top;
+        geometryChanged();
     }
 
     /**
@@ -163,6 +294,7 @@ public abstract class XShape {
      */
     public void setWidth(double width) {
         this.width = width;
+        geometryChanged();
     }
 
     /**
@@ -181,6 +313,43 @@ public abstract class XShape {
      */
     public void setHeight(double height) {
         this.height = height;
+        geometryChanged();
+    }
+
+    /**
+     * Getter method for the x coordinate of the left edge of the area the shape can be hit in.
+     *
+     * @return : left edge of the bounds
+     */
+    public double getBoundsLeft() {
+        return left;
+    }
+
+    /**
+     * Getter method for the y coordinate of the top edge of the area the shape can be hit in.
+     *
+     * @return : top edge of the bounds
+     */
+    public double getBoundsTop() {
+        return top;
+    }
+
+    /**
+     * Getter method for the x coordinate of the right edge of the area the shape can be hit in.
+     *
+     * @return : right edge of the bounds
+     */
+    public double getBoundsRight() {
+        return left + width;
+    }
+
+    /**
+     * Getter method for the y coordinate of the bottom edge of the area the shape can be hit in.
+     *
+     * @return : bottom edge of the bounds
+     */
+    public double getBoundsBottom() {
+        return top + height;
     }
 
     /**
@@ -35,4 +35,18 @@ public class XSquare extends XShape {
     public boolean contains(double x, double y) {
         return x >= left && x <= left + width && y >= top && y <= top + height;
     }
+
+    /**
+     * Over-ridden method to scale the square about a point. It stays a square, scaled by the smaller of the two factors
+     * about its scaled centre.
+     *
+     * @param originX : x coordinate of the point to scale about
+     * @param originY : y coordinate of the point to scale about
+     * @param scaleX  : scale factor along x
+     * @param scaleY  : scale factor along y
+     */
+    @Override
+    public void scale(double originX, double originY, double scaleX, double scaleY) {
+        scaleUniformly(originX, originY, scaleX, scaleY);
+    }
 }
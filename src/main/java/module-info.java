@@ -1,8 +1,7 @@
 module com.example.drawing_application {
     requires javafx.controls;
-    requires javafx.fxml;
+    // hit-testing many shapes per instruction, see HitTestKernel
+    requires jdk.incubator.vector;
 
-
-    opens com.example.drawing_application to javafx.fxml;
     exports com.example.drawing_application;
-}
\ No newline at end of file
+}
@@ -0,0 +1,266 @@
+package com.example.drawing_application;
+
+import javafx.application.Platform;
+import javafx.event.EventType;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Benchmark that checks the steady-state render and notification paths for allocations. Wires up the model, iModel,
+ * both drawing views, the shape toolbar and the controller like DrawingApp does (without a stage), then pans the
+ * view-port and drags a shape through DrawingController.handleMove() on the JavaFX Application Thread while measuring
+ * the bytes allocated by that thread.
+ * <p>
+ * A full-canvas clearRect() makes the GraphicsContext reset its command buffer and state, setLineDashes() copies the
+ * pattern and every fill() or stroke() of a path walks it with a new iterator, all inside JavaFX. That share of a frame
+ * is measured by redrawing each view in the state the gestures end in, and subtracted once for every frame the view
+ * drew during them. A redraw is never credited more than a bare canvas allocates for clearing, drawing a primitive per
+ * shape and switching the dash pattern, so that the views' own drawing code cannot hide allocations there. What is
+ * left is allocated by the application's own code; more than TOLERANCE bytes of it per frame makes the benchmark exit
+ * with status 1. AllocationTest runs the same measurement on every build.
+ * <p>
+ * Paths that only run now and then, such as the vectorized region query behind a tile of the mini view, can still be
+ * waiting for the JIT after the warm-up and allocate until they are compiled. The gestures are therefore measured a
+ * few times and the lowest measurement counts, while an allocation of every frame shows up in all of them.
+ */
+public class AllocationBenchmark {
+    /*
+        Number of frames for warming up the JIT and for measuring, the number of measurements of which the lowest
+        counts, and the size of the benchmark document.
+     */
+    private static final int WARM_UP_FRAMES = 20_000;
+    private static final int MEASURED_FRAMES = 20_000;
+    private static final int MEASURED_ROUNDS = 3;
+    private static final int REDRAWS = 2_000;
+    // bytes per frame of the application's own, to allow for the JavaFX share of frames differing from the redraws
+    static final double TOLERANCE = 4;
+    private static final int DEFAULT_SHAPES = 1000;
+    private static final double[] DASH_PATTERN = {7, 7};
+
+    // whether the benchmark passed, handed from the application thread that runs it to the main thread waiting for it
+    private static volatile boolean passed;
+
+    /**
+     * Main method that runs the benchmark on the JavaFX Application Thread.
+     *
+     * @param args : optional number of shapes in the document (default 1000)
+     * @throws InterruptedException : if interrupted while waiting for the benchmark to finish
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int shapeCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SHAPES;
+        CountDownLatch done = new CountDownLatch(1);
+        Platform.startup(() -> {
+            try {
+                passed = run(shapeCount);
+            } finally {
+                done.countDown();
+            }
+        });
+        done.await();
+        Platform.exit();
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Helper method to set up the document and measure the allocations of panning and dragging.
+     *
+     * @param shapeCount : number of shapes in the document
+     * @return : true if the application allocated no more than TOLERANCE bytes per frame of its own
+     */
+    private static boolean run(int shapeCount) {
+        // Setup Model, iModel and the views subscribed to them
+        DrawingModel model = new DrawingModel();
+        InteractionModel iModel = new InteractionModel();
+        DrawingView drawingView = new DrawingView(2000, 2000, 500, 500);
+        MiniDrawingView miniDrawingView = new MiniDrawingView(2000, 2000, 100, 100);
+        ShapeToolbar shapeToolbar = new ShapeToolbar();
+        DrawingController controller = new DrawingController();
+        controller.setModel(model);
+        controller.setIModel(iModel);
+        drawingView.setModel(model);
+        drawingView.setIModel(iModel);
+        miniDrawingView.setModel(model);
+        miniDrawingView.setIModel(iModel);
+        shapeToolbar.setIModel(iModel);
+        model.addSubscriber(drawingView);
+        model.addSubscriber(miniDrawingView);
+        iModel.addISubscriber(drawingView);
+        iModel.addISubscriber(shapeToolbar);
+        iModel.addISubscriber(miniDrawingView);
+
+        double[] measured = measure(model, iModel, controller, new DrawingView[]{drawingView, miniDrawingView},
+                shapeCount);
+        return measured[0] <= TOLERANCE;
+    }
+
+    /**
+     * Method to fill a document and measure the allocations of panning and dragging through its controller. The model
+     * and iModel are expected to be shown by the given views, like in DrawingApp.
+     *
+     * @param model      : empty model of the document
+     * @param iModel     : iModel of the document
+     * @param controller : controller of the main view
+     * @param views      : views showing the document
+     * @param shapeCount : number of shapes to fill the document with
+     * @return : bytes per frame allocated by the application's own code and by JavaFX for the redraws, in this order
+     */
+    static double[] measure(DrawingModel model, InteractionModel iModel, DrawingController controller,
+                            DrawingView[] views, int shapeCount) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        iModel.setViewFinderWidth(0.25);
+        iModel.setViewFinderHeight(0.25);
+
+        // Fill the document with random shapes of every type and bring one of them into view to be dragged
+        new DocumentGenerator(42, DocumentGenerator.Distribution.UNIFORM).populate(model, shapeCount);
+        XShape shape = model.getShapes().get(shapeCount / 2);
+        double centreX = (shape.getBoundsLeft() + shape.getBoundsRight()) / 2;
+        double centreY = (shape.getBoundsTop() + shape.getBoundsBottom()) / 2;
+        iModel.setViewLeft(centreX - 0.125);
+        iModel.setViewTop(centreY - 0.125);
+
+        double floor = javaFxBytesPerRedraw(bean, shapeCount);
+        gestures(controller, iModel, shape, WARM_UP_FRAMES);
+        double own = Double.MAX_VALUE, javaFx = 0;
+        long[] frames = new long[views.length];
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            for (int v = 0; v < views.length; v++) {
+                frames[v] = views[v].frames;
+            }
+            long before = bean.getCurrentThreadAllocatedBytes();
+            gestures(controller, iModel, shape, MEASURED_FRAMES);
+            long allocated = bean.getCurrentThreadAllocatedBytes() - before;
+
+            // the gestures end where they started, so every round redraws the same frames
+            double redrawn = 0;
+            for (int v = 0; v < views.length; v++) {
+                redrawn += (views[v].frames - frames[v]) * Math.min(floor, bytesPerRedraw(bean, views[v]));
+            }
+            // a frame of the pan and one of the drag for every measured frame
+            if ((allocated - redrawn) / (2 * MEASURED_FRAMES) < own) {
+                own = (allocated - redrawn) / (2 * MEASURED_FRAMES);
+                javaFx = redrawn / (2 * MEASURED_FRAMES);
+            }
+        }
+        System.out.printf("%d shapes, %d frames: %.2f bytes/frame allocated by the application, %.2f bytes/frame "
+                + "by JavaFX%n", shapeCount, 2 * MEASURED_FRAMES, own, javaFx);
+        return new double[]{own, javaFx};
+    }
+
+    /**
+     * Helper method to measure what a view allocates redrawing the same frame again, which is the share of JavaFX.
+     *
+     * @param bean : thread bean to measure allocations with
+     * @param view : view to be redrawn
+     * @return : bytes allocated per redraw
+     */
+    private static double bytesPerRedraw(com.sun.management.ThreadMXBean bean, DrawingView view) {
+        for (int i = 0; i < REDRAWS; i++) {
+            view.draw();
+        }
+        long before = bean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < REDRAWS; i++) {
+            view.draw();
+        }
+        return (double) (bean.getCurrentThreadAllocatedBytes() - before) / REDRAWS;
+    }
+
+    /**
+     * Helper method to run the frames of a pan of the view-port followed by the frames of a drag of a shape, each
+     * frame of which notifies the subscribers and redraws the views. Both go back and forth, so that the view-port and
+     * the shape end where they started.
+     *
+     * @param controller : controller the mouse events are handed to
+     * @param iModel     : iModel of the view-port
+     * @param shape      : shape to be dragged, in view
+     * @param frames     : number of frames of each gesture
+     */
+    private static void gestures(DrawingController controller, InteractionModel iModel, XShape shape, int frames) {
+        double x = 0.125, y = 0.125;
+        controller.handlePressed(x, y, mouse(MouseEvent.MOUSE_PRESSED, MouseButton.SECONDARY));
+        MouseEvent pan = mouse(MouseEvent.MOUSE_DRAGGED, MouseButton.SECONDARY);
+        for (int frame = 0; frame < frames; frame++) {
+            x += step(frame);
+            y += step(frame);
+            controller.handleMove(x, y, pan);
+        }
+        controller.handleReleased(x, y, mouse(MouseEvent.MOUSE_RELEASED, MouseButton.SECONDARY));
+
+        // grab the middle of the shape, where the view-port now has it
+        x = (shape.getBoundsLeft() + shape.getBoundsRight()) / 2 - iModel.getViewLeft();
+        y = (shape.getBoundsTop() + shape.getBoundsBottom()) / 2 - iModel.getViewTop();
+        controller.handlePressed(x, y, mouse(MouseEvent.MOUSE_PRESSED, MouseButton.PRIMARY));
+        MouseEvent drag = mouse(MouseEvent.MOUSE_DRAGGED, MouseButton.PRIMARY);
+        for (int frame = 0; frame < frames; frame++) {
+            x += step(frame);
+            y -= step(frame);
+            controller.handleMove(x, y, drag);
+        }
+        controller.handleReleased(x, y, mouse(MouseEvent.MOUSE_RELEASED, MouseButton.PRIMARY));
+    }
+
+    /**
+     * Helper method for the distance the pointer moves in a frame, 100 frames one way and then 100 frames back.
+     *
+     * @param frame : number of the frame
+     * @return : distance in normalized coordinates
+     */
+    private static double step(int frame) {
+        return (frame % 200 < 100) ? 0.001 : -0.001;
+    }
+
+    /**
+     * Helper method to make a mouse event with one button held, made once per gesture like the events of a real
+     * pointer would be by JavaFX.
+     *
+     * @param type   : pressed, dragged or released
+     * @param button : button held
+     * @return : the event
+     */
+    private static MouseEvent mouse(EventType<MouseEvent> type, MouseButton button) {
+        return new MouseEvent(type, 0, 0, 0, 0, button, 1, false, false, false, false,
+                button == MouseButton.PRIMARY, false, button == MouseButton.SECONDARY, false, false, false, null);
+    }
+
+    /**
+     * Helper method to measure what a redraw costs inside JavaFX on a bare canvas: clearing the whole canvas, drawing
+     * as many primitives as the document has shapes and switching the dash pattern on and off for one bounding box.
+     *
+     * @param bean       : thread bean to measure allocations with
+     * @param shapeCount : number of primitives to draw per redraw
+     * @return : bytes allocated by JavaFX per redraw
+     */
+    private static double javaFxBytesPerRedraw(com.sun.management.ThreadMXBean bean, int shapeCount) {
+        GraphicsContext gc = new Canvas(500, 500).getGraphicsContext2D();
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            bareRedraw(gc, shapeCount);
+        }
+        long before = bean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            bareRedraw(gc, shapeCount);
+        }
+        return (double) (bean.getCurrentThreadAllocatedBytes() - before) / MEASURED_FRAMES;
+    }
+
+    /**
+     * Helper method for the JavaFX calls of a redraw, without any of the application's code.
+     *
+     * @param gc         : graphics context of a bare canvas
+     * @param shapeCount : number of primitives to draw
+     */
+    private static void bareRedraw(GraphicsContext gc, int shapeCount) {
+        gc.clearRect(0, 0, 500, 500);
+        for (int i = 0; i < shapeCount; i++) {
+            gc.setFill(Color.CORAL);
+            gc.fillRect(i % 400, i % 300, 20, 20);
+            gc.strokeRect(i % 400, i % 300, 20, 20);
+        }
+        gc.setLineDashes(DASH_PATTERN);
+        gc.setLineDashes(null);
+    }
+}
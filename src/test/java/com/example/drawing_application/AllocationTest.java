@@ -0,0 +1,49 @@
+package com.example.drawing_application;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that panning the view-port and dragging a shape allocate nothing in the application's own code, only what
+ * JavaFX needs for the redraws they cause, measured by AllocationBenchmark on a document of 1000 shapes. Runs on the
+ * test thread without a stage, with the views drawn by the software pipeline.
+ */
+class AllocationTest {
+    // number of shapes in the document
+    private static final int SHAPES = 1000;
+
+    /**
+     * Test for dragging with snapping to the grid and to other shapes off, the default.
+     */
+    @Test
+    void dragAndPanWithoutSnappingToShapes() {
+        check(false);
+    }
+
+    /**
+     * Test for dragging while snapping to other shapes, with alignment guides.
+     */
+    @Test
+    void dragAndPanWhileSnappingToShapes() {
+        check(true);
+    }
+
+    /**
+     * Helper method to measure a new document and check that the application allocated nothing of its own, within the
+     * tolerance of the benchmark.
+     *
+     * @param snapToShapes : whether shapes snap to other shapes
+     */
+    private static void check(boolean snapToShapes) {
+        DrawingDocument document = new DrawingDocument(new RenderResources());
+        document.setShown(true);
+        document.getIModel().setSnapToShapes(snapToShapes);
+        double[] measured = AllocationBenchmark.measure(document.getModel(), document.getIModel(),
+                document.getController(), new DrawingView[]{document.getDrawingView(), document.getMiniDrawingView()},
+                SHAPES);
+        assertTrue(measured[0] <= AllocationBenchmark.TOLERANCE, String.format(
+                "%.2f bytes/frame allocated by the application beside %.2f bytes/frame by JavaFX", measured[0],
+                measured[1]));
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.drawing_application;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test that the geometry XOval, XCircle and XLine cache for contains() is recomputed after every kind of change, by
+ * comparing contains() with the formulas the shapes used before they cached anything, computed afresh from the
+ * location and size. Points closer to the outline than rounding can decide are skipped.
+ */
+class CachedGeometryTest {
+    // number of changes made per shape and points checked after each
+    private static final int STEPS = 300, QUERIES = 200;
+    // points this close to the outline may be decided either way by rounding
+    private static final double MARGIN = 1e-9;
+
+    /**
+     * Test for ovals, including ones that are wider than tall, taller than wide and round.
+     */
+    @Test
+    void ovalMatchesBaseline() {
+        check(new XOval(0.2, 0.3, 0.2, 0.1, 0), new Random(8));
+    }
+
+    /**
+     * Test for circles, whose radius follows from the width.
+     */
+    @Test
+    void circleMatchesBaseline() {
+        check(new XCircle(0.2, 0.3, 0.2, 0.2, 0), new Random(9));
+    }
+
+    /**
+     * Test for lines, which store their end point in width and height.
+     */
+    @Test
+    void lineMatchesBaseline() {
+        check(new XLine(0.2, 0.3, 0.5, 0.4, 0), new Random(10));
+    }
+
+    /**
+     * Helper method to change a shape through the setters, move() and resize() in turn and compare contains() with
+     * the baseline after each change.
+     *
+     * @param shape  : shape to be changed
+     * @param random : source of the changes and points
+     */
+    private static void check(XShape shape, Random random) {
+        for (int step = 0; step < STEPS; step++) {
+            String operation;
+            double value = 0.02 + random.nextDouble() * 0.5;
+            switch (step % 6) {
+                case 0 -> {
+                    operation = "setLeft";
+                    shape.setLeft(value);
+                }
+                case 1 -> {
+                    operation = "setTop";
+                    shape.setTop(value);
+                }
+                case 2 -> {
+                    operation = "setWidth";
+                    shape.setWidth(value);
+                }
+                case 3 -> {
+                    operation = "setHeight";
+                    shape.setHeight(step % 4 == 3 ? shape.getWidth() : value);
+                }
+                case 4 -> {
+                    operation = "move";
+                    shape.move(random.nextDouble() * 0.2 - 0.1, random.nextDouble() * 0.2 - 0.1);
+                }
+                default -> {
+                    operation = "resize";
+                    shape.resize(random.nextDouble() * 0.5, random.nextDouble() * 0.5, value, 0.02 + random.nextDouble() * 0.5);
+                }
+            }
+            for (int q = 0; q < QUERIES; q++) {
+                double x, y;
+                if (shape instanceof XLine && q % 2 == 0) {
+                    // near the line, where the tolerance decides
+                    double t = random.nextDouble() * 1.2 - 0.1, offset = (random.nextDouble() * 4 - 2) * XLine.TOLERANCE;
+                    x = shape.left + (shape.width - shape.left) * t + offset;
+                    y = shape.top + (shape.height - shape.top) * t - offset;
+                } else {
+                    x = shape.getBoundsLeft() - 0.1 + random.nextDouble() * (shape.getBoundsRight() - shape.getBoundsLeft() + 0.2);
+                    y = shape.getBoundsTop() - 0.1 + random.nextDouble() * (shape.getBoundsBottom() - shape.getBoundsTop() + 0.2);
+                }
+                Boolean expected = switch (shape) {
+                    case XCircle circle -> circle(circle, x, y);
+                    case XOval oval -> oval(oval, x, y);
+                    case XLine line -> line(line, x, y);
+                    default -> throw new IllegalStateException("Unexpected value");
+                };
+                if (expected != null) {
+                    assertEquals(expected, shape.contains(x, y), "after " + operation + " " + step + " at " + x + ", " + y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method for the baseline check of a circle.
+     *
+     * @param circle : circle to be checked
+     * @param x      : x coordinate
+     * @param y      : y coordinate
+     * @return : true if the point is inside, or null if it is too close to the outline to tell
+     */
+    private static Boolean circle(XCircle circle, double x, double y) {
+        double cx = circle.left + circle.width / 2, cy = circle.top + circle.height / 2;
+        return decide(Math.hypot(x - cx, y - cy) - circle.width / 2);
+    }
+
+    /**
+     * Helper method for the baseline check of an oval: the oval is scaled back to a circle along its longer axis.
+     *
+     * @param oval : oval to be checked
+     * @param x    : x coordinate
+     * @param y    : y coordinate
+     * @return : true if the point is inside, or null if it is too close to the outline to tell
+     */
+    private static Boolean oval(XOval oval, double x, double y) {
+        double width = oval.width, height = oval.height;
+        double centerX = oval.left + width / 2, centerY = oval.top + height / 2;
+        if (width > height) {
+            double scaleFactor = width / height;
+            return decide(Math.hypot(x / scaleFactor - centerX / scaleFactor, y - centerY) - width / scaleFactor / 2);
+        } else if (height > width) {
+            double scaleFactor = height / width;
+            return decide(Math.hypot(x - centerX, y / scaleFactor - centerY / scaleFactor) - width / 2);
+        }
+        return decide(Math.hypot(x - centerX, y - centerY) - width / 2);
+    }
+
+    /**
+     * Helper method for the baseline check of a line: the distance from the line within the tolerance, between the end
+     * points unless the line is almost vertical or horizontal, and never beyond the bounds grown by the tolerance.
+     *
+     * @param line : line to be checked
+     * @param mx   : x coordinate
+     * @param my   : y coordinate
+     * @return : true if the point is on the line, or null if it is too close to the tolerance to tell
+     */
+    private static Boolean line(XLine line, double mx, double my) {
+        double x1 = line.left, y1 = line.top, x2 = line.width, y2 = line.height;
+        double length = Math.hypot(x2 - x1, y2 - y1);
+        double ratioA = (y1 - y2) / length, ratioB = (x2 - x1) / length;
+        double ratioC = -1 * ((y1 - y2) * x1 + (x2 - x1) * y1) / length;
+        Boolean closeToLine = decide(Math.abs(ratioA * mx + ratioB * my + ratioC) - XLine.TOLERANCE);
+        if (closeToLine == null || Math.abs(mx - x1) < MARGIN || Math.abs(mx - x2) < MARGIN
+                || Math.abs(my - y1) < MARGIN || Math.abs(my - y2) < MARGIN) {
+            return null;
+        }
+        boolean withinBoundsX = mx >= x1 && mx <= x2;
+        boolean withinBoundsY = my >= y1 && my <= y2;
+        if (x2 - x1 <= XLine.TOLERANCE) {
+            withinBoundsX = true;
+        } else if (y2 - y1 <= XLine.TOLERANCE) {
+            withinBoundsY = true;
+        }
+        boolean withinTolerance = mx >= line.getBoundsLeft() && mx <= line.getBoundsRight()
+                && my >= line.getBoundsTop() && my <= line.getBoundsBottom();
+        return closeToLine && withinBoundsX && withinBoundsY && withinTolerance;
+    }
+
+    /**
+     * Helper method to decide a check from how far a point is past the outline.
+     *
+     * @param excess : distance past the outline, negative inside
+     * @return : true if inside, false if outside, or null if within MARGIN of the outline
+     */
+    private static Boolean decide(double excess) {
+        return Math.abs(excess) < MARGIN ? null : excess <= 0;
+    }
+}
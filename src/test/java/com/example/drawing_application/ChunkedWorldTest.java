@@ -0,0 +1,124 @@
+package com.example.drawing_application;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that a ChunkedWorld written to a ChunkFile comes back with every shape where it was, after panning across the
+ * world, changing shapes on the way and spilling changed chunks to disk under a small budget.
+ */
+class ChunkedWorldTest {
+    // columns and rows of chunks the shapes are spread over
+    private static final int COLUMNS = 20, ROWS = 12;
+    // memory for changed chunks, small enough that they are spilled to the swap file
+    private static final long BUDGET = 4096;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Test for saving a world, opening it, panning over all of it while moving shapes, and saving it again over the
+     * file it is still reading from.
+     */
+    @Test
+    void savedWorldRoundTrips() throws IOException {
+        List<XShape> shapes = HitTestKernelTest.document(DocumentGenerator.Distribution.UNIFORM, 600);
+        Random random = new Random(3);
+        HashMap<Long, double[]> expected = new HashMap<>();
+        for (XShape shape : shapes) {
+            // XShape.move() moves by the negated distance
+            shape.move(-random.nextInt(COLUMNS), -random.nextInt(ROWS));
+            expected.put(shape.getId(), boundsOf(shape, 0, 0));
+        }
+        Path path = dir.resolve("world.drawing");
+        ChunkedWorld.save(shapes, path);
+        assertShapesEqual(expected, path);
+
+        try (ChunkFile file = ChunkFile.open(path)) {
+            DrawingModel model = new DrawingModel();
+            InteractionModel iModel = new InteractionModel();
+            iModel.setViewFinderWidth(0.5);
+            iModel.setViewFinderHeight(0.5);
+            ChunkedWorld world = new ChunkedWorld(model, iModel, file, Runnable::run, Runnable::run, BUDGET);
+            iModel.addISubscriber(world);
+
+            int step = 0;
+            for (int row = 0; row < ROWS; row++) {
+                for (double column = 0; column < COLUMNS; column += 0.4) {
+                    iModel.setViewLeft(column - world.getOriginX());
+                    iModel.setViewTop(row - world.getOriginY());
+                    List<XShape> loaded = model.getShapes();
+                    if (step++ % 3 == 0 && !loaded.isEmpty()) {
+                        XShape shape = loaded.get(random.nextInt(loaded.size()));
+                        model.moveShape(shape, random.nextDouble() - 0.5, random.nextDouble() - 0.5);
+                        expected.put(shape.getId(), boundsOf(shape, world.getOriginX(), world.getOriginY()));
+                    }
+                    assertTrue(world.storedBytes() <= BUDGET);
+                }
+            }
+            assertTrue(world.getStoredChunks() > 0);
+
+            world.save(path);
+            assertShapesEqual(expected, path);
+            // the world still reads the chunks it has not loaded from the file it was opened from
+            iModel.setViewLeft(-world.getOriginX());
+            iModel.setViewTop(-world.getOriginY());
+            Path copy = dir.resolve("copy.drawing");
+            world.save(copy);
+            assertShapesEqual(expected, copy);
+        }
+    }
+
+    /**
+     * Helper method to find the bounds of a shape in the world.
+     *
+     * @param shape   : shape to be measured
+     * @param originX : column its coordinates are relative to
+     * @param originY : row its coordinates are relative to
+     * @return : left, top, right and bottom of its bounds
+     */
+    private static double[] boundsOf(XShape shape, int originX, int originY) {
+        return new double[]{shape.getBoundsLeft() + originX, shape.getBoundsTop() + originY,
+                shape.getBoundsRight() + originX, shape.getBoundsBottom() + originY};
+    }
+
+    /**
+     * Helper method to check that a file holds the expected shapes, in the chunks their bounds start in.
+     *
+     * @param expected : bounds in the world of every shape by id
+     * @param path     : file to be checked
+     * @throws IOException : if the file could not be read
+     */
+    private static void assertShapesEqual(Map<Long, double[]> expected, Path path) throws IOException {
+        int count = 0;
+        try (ChunkFile file = ChunkFile.open(path)) {
+            assertTrue(file.getLevels() > 0);
+            for (ChunkFile.Entry entry : file.getChunks()) {
+                ByteBuffer buffer = ChunkFile.read(file.getChannel(), entry.offset(), entry.length());
+                assertEquals(entry.checksum(), ChunkFile.checksum(buffer));
+                while (buffer.hasRemaining()) {
+                    XShape shape = ChunkFile.readRecord(buffer);
+                    assertTrue(shape.getBoundsLeft() >= 0 && shape.getBoundsLeft() < 1);
+                    double[] bounds = expected.get(shape.getId());
+                    assertNotNull(bounds, "unexpected shape " + shape.getId());
+                    assertArrayEquals(bounds, boundsOf(shape, entry.x(), entry.y()), 1e-9);
+                    count++;
+                }
+            }
+        }
+        assertEquals(expected.size(), count);
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark and self-check for collaboration, entirely on localhost without a stage. Starts a CollaborationServer in
+ * this process, connects several sessions to it, each with its own model, and has every client draw shapes and then
+ * edit one shared shape at the same time. Pulses all clients until their documents agree, reports the time and checks
+ * that every client kept the same shapes and that the conflicting edit went to the highest client number. Exits with
+ * status 1 if the documents do not converge.
+ */
+public class CollaborationBenchmark {
+    /*
+        Default size of the benchmark and the time allowed for the clients to converge.
+     */
+    private static final int DEFAULT_CLIENTS = 4;
+    private static final int DEFAULT_SHAPES = 10_000;
+    private static final long TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * Main method that runs the benchmark.
+     *
+     * @param args : optional number of clients (default 4) and shapes drawn per client (default 10000)
+     * @throws IOException          : if the server or a client could not be started
+     * @throws InterruptedException : if interrupted while waiting for the clients to converge
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+        int shapeCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SHAPES;
+        boolean passed;
+        try (CollaborationServer server = new CollaborationServer(0)) {
+            List<DrawingScript> scripts = new ArrayList<>();
+            List<CollaborationSession> sessions = new ArrayList<>();
+            for (int c = 0; c < clientCount; c++) {
+                DrawingScript script = new DrawingScript();
+                scripts.add(script);
+                sessions.add(new CollaborationSession(script.getModel(), script.getIModel(), "localhost", server.getPort()));
+            }
+
+            // every client draws its own shapes, committed as one batch
+            long start = System.nanoTime();
+            Random random = new Random(42);
+            for (DrawingScript script : scripts) {
+                script.reserve(shapeCount);
+                for (int i = 0; i < shapeCount; i++) {
+                    double x = random.nextDouble() * 0.9, y = random.nextDouble() * 0.9;
+                    script.create(i % 5, x, y, 0.01, 0.01);
+                }
+                script.commit();
+            }
+            int total = clientCount * shapeCount;
+            boolean synced = converge(sessions, scripts, total);
+            double syncMillis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%d clients, %d shapes: documents %s after %.1f ms%n",
+                    clientCount, total, synced ? "in sync" : "NOT in sync", syncMillis);
+
+            // every client moves and recolours the first shape of the first client at the same time - clients are
+            // numbered in the order they connected, so the last client's edit has to win
+            XShape original = scripts.get(0).getModel().getShapes().get(0);
+            double expectedLeft = original.getLeft() + 0.001 * clientCount;
+            Color expectedColour = (clientCount - 1) % 2 == 0 ? Color.GOLD : Color.CORAL;
+            List<XShape> copies = new ArrayList<>();
+            for (DrawingScript script : scripts) {
+                copies.add(copyOf(script, original));
+            }
+            for (int c = 0; c < clientCount; c++) {
+                DrawingScript script = scripts.get(c);
+                XShape shared = copies.get(c);
+                script.getIModel().setSelectedShape(shared);
+                script.getModel().recolourShapes(List.of(shared), c % 2 == 0 ? Color.GOLD : Color.CORAL);
+                script.getModel().moveShape(shared, 0.001 * (c + 1), 0);
+            }
+            start = System.nanoTime();
+            boolean resolved = converge(sessions, scripts, total)
+                    && original.getLeft() == expectedLeft && expectedColour.equals(original.getColor());
+            System.out.printf("conflicting edit %s after %.1f ms%n", resolved ? "resolved" : "NOT resolved",
+                    (System.nanoTime() - start) / 1e6);
+            passed = synced && resolved;
+
+            for (CollaborationSession session : sessions) {
+                session.close();
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Helper method to pulse all clients until their documents agree.
+     *
+     * @param sessions : sessions of the clients
+     * @param scripts  : scripts holding the clients' models
+     * @param total    : number of shapes every document should end up with
+     * @return : true if the documents agreed before the timeout
+     * @throws InterruptedException : if interrupted while waiting
+     */
+    private static boolean converge(List<CollaborationSession> sessions, List<DrawingScript> scripts, int total)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            int applied = 0;
+            for (CollaborationSession session : sessions) {
+                applied += session.pulse();
+            }
+            if (applied == 0) {
+                if (agree(scripts, total)) {
+                    return true;
+                }
+                Thread.sleep(1);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper method to check if all documents have the same shapes, compared through an order-independent checksum of
+     * their types, geometry and colours.
+     *
+     * @param scripts : scripts holding the clients' models
+     * @param total   : number of shapes every document should have
+     * @return : true if all documents agree
+     */
+    private static boolean agree(List<DrawingScript> scripts, int total) {
+        long reference = 0;
+        for (int c = 0; c < scripts.size(); c++) {
+            DrawingScript script = scripts.get(c);
+            if (script.size() != total) {
+                return false;
+            }
+            long checksum = 0;
+            for (XShape shape : script.getModel().getShapes()) {
+                long hash = ShapeCodec.typeOf(shape);
+                hash = hash * 31 + Double.hashCode(shape.getLeft());
+                hash = hash * 31 + Double.hashCode(shape.getTop());
+                hash = hash * 31 + Double.hashCode(shape.getWidth());
+                hash = hash * 31 + Double.hashCode(shape.getHeight());
+                hash = hash * 31 + ShapeCodec.toRgba(shape.getColor());
+                // mix the bits so that the sum does not cancel out
+                hash *= 0x9E3779B97F4A7C15L;
+                checksum += hash ^ (hash >>> 29);
+            }
+            if (c == 0) {
+                reference = checksum;
+            } else if (checksum != reference) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method to find a client's copy of a shape.
+     *
+     * @param script : script holding the client's model
+     * @param first  : shape in another, synced document
+     * @return : the client's copy of the shape
+     */
+    private static XShape copyOf(DrawingScript script, XShape first) {
+        // documents are in sync, so the copy is the shape with the same type and geometry
+        for (XShape shape : script.getModel().getShapes()) {
+            if (ShapeCodec.typeOf(shape) == ShapeCodec.typeOf(first) && shape.getLeft() == first.getLeft()
+                    && shape.getTop() == first.getTop() && shape.getWidth() == first.getWidth()
+                    && shape.getHeight() == first.getHeight()) {
+                return shape;
+            }
+        }
+        throw new IllegalStateException("Shape not found");
+    }
+}
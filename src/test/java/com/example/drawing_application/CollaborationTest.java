@@ -0,0 +1,327 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test that changes travel between CollaborationSessions through a CollaborationServer running in the same process.
+ * Some tests write frames through a plain socket instead of a session, to control their versions and how they are cut
+ * into writes.
+ */
+class CollaborationTest {
+    // how long to wait for a change to arrive before failing
+    private static final long TIMEOUT_MILLIS = 10_000;
+    // number of points of a stroke whose frame is larger than the read buffers of the server and the sessions
+    private static final int LARGE_STROKE_POINTS = 6000;
+
+    private CollaborationServer server;
+    private final List<AutoCloseable> connections = new ArrayList<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new CollaborationServer(0);
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        for (AutoCloseable connection : connections) {
+            connection.close();
+        }
+        server.close();
+    }
+
+    /**
+     * Test for a new shape, a move and a delete on one model reaching the other.
+     */
+    @Test
+    void changesReachOtherSession() throws IOException {
+        DrawingModel modelA = new DrawingModel(), modelB = new DrawingModel();
+        CollaborationSession sessionA = join(modelA, server);
+        CollaborationSession sessionB = join(modelB, server);
+
+        XShape shape = DrawingModel.newShape(0, 0.1, 0.2, 0.3, 0.4, Color.RED);
+        modelA.addShape(shape);
+        await(() -> modelB.getShape(shape.getId()) != null, sessionB);
+        XShape copy = modelB.getShape(shape.getId());
+        assertEquals(0.1, copy.getLeft());
+        assertEquals(0.4, copy.getHeight());
+        assertEquals(Color.RED, copy.getColor());
+
+        modelA.moveShape(shape, 0.2, 0);
+        await(() -> copy.getLeft() == shape.getLeft(), sessionB);
+
+        modelA.removeShapes(List.of(shape));
+        await(() -> modelB.getShape(shape.getId()) == null, sessionB);
+        assertTrue(modelB.getShapes().isEmpty());
+        assertEquals(0, sessionA.pulse());
+    }
+
+    /**
+     * Test for last-writer-wins: a change with an older version loses, whatever order it arrives in, and a tie goes to
+     * the higher client number.
+     */
+    @Test
+    void olderVersionLoses() throws IOException {
+        DrawingModel modelB = new DrawingModel();
+        CollaborationSession sessionB = join(modelB, server);
+        SocketChannel writer = connect(server);
+        long id = 1L << 40;
+
+        send(writer, id, 5, 1, DrawingModel.newShape(0, 0.5, 0.5, 0.1, 0.1, Color.BLUE));
+        await(() -> modelB.getShape(id) != null, sessionB);
+        send(writer, id, 3, 9, DrawingModel.newShape(0, 0.1, 0.1, 0.1, 0.1, Color.GREEN));
+        send(writer, id, 5, 0, DrawingModel.newShape(0, 0.2, 0.2, 0.1, 0.1, Color.GREEN));
+        // frames of one connection are relayed in order, so once the marker arrives the losing frames have been seen
+        XShape marker = DrawingModel.newShape(0, 0, 0, 0.1, 0.1, Color.BLACK);
+        send(writer, id + 1, 1, 1, marker);
+        await(() -> modelB.getShape(id + 1) != null, sessionB);
+        assertEquals(0.5, modelB.getShape(id).getLeft());
+        assertEquals(Color.BLUE, modelB.getShape(id).getColor());
+
+        send(writer, id, 5, 2, DrawingModel.newShape(0, 0.7, 0.7, 0.1, 0.1, Color.BLUE));
+        await(() -> modelB.getShape(id).getLeft() == 0.7, sessionB);
+        ByteBuffer delete = ByteBuffer.allocate(ShapeCodec.DELETE_FRAME_BYTES);
+        ShapeCodec.writeDelete(delete, id, 4, 9);
+        write(writer, delete.flip());
+        send(writer, id + 1, 2, 1, DrawingModel.newShape(0, 0.3, 0, 0.1, 0.1, Color.BLACK));
+        await(() -> modelB.getShape(id + 1).getLeft() == 0.3, sessionB);
+        assertNotNull(modelB.getShape(id));
+    }
+
+    /**
+     * Test for a client that joins late getting the current state of every shape, without the deleted ones.
+     */
+    @Test
+    void lateJoinerGetsCurrentState() throws IOException {
+        DrawingModel modelA = new DrawingModel(), modelB = new DrawingModel();
+        CollaborationSession sessionA = join(modelA, server);
+        CollaborationSession sessionB = join(modelB, server);
+        List<XShape> shapes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            shapes.add(DrawingModel.newShape(i % 5, i / 100.0, 0.5, 0.1, 0.1, Color.GRAY));
+        }
+        modelA.addShapes(shapes);
+        modelA.moveShape(shapes.get(7), 0.25, 0);
+        modelA.removeShapes(shapes.subList(0, 5));
+        XShape moved = shapes.get(7);
+        await(() -> modelB.getShapes().size() == 45 && modelB.getShape(moved.getId()).getLeft() == moved.getLeft(),
+                sessionB);
+
+        DrawingModel modelC = new DrawingModel();
+        CollaborationSession sessionC = join(modelC, server);
+        await(() -> modelC.getShapes().size() == 45, sessionC);
+        for (XShape shape : modelA.getShapes()) {
+            XShape copy = modelC.getShape(shape.getId());
+            assertNotNull(copy);
+            assertEquals(shape.getLeft(), copy.getLeft());
+            assertEquals(shape.getWidth(), copy.getWidth());
+        }
+        assertNull(modelC.getShape(shapes.get(0).getId()));
+        assertEquals(0, sessionA.pulse());
+    }
+
+    /**
+     * Test for a frame that reaches the server in several reads, cut inside the length prefix and inside the payload.
+     */
+    @Test
+    void frameSplitAcrossReads() throws Exception {
+        DrawingModel modelB = new DrawingModel();
+        CollaborationSession sessionB = join(modelB, server);
+        SocketChannel writer = connect(server);
+        long id = 2L << 40;
+        ByteBuffer frame = ByteBuffer.allocate(ShapeCodec.UPSERT_FRAME_BYTES);
+        ShapeCodec.writeUpsert(frame, id, 1, 1, DrawingModel.newShape(3, 0.4, 0.3, 0.2, 0.1, Color.ORANGE));
+        frame.flip();
+        for (int cut : new int[]{2, 17, frame.limit()}) {
+            write(writer, frame.slice(frame.position(), cut - frame.position()));
+            frame.position(cut);
+            Thread.sleep(50);
+        }
+        await(() -> modelB.getShape(id) != null, sessionB);
+        assertEquals(0.4, modelB.getShape(id).getLeft());
+        assertEquals(0.1, modelB.getShape(id).getHeight());
+    }
+
+    /**
+     * Test for a stroke whose frame is larger than the read buffers of the server and the sessions, both when it is
+     * relayed and when it is replayed to a late joiner.
+     */
+    @Test
+    void frameLargerThanReadBuffer() throws IOException {
+        DrawingModel modelA = new DrawingModel(), modelB = new DrawingModel();
+        join(modelA, server);
+        CollaborationSession sessionB = join(modelB, server);
+        double[] points = new double[2 * LARGE_STROKE_POINTS];
+        for (int i = 0; i < LARGE_STROKE_POINTS; i++) {
+            points[2 * i] = i / (double) LARGE_STROKE_POINTS;
+            points[2 * i + 1] = Math.sin(i / 100.0) / 2 + 0.5;
+        }
+        XFreehand stroke = new XFreehand(points, LARGE_STROKE_POINTS, Color.PURPLE);
+        assertTrue(ShapeCodec.upsertFrameBytes(stroke) > 64 * 1024);
+        modelA.addShape(stroke);
+        modelA.addShape(DrawingModel.newShape(0, 0.1, 0.1, 0.1, 0.1, Color.BLACK));
+        await(() -> modelB.getShapes().size() == 2, sessionB);
+        assertStrokeEquals(stroke, modelB.getShape(stroke.getId()));
+
+        DrawingModel modelC = new DrawingModel();
+        CollaborationSession sessionC = join(modelC, server);
+        await(() -> modelC.getShapes().size() == 2, sessionC);
+        assertStrokeEquals(stroke, modelC.getShape(stroke.getId()));
+    }
+
+    /**
+     * Test for a client that stops reading being disconnected once its queue goes over the limit of the server,
+     * instead of the queue growing without bound.
+     */
+    @Test
+    void slowClientIsDisconnected() throws Exception {
+        server.close();
+        server = new CollaborationServer(0, 64 * 1024);
+        SocketChannel slow = connect(server);
+        SocketChannel writer = connect(server);
+        long id = 3L << 40;
+        XShape shape = DrawingModel.newShape(0, 0.1, 0.1, 0.1, 0.1, Color.BLACK);
+        ByteBuffer batch = ByteBuffer.allocate(1000 * ShapeCodec.UPSERT_FRAME_BYTES);
+        // far more than the socket buffers between the server and the slow client can hold
+        for (int version = 1; version <= 400_000; version++) {
+            ShapeCodec.writeUpsert(batch, id, version, 1, shape);
+            if (!batch.hasRemaining()) {
+                write(writer, batch.flip());
+                batch.clear();
+            }
+        }
+
+        slow.configureBlocking(false);
+        ByteBuffer sink = ByteBuffer.allocate(1024 * 1024);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (slow.read(sink.clear()) >= 0) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Slow client was not disconnected");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Helper method to connect a session for a model to the server.
+     *
+     * @param model  : model to be shared
+     * @param server : server to connect to
+     * @return : the session
+     * @throws IOException : if the server could not be reached
+     */
+    private CollaborationSession join(DrawingModel model, CollaborationServer server) throws IOException {
+        CollaborationSession session = new CollaborationSession(model, new InteractionModel(), "localhost", server.getPort());
+        connections.add(session);
+        return session;
+    }
+
+    /**
+     * Helper method to connect a plain socket to the server and read its hello.
+     *
+     * @param server : server to connect to
+     * @return : the connected socket
+     * @throws IOException : if the server could not be reached
+     */
+    private SocketChannel connect(CollaborationServer server) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()));
+        connections.add(channel);
+        ByteBuffer hello = ByteBuffer.allocate(ShapeCodec.HELLO_FRAME_BYTES);
+        while (hello.hasRemaining()) {
+            assertTrue(channel.read(hello) >= 0);
+        }
+        assertEquals(ShapeCodec.HELLO, hello.get(4));
+        return channel;
+    }
+
+    /**
+     * Helper method to send an upsert through a plain socket.
+     *
+     * @param channel : connected socket
+     * @param id      : id of the shape
+     * @param version : version of the change
+     * @param origin  : client number of the change
+     * @param shape   : new state of the shape
+     * @throws IOException : if the frame could not be written
+     */
+    private static void send(SocketChannel channel, long id, long version, int origin, XShape shape) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(ShapeCodec.upsertFrameBytes(shape));
+        ShapeCodec.writeUpsert(frame, id, version, origin, shape);
+        write(channel, frame.flip());
+    }
+
+    /**
+     * Helper method to write all of a buffer to a socket.
+     *
+     * @param channel : connected socket
+     * @param buffer  : bytes to be written
+     * @throws IOException : if the bytes could not be written
+     */
+    private static void write(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Helper method to apply the changes received by a session until a condition holds.
+     *
+     * @param condition : condition on the model of the session
+     * @param session   : session whose changes are applied
+     */
+    private static void await(BooleanSupplier condition, CollaborationSession session) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (true) {
+            session.pulse();
+            if (condition.getAsBoolean()) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("Change did not arrive");
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Helper method to check that a received stroke has the points of the one sent.
+     *
+     * @param expected : stroke sent
+     * @param actual   : stroke received
+     */
+    private static void assertStrokeEquals(XFreehand expected, XShape actual) {
+        XFreehand stroke = asStroke(actual);
+        assertEquals(expected.getPointCount(), stroke.getPointCount());
+        for (int i = 0; i < 2 * expected.getPointCount(); i++) {
+            assertEquals(expected.getPoints()[i], stroke.getPoints()[i], 1e-6);
+        }
+        assertEquals(expected.getColor(), stroke.getColor());
+    }
+
+    /**
+     * Helper method to check that a shape is a stroke.
+     *
+     * @param shape : shape to be checked
+     * @return : the shape as a stroke
+     */
+    private static XFreehand asStroke(XShape shape) {
+        assertTrue(shape instanceof XFreehand, String.valueOf(shape));
+        return (XFreehand) shape;
+    }
+}
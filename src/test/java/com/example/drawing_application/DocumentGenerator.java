@@ -0,0 +1,316 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generator of large synthetic documents for load testing, shared by the benchmarks and InputReplay. Makes rectangles,
+ * squares, circles, ovals and lines in turn, placed and sized by one of the distributions below, from a seeded Random so
+ * that the same seed and distribution always give the same document.
+ * <p>
+ * Shapes are either added to a model in one batch or streamed to a dump without being built at all: a header of MAGIC,
+ * the number of shapes, the seed and the distribution, followed by one record per shape as written by
+ * ShapeCodec.writeShape(). read() turns a dump back into shapes.
+ */
+public class DocumentGenerator {
+    // first bytes of every dump, "DRWG"
+    public static final int MAGIC = 0x44525747;
+    // size of the header of a dump
+    public static final int HEADER_BYTES = 4 + 4 + 8 + 1;
+    // number of shape types made, in the numbering of DrawingModel.newShape()
+    private static final int TYPES = 5;
+    // bytes written to a dump at a time
+    private static final int WRITE_BUFFER = 1 << 16;
+
+    /*
+        Parameters of the distributions: the size range of ordinary shapes, the number and spread of clusters, the size
+        range and area of the overlapping shapes and the share and size ranges of tiny and huge shapes.
+     */
+    private static final double MIN_SIZE = 0.001, MAX_SIZE = 0.011;
+    private static final int CLUSTERS = 64;
+    private static final double CLUSTER_SPREAD = 0.02;
+    private static final double MIN_OVERLAPPING = 0.1, MAX_OVERLAPPING = 0.4, OVERLAP_AREA = 0.2;
+    private static final double HUGE_SHARE = 0.02;
+    private static final double MIN_TINY = 0.0002, MAX_TINY = 0.001, MIN_HUGE = 0.25, MAX_HUGE = 0.75;
+    private static final Color[] COLOURS = {Color.AQUA, Color.VIOLET, Color.GREEN, Color.GOLD, Color.ORANGE, Color.CORAL};
+
+    /**
+     * Ways of placing and sizing the shapes of a generated document.
+     */
+    public enum Distribution {
+        // small shapes spread evenly over the document
+        UNIFORM,
+        // small shapes gathered around a few dozen points
+        CLUSTERED,
+        // large shapes stacked over the middle of the document, so that every point there is covered many times
+        OVERLAPPING,
+        // mostly tiny shapes with a few that span a large part of the document
+        TINY_HUGE
+    }
+
+    /*
+        Instance variables to store the seed, the distribution, the random numbers, the centres of the clusters and the
+        number of shapes made so far.
+     */
+    private final long seed;
+    private final Distribution distribution;
+    private final Random random;
+    private final double[] clusterX;
+    private final double[] clusterY;
+    private long made;
+
+    /*
+        Instance variables to store the last shape made by advance(), in the arguments of DrawingModel.newShape().
+     */
+    private int type;
+    private double left, top, width, height;
+    private int colour;
+
+    /**
+     * Default constructor for this class.
+     *
+     * @param seed         : seed of the random numbers
+     * @param distribution : how the shapes are placed and sized
+     */
+    public DocumentGenerator(long seed, Distribution distribution) {
+        this.seed = seed;
+        this.distribution = distribution;
+        this.random = new Random(seed);
+        this.clusterX = new double[CLUSTERS];
+        this.clusterY = new double[CLUSTERS];
+        for (int i = 0; i < CLUSTERS; i++) {
+            clusterX[i] = 0.05 + random.nextDouble() * 0.9;
+            clusterY[i] = 0.05 + random.nextDouble() * 0.9;
+        }
+    }
+
+    /**
+     * Method to make the next shape. Its z-order is 0 until it is added to a model.
+     *
+     * @return : the new shape
+     */
+    public XShape next() {
+        advance();
+        return DrawingModel.newShape(type, left, top, width, height, COLOURS[colour]);
+    }
+
+    /**
+     * Method to make a number of shapes.
+     *
+     * @param count : number of shapes
+     * @return : the shapes, from bottom to top
+     */
+    public List<XShape> generate(int count) {
+        List<XShape> shapes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shapes.add(next());
+        }
+        return shapes;
+    }
+
+    /**
+     * Method to add a number of shapes to a model as one batch, above the shapes it has.
+     *
+     * @param model : model to be filled
+     * @param count : number of shapes
+     */
+    public void populate(DrawingModel model, int count) {
+        model.addShapes(generate(count));
+    }
+
+    /**
+     * Method to write a number of shapes to a dump, without building them.
+     *
+     * @param path  : file to be written
+     * @param count : number of shapes
+     * @throws IOException : if the file could not be written
+     */
+    public void dump(Path path, int count) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER);
+            buffer.putInt(MAGIC);
+            buffer.putInt(count);
+            buffer.putLong(seed);
+            buffer.put((byte) distribution.ordinal());
+            for (int i = 0; i < count; i++) {
+                if (buffer.remaining() < ShapeCodec.SHAPE_BYTES) {
+                    write(channel, buffer);
+                }
+                advance();
+                // the record of ShapeCodec.writeShape()
+                buffer.put((byte) type);
+                buffer.putDouble(left);
+                buffer.putDouble(top);
+                buffer.putDouble(width);
+                buffer.putDouble(height);
+                buffer.putInt(ShapeCodec.toRgba(COLOURS[colour]));
+            }
+            write(channel, buffer);
+        }
+    }
+
+    /**
+     * Method to read the shapes of a dump.
+     *
+     * @param path : file written by dump()
+     * @return : the shapes, from bottom to top
+     * @throws IOException : if the file could not be read or is not a dump
+     */
+    public static List<XShape> read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a generated document: " + path);
+            }
+            int count = buffer.getInt();
+            // seed and distribution
+            buffer.position(HEADER_BYTES);
+            if (buffer.remaining() < (long) count * ShapeCodec.SHAPE_BYTES) {
+                throw new IOException("Truncated generated document: " + path);
+            }
+            List<XShape> shapes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                shapes.add(ShapeCodec.readShape(buffer));
+            }
+            return shapes;
+        }
+    }
+
+    /**
+     * Method to find a distribution by name, ignoring case.
+     *
+     * @param name : name of the distribution, e.g. "clustered" or "tiny_huge"
+     * @return : the distribution
+     */
+    public static Distribution distribution(String name) {
+        return Distribution.valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    /**
+     * Main method that generates a document and either dumps it or adds it to a model, reporting how long that took.
+     *
+     * @param args : number of shapes, then optionally the distribution (default uniform), the seed (default 42) and the
+     *             file to dump to (default none, the shapes are added to a model)
+     * @throws IOException : if the dump could not be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: DocumentGenerator count [uniform|clustered|overlapping|tiny_huge] [seed] [file]");
+            System.exit(2);
+        }
+        int count = Integer.parseInt(args[0]);
+        Distribution distribution = args.length > 1 ? distribution(args[1]) : Distribution.UNIFORM;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        DocumentGenerator generator = new DocumentGenerator(seed, distribution);
+        long start = System.nanoTime();
+        if (args.length > 3) {
+            Path path = Path.of(args[3]);
+            generator.dump(path, count);
+            System.out.printf("%d %s shapes dumped to %s in %.1f ms, %.1f MB%n", count, distribution, path,
+                    (System.nanoTime() - start) / 1e6, (HEADER_BYTES + (double) count * ShapeCodec.SHAPE_BYTES) / (1 << 20));
+        } else {
+            DrawingModel model = new DrawingModel();
+            generator.populate(model, count);
+            System.out.printf("%d %s shapes added to a model in %.1f ms%n", model.getShapes().size(), distribution,
+                    (System.nanoTime() - start) / 1e6);
+        }
+    }
+
+    /**
+     * Helper method to make the type, bounds and colour of the next shape.
+     */
+    private void advance() {
+        type = (int) (made++ % TYPES);
+        colour = random.nextInt(COLOURS.length);
+        double size;
+        switch (distribution) {
+            case UNIFORM -> {
+                size = between(MIN_SIZE, MAX_SIZE);
+                left = random.nextDouble() * (1 - size);
+                top = random.nextDouble() * (1 - size);
+            }
+            case CLUSTERED -> {
+                size = between(MIN_SIZE, MAX_SIZE);
+                int cluster = random.nextInt(CLUSTERS);
+                left = clamp(clusterX[cluster] + random.nextGaussian() * CLUSTER_SPREAD, 1 - size);
+                top = clamp(clusterY[cluster] + random.nextGaussian() * CLUSTER_SPREAD, 1 - size);
+            }
+            case OVERLAPPING -> {
+                size = between(MIN_OVERLAPPING, MAX_OVERLAPPING);
+                // centred within OVERLAP_AREA of the middle of the document
+                left = 0.5 - size / 2 + (random.nextDouble() - 0.5) * OVERLAP_AREA;
+                top = 0.5 - size / 2 + (random.nextDouble() - 0.5) * OVERLAP_AREA;
+            }
+            default -> {
+                size = random.nextDouble() < HUGE_SHARE ? between(MIN_HUGE, MAX_HUGE) : between(MIN_TINY, MAX_TINY);
+                left = random.nextDouble() * (1 - size);
+                top = random.nextDouble() * (1 - size);
+            }
+        }
+        switch (type) {
+            // squares and circles are as high as they are wide
+            case 1, 2 -> {
+                width = size;
+                height = size;
+            }
+            // lines keep their end point in width and height, running down to the right or down to the left
+            case 4 -> {
+                boolean right = random.nextBoolean();
+                width = right ? left + size : left;
+                left = right ? left : left + size;
+                height = top + size;
+            }
+            default -> {
+                width = size;
+                height = size * between(0.5, 1);
+            }
+        }
+    }
+
+    /**
+     * Helper method to draw a random number from a range.
+     *
+     * @param low  : lower end of the range
+     * @param high : upper end of the range
+     * @return : the number
+     */
+    private double between(double low, double high) {
+        return low + random.nextDouble() * (high - low);
+    }
+
+    /**
+     * Helper method to keep a coordinate within the document.
+     *
+     * @param coordinate : coordinate to be kept
+     * @param max        : largest coordinate allowed
+     * @return : coordinate between 0 and max
+     */
+    private static double clamp(double coordinate, double max) {
+        return Math.max(0, Math.min(max, coordinate));
+    }
+
+    /**
+     * Helper method to write out what a buffer holds and empty it.
+     *
+     * @param channel : file to write to
+     * @param buffer  : buffer filled
+     * @throws IOException : if the file could not be written
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.drawing_application;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test that EdgeIndex stays sorted and holds exactly the edges of the shapes in its region while it follows the moves,
+ * resizes and removals of a model change by change, and that its nearest edge matches a scan of those shapes.
+ */
+class EdgeIndexTest {
+    // region the indexes are filled for, like a view-port
+    private static final double LEFT = 0.25, TOP = 0.3, WIDTH = 0.4, HEIGHT = 0.35;
+    // number of changes made
+    private static final int STEPS = 300;
+
+    /**
+     * Test for the sorted entries after sequences of typed changes, some moving shapes into or out of the region.
+     */
+    @Test
+    void staysSortedAfterChanges() {
+        for (DocumentGenerator.Distribution distribution : DocumentGenerator.Distribution.values()) {
+            DrawingModel model = new DrawingModel();
+            model.addShapes(HitTestKernelTest.document(distribution, 400));
+            EdgeIndex edgesX = new EdgeIndex(false), edgesY = new EdgeIndex(true);
+            int[] found = model.shapesIntersecting(LEFT, TOP, WIDTH, HEIGHT);
+            edgesX.rebuild(model.getShapes(), found, found.length, LEFT, TOP, WIDTH, HEIGHT);
+            edgesY.rebuild(model.getShapes(), found, found.length, LEFT, TOP, WIDTH, HEIGHT);
+            model.addSubscriber(new ModelSubscriber() {
+                @Override
+                public void modelChanged() {
+                    fail("untyped change");
+                }
+
+                @Override
+                public void modelChanged(ModelEvent event) {
+                    edgesX.update(event);
+                    edgesY.update(event);
+                }
+            });
+            assertIndexed(model, edgesX, false, distribution + " at start");
+            assertIndexed(model, edgesY, true, distribution + " at start");
+
+            Random random = new Random(distribution.ordinal());
+            for (int step = 0; step < STEPS; step++) {
+                List<XShape> shapes = model.getShapes();
+                XShape shape = shapes.get(random.nextInt(shapes.size()));
+                String operation;
+                switch (step % 3) {
+                    case 0 -> {
+                        operation = "move";
+                        model.moveShape(shape, random.nextDouble() * 0.2 - 0.1, random.nextDouble() * 0.2 - 0.1);
+                    }
+                    case 1 -> {
+                        operation = "resize";
+                        model.resizeShape(shape, random.nextDouble(), random.nextDouble(), random.nextDouble() * 0.3,
+                                random.nextDouble() * 0.3);
+                    }
+                    default -> {
+                        operation = "remove";
+                        model.removeShapes(List.of(shape));
+                    }
+                }
+                String where = distribution + " after " + operation + " " + step;
+                assertIndexed(model, edgesX, false, where);
+                assertIndexed(model, edgesY, true, where);
+                double value = random.nextDouble();
+                XShape exclude = random.nextBoolean() ? shape : null;
+                assertNearest(model, edgesX, false, value, exclude, where);
+                assertNearest(model, edgesY, true, value, exclude, where);
+            }
+        }
+    }
+
+    /**
+     * Helper method to check that an index is sorted and holds the three edges of every shape in the region and no
+     * others.
+     *
+     * @param model    : model the index follows
+     * @param edges    : index to be checked
+     * @param vertical : axis of the index
+     * @param where    : description of the state, for failures
+     */
+    private static void assertIndexed(DrawingModel model, EdgeIndex edges, boolean vertical, String where) {
+        for (int i = 1; i < edges.size(); i++) {
+            assertTrue(edges.getValue(i - 1) <= edges.getValue(i), where + " at entry " + i);
+        }
+        List<String> expected = new ArrayList<>(), actual = new ArrayList<>();
+        for (XShape shape : inRegion(model)) {
+            for (int k = 0; k < 3; k++) {
+                expected.add(shape.getId() + "@" + edgeOf(shape, vertical, k));
+            }
+        }
+        for (int i = 0; i < edges.size(); i++) {
+            actual.add(edges.getShape(i).getId() + "@" + edges.getValue(i));
+        }
+        expected.sort(null);
+        actual.sort(null);
+        assertEquals(expected, actual, where);
+    }
+
+    /**
+     * Helper method to check the nearest edge found by an index against a scan of the shapes in the region.
+     *
+     * @param model    : model the index follows
+     * @param edges    : index to be checked
+     * @param vertical : axis of the index
+     * @param value    : coordinate to be matched
+     * @param exclude  : shape to be ignored, or null
+     * @param where    : description of the state, for failures
+     */
+    private static void assertNearest(DrawingModel model, EdgeIndex edges, boolean vertical, double value, XShape exclude, String where) {
+        double tolerance = 0.02, best = Double.MAX_VALUE;
+        for (XShape shape : inRegion(model)) {
+            for (int k = 0; k < 3 && shape != exclude; k++) {
+                best = Math.min(best, Math.abs(edgeOf(shape, vertical, k) - value));
+            }
+        }
+        int entry = edges.nearest(value, tolerance, exclude);
+        if (best > tolerance) {
+            assertEquals(-1, entry, where);
+        } else {
+            assertTrue(entry >= 0, where);
+            assertEquals(best, Math.abs(edges.getValue(entry) - value), where);
+            assertTrue(edges.getShape(entry) != exclude, where);
+        }
+    }
+
+    /**
+     * Helper method to find the shapes whose bounds intersect the region by checking every shape.
+     *
+     * @param model : model of the shapes
+     * @return : shapes in the region
+     */
+    private static List<XShape> inRegion(DrawingModel model) {
+        List<XShape> shapes = model.getShapes(), found = new ArrayList<>();
+        for (int i : HitTestKernelTest.shapesIntersecting(shapes, LEFT, TOP, WIDTH, HEIGHT)) {
+            found.add(shapes.get(i));
+        }
+        return found;
+    }
+
+    /**
+     * Helper method to find an edge or the centre of a shape along an axis.
+     *
+     * @param shape    : shape to be measured
+     * @param vertical : true for y, false for x
+     * @param k        : 0 for the low edge, 1 for the centre and 2 for the high edge
+     * @return : coordinate
+     */
+    private static double edgeOf(XShape shape, boolean vertical, int k) {
+        return vertical ? EdgeIndex.edge(shape.getBoundsTop(), shape.getBoundsBottom(), k)
+                : EdgeIndex.edge(shape.getBoundsLeft(), shape.getBoundsRight(), k);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.drawing_application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark for hit-testing a large document. Compares finding the top-most shape at a point through the virtual
+ * contains() of every shape (the way DrawingModel.contains() used to search) with the scalar and vectorized loops of
+ * HitTestKernel, and region queries through a full scan of the shapes with the kernel. Checks that all of them find the
+ * same shapes and exits with status 1 if they do not.
+ * <p>
+ * From a class path the Vector API needs --add-modules jdk.incubator.vector, otherwise the vectorized loop is reported
+ * as unavailable.
+ */
+public class HitTestBenchmark {
+    /*
+        Default size of the document, number of queries and rounds, of which the first ones warm up the JIT.
+     */
+    private static final int DEFAULT_SHAPES = 1_000_000;
+    private static final int QUERIES = 2000;
+    private static final int ROUNDS = 5;
+    private static final int WARM_UP_ROUNDS = 2;
+
+    // keeps the results alive so that the JIT cannot drop the loops
+    private static long sink;
+
+    /**
+     * Main method that runs the benchmark.
+     *
+     * @param args : optional number of shapes in the document (default 1000000) and distribution of DocumentGenerator
+     *             (default uniform)
+     */
+    public static void main(String[] args) {
+        int shapeCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SHAPES;
+        DocumentGenerator.Distribution distribution = args.length > 1 ? DocumentGenerator.distribution(args[1])
+                : DocumentGenerator.Distribution.UNIFORM;
+        List<XShape> shapes = new DocumentGenerator(42, distribution).generate(shapeCount);
+        Random random = new Random(42);
+        HitTestKernel kernel = new HitTestKernel();
+        kernel.rebuild(shapes);
+        double[] xs = new double[QUERIES], ys = new double[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            xs[q] = random.nextDouble();
+            ys[q] = random.nextDouble();
+        }
+
+        System.out.printf("%d %s shapes, %d point queries, vector API %s%n", shapeCount, distribution, QUERIES,
+                HitTestKernel.VECTORIZED ? "on" : "off");
+        boolean passed = true;
+        long virtual = 0, scalar = 0, vector = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            int[] expected = new int[QUERIES];
+            long start = System.nanoTime();
+            for (int q = 0; q < QUERIES; q++) {
+                expected[q] = topShapeVirtual(shapes, xs[q], ys[q]);
+            }
+            long virtualNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int q = 0; q < QUERIES; q++) {
+                passed &= kernel.topShapeAtScalar(xs[q], ys[q]) == expected[q];
+            }
+            long scalarNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int q = 0; q < QUERIES; q++) {
+                passed &= kernel.topShapeAt(xs[q], ys[q]) == expected[q];
+            }
+            long vectorNanos = System.nanoTime() - start;
+            if (round >= WARM_UP_ROUNDS) {
+                virtual += virtualNanos;
+                scalar += scalarNanos;
+                vector += vectorNanos;
+            }
+        }
+        int measured = (ROUNDS - WARM_UP_ROUNDS) * QUERIES;
+        System.out.printf("top shape at point: virtual contains() %.1f us, kernel scalar %.1f us, kernel %s %.1f us%n",
+                virtual / 1e3 / measured, scalar / 1e3 / measured,
+                HitTestKernel.VECTORIZED ? "vector" : "(scalar fallback)", vector / 1e3 / measured);
+
+        // region queries over a tenth of the document each
+        long scan = 0, region = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int q = 0; q < QUERIES / 100; q++) {
+                double left = xs[q] * 0.9, top = ys[q] * 0.9;
+                long start = System.nanoTime();
+                List<Integer> expected = new ArrayList<>();
+                for (int i = 0; i < shapes.size(); i++) {
+                    XShape shape = shapes.get(i);
+                    if (shape.getBoundsLeft() <= left + 0.1 && shape.getBoundsRight() >= left
+                            && shape.getBoundsTop() <= top + 0.1 && shape.getBoundsBottom() >= top) {
+                        expected.add(i);
+                    }
+                }
+                long scanNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                int[] found = kernel.shapesIntersecting(left, top, 0.1, 0.1);
+                long regionNanos = System.nanoTime() - start;
+                passed &= sameIndexes(expected, found);
+                if (round >= WARM_UP_ROUNDS) {
+                    scan += scanNanos;
+                    region += regionNanos;
+                }
+            }
+        }
+        measured = (ROUNDS - WARM_UP_ROUNDS) * (QUERIES / 100);
+        System.out.printf("region query: virtual bounds scan %.2f ms, kernel %.2f ms%n",
+                scan / 1e6 / measured, region / 1e6 / measured);
+        System.out.println(passed ? "results agree" : "results DIFFER");
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Helper method to find the top-most shape at a point by calling contains() on every shape from the top down.
+     *
+     * @param shapes : shapes in z-order
+     * @param x      : x coordinate
+     * @param y      : y coordinate
+     * @return : index of the top-most shape containing the point, or -1
+     */
+    private static int topShapeVirtual(List<XShape> shapes, double x, double y) {
+        for (int i = shapes.size() - 1; i >= 0; i--) {
+            if (shapes.get(i).contains(x, y)) {
+                sink += i;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Helper method to compare the indexes found by a region query.
+     *
+     * @param expected : indexes found by the scan
+     * @param found    : indexes found by the kernel
+     * @return : true if both are the same
+     */
+    private static boolean sameIndexes(List<Integer> expected, int[] found) {
+        if (expected.size() != found.length) {
+            return false;
+        }
+        for (int i = 0; i < found.length; i++) {
+            if (expected.get(i) != found[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
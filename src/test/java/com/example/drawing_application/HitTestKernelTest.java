@@ -0,0 +1,188 @@
+package com.example.drawing_application;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test that the vectorized and the scalar loops of HitTestKernel find the same shapes as asking every shape itself, on
+ * generated documents of every distribution. The sizes are not multiples of any vector length, so the scalar tail is
+ * covered too, and every document also holds strokes and groups, which the kernel confirms through their contains().
+ */
+class HitTestKernelTest {
+    // sizes of the documents, primes so that every vector length leaves a tail
+    private static final int[] SIZES = {1, 7, 13, 251, 1009};
+    // number of points and regions queried per document
+    private static final int QUERIES = 2000;
+
+    /**
+     * Test for the top-most shape at random points.
+     */
+    @Test
+    void topShapeAtMatchesContains() {
+        for (DocumentGenerator.Distribution distribution : DocumentGenerator.Distribution.values()) {
+            for (int size : SIZES) {
+                List<XShape> shapes = document(distribution, size);
+                HitTestKernel kernel = new HitTestKernel();
+                kernel.rebuild(shapes);
+                Random random = new Random(size);
+                for (int q = 0; q < QUERIES; q++) {
+                    double x = random.nextDouble(), y = random.nextDouble();
+                    int expected = topShapeAt(shapes, x, y);
+                    String where = distribution + " " + size + " at " + x + ", " + y;
+                    assertEquals(expected, kernel.topShapeAt(x, y), where);
+                    assertEquals(expected, kernel.topShapeAtScalar(x, y), where);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test for the shapes whose bounds intersect random regions.
+     */
+    @Test
+    void countShapesIntersectingMatchesBounds() {
+        for (DocumentGenerator.Distribution distribution : DocumentGenerator.Distribution.values()) {
+            for (int size : SIZES) {
+                List<XShape> shapes = document(distribution, size);
+                HitTestKernel kernel = new HitTestKernel();
+                kernel.rebuild(shapes);
+                Random random = new Random(size);
+                for (int q = 0; q < QUERIES / 10; q++) {
+                    double left = random.nextDouble(), top = random.nextDouble();
+                    double width = random.nextDouble() * 0.2, height = random.nextDouble() * 0.2;
+                    List<Integer> expected = shapesIntersecting(shapes, left, top, width, height);
+                    int count = kernel.countShapesIntersecting(left, top, width, height);
+                    List<Integer> found = new ArrayList<>();
+                    for (int i = 0; i < count; i++) {
+                        found.add(kernel.getFound()[i]);
+                    }
+                    assertEquals(expected, found, distribution + " " + size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test for the copy of the shapes found in a region, with more shapes found than the result buffer of a new kernel
+     * holds.
+     */
+    @Test
+    void shapesIntersectingCopiesAllFound() {
+        List<XShape> shapes = document(DocumentGenerator.Distribution.OVERLAPPING, 1009);
+        HitTestKernel kernel = new HitTestKernel();
+        kernel.rebuild(shapes);
+        int[] found = kernel.shapesIntersecting(0, 0, 1, 1);
+        List<Integer> copied = new ArrayList<>();
+        for (int i : found) {
+            copied.add(i);
+        }
+        assertEquals(shapesIntersecting(shapes, 0, 0, 1, 1), copied);
+    }
+
+    /**
+     * Test for raising shapes to the top, more often than there can be holes before they are squeezed out, while the
+     * shapes are moved and queried in between.
+     */
+    @Test
+    void raisedShapesStayInZOrder() {
+        List<XShape> shapes = document(DocumentGenerator.Distribution.OVERLAPPING, 1009);
+        HitTestKernel kernel = new HitTestKernel();
+        kernel.rebuild(shapes);
+        Random random = new Random(7);
+        for (int raise = 0; raise < 1000; raise++) {
+            int index = random.nextInt(shapes.size());
+            XShape shape = shapes.remove(index);
+            shapes.add(shape);
+            kernel.moveToEnd(index);
+            if (raise % 3 == 0) {
+                int moved = random.nextInt(shapes.size());
+                shapes.get(moved).move(0.01, -0.01);
+                kernel.set(moved, shapes.get(moved));
+            }
+            assertEquals(shapes.size(), kernel.size());
+            int probe = random.nextInt(shapes.size());
+            assertEquals(shapes.get(probe), kernel.getShape(probe));
+            double x = random.nextDouble(), y = random.nextDouble();
+            assertEquals(topShapeAt(shapes, x, y), kernel.topShapeAt(x, y));
+            assertEquals(topShapeAt(shapes, x, y), kernel.topShapeAtScalar(x, y));
+            int count = kernel.countShapesIntersecting(x, y, 0.05, 0.05);
+            List<Integer> found = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                found.add(kernel.getFound()[i]);
+            }
+            assertEquals(shapesIntersecting(shapes, x, y, 0.05, 0.05), found);
+        }
+    }
+
+    /**
+     * Helper method to make a document of generated shapes with a stroke and a group mixed in every few shapes.
+     *
+     * @param distribution : how the generated shapes are placed and sized
+     * @param size         : number of shapes
+     * @return : the shapes, from bottom to top
+     */
+    static List<XShape> document(DocumentGenerator.Distribution distribution, int size) {
+        DocumentGenerator generator = new DocumentGenerator(size, distribution);
+        List<XShape> shapes = new ArrayList<>(size);
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            if (i % 5 == 3) {
+                XFreehand stroke = new XFreehand(random.nextDouble(), random.nextDouble(), i);
+                for (int p = 0; p < 20; p++) {
+                    stroke.addPoint(random.nextDouble(), random.nextDouble());
+                }
+                stroke.finish();
+                shapes.add(stroke);
+            } else if (i % 5 == 4) {
+                shapes.add(new XGroup(List.of(generator.next(), generator.next(), generator.next())));
+            } else {
+                shapes.add(generator.next());
+            }
+        }
+        return shapes;
+    }
+
+    /**
+     * Helper method to find the top-most shape containing a point by asking every shape.
+     *
+     * @param shapes : shapes from bottom to top
+     * @param x      : x coordinate
+     * @param y      : y coordinate
+     * @return : index of the top-most shape, or -1
+     */
+    static int topShapeAt(List<XShape> shapes, double x, double y) {
+        for (int i = shapes.size() - 1; i >= 0; i--) {
+            if (shapes.get(i).contains(x, y)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Helper method to find the shapes whose bounds intersect a region by checking every shape.
+     *
+     * @param shapes : shapes from bottom to top
+     * @param left   : left edge of the region
+     * @param top    : top edge of the region
+     * @param width  : width of the region
+     * @param height : height of the region
+     * @return : indexes of the intersecting shapes, from bottom to top
+     */
+    static List<Integer> shapesIntersecting(List<XShape> shapes, double left, double top, double width, double height) {
+        List<Integer> found = new ArrayList<>();
+        for (int i = 0; i < shapes.size(); i++) {
+            XShape shape = shapes.get(i);
+            if (shape.getBoundsLeft() <= left + width && shape.getBoundsRight() >= left
+                    && shape.getBoundsTop() <= top + height && shape.getBoundsBottom() >= top) {
+                found.add(i);
+            }
+        }
+        return found;
+    }
+}
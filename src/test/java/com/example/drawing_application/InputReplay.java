@@ -0,0 +1,474 @@
+package com.example.drawing_application;
+
+import javafx.application.Platform;
+import javafx.event.EventType;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays back a trace written by InputRecorder into a fresh document, without a stage, and reports how long every event
+ * took to handle (including the redraws of the views it caused, which is one frame of the user's session) and how much
+ * the thread handling it allocated doing so. A recorded session thereby becomes a repeatable workload: replays of one
+ * trace drive the controllers through exactly the same calls.
+ * <p>
+ * Usage: InputReplay trace [--real-time] [--open file.drw | --no-views] [--generate count[:distribution]]. By default
+ * the events are played back to back as fast as they are handled; --real-time keeps the gaps between them as they were
+ * recorded. --open plays the trace back into the chunked file the session was recorded on instead of an empty document.
+ * --no-views plays it into a model, iModel and controllers wired up without views on the main thread, which needs
+ * neither a display nor the JavaFX toolkit and measures the controllers and the model alone. --generate first fills the
+ * document with shapes from DocumentGenerator, so that a short session can be replayed against a large document.
+ */
+public class InputReplay {
+    // seed of the shapes added by --generate
+    private static final long GENERATOR_SEED = 42;
+
+    /*
+        Events of the trace, decoded before the replay so that decoding is not measured: the event handed to a
+        controller, the controller it goes to, its kind and its time since the start of the trace.
+     */
+    private final ArrayList<Object> events;
+    private final byte[] targets;
+    private final byte[] kinds;
+    private final long[] dueMicros;
+    private final double[] xs, ys;
+
+    /*
+        State of the iModel when the trace was recorded.
+     */
+    private double viewLeft, viewTop, viewFinderWidth, viewFinderHeight;
+    private int shapeType, colour;
+    private double snapGrid;
+    private boolean snapToShapes;
+
+    /*
+        Time and bytes allocated per event, filled in on the JavaFX Application Thread.
+     */
+    private final long[] nanos;
+    private final long[] bytes;
+    // garbage collections and the milliseconds spent in them before the replay
+    private long[] collectionsBefore = new long[2];
+
+    /*
+        Models and controllers played into, and whether they belong to views on the JavaFX Application Thread.
+     */
+    private DrawingModel model;
+    private DrawingController controller;
+    private DrawingController miniController;
+    private boolean onFxThread;
+
+    /**
+     * Main method that replays a trace and prints the report.
+     *
+     * @param args : trace, optionally followed by --real-time, --open with a chunked file or --no-views, and --generate
+     *             with a number of shapes and a distribution
+     * @throws IOException          : if the trace or the file could not be read
+     * @throws InterruptedException : if interrupted while waiting for the replay to finish
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("usage: InputReplay trace [--real-time] [--open file.drw | --no-views] [--generate count[:distribution]]");
+            System.exit(2);
+        }
+        boolean realTime = false, views = true;
+        Path document = null;
+        String generate = null;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--real-time")) {
+                realTime = true;
+            } else if (args[i].equals("--no-views")) {
+                views = false;
+            } else if (args[i].equals("--open") && i + 1 < args.length) {
+                document = Path.of(args[++i]);
+            } else if (args[i].equals("--generate") && i + 1 < args.length) {
+                generate = args[++i];
+            }
+        }
+        InputReplay replay = read(Path.of(args[0]));
+        if (views) {
+            CountDownLatch started = new CountDownLatch(1);
+            Platform.startup(started::countDown);
+            started.await();
+            Path path = document;
+            onFxThread(() -> replay.open(path));
+        } else {
+            replay.openWithoutViews();
+        }
+        if (generate != null) {
+            String[] parts = generate.split(":");
+            int count = Integer.parseInt(parts[0]);
+            DocumentGenerator generator = new DocumentGenerator(GENERATOR_SEED, parts.length > 1
+                    ? DocumentGenerator.distribution(parts[1]) : DocumentGenerator.Distribution.UNIFORM);
+            if (views) {
+                onFxThread(() -> generator.populate(replay.model, count));
+            } else {
+                generator.populate(replay.model, count);
+            }
+        }
+        replay.play(realTime);
+        replay.report();
+        if (views) {
+            Platform.exit();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Constructor for an empty replay of a number of events.
+     *
+     * @param count : number of events
+     */
+    private InputReplay(int count) {
+        events = new ArrayList<>(count);
+        targets = new byte[count];
+        kinds = new byte[count];
+        dueMicros = new long[count];
+        xs = new double[count];
+        ys = new double[count];
+        nanos = new long[count];
+        bytes = new long[count];
+    }
+
+    /**
+     * Method to read a trace and build the events to be handed to the controllers.
+     *
+     * @param trace : trace written by InputRecorder
+     * @return : the replay
+     * @throws IOException : if the trace could not be read or is not a trace
+     */
+    public static InputReplay read(Path trace) throws IOException {
+        InputReplay replay;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(trace)))) {
+            if (in.readInt() != InputRecorder.MAGIC || in.readByte() != InputRecorder.VERSION) {
+                throw new IOException(trace + " is not an input trace");
+            }
+            ArrayList<Object> events = new ArrayList<>();
+            byte[] targets = new byte[1024], kinds = new byte[targets.length];
+            long[] due = new long[targets.length];
+            double[] xs = new double[targets.length], ys = new double[targets.length];
+            double left = in.readDouble(), top = in.readDouble(), width = in.readDouble(), height = in.readDouble();
+            int shape = in.readInt(), colour = in.readInt();
+            double snapGrid = in.readDouble();
+            boolean snapToShapes = in.readBoolean();
+            long micros = 0;
+            int n = 0;
+            while (true) {
+                byte kind;
+                try {
+                    kind = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (n == targets.length) {
+                    int length = n * 2;
+                    targets = Arrays.copyOf(targets, length);
+                    kinds = Arrays.copyOf(kinds, length);
+                    due = Arrays.copyOf(due, length);
+                    xs = Arrays.copyOf(xs, length);
+                    ys = Arrays.copyOf(ys, length);
+                }
+                targets[n] = in.readByte();
+                kinds[n] = kind;
+                micros += in.readInt();
+                due[n] = micros;
+                switch (kind) {
+                    case InputRecorder.PRESSED, InputRecorder.DRAGGED, InputRecorder.RELEASED -> {
+                        MouseButton button = MouseButton.values()[in.readByte()];
+                        int modifiers = in.readByte();
+                        xs[n] = in.readDouble();
+                        ys[n] = in.readDouble();
+                        events.add(mouseEvent(kind, button, modifiers, xs[n], ys[n]));
+                    }
+                    case InputRecorder.KEY -> {
+                        int modifiers = in.readByte();
+                        events.add(new KeyEvent(KeyEvent.KEY_PRESSED, KeyEvent.CHAR_UNDEFINED, "",
+                                KeyCode.valueOf(in.readUTF()), (modifiers & InputRecorder.SHIFT) != 0,
+                                (modifiers & InputRecorder.CONTROL) != 0, (modifiers & InputRecorder.ALT) != 0,
+                                (modifiers & InputRecorder.META) != 0));
+                    }
+                    case InputRecorder.SHAPE, InputRecorder.COLOUR -> events.add(in.readInt());
+                    case InputRecorder.DUPLICATE -> events.add(new int[]{in.readInt(), in.readInt()});
+                    default -> throw new IOException("unknown event " + kind + " in " + trace);
+                }
+                n++;
+            }
+            replay = new InputReplay(n);
+            replay.events.addAll(events);
+            System.arraycopy(targets, 0, replay.targets, 0, n);
+            System.arraycopy(kinds, 0, replay.kinds, 0, n);
+            System.arraycopy(due, 0, replay.dueMicros, 0, n);
+            System.arraycopy(xs, 0, replay.xs, 0, n);
+            System.arraycopy(ys, 0, replay.ys, 0, n);
+            replay.viewLeft = left;
+            replay.viewTop = top;
+            replay.viewFinderWidth = width;
+            replay.viewFinderHeight = height;
+            replay.shapeType = shape;
+            replay.colour = colour;
+            replay.snapGrid = snapGrid;
+            replay.snapToShapes = snapToShapes;
+        }
+        return replay;
+    }
+
+    /**
+     * Method to set up the document the trace is played into, in the state the recording started from. To be called on
+     * the JavaFX Application Thread.
+     *
+     * @param path : chunked file the session was recorded on, or null for an empty document
+     * @return : the document, shown
+     */
+    public DrawingDocument open(Path path) {
+        DrawingDocument document;
+        try {
+            document = path == null ? new DrawingDocument(new RenderResources()) : new DrawingDocument(new RenderResources(), path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open " + path, e);
+        }
+        document.setShown(true);
+        model = document.getModel();
+        controller = document.getController();
+        miniController = document.getMiniController();
+        onFxThread = true;
+        restore(document.getIModel());
+        return document;
+    }
+
+    /**
+     * Method to set up a model, iModel and both controllers to play the trace into, wired up as in DrawingDocument but
+     * without any views, in the state the recording started from.
+     *
+     * @return : the model played into
+     */
+    public DrawingModel openWithoutViews() {
+        model = new DrawingModel();
+        InteractionModel iModel = new InteractionModel();
+        controller = new DrawingController();
+        miniController = new MiniDrawingController();
+        for (DrawingController c : new DrawingController[]{controller, miniController}) {
+            c.setModel(model);
+            c.setIModel(iModel);
+        }
+        SnapIndex snapIndex = new SnapIndex(model);
+        model.setSnapIndex(snapIndex);
+        controller.setSnapIndex(snapIndex);
+        onFxThread = false;
+        restore(iModel);
+        return model;
+    }
+
+    /**
+     * Helper method to put an iModel into the state the recording started from.
+     *
+     * @param iModel : iModel played into
+     */
+    private void restore(InteractionModel iModel) {
+        iModel.setViewFinderWidth(viewFinderWidth);
+        iModel.setViewFinderHeight(viewFinderHeight);
+        iModel.setViewLeft(viewLeft);
+        iModel.setViewTop(viewTop);
+        iModel.setCurrentShapeType(shapeType);
+        iModel.setCurrentColour(ShapeCodec.fromRgba(colour));
+        iModel.setSnapGrid(snapGrid);
+        iModel.setSnapToShapes(snapToShapes);
+    }
+
+    /**
+     * Method to hand every event of the trace to the controllers set up by open() or openWithoutViews(), measuring
+     * each. Controllers of a document are called on the JavaFX Application Thread, others on this thread.
+     *
+     * @param realTime : true to keep the recorded gaps between events, false to play them back to back
+     * @throws InterruptedException : if interrupted while waiting for the replay to finish
+     */
+    public void play(boolean realTime) throws InterruptedException {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        collectionsBefore = collections();
+        if (!realTime) {
+            Runnable all = () -> {
+                for (int i = 0; i < kinds.length; i++) {
+                    dispatch(bean, i);
+                }
+            };
+            if (onFxThread) {
+                onFxThread(all);
+            } else {
+                all.run();
+            }
+            return;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < kinds.length; i++) {
+            long wait = start + dueMicros[i] * 1000 - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int event = i;
+            if (onFxThread) {
+                Platform.runLater(() -> dispatch(bean, event));
+            } else {
+                dispatch(bean, event);
+            }
+        }
+        if (onFxThread) {
+            // events run in the order they were posted
+            onFxThread(() -> {
+            });
+        }
+    }
+
+    /**
+     * Method to print the number of events, the times taken per event as percentiles, the bytes allocated and the
+     * garbage collections during the replay, and a hash of the shapes the replay left in the model. Replays of one
+     * trace are to end with the same hash.
+     */
+    public void report() {
+        int n = nanos.length;
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        long total = 0, allocated = 0;
+        for (int i = 0; i < n; i++) {
+            total += nanos[i];
+            allocated += bytes[i];
+        }
+        long[] collections = collections();
+        System.out.printf("%d events in %.1f ms handling time, %.1f ms recorded%n", n, total / 1e6,
+                n == 0 ? 0.0 : dueMicros[n - 1] / 1e3);
+        System.out.printf("frame time ms: mean %.3f, p50 %.3f, p95 %.3f, p99 %.3f, max %.3f%n",
+                n == 0 ? 0.0 : total / 1e6 / n, percentile(sorted, 0.50), percentile(sorted, 0.95),
+                percentile(sorted, 0.99), n == 0 ? 0.0 : sorted[n - 1] / 1e6);
+        System.out.printf("allocated %.1f KB, %.0f bytes/event; %d collections taking %d ms%n", allocated / 1024.0,
+                n == 0 ? 0.0 : (double) allocated / n, collections[0] - collectionsBefore[0],
+                collections[1] - collectionsBefore[1]);
+        System.out.printf("%d shapes, hash %016x%n", model.getShapes().size(), hash(model));
+    }
+
+    /**
+     * Helper method to hand one event to its controller and measure it.
+     *
+     * @param bean : thread bean to measure allocations with
+     * @param i    : index of the event
+     */
+    private void dispatch(com.sun.management.ThreadMXBean bean, int i) {
+        DrawingController controller = targets[i] == InputRecorder.TARGET_MINI ? miniController : this.controller;
+        Object event = events.get(i);
+        long before = bean.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        switch (kinds[i]) {
+            case InputRecorder.PRESSED -> controller.handlePressed(xs[i], ys[i], (MouseEvent) event);
+            case InputRecorder.DRAGGED -> controller.handleMove(xs[i], ys[i], (MouseEvent) event);
+            case InputRecorder.RELEASED -> controller.handleReleased(xs[i], ys[i], (MouseEvent) event);
+            case InputRecorder.KEY -> controller.handleKeyPressed((KeyEvent) event);
+            case InputRecorder.SHAPE -> controller.setNewShape((Integer) event);
+            case InputRecorder.COLOUR -> controller.setCurrentColour(ShapeCodec.fromRgba((Integer) event));
+            case InputRecorder.DUPLICATE -> controller.duplicateSelection(((int[]) event)[0], ((int[]) event)[1]);
+        }
+        nanos[i] = System.nanoTime() - start;
+        bytes[i] = bean.getCurrentThreadAllocatedBytes() - before;
+    }
+
+    /**
+     * Helper method to build the mouse event of a recorded press, drag or release.
+     *
+     * @param kind      : PRESSED, DRAGGED or RELEASED
+     * @param button    : button of the event
+     * @param modifiers : modifier bits, see InputRecorder
+     * @param x         : normalized x coordinate
+     * @param y         : normalized y coordinate
+     * @return : the event
+     */
+    static MouseEvent mouseEvent(byte kind, MouseButton button, int modifiers, double x, double y) {
+        EventType<MouseEvent> type = switch (kind) {
+            case InputRecorder.PRESSED -> MouseEvent.MOUSE_PRESSED;
+            case InputRecorder.DRAGGED -> MouseEvent.MOUSE_DRAGGED;
+            default -> MouseEvent.MOUSE_RELEASED;
+        };
+        boolean down = kind != InputRecorder.RELEASED;
+        return new MouseEvent(type, x, y, x, y, button, 1, (modifiers & InputRecorder.SHIFT) != 0,
+                (modifiers & InputRecorder.CONTROL) != 0, (modifiers & InputRecorder.ALT) != 0,
+                (modifiers & InputRecorder.META) != 0, down && button == MouseButton.PRIMARY,
+                down && button == MouseButton.MIDDLE, down && button == MouseButton.SECONDARY, true, false, false, null);
+    }
+
+    /**
+     * Helper method to count the garbage collections of the JVM so far.
+     *
+     * @return : number of collections and the milliseconds spent in them
+     */
+    private static long[] collections() {
+        long[] collections = new long[2];
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections[0] += Math.max(0, collector.getCollectionCount());
+            collections[1] += Math.max(0, collector.getCollectionTime());
+        }
+        return collections;
+    }
+
+    /**
+     * Helper method to find a percentile of sorted times.
+     *
+     * @param sorted   : times in nanoseconds, ascending
+     * @param fraction : percentile as a fraction
+     * @return : time in milliseconds
+     */
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(fraction * sorted.length))] / 1e6;
+    }
+
+    /**
+     * Helper method to hash the types, bounds and colours of the shapes of a model, in z-order.
+     *
+     * @param model : model to be hashed
+     * @return : hash of the shapes
+     */
+    static long hash(DrawingModel model) {
+        long hash = 17;
+        for (XShape shape : model.getShapes()) {
+            hash = hash * 31 + ShapeCodec.typeOf(shape);
+            hash = hash * 31 + Double.hashCode(shape.getLeft());
+            hash = hash * 31 + Double.hashCode(shape.getTop());
+            hash = hash * 31 + Double.hashCode(shape.getWidth());
+            hash = hash * 31 + Double.hashCode(shape.getHeight());
+            hash = hash * 31 + ShapeCodec.toRgba(shape.getColor());
+        }
+        return hash;
+    }
+
+    /**
+     * Helper method to run an action on the JavaFX Application Thread and wait for it to finish.
+     *
+     * @param action : action to be run
+     * @throws InterruptedException : if interrupted while waiting
+     */
+    private static void onFxThread(Runnable action) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            try {
+                action.run();
+            } finally {
+                done.countDown();
+            }
+        });
+        if (!done.await(1, TimeUnit.HOURS)) {
+            throw new IllegalStateException("replay did not finish");
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.drawing_application;
+
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that a session recorded by InputRecorder and played back by InputReplay into a fresh model, without views,
+ * leaves the same shapes behind as the session itself: drawing every kind of shape, selecting and dragging, keys,
+ * duplicating into a grid, snapping and scrolling through the mini view's controller.
+ */
+class InputReplayTest {
+    @TempDir
+    Path dir;
+
+    /**
+     * Test for the hash of the shapes after a recorded session and after its replay.
+     */
+    @Test
+    void replayEndsWithSameModel() throws IOException, InterruptedException {
+        DrawingModel model = new DrawingModel();
+        InteractionModel iModel = new InteractionModel();
+        DrawingController controller = new DrawingController();
+        DrawingController miniController = new MiniDrawingController();
+        for (DrawingController c : new DrawingController[]{controller, miniController}) {
+            c.setModel(model);
+            c.setIModel(iModel);
+        }
+        SnapIndex snapIndex = new SnapIndex(model);
+        model.setSnapIndex(snapIndex);
+        controller.setSnapIndex(snapIndex);
+        iModel.setViewFinderWidth(0.5);
+        iModel.setViewFinderHeight(0.5);
+
+        Path trace = dir.resolve("session.trace");
+        try (InputRecorder recorder = new InputRecorder(trace, iModel)) {
+            controller.setRecorder(recorder, InputRecorder.TARGET_MAIN);
+            miniController.setRecorder(recorder, InputRecorder.TARGET_MINI);
+            Random random = new Random(11);
+            for (int shape = 0; shape < 6; shape++) {
+                controller.setNewShape(shape);
+                controller.setCurrentColour(Color.hsb(shape * 60, 1, 1));
+                drag(controller, random.nextDouble() * 0.3, random.nextDouble() * 0.3, 0.1, 0.08, 12);
+            }
+            // select the last shape, move it and copy it around
+            drag(controller, 0, 0, 0, 0, 1);
+            controller.handleKeyPressed(key(KeyCode.D));
+            controller.duplicateSelection(3, 2);
+            controller.handleKeyPressed(key(KeyCode.SEMICOLON));
+            controller.setNewShape(0);
+            drag(controller, 0.05, 0.4, 0.2, 0.05, 20);
+            controller.handleKeyPressed(key(KeyCode.QUOTE));
+            drag(controller, 0.3, 0.05, 0.07, 0.3, 20);
+            controller.handleKeyPressed(key(KeyCode.DELETE));
+            // scroll the view-port through the mini view, then draw where it went
+            drag(miniController, 0.2, 0.2, 0.3, 0.1, 10);
+            drag(controller, iModel.getViewLeft() + 0.1, iModel.getViewTop() + 0.1, 0.1, 0.1, 5);
+        }
+        controller.setRecorder(null, InputRecorder.TARGET_MAIN);
+        miniController.setRecorder(null, InputRecorder.TARGET_MINI);
+        assertTrue(model.getShapes().size() > 6, "the session drew " + model.getShapes().size() + " shapes");
+
+        InputReplay replay = InputReplay.read(trace);
+        DrawingModel replayed = replay.openWithoutViews();
+        replay.play(false);
+        assertEquals(model.getShapes().size(), replayed.getShapes().size());
+        assertEquals(InputReplay.hash(model), InputReplay.hash(replayed));
+    }
+
+    /**
+     * Helper method to press the primary button at a point, drag it in steps and release it.
+     *
+     * @param controller : controller handed the events
+     * @param x          : x coordinate of the press
+     * @param y          : y coordinate of the press
+     * @param dX         : distance dragged along x
+     * @param dY         : distance dragged along y
+     * @param steps      : number of drag events
+     */
+    private static void drag(DrawingController controller, double x, double y, double dX, double dY, int steps) {
+        controller.handlePressed(x, y, InputReplay.mouseEvent(InputRecorder.PRESSED, MouseButton.PRIMARY, 0, x, y));
+        for (int i = 1; i <= steps; i++) {
+            double mx = x + dX * i / steps, my = y + dY * i / steps;
+            controller.handleMove(mx, my, InputReplay.mouseEvent(InputRecorder.DRAGGED, MouseButton.PRIMARY, 0, mx, my));
+        }
+        controller.handleReleased(x + dX, y + dY,
+                InputReplay.mouseEvent(InputRecorder.RELEASED, MouseButton.PRIMARY, 0, x + dX, y + dY));
+    }
+
+    /**
+     * Helper method to build a key press, with control and meta held for every key but DELETE so that the shortcut is
+     * down on any platform.
+     *
+     * @param code : key pressed
+     * @return : the event
+     */
+    private static KeyEvent key(KeyCode code) {
+        boolean shortcut = code != KeyCode.DELETE;
+        return new KeyEvent(KeyEvent.KEY_PRESSED, KeyEvent.CHAR_UNDEFINED, "", code, false, shortcut, false, shortcut);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that InteractionModel tells every kind of subscriber about changes of the view-port, and that moving the
+ * selected shape goes through its model.
+ */
+class InteractionModelTest {
+
+    /**
+     * Test for view-port changes reaching both subscribers that look at the event and those that do not.
+     */
+    @Test
+    void viewportChangesReachEverySubscriber() {
+        InteractionModel iModel = new InteractionModel();
+        iModel.setUnbounded(true);
+        int[] plain = new int[1];
+        List<Double> lefts = new ArrayList<>();
+        iModel.addISubscriber(() -> plain[0]++);
+        InteractionModelSubscriber typed = new InteractionModelSubscriber() {
+            @Override
+            public void iModelChanged() {
+            }
+
+            @Override
+            public void iModelChanged(ViewportEvent event) {
+                lefts.add(event.newLeft());
+            }
+        };
+        iModel.addISubscriber(typed);
+
+        iModel.setViewLeft(0.25);
+        iModel.setViewLeft(2);
+        assertEquals(2, plain[0]);
+        assertEquals(List.of(0.25, 2.0), lefts);
+
+        iModel.removeISubscriber(typed);
+        iModel.setViewLeft(3);
+        assertEquals(3, plain[0]);
+        assertEquals(2, lefts.size());
+    }
+
+    /**
+     * Test for moving the selected shape: a shape in a model moves through the model, so hit-testing sees the move.
+     */
+    @Test
+    void moveShapeGoesThroughModel() {
+        DrawingModel model = new DrawingModel();
+        InteractionModel iModel = new InteractionModel();
+        XShape shape = DrawingModel.newShape(0, 0.1, 0.1, 0.1, 0.1, Color.RED);
+        model.addShape(shape);
+        assertTrue(model.contains(0.15, 0.15));
+        iModel.setSelectedShape(shape);
+
+        // XShape.move() moves by the negated distance
+        iModel.moveShape(-0.5, -0.5);
+        assertEquals(0.6, shape.getLeft(), 1e-12);
+        assertFalse(model.contains(0.15, 0.15));
+        assertTrue(model.contains(0.65, 0.65));
+        assertSame(shape, model.foundShape());
+
+        XShape loose = DrawingModel.newShape(0, 0.1, 0.1, 0.1, 0.1, Color.RED);
+        iModel.setSelectedShape(loose);
+        iModel.moveShape(-0.2, 0);
+        assertEquals(0.3, loose.getLeft(), 1e-12);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.drawing_application;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Test that PickBuffer finds the same shape as HitTestKernel at the centre of every pixel it covers, while the shapes
+ * are moved, resized, selected and deleted and the view-port scrolls, so that every incremental repaint is checked.
+ */
+class PickBufferTest {
+    // size of the document and of the view-port in pixels
+    private static final double DOC_SIZE = 400, VIEW_WIDTH = 150, VIEW_HEIGHT = 110;
+    // number of changes made
+    private static final int STEPS = 120;
+
+    /**
+     * Test for the pick buffer after sequences of moves, resizes, scrolls, selections and deletes.
+     */
+    @Test
+    void shapeAtMatchesKernel() {
+        for (DocumentGenerator.Distribution distribution : DocumentGenerator.Distribution.values()) {
+            DrawingModel model = new DrawingModel();
+            model.addShapes(HitTestKernelTest.document(distribution, 150));
+            PickBuffer buffer = new PickBuffer(model, DOC_SIZE, DOC_SIZE);
+            model.setPickBuffer(buffer);
+            double viewLeft = 0.3, viewTop = 0.2;
+            buffer.setViewport(viewLeft, viewTop, VIEW_WIDTH, VIEW_HEIGHT);
+            assertPixelsMatch(model, buffer, viewLeft, viewTop, distribution + " at start");
+
+            Random random = new Random(distribution.ordinal());
+            for (int step = 0; step < STEPS; step++) {
+                List<XShape> shapes = model.getShapes();
+                XShape shape = shapes.get(random.nextInt(shapes.size()));
+                String operation;
+                switch (step % 5) {
+                    case 0 -> {
+                        operation = "move";
+                        model.moveShape(shape, random.nextDouble() * 0.1 - 0.05, random.nextDouble() * 0.1 - 0.05);
+                    }
+                    case 1 -> {
+                        operation = "resize";
+                        model.resizeShape(shape, shape.getLeft(), shape.getTop(), random.nextDouble() * 0.3, random.nextDouble() * 0.3);
+                    }
+                    case 2 -> {
+                        operation = "scroll";
+                        viewLeft = Math.max(0, Math.min(0.6, viewLeft + (random.nextInt(41) - 20) / DOC_SIZE));
+                        viewTop = Math.max(0, Math.min(0.7, viewTop + random.nextDouble() * 0.05 - 0.025));
+                        buffer.setViewport(viewLeft, viewTop, VIEW_WIDTH, VIEW_HEIGHT);
+                    }
+                    case 3 -> {
+                        operation = "select";
+                        model.contains(viewLeft + random.nextDouble() * VIEW_WIDTH / DOC_SIZE,
+                                viewTop + random.nextDouble() * VIEW_HEIGHT / DOC_SIZE);
+                    }
+                    default -> {
+                        operation = "delete";
+                        model.removeShapes(List.of(shape));
+                    }
+                }
+                assertPixelsMatch(model, buffer, viewLeft, viewTop, distribution + " after " + operation + " " + step);
+            }
+        }
+    }
+
+    /**
+     * Helper method to compare the pick buffer with a hit-test of the model's shapes at the centre of every pixel of
+     * the view-port.
+     *
+     * @param model    : model the buffer shows
+     * @param buffer   : pick buffer placed over the view-port
+     * @param viewLeft : x coordinate of the view-port
+     * @param viewTop  : y coordinate of the view-port
+     * @param where    : description of the state, for failures
+     */
+    private static void assertPixelsMatch(DrawingModel model, PickBuffer buffer, double viewLeft, double viewTop, String where) {
+        List<XShape> shapes = model.getShapes();
+        HitTestKernel kernel = new HitTestKernel();
+        kernel.rebuild(shapes);
+        int firstCol = (int) Math.floor(viewLeft * DOC_SIZE), firstRow = (int) Math.floor(viewTop * DOC_SIZE);
+        for (int row = firstRow; row <= firstRow + VIEW_HEIGHT; row++) {
+            for (int col = firstCol; col <= firstCol + VIEW_WIDTH; col++) {
+                double x = (col + 0.5) / DOC_SIZE, y = (row + 0.5) / DOC_SIZE;
+                if (!buffer.covers(x, y)) {
+                    continue;
+                }
+                int i = kernel.topShapeAt(x, y);
+                assertSame(i < 0 ? null : shapes.get(i), buffer.shapeAt(x, y), where + " at pixel " + col + ", " + row);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.drawing_application;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that ShapeCloner.array() makes one copy of every shape for every cell of the grid but the first, each with an
+ * id of its own and in its cell, and that the model adds them all with a single notification.
+ */
+class ShapeClonerTest {
+    // size of the grid and distance between its cells
+    private static final int COLUMNS = 7, ROWS = 5;
+    private static final double OFFSET_X = 0.01, OFFSET_Y = 0.02;
+
+    /**
+     * Test for copying a rectangle, an oval, a stroke and a group into a grid and adding the copies to the model.
+     */
+    @Test
+    void arrayCopiesEveryShapeIntoEveryCell() {
+        DrawingModel model = new DrawingModel();
+        model.addShapes(HitTestKernelTest.document(DocumentGenerator.Distribution.UNIFORM, 20));
+        List<XShape> shapes = model.getShapes();
+        // a stroke and a group, see HitTestKernelTest.document()
+        List<XShape> selected = List.of(shapes.get(0), shapes.get(2), shapes.get(3), shapes.get(4));
+        int before = shapes.size();
+
+        List<XShape> copies = ShapeCloner.array(selected, COLUMNS, ROWS, OFFSET_X, OFFSET_Y);
+        assertEquals(selected.size() * (COLUMNS * ROWS - 1), copies.size());
+        Set<Long> ids = new HashSet<>();
+        for (XShape shape : shapes) {
+            ids.add(shape.getId());
+        }
+        for (int i = 0; i < copies.size(); i++) {
+            XShape copy = copies.get(i), original = selected.get(i % selected.size());
+            int cell = i / selected.size() + 1;
+            double dX = cell % COLUMNS * OFFSET_X, dY = cell / COLUMNS * OFFSET_Y;
+            assertTrue(ids.add(copy.getId()), "id " + copy.getId() + " of copy " + i + " is not unique");
+            assertNotSame(original, copy);
+            assertSame(original.getClass(), copy.getClass());
+            assertEquals(original.getBoundsLeft() + dX, copy.getBoundsLeft(), 1e-12);
+            assertEquals(original.getBoundsTop() + dY, copy.getBoundsTop(), 1e-12);
+            assertEquals(original.getBoundsRight() + dX, copy.getBoundsRight(), 1e-12);
+            assertEquals(original.getBoundsBottom() + dY, copy.getBoundsBottom(), 1e-12);
+            if (copy instanceof XFreehand stroke) {
+                assertNotSame(((XFreehand) original).getPoints(), stroke.getPoints());
+            }
+        }
+
+        int[] notifications = new int[1];
+        model.addSubscriber(new ModelSubscriber() {
+            @Override
+            public void modelChanged() {
+                notifications[0]++;
+            }
+
+            @Override
+            public void modelChanged(ModelEvent event) {
+                notifications[0]++;
+                assertEquals(copies.size(), event.getShapes().size());
+            }
+        });
+        model.addCopies(copies);
+        assertEquals(1, notifications[0]);
+        assertEquals(before + copies.size(), model.getShapes().size());
+        for (XShape copy : copies) {
+            assertSame(copy, model.getShape(copy.getId()));
+        }
+        assertSame(copies.get(copies.size() - 1), model.foundShape());
+        // the originals are where they were
+        for (XShape shape : selected) {
+            assertSame(shape, model.getShape(shape.getId()));
+        }
+    }
+
+    /**
+     * Test for a grid of a single cell, which has nothing to copy.
+     */
+    @Test
+    void singleCellMakesNoCopies() {
+        List<XShape> shapes = HitTestKernelTest.document(DocumentGenerator.Distribution.UNIFORM, 3);
+        assertEquals(0, ShapeCloner.array(shapes, 1, 1, OFFSET_X, OFFSET_Y).size());
+        assertEquals(shapes.size() * 2, ShapeCloner.array(shapes, 3, 1, OFFSET_X, OFFSET_Y).size());
+    }
+}
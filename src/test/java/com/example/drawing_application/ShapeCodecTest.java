@@ -0,0 +1,71 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test that ShapeCodec and ChunkFile read back the strokes and groups they write, and reject a stroke without points
+ * or a group without children, or with more of them than the buffer holds, before allocating anything for them.
+ */
+class ShapeCodecTest {
+    // position of the number of points or children, after the type, the four coordinates and the colour
+    private static final int COUNT_OFFSET = 1 + 4 * 8 + 4;
+    // position of the same number in a record, after the id and z-order
+    private static final int RECORD_COUNT_OFFSET = 8 + 4 + COUNT_OFFSET;
+
+    /**
+     * Test for reading back a stroke and a group.
+     */
+    @Test
+    void shapesRoundTrip() {
+        XShape stroke = DrawingModel.newShape(5, 0.1, 0.2, 0.3, 0.4, Color.RED);
+        XShape group = new XGroup(List.of(stroke.copy(), DrawingModel.newShape(0, 0.5, 0.5, 0.1, 0.1, Color.BLUE)));
+        for (XShape shape : List.of(stroke, group)) {
+            ByteBuffer buffer = encode(shape);
+            XShape read = ShapeCodec.readShape(buffer);
+            assertEquals(0, buffer.remaining());
+            assertEquals(shape.getClass(), read.getClass());
+            assertEquals(shape.getBoundsLeft(), read.getBoundsLeft());
+            assertEquals(shape.getBoundsBottom(), read.getBoundsBottom());
+        }
+    }
+
+    /**
+     * Test for strokes and groups whose count is below 1 or larger than the rest of the buffer.
+     */
+    @Test
+    void invalidCountsAreRejected() {
+        XShape stroke = DrawingModel.newShape(5, 0.1, 0.2, 0.3, 0.4, Color.RED);
+        XShape group = new XGroup(List.of(DrawingModel.newShape(0, 0.5, 0.5, 0.1, 0.1, Color.BLUE)));
+        for (XShape shape : List.of(stroke, group)) {
+            for (int count : new int[]{0, -1, Integer.MIN_VALUE, 1 << 20, Integer.MAX_VALUE}) {
+                ByteBuffer buffer = encode(shape);
+                buffer.putInt(COUNT_OFFSET, count);
+                assertThrows(IllegalArgumentException.class, () -> ShapeCodec.readShape(buffer), shape + " " + count);
+
+                ByteBuffer record = ByteBuffer.allocate(8 + 4 + ShapeCodec.shapeBytes(shape));
+                ChunkFile.writeRecord(record, shape);
+                record.flip().putInt(RECORD_COUNT_OFFSET, count);
+                assertThrows(IllegalArgumentException.class, () -> ChunkFile.readRecord(record), shape + " " + count);
+            }
+        }
+    }
+
+    /**
+     * Helper method to encode a shape.
+     *
+     * @param shape : shape to be written
+     * @return : buffer holding the shape, in read mode
+     */
+    private static ByteBuffer encode(XShape shape) {
+        ByteBuffer buffer = ByteBuffer.allocate(ShapeCodec.shapeBytes(shape));
+        ShapeCodec.writeShape(buffer, shape);
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Test that ShapeIndex finds every shape it holds after insertions and backward-shift deletions, with ids chosen to
+ * collide in one probe run that wraps around the end of the table, and over random operations against a HashMap.
+ */
+class ShapeIndexTest {
+    // capacity of a new index, and the most shapes it holds before it grows
+    private static final int CAPACITY = 16, BEFORE_GROWING = 7;
+
+    /**
+     * Test for removing colliding shapes in every order: all of them have their home in the last two slots, so their
+     * probe run wraps around to the start of the table, and every removal shifts the rest of the run back.
+     */
+    @Test
+    void collidingShapesSurviveRemovalInAnyOrder() {
+        List<XShape> colliding = new ArrayList<>();
+        for (long id = 1; colliding.size() < BEFORE_GROWING; id++) {
+            if (homeSlot(id) >= CAPACITY - 2) {
+                colliding.add(shapeWithId(id));
+            }
+        }
+        int[] order = new int[BEFORE_GROWING];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        do {
+            ShapeIndex index = new ShapeIndex();
+            for (XShape shape : colliding) {
+                index.put(shape);
+            }
+            for (int removed = 0; removed < order.length; removed++) {
+                XShape shape = colliding.get(order[removed]);
+                assertSame(shape, index.remove(shape.getId()));
+                assertNull(index.remove(shape.getId()));
+                assertEquals(order.length - removed - 1, index.size());
+                for (int i = 0; i < order.length; i++) {
+                    XShape other = colliding.get(order[i]);
+                    assertSame(i <= removed ? null : other, index.get(other.getId()));
+                }
+            }
+        } while (nextPermutation(order));
+    }
+
+    /**
+     * Test for random insertions, replacements, removals and lookups of ids from a small range, which collide often
+     * and make the table grow several times.
+     */
+    @Test
+    void randomOperationsMatchHashMap() {
+        ShapeIndex index = new ShapeIndex();
+        HashMap<Long, XShape> expected = new HashMap<>();
+        Random random = new Random(6);
+        for (int step = 0; step < 50_000; step++) {
+            long id = random.nextInt(step < 25_000 ? 400 : 40);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    XShape shape = shapeWithId(id);
+                    index.put(shape);
+                    expected.put(id, shape);
+                }
+                case 1 -> assertSame(expected.remove(id), index.remove(id), "remove " + id + " at " + step);
+                default -> assertSame(expected.get(id), index.get(id), "get " + id + " at " + step);
+            }
+            assertEquals(expected.size(), index.size());
+        }
+        for (long id = 0; id < 400; id++) {
+            assertSame(expected.get(id), index.get(id));
+        }
+    }
+
+    /**
+     * Helper method to make a shape with a given id.
+     *
+     * @param id : id of the shape
+     * @return : the shape
+     */
+    private static XShape shapeWithId(long id) {
+        XShape shape = DrawingModel.newShape(0, 0, 0, 0.1, 0.1, Color.BLACK);
+        shape.setId(id);
+        return shape;
+    }
+
+    /**
+     * Helper method to find the home slot of an id in a new index, mixing its bits the way ShapeIndex does.
+     *
+     * @param id : id of a shape
+     * @return : home slot
+     */
+    private static int homeSlot(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (CAPACITY - 1);
+    }
+
+    /**
+     * Helper method to step to the next permutation in lexicographic order.
+     *
+     * @param order : permutation, changed in place
+     * @return : false once the last permutation has been passed
+     */
+    private static boolean nextPermutation(int[] order) {
+        int i = order.length - 2;
+        while (i >= 0 && order[i] >= order[i + 1]) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        int j = order.length - 1;
+        while (order[j] <= order[i]) {
+            j--;
+        }
+        int swap = order[i];
+        order[i] = order[j];
+        order[j] = swap;
+        for (int low = i + 1, high = order.length - 1; low < high; low++, high--) {
+            swap = order[low];
+            order[low] = order[high];
+            order[high] = swap;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test that SnapIndex finds an anchor as near as a scan of the anchors of every shape does, while it follows the
+ * moves, resizes, additions and removals of its model change by change instead of being rebuilt.
+ */
+class SnapIndexTest {
+    // number of changes made and points queried after each
+    private static final int STEPS = 400, QUERIES = 20;
+
+    /**
+     * Test for the nearest anchor after sequences of small drags, jumps across many cells, resizes, additions and
+     * removals.
+     */
+    @Test
+    void nearestMatchesScanAfterChanges() {
+        for (DocumentGenerator.Distribution distribution : DocumentGenerator.Distribution.values()) {
+            DrawingModel model = new DrawingModel();
+            model.addShapes(HitTestKernelTest.document(distribution, 300));
+            SnapIndex index = new SnapIndex(model);
+            model.setSnapIndex(index);
+            model.addSubscriber(new ModelSubscriber() {
+                @Override
+                public void modelChanged() {
+                    fail("untyped change");
+                }
+
+                @Override
+                public void modelChanged(ModelEvent event) {
+                    // the index follows typed changes by itself
+                }
+            });
+            Random random = new Random(distribution.ordinal());
+            assertNearest(model, index, random, distribution + " at start");
+
+            for (int step = 0; step < STEPS; step++) {
+                List<XShape> shapes = model.getShapes();
+                XShape shape = shapes.get(random.nextInt(shapes.size()));
+                String operation;
+                switch (step % 5) {
+                    case 0, 1 -> {
+                        operation = "drag";
+                        model.moveShape(shape, random.nextDouble() * 0.004 - 0.002, random.nextDouble() * 0.004 - 0.002);
+                    }
+                    case 2 -> {
+                        operation = "jump";
+                        model.moveShape(shape, random.nextDouble() - shape.getLeft(), random.nextDouble() - shape.getTop());
+                    }
+                    case 3 -> {
+                        operation = "resize";
+                        model.resizeShape(shape, shape.getLeft(), shape.getTop(), random.nextDouble() * 0.2,
+                                random.nextDouble() * 0.2);
+                    }
+                    default -> {
+                        operation = "replace";
+                        model.removeShapes(List.of(shape));
+                        model.addShape(DrawingModel.newShape(random.nextInt(6), random.nextDouble(), random.nextDouble(),
+                                random.nextDouble() * 0.1, random.nextDouble() * 0.1, Color.BLACK));
+                    }
+                }
+                assertNearest(model, index, random, distribution + " after " + operation + " " + step);
+            }
+        }
+    }
+
+    /**
+     * Helper method to compare the distance of the anchor found by the index with that found by a scan, at random
+     * points, radii and excluded shapes.
+     *
+     * @param model  : model the index follows
+     * @param index  : index to be checked
+     * @param random : source of the queries
+     * @param where  : description of the state, for failures
+     */
+    private static void assertNearest(DrawingModel model, SnapIndex index, Random random, String where) {
+        List<XShape> shapes = model.getShapes();
+        double[] xs = new double[SnapIndex.ANCHORS], ys = new double[SnapIndex.ANCHORS];
+        for (int q = 0; q < QUERIES; q++) {
+            double x = random.nextDouble(), y = random.nextDouble(), radius = random.nextDouble() * 0.05;
+            XShape exclude = random.nextBoolean() ? shapes.get(random.nextInt(shapes.size())) : null;
+            double best = radius * radius;
+            boolean any = false;
+            for (XShape shape : shapes) {
+                if (shape == exclude) {
+                    continue;
+                }
+                SnapIndex.anchorsOf(shape.getBoundsLeft(), shape.getBoundsTop(), shape.getBoundsRight(),
+                        shape.getBoundsBottom(), xs, ys, 0);
+                for (int i = 0; i < SnapIndex.ANCHORS; i++) {
+                    double distance = (xs[i] - x) * (xs[i] - x) + (ys[i] - y) * (ys[i] - y);
+                    if (distance <= best) {
+                        best = distance;
+                        any = true;
+                    }
+                }
+            }
+            int entry = index.nearest(x, y, radius, exclude);
+            String query = where + " at " + x + ", " + y + " within " + radius;
+            assertEquals(any, entry >= 0, query);
+            if (entry >= 0) {
+                double dX = index.getAnchorX(entry) - x, dY = index.getAnchorY(entry) - y;
+                assertEquals(best, dX * dX + dY * dY, 1e-15, query);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.drawing_application;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark for the startup time from main() to the first rendered frame. Every run starts DrawingApp in a fresh JVM
+ * with the same JVM options as this benchmark (so e.g. -XX:SharedArchiveFile applies to the runs), with the default
+ * startup and with drawing.fastStart, each with the class-data sharing archive in use and with -Xshare:off, and
+ * reports the median of each.
+ */
+public class StartupBenchmark {
+    // number of runs per startup mode if none is given
+    private static final int DEFAULT_RUNS = 5;
+    // line printed by DrawingApp for every startup milestone
+    private static final Pattern REPORT = Pattern.compile("startup (.+): ([0-9.]+) ms after main, ([0-9.]+|NaN) ms after JVM start");
+
+    /**
+     * Main method that runs the benchmark.
+     *
+     * @param args : optional number of runs per startup mode (default 5)
+     * @throws IOException          : if a run could not be started
+     * @throws InterruptedException : if interrupted while waiting for a run
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RUNS;
+        List<String> command = appCommand();
+        for (boolean sharing : new boolean[]{true, false}) {
+            for (boolean fastStart : new boolean[]{false, true}) {
+                double[] sinceMain = new double[runs];
+                double[] sinceJvm = new double[runs];
+                for (int run = 0; run < runs; run++) {
+                    double[] firstFrame = runOnce(command, fastStart, sharing);
+                    sinceMain[run] = firstFrame[0];
+                    sinceJvm[run] = firstFrame[1];
+                }
+                System.out.printf("%s, %s: first frame %.1f ms after main, %.1f ms after JVM start (median of %d)%n",
+                        fastStart ? "fast start" : "default start", sharing ? "CDS" : "no CDS", median(sinceMain),
+                        median(sinceJvm), runs);
+            }
+        }
+    }
+
+    /**
+     * Helper method to start DrawingApp once and wait for it to exit after starting up.
+     *
+     * @param command   : command line to start DrawingApp with
+     * @param fastStart : whether to start with drawing.fastStart
+     * @param sharing   : whether to use the class-data sharing archive, or start with -Xshare:off
+     * @return : milliseconds from main() and from JVM start to the first frame
+     * @throws IOException          : if the run could not be started
+     * @throws InterruptedException : if interrupted while waiting for the run
+     */
+    private static double[] runOnce(List<String> command, boolean fastStart, boolean sharing)
+            throws IOException, InterruptedException {
+        List<String> runCommand = new ArrayList<>(command);
+        // the options go right after the java executable, before the main class
+        runCommand.addAll(1, Arrays.asList("-Ddrawing.reportStartup=true", "-Ddrawing.exitAfterStartup=true",
+                "-Ddrawing.fastStart=" + fastStart));
+        if (!sharing) {
+            // after the options copied from this JVM's command line, which may hold another -Xshare option, but before
+            // the main class or the -m option naming it
+            int main = runCommand.size() - 1;
+            String option = runCommand.get(main - 1);
+            runCommand.add(option.equals("-m") || option.equals("--module") ? main - 1 : main, "-Xshare:off");
+        }
+        Process process = new ProcessBuilder(runCommand).redirectErrorStream(true).start();
+        double[] firstFrame = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = REPORT.matcher(line);
+                if (matcher.matches() && matcher.group(1).equals("first frame")) {
+                    firstFrame = new double[]{Double.parseDouble(matcher.group(2)), Double.parseDouble(matcher.group(3))};
+                } else if (!matcher.matches()) {
+                    System.err.println(line);
+                }
+            }
+        }
+        int status = process.waitFor();
+        if (firstFrame == null) {
+            throw new IllegalStateException("DrawingApp exited with status " + status + " before its first frame");
+        }
+        return firstFrame;
+    }
+
+    /**
+     * Helper method to build the command line for DrawingApp from the command line of this JVM, by replacing this
+     * benchmark's main class and arguments with DrawingApp.
+     *
+     * @return : command line starting with the java executable
+     */
+    private static List<String> appCommand() {
+        ProcessHandle.Info info = ProcessHandle.current().info();
+        String[] arguments = info.arguments().orElseThrow(() -> new IllegalStateException("JVM arguments not available"));
+        List<String> command = new ArrayList<>();
+        command.add(info.command().orElseThrow(() -> new IllegalStateException("Java executable not available")));
+        for (String argument : arguments) {
+            if (argument.endsWith(StartupBenchmark.class.getName())) {
+                // keep the module prefix of -m module/class launches
+                command.add(argument.replace(StartupBenchmark.class.getName(), DrawingApp.class.getName()));
+                return command;
+            }
+            command.add(argument);
+        }
+        throw new IllegalStateException("Main class not found on the command line");
+    }
+
+    /**
+     * Helper method to find the median of some values.
+     *
+     * @param values : values, sorted in place
+     * @return : median
+     */
+    private static double median(double[] values) {
+        Arrays.sort(values);
+        int mid = values.length / 2;
+        return values.length % 2 == 1 ? values[mid] : (values[mid - 1] + values[mid]) / 2;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that XFreehand simplifies a stroke without moving it further than SIMPLIFY_TOLERANCE from any sample that was
+ * drawn, and that its points and bounding box stay consistent through copies, moves and resizes.
+ */
+class XFreehandTest {
+    // number of strokes drawn and samples per stroke
+    private static final int STROKES = 50, SAMPLES = 2000;
+
+    /**
+     * Test for the simplification of random strokes, from slow and smooth ones to fast and jittery ones.
+     */
+    @Test
+    void simplifiedStrokeStaysNearSamples() {
+        Random random = new Random(4);
+        for (int s = 0; s < STROKES; s++) {
+            double step = 0.0002 + random.nextDouble() * 0.002, jitter = random.nextDouble() * 0.0008;
+            double x = 0.5, y = 0.5, heading = random.nextDouble() * 2 * Math.PI;
+            double[] samples = new double[SAMPLES * 2];
+            samples[0] = x;
+            samples[1] = y;
+            XFreehand stroke = new XFreehand(x, y, 0);
+            for (int i = 1; i < SAMPLES; i++) {
+                heading += random.nextGaussian() * 0.05;
+                x += Math.cos(heading) * step + random.nextGaussian() * jitter;
+                y += Math.sin(heading) * step + random.nextGaussian() * jitter;
+                samples[i * 2] = x;
+                samples[i * 2 + 1] = y;
+                stroke.addPoint(x, y);
+            }
+            stroke.finish();
+
+            assertTrue(stroke.getPointCount() < SAMPLES, "stroke " + s + " was not simplified");
+            for (int i = 0; i < SAMPLES; i++) {
+                double distance = Math.sqrt(distanceSquared(stroke, samples[i * 2], samples[i * 2 + 1]));
+                assertTrue(distance <= XFreehand.SIMPLIFY_TOLERANCE + 1e-12,
+                        "sample " + i + " of stroke " + s + " is " + distance + " from the stroke");
+            }
+            assertConsistent(stroke, "stroke " + s);
+        }
+    }
+
+    /**
+     * Test for copying, moving and resizing strokes, including straight ones without extent along an axis: the
+     * bounding box is always that of the points.
+     */
+    @Test
+    void pointsFollowCopyMoveAndResize() {
+        Random random = new Random(5);
+        XFreehand[] strokes = {
+                (XFreehand) DrawingModel.newShape(5, 0.1, 0.2, 0.3, 0.4, Color.BLACK),
+                (XFreehand) DrawingModel.newShape(5, 0.1, 0.2, 0.3, 0, Color.BLACK),
+                (XFreehand) DrawingModel.newShape(5, 0.1, 0.2, 0, 0.4, Color.BLACK),
+                drawn(random)};
+        for (XFreehand stroke : strokes) {
+            for (int step = 0; step < 100; step++) {
+                String where = "step " + step + " of a stroke of " + stroke.getPointCount() + " points";
+                switch (step % 3) {
+                    case 0 -> stroke.move(random.nextDouble() * 0.2 - 0.1, random.nextDouble() * 0.2 - 0.1);
+                    case 1 -> stroke.resize(random.nextDouble(), random.nextDouble(), random.nextDouble() * 0.5,
+                            random.nextDouble() * 0.5);
+                    default -> {
+                        XFreehand copy = (XFreehand) stroke.copy();
+                        assertNotSame(stroke.getPoints(), copy.getPoints(), where);
+                        assertEquals(stroke.getPointCount(), copy.getPointCount(), where);
+                        for (int i = 0; i < stroke.getPointCount() * 2; i++) {
+                            assertEquals(stroke.getPoints()[i], copy.getPoints()[i], where);
+                        }
+                        double left = stroke.getLeft();
+                        copy.move(0.5, 0);
+                        assertEquals(left, stroke.getLeft(), where);
+                        assertConsistent(copy, where + " (copy)");
+                    }
+                }
+                assertConsistent(stroke, where);
+            }
+        }
+    }
+
+    /**
+     * Helper method to draw a finished random stroke.
+     *
+     * @param random : source of the samples
+     * @return : the stroke
+     */
+    private static XFreehand drawn(Random random) {
+        XFreehand stroke = new XFreehand(random.nextDouble(), random.nextDouble(), 0);
+        for (int i = 0; i < 200; i++) {
+            stroke.addPoint(random.nextDouble(), random.nextDouble());
+        }
+        stroke.finish();
+        return stroke;
+    }
+
+    /**
+     * Helper method to check that the bounding box of a stroke is that of its points.
+     *
+     * @param stroke : stroke to be checked
+     * @param where  : description of the stroke, for failures
+     */
+    private static void assertConsistent(XFreehand stroke, String where) {
+        double[] points = stroke.getPoints();
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < stroke.getPointCount() * 2; i += 2) {
+            minX = Math.min(minX, points[i]);
+            maxX = Math.max(maxX, points[i]);
+            minY = Math.min(minY, points[i + 1]);
+            maxY = Math.max(maxY, points[i + 1]);
+        }
+        assertEquals(minX, stroke.getLeft(), 1e-12, where);
+        assertEquals(minY, stroke.getTop(), 1e-12, where);
+        assertEquals(maxX - minX, stroke.getWidth(), 1e-12, where);
+        assertEquals(maxY - minY, stroke.getHeight(), 1e-12, where);
+    }
+
+    /**
+     * Helper method to find the squared distance of a point from the nearest segment of a stroke.
+     *
+     * @param stroke : stroke to be measured
+     * @param px     : x coordinate of the point
+     * @param py     : y coordinate of the point
+     * @return : squared distance
+     */
+    private static double distanceSquared(XFreehand stroke, double px, double py) {
+        double[] points = stroke.getPoints();
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < stroke.getPointCount() * 2; i += 2) {
+            double x1 = points[Math.max(0, i - 2)], y1 = points[Math.max(1, i - 1)], x2 = points[i], y2 = points[i + 1];
+            double dx = x2 - x1, dy = y2 - y1;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((px - x1) * dx + (py - y1) * dy) / lengthSquared));
+            double ex = x1 + t * dx - px, ey = y1 + t * dy - py;
+            best = Math.min(best, ex * ex + ey * ey);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.drawing_application;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that XGroup moves, resizes and recolours its children as a unit, also when groups are nested, that its extent
+ * leaves out the click tolerance of lines and strokes, and that grouping and hit-testing through groups find the same
+ * shapes as looking at the children themselves.
+ */
+class XGroupTest {
+    // number of points hit-tested
+    private static final int QUERIES = 2000;
+
+    /**
+     * Test for grouping shapes of a model and splitting the group again: the children come back unchanged, and the
+     * group is hit wherever one of them is.
+     */
+    @Test
+    void groupUngroupRoundTrips() {
+        DrawingModel model = new DrawingModel();
+        model.addShapes(HitTestKernelTest.document(DocumentGenerator.Distribution.UNIFORM, 40));
+        List<XShape> members = new ArrayList<>(model.getShapes().subList(10, 20));
+        List<double[]> before = new ArrayList<>();
+        for (XShape member : members) {
+            before.add(geometryOf(member));
+        }
+        int size = model.getShapes().size();
+
+        XGroup group = model.groupShapes(members);
+        assertEquals(size - members.size() + 1, model.getShapes().size());
+        assertEquals(members, group.getChildren());
+        assertSame(group, model.getShape(group.getId()));
+        Random random = new Random(1);
+        for (int q = 0; q < QUERIES; q++) {
+            double x = random.nextDouble(), y = random.nextDouble();
+            assertEquals(HitTestKernelTest.topShapeAt(members, x, y) >= 0, group.contains(x, y), x + ", " + y);
+        }
+
+        List<XShape> children = model.ungroupShape(group);
+        assertEquals(size, model.getShapes().size());
+        assertEquals(members, children);
+        for (int i = 0; i < children.size(); i++) {
+            XShape child = children.get(i);
+            assertArrayEquals(before.get(i), geometryOf(child));
+            assertSame(child, model.getShape(child.getId()));
+        }
+        assertEquals(null, model.getShape(group.getId()));
+    }
+
+    /**
+     * Test for moving, resizing and recolouring a group with a nested group, through the model and through the
+     * setters: every child follows, and the extent of the group ends up where it was asked to be.
+     */
+    @Test
+    void nestedGroupsMoveResizeAndRecolour() {
+        XShape rectangle = DrawingModel.newShape(0, 0.1, 0.1, 0.2, 0.1, Color.RED);
+        XShape line = DrawingModel.newShape(4, 0.2, 0.3, 0.4, 0.35, Color.RED);
+        XShape oval = DrawingModel.newShape(3, 0.5, 0.2, 0.1, 0.2, Color.GREEN);
+        XShape stroke = DrawingModel.newShape(5, 0.3, 0.5, 0.2, 0.1, Color.BLUE);
+        XGroup inner = new XGroup(List.of(rectangle, line));
+        XGroup outer = new XGroup(List.of(inner, oval, stroke));
+        DrawingModel model = new DrawingModel();
+        model.addShape(outer);
+
+        // the extent is that of the shapes, not of their bounds grown by the click tolerance
+        assertExtent(outer, 0.1, 0.1, 0.5, 0.5);
+        assertExtent(inner, 0.1, 0.1, 0.3, 0.25);
+        assertEquals(0.4 + XLine.TOLERANCE, inner.getBoundsRight(), 1e-12);
+        assertEquals(0.6 + XLine.TOLERANCE, outer.getBoundsBottom(), 1e-12);
+
+        model.moveShape(outer, 0.1, 0.05);
+        assertExtent(outer, 0.2, 0.15, 0.5, 0.5);
+        assertExtent(rectangle, 0.2, 0.15, 0.2, 0.1);
+        assertEquals(0.3, line.getLeft(), 1e-12);
+        assertEquals(0.5, line.getWidth(), 1e-12);
+        assertExtent(oval, 0.6, 0.25, 0.1, 0.2);
+        assertExtent(stroke, 0.4, 0.55, 0.2, 0.1);
+
+        model.resizeShape(outer, 0.1, 0.1, 0.25, 1.0);
+        assertExtent(outer, 0.1, 0.1, 0.25, 1.0);
+        assertExtent(inner, 0.1, 0.1, 0.15, 0.5);
+        assertExtent(rectangle, 0.1, 0.1, 0.1, 0.2);
+        assertEquals(0.15, line.getLeft(), 1e-12);
+        assertEquals(0.5, line.getTop(), 1e-12);
+        assertEquals(0.25, line.getWidth(), 1e-12);
+        assertEquals(0.6, line.getHeight(), 1e-12);
+        assertExtent(oval, 0.3, 0.3, 0.05, 0.4);
+        assertExtent(stroke, 0.2, 0.9, 0.1, 0.2);
+
+        outer.setLeft(0.2);
+        outer.setTop(0.0);
+        assertExtent(outer, 0.2, 0.0, 0.25, 1.0);
+        assertExtent(rectangle, 0.2, 0.0, 0.1, 0.2);
+        outer.setWidth(0.5);
+        outer.setHeight(0.5);
+        assertExtent(outer, 0.2, 0.0, 0.5, 0.5);
+        assertExtent(rectangle, 0.2, 0.0, 0.2, 0.1);
+        assertExtent(oval, 0.6, 0.1, 0.1, 0.2);
+
+        model.recolourShapes(List.of(outer), Color.ORANGE);
+        for (XShape shape : List.of(outer, inner, rectangle, line, oval, stroke)) {
+            assertEquals(Color.ORANGE, shape.getColor());
+        }
+    }
+
+    /**
+     * Test for hit-testing through nested groups: a group holds a point exactly when one of the shapes at the bottom
+     * of its subtree does, and the model selects the outer-most group there.
+     */
+    @Test
+    void hitTestsReachNestedChildren() {
+        List<XShape> shapes = HitTestKernelTest.document(DocumentGenerator.Distribution.CLUSTERED, 60);
+        XGroup nested = new XGroup(List.of(new XGroup(shapes.subList(0, 10)), new XGroup(shapes.subList(10, 25)),
+                new XGroup(List.of(new XGroup(shapes.subList(25, 30)), shapes.get(30)))));
+        List<XShape> leaves = new ArrayList<>();
+        collectLeaves(nested, leaves);
+        DrawingModel model = new DrawingModel();
+        model.addShape(nested);
+        model.addShapes(shapes.subList(31, 60));
+
+        Random random = new Random(2);
+        for (int q = 0; q < QUERIES; q++) {
+            double x = random.nextDouble(), y = random.nextDouble();
+            String where = x + ", " + y;
+            boolean inLeaf = HitTestKernelTest.topShapeAt(leaves, x, y) >= 0;
+            assertEquals(inLeaf, nested.contains(x, y), where);
+            assertTrue(!inLeaf || (x >= nested.getBoundsLeft() && x <= nested.getBoundsRight()
+                    && y >= nested.getBoundsTop() && y <= nested.getBoundsBottom()), where);
+            List<XShape> inModel = model.getShapes();
+            int top = HitTestKernelTest.topShapeAt(inModel, x, y);
+            assertEquals(top >= 0, model.contains(x, y), where);
+            if (top >= 0) {
+                assertSame(inModel.get(HitTestKernelTest.topShapeAt(inModel, x, y)), model.foundShape(), where);
+            }
+        }
+    }
+
+    /**
+     * Helper method to check the extent of a shape.
+     *
+     * @param shape  : shape to be checked
+     * @param left   : expected x coordinate
+     * @param top    : expected y coordinate
+     * @param width  : expected width
+     * @param height : expected height
+     */
+    private static void assertExtent(XShape shape, double left, double top, double width, double height) {
+        assertArrayEquals(new double[]{left, top, width, height}, geometryOf(shape), 1e-12);
+    }
+
+    /**
+     * Helper method to find the location and size of a shape.
+     *
+     * @param shape : shape to be measured
+     * @return : left, top, width and height
+     */
+    private static double[] geometryOf(XShape shape) {
+        return new double[]{shape.getLeft(), shape.getTop(), shape.getWidth(), shape.getHeight()};
+    }
+
+    /**
+     * Helper method to collect the shapes at the bottom of a subtree of groups.
+     *
+     * @param shape  : root of the subtree
+     * @param leaves : list the shapes that are not groups are added to
+     */
+    private static void collectLeaves(XShape shape, List<XShape> leaves) {
+        if (shape instanceof XGroup group) {
+            for (XShape child : group.getChildren()) {
+                collectLeaves(child, leaves);
+            }
+        } else {
+            leaves.add(shape);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.drawing_application;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that a click counts on a line only within its tolerance-grown bounds, also for short lines that are almost
+ * horizontal or vertical.
+ */
+class XLineTest {
+    /**
+     * Test for a short, almost horizontal line. Its width is within the tolerance, so the edge case accepts any x close
+     * to the line.
+     */
+    @Test
+    void shortHorizontalLineIsNotHitAlongItsExtension() {
+        XLine line = new XLine(0.5, 0.5, 0.505, 0.5, 0);
+        assertTrue(line.contains(0.502, 0.5));
+        assertTrue(line.contains(0.5 - XLine.TOLERANCE / 2, 0.5));
+        assertFalse(line.contains(0.7, 0.5));
+        assertFalse(line.contains(0.3, 0.5));
+    }
+
+    /**
+     * Test for a short, almost vertical line, which was already limited to its end points along y.
+     */
+    @Test
+    void shortVerticalLineIsNotHitAlongItsExtension() {
+        XLine line = new XLine(0.5, 0.5, 0.5, 0.505, 0);
+        assertTrue(line.contains(0.501, 0.502));
+        assertFalse(line.contains(0.5, 0.7));
+        assertFalse(line.contains(0.5, 0.3));
+    }
+
+    /**
+     * Test that every hit lies within the bounds the hit-test kernel and ShapeGrid test against.
+     */
+    @Test
+    void hitsLieWithinTheBounds() {
+        XLine[] lines = {new XLine(0.5, 0.5, 0.505, 0.5, 0), new XLine(0.5, 0.5, 0.5, 0.505, 1),
+                new XLine(0.2, 0.2, 0.6, 0.4, 2), new XLine(0.6, 0.2, 0.2, 0.4, 3)};
+        for (XLine line : lines) {
+            for (double x = 0; x <= 1; x += 0.001) {
+                for (double y = 0.1; y <= 0.6; y += 0.001) {
+                    if (line.contains(x, y)) {
+                        assertTrue(x >= line.getBoundsLeft() && x <= line.getBoundsRight()
+                                && y >= line.getBoundsTop() && y <= line.getBoundsBottom());
+                    }
+                }
+            }
+        }
+    }
+}